@@ -0,0 +1,165 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.BlockingMemcachedClient;
+import com.buralo.memcached.MemcachedClient;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.MemcachedConnectionPool;
+import com.buralo.memcached.StubMemcachedServer;
+import com.buralo.memcached.codec.ValueCodecs;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.netty.tcp.TcpClient;
+
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Measures GET throughput from 10,000 concurrent blocking callers, comparing {@code Mono.block()} with the
+ * {@link BlockingMemcachedClient} facade on platform threads and on virtual threads.
+ * <p>
+ * Virtual threads need Java 21 or later. On older runtimes the {@code VIRTUAL} runs fail in their setup and the
+ * platform thread runs still complete.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class BlockingBenchmark {
+
+    private static final int CALLERS = 10000;
+
+    private static final int CALLS = 4;
+
+    private static final String KEY = "user:session:0123456789abcdef";
+
+    /**
+     * How each caller waits for its response.
+     */
+    public enum Api {
+        MONO_BLOCK,
+        FACADE
+    }
+
+    /**
+     * The threads the callers run on.
+     */
+    public enum Callers {
+        PLATFORM,
+        VIRTUAL
+    }
+
+    @Param({"MONO_BLOCK", "FACADE"})
+    private Api api;
+
+    @Param({"PLATFORM", "VIRTUAL"})
+    private Callers callers;
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnectionPool pool;
+
+    private MemcachedClient client;
+
+    private BlockingMemcachedClient blocking;
+
+    private ExecutorService executor;
+
+    @Setup(Level.Trial)
+    public void setUp() throws Exception {
+        executor = callers == Callers.PLATFORM ? Executors.newFixedThreadPool(CALLERS) : virtualThreadExecutor();
+        server = new StubMemcachedServer();
+        server.items().put(KEY, new byte[100]);
+        pool = new MemcachedConnectionPool(server.address(), TcpClient.newConnection(), 4,
+                MemcachedConnection.DEFAULT_MAX_IN_FLIGHT);
+        pool.warmUp().block();
+        client = new MemcachedClient(Collections.singletonList(pool), DefaultHashAlgorithms.FNV1A_32);
+        blocking = new BlockingMemcachedClient(client);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        if (executor != null) {
+            executor.shutdownNow();
+        }
+        if (pool != null) {
+            pool.close().block();
+            server.close();
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CALLERS * CALLS)
+    public long concurrentGets() throws InterruptedException {
+        final CountDownLatch finished = new CountDownLatch(CALLERS);
+        final AtomicLong bytes = new AtomicLong();
+        for (int i = 0; i < CALLERS; i++) {
+            executor.execute(() -> {
+                try {
+                    for (int j = 0; j < CALLS; j++) {
+                        bytes.addAndGet(get().length);
+                    }
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        finished.await();
+        return bytes.get();
+    }
+
+    private byte[] get() {
+        return api == Api.FACADE
+                ? blocking.get(KEY, ValueCodecs.BYTE_ARRAY)
+                : client.get(KEY, ValueCodecs.BYTE_ARRAY).block();
+    }
+
+    /**
+     * Create an executor that starts a virtual thread for each task. The method is looked up reflectively so the
+     * benchmarks still compile for Java 8.
+     */
+    private static ExecutorService virtualThreadExecutor() throws Exception {
+        try {
+            return (ExecutorService) Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+        } catch (final NoSuchMethodException e) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later", e);
+        }
+    }
+}
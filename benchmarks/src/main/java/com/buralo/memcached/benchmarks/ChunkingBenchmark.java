@@ -0,0 +1,120 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedClient;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import com.buralo.memcached.chunk.ChunkedMemcachedClient;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import com.buralo.memcached.server.MemcachedServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures writing and reading a value larger than the item size limit split into chunks of different sizes across
+ * three in-process servers. Smaller chunks are fetched with more parallelism but cost more requests.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ChunkingBenchmark {
+
+    private static final int VALUE_LENGTH = 4 * 1024 * 1024;
+
+    @Param({"65536", "524288"})
+    private int chunkSize;
+
+    private final List<MemcachedServer> servers = new ArrayList<>();
+
+    private final List<MemcachedConnection> connections = new ArrayList<>();
+
+    private ChunkedMemcachedClient client;
+
+    private ByteBuf value;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            final MemcachedServer server = new MemcachedServer();
+            servers.add(server);
+            connections.add(MemcachedConnection.connect(server.address()).block());
+        }
+        client = new ChunkedMemcachedClient(new MemcachedClient(connections, DefaultHashAlgorithms.FNV1A_32),
+                chunkSize);
+        value = PooledByteBufAllocator.DEFAULT.directBuffer(VALUE_LENGTH).writeZero(VALUE_LENGTH);
+        final Response stored = client.set("large", 0, 0, value.retainedDuplicate()).block();
+        try {
+            if (stored.status() != Status.NO_ERROR) {
+                throw new IllegalStateException("Could not store the value: " + stored.status());
+            }
+        } finally {
+            stored.release();
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connections.forEach(connection -> connection.close().block());
+        servers.forEach(MemcachedServer::close);
+        value.release();
+    }
+
+    @Benchmark
+    public int get() {
+        final Response response = client.get("large").block();
+        try {
+            return response.value().readableBytes();
+        } finally {
+            response.release();
+        }
+    }
+
+    @Benchmark
+    public int set() {
+        final Response response = client.set("large", 0, 0, value.retainedDuplicate()).block();
+        try {
+            return response.status().code();
+        } finally {
+            response.release();
+        }
+    }
+}
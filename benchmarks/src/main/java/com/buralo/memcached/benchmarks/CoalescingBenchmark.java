@@ -0,0 +1,110 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedClient;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.util.Collections;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures GET throughput when many subscribers read the same hot key at once, with and without coalescing. The
+ * {@code wireRequests} counter reports how many requests reached the server for each GET issued.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CoalescingBenchmark {
+
+    private static final int CONCURRENCY = 256;
+
+    private static final String KEY = "user:session:0123456789abcdef";
+
+    @Param({"false", "true"})
+    private boolean coalesceGets;
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnection connection;
+
+    private MemcachedClient client;
+
+    /**
+     * Counts the requests seen by the server relative to the GETs issued.
+     */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Counters {
+
+        public long wireRequests;
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new StubMemcachedServer();
+        server.items().put(KEY, new byte[100]);
+        connection = MemcachedConnection.connect(server.address()).block();
+        client = MemcachedClient.builder()
+                .nodes(Collections.singletonList(connection), DefaultHashAlgorithms.FNV1A_32)
+                .coalesceGets(coalesceGets)
+                .build();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connection.close().block();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(CONCURRENCY)
+    public long hotKeyGet(final Counters counters) {
+        final long before = server.requests();
+        final long count = Flux.range(0, CONCURRENCY)
+                .flatMap(i -> client.get(KEY), CONCURRENCY)
+                .doOnNext(Response::release)
+                .count()
+                .block();
+        counters.wireRequests += server.requests() - before;
+        return count;
+    }
+}
@@ -0,0 +1,103 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Status;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the table lookups used by {@link Opcode#fromCode(byte)} and {@link Status#fromCode(int)} with the linear
+ * scan over {@code values()} they replaced. The codes are a mix of those seen when decoding typical traffic. Run with
+ * {@code -prof gc} to see the array copied by each call to {@code values()}.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CodeLookupBenchmark {
+
+    private static final byte[] OPCODES = {0x00, 0x0d, 0x0a, 0x01, 0x11, 0x04, 0x0c, 0x05};
+
+    private static final int[] STATUSES = {0, 1, 0, 0, 2, 0, 1, 134};
+
+    private static Opcode linearOpcode(final byte code) {
+        for (final Opcode opcode : Opcode.values()) {
+            if (opcode.code() == code) {
+                return opcode;
+            }
+        }
+        return null;
+    }
+
+    private static Status linearStatus(final int code) {
+        for (final Status status : Status.values()) {
+            if (status.code() == code) {
+                return status;
+            }
+        }
+        return null;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void opcodeLinearScan(final Blackhole blackhole) {
+        for (final byte code : OPCODES) {
+            blackhole.consume(linearOpcode(code));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void opcodeTable(final Blackhole blackhole) {
+        for (final byte code : OPCODES) {
+            blackhole.consume(Opcode.fromCode(code));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void statusLinearScan(final Blackhole blackhole) {
+        for (final int code : STATUSES) {
+            blackhole.consume(linearStatus(code));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(8)
+    public void statusTable(final Blackhole blackhole) {
+        for (final int code : STATUSES) {
+            blackhole.consume(Status.fromCode(code));
+        }
+    }
+}
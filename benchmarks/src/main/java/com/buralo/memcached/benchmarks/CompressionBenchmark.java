@@ -0,0 +1,101 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.compression.DeflateCompressor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the CPU cost of compressing and decompressing JSON-like values of different sizes. The compressed size is
+ * printed when each trial starts so the saving on the wire can be weighed against the cost.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class CompressionBenchmark {
+
+    @Param({"2048", "32768", "204800"})
+    private int valueLength;
+
+    private final DeflateCompressor compressor = new DeflateCompressor(1024, -1, PooledByteBufAllocator.DEFAULT);
+
+    private ByteBuf value;
+
+    private ByteBuf compressed;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder builder = new StringBuilder(valueLength + 128);
+        for (int i = 0; builder.length() < valueLength; i++) {
+            builder.append("{\"id\":").append(i)
+                    .append(",\"name\":\"customer").append(i % 97)
+                    .append("\",\"email\":\"user").append(i).append("@example.com\"")
+                    .append(",\"active\":").append(i % 3 != 0).append("},");
+        }
+        final byte[] bytes = builder.substring(0, valueLength).getBytes(StandardCharsets.UTF_8);
+        value = PooledByteBufAllocator.DEFAULT.directBuffer(bytes.length).writeBytes(bytes);
+        compressed = compressor.compress(value.retainedDuplicate());
+        System.out.printf("%n%d bytes are sent as %d bytes%n", value.readableBytes(), compressed.readableBytes());
+    }
+
+    @TearDown
+    public void tearDown() {
+        value.release();
+        compressed.release();
+    }
+
+    @Benchmark
+    public int compress() {
+        final ByteBuf buf = compressor.compress(value.retainedDuplicate());
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public int decompress() {
+        final ByteBuf buf = compressor.decompress(compressed);
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+}
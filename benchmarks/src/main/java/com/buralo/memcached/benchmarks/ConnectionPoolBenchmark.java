@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.MemcachedConnectionPool;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.netty.tcp.TcpClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures pipelined GET throughput from many threads through a connection pool of varying size. Run with
+ * {@code -t} set to the number of cores to see how throughput scales with the size of the pool.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Threads(Threads.MAX)
+@Fork(1)
+public class ConnectionPoolBenchmark {
+
+    private static final int BATCH = 64;
+
+    private static final String KEY = "user:session:0123456789abcdef";
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, KEY);
+
+    @Param({"1", "2", "4", "8"})
+    private int poolSize;
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnectionPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new StubMemcachedServer();
+        server.items().put(KEY, new byte[100]);
+        pool = new MemcachedConnectionPool(server.address(), TcpClient.newConnection(), poolSize,
+                MemcachedConnection.DEFAULT_MAX_IN_FLIGHT);
+        pool.warmUp().block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.close().block();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long pipelinedGet() {
+        return Flux.range(0, BATCH)
+                .flatMap(i -> pool.execute(GET), BATCH)
+                .doOnNext(Response::release)
+                .count()
+                .block();
+    }
+}
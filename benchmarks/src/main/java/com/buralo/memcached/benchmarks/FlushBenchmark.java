@@ -0,0 +1,96 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.FlushPolicy;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.netty.tcp.TcpClient;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares immediate and batched flushing for bursts of independent GET requests issued from outside the event loop.
+ * The number of read and write system calls per request is printed at the end of each trial on Linux.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushBenchmark {
+
+    private static final int BATCH = 256;
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, "key");
+
+    @Param({"IMMEDIATE", "BATCHED"})
+    private String flushPolicy;
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnection connection;
+
+    private SystemCalls start;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new StubMemcachedServer();
+        connection = MemcachedConnection.connect(TcpClient.newConnection().remoteAddress(server::address),
+                MemcachedConnection.DEFAULT_MAX_IN_FLIGHT,
+                "BATCHED".equals(flushPolicy) ? FlushPolicy.BATCHED : FlushPolicy.IMMEDIATE).block();
+        start = SystemCalls.now();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SystemCalls.print(flushPolicy, start, server.requests());
+        connection.close().block();
+        server.close();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public long burst() {
+        return Flux.range(0, BATCH)
+                .flatMap(i -> connection.execute(GET), BATCH)
+                .doOnNext(Response::release)
+                .count()
+                .block();
+    }
+}
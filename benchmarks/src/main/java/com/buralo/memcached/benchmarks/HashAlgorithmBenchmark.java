@@ -0,0 +1,78 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of each of the {@link DefaultHashAlgorithms} over key lengths typical of cache keys, both
+ * for {@link String} keys and for keys that are already encoded as bytes.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HashAlgorithmBenchmark {
+
+    @Param
+    private DefaultHashAlgorithms algorithm;
+
+    @Param({"16", "40", "100", "250"})
+    private int keyLength;
+
+    private String key;
+
+    private byte[] keyBytes;
+
+    @Setup
+    public void setUp() {
+        final StringBuilder builder = new StringBuilder("user:session:");
+        for (int i = 0; builder.length() < keyLength; i++) {
+            builder.append((char) ('a' + i % 26));
+        }
+        key = builder.substring(0, keyLength);
+        keyBytes = key.getBytes(StandardCharsets.UTF_8);
+    }
+
+    @Benchmark
+    public long hashString() {
+        return algorithm.hash(key);
+    }
+
+    @Benchmark
+    public long hashBytes() {
+        return algorithm.hash(keyBytes, 0, keyBytes.length);
+    }
+}
@@ -0,0 +1,171 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedClient;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.ReplicaPolicy;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import com.buralo.memcached.locator.ArrayModNodeLocator;
+import io.netty.buffer.Unpooled;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the read latency distribution when one server in two stalls for 10ms on one request in fifty, with and
+ * without hedged reads. Compare the p99 and p99.9 reported by the sample mode.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SampleTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class HedgingBenchmark {
+
+    private static final String KEY = "user:session:0123456789abcdef";
+
+    @Param({"false", "true"})
+    private boolean hedgedReads;
+
+    private final List<StubMemcachedServer> servers = new ArrayList<>();
+
+    private final List<MemcachedConnection> connections = new ArrayList<>();
+
+    private MemcachedClient client;
+
+    private ReplicaPolicy policy;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final List<MemcachedNode> nodes = new ArrayList<>();
+        for (int i = 0; i < 2; i++) {
+            final StubMemcachedServer server = new StubMemcachedServer();
+            final MemcachedConnection connection = MemcachedConnection.connect(server.address()).block();
+            servers.add(server);
+            connections.add(connection);
+            nodes.add(connection);
+        }
+        final ArrayModNodeLocator<MemcachedNode> locator = new ArrayModNodeLocator<>(nodes,
+                DefaultHashAlgorithms.FNV1A_32);
+        final int primary = nodes.indexOf(locator.primary(KEY));
+        nodes.set(primary, new StallingNode(nodes.get(primary)));
+        policy = new ReplicaPolicy(2, hedgedReads);
+        client = MemcachedClient.builder()
+                .nodes(nodes, DefaultHashAlgorithms.FNV1A_32)
+                .replicaPolicy(policy)
+                .build();
+        client.set(KEY, 0, 0, Unpooled.wrappedBuffer(new byte[100])).block().release();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connections.forEach(connection -> connection.close().block());
+        servers.forEach(StubMemcachedServer::close);
+    }
+
+    @Benchmark
+    public int get() {
+        final Response response = client.get(KEY, policy).block();
+        try {
+            return response.value().readableBytes();
+        } finally {
+            response.release();
+        }
+    }
+
+    /**
+     * A node that holds back one request in fifty for 10ms before sending it.
+     */
+    private static final class StallingNode implements MemcachedNode {
+
+        private final MemcachedNode delegate;
+
+        StallingNode(final MemcachedNode delegate) {
+            this.delegate = delegate;
+        }
+
+        @Override
+        public InetSocketAddress address() {
+            return delegate.address();
+        }
+
+        @Override
+        public int maxInFlight() {
+            return delegate.maxInFlight();
+        }
+
+        @Override
+        public int outstanding() {
+            return delegate.outstanding();
+        }
+
+        @Override
+        public double saturation() {
+            return delegate.saturation();
+        }
+
+        @Override
+        public Mono<Response> execute(final Request request) {
+            final Mono<Response> response = delegate.execute(request);
+            return ThreadLocalRandom.current().nextInt(50) == 0
+                    ? response.delaySubscription(Duration.ofMillis(10))
+                    : response;
+        }
+
+        @Override
+        public Flux<Response> executeQuiet(final List<? extends Request> requests) {
+            return delegate.executeQuiet(requests);
+        }
+
+        @Override
+        public Mono<Void> close() {
+            return delegate.close();
+        }
+
+        @Override
+        public void abort(final Throwable cause) {
+            delegate.abort(cause);
+        }
+    }
+}
@@ -0,0 +1,80 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.hotkey.HotKeyDetector;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost hot-key detection adds to each read for a skewed key distribution where a tenth of the keys
+ * receive most of the reads.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class HotKeyBenchmark {
+
+    private static final InetSocketAddress NODE = new InetSocketAddress(InetAddress.getLoopbackAddress(), 11211);
+
+    private static final int KEYS = 10000;
+
+    @Param({"1", "8"})
+    private int sampleRate;
+
+    private HotKeyDetector detector;
+
+    private String[] keys;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        detector = new HotKeyDetector(HotKeyDetector.DEFAULT_CAPACITY, HotKeyDetector.DEFAULT_WINDOW, sampleRate);
+        keys = new String[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            keys[i] = "user:" + i + ":profile";
+        }
+    }
+
+    @Benchmark
+    public void record() {
+        final ThreadLocalRandom random = ThreadLocalRandom.current();
+        // Nine reads in ten go to the first thousand keys
+        final int index = random.nextInt(10) == 0 ? random.nextInt(KEYS) : random.nextInt(KEYS / 10);
+        detector.record(NODE, keys[index]);
+    }
+}
@@ -0,0 +1,88 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Status;
+import com.buralo.memcached.metrics.HistogramMetricsRecorder;
+import com.buralo.memcached.metrics.MetricsRecorder;
+import com.buralo.memcached.micrometer.MicrometerMetricsRecorder;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the cost the metrics recorders add to each request: one response with its latency plus the bytes written
+ * and read. Run with {@code -prof gc} to confirm the built-in recorder does not allocate.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class MetricsBenchmark {
+
+    private static final InetSocketAddress NODE = new InetSocketAddress(InetAddress.getLoopbackAddress(), 11211);
+
+    @Param({"NONE", "HISTOGRAM", "MICROMETER"})
+    private String recorder;
+
+    private MetricsRecorder metrics;
+
+    private long latency;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        switch (recorder) {
+            case "HISTOGRAM":
+                metrics = new HistogramMetricsRecorder();
+                break;
+            case "MICROMETER":
+                metrics = new MicrometerMetricsRecorder(new SimpleMeterRegistry());
+                break;
+            default:
+                metrics = MetricsRecorder.NONE;
+                break;
+        }
+    }
+
+    @Benchmark
+    public void request() {
+        // Vary the latency so successive calls touch different buckets
+        latency = (latency + 7919) & 0xFFFFF;
+        metrics.recordBytesWritten(NODE, 27L);
+        metrics.recordResponse(NODE, Opcode.GET, Status.NO_ERROR, latency);
+        metrics.recordBytesRead(NODE, 128L);
+    }
+}
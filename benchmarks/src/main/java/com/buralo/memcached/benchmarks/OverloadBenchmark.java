@@ -0,0 +1,117 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.overload.AdaptiveNode;
+import com.buralo.memcached.overload.OverloadPolicy;
+import com.buralo.memcached.server.MemcachedServer;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpClient;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures how long a burst of GETs takes to be answered or shed by a server that has slowed down. Without load
+ * shedding every request waits in the connection's queue for room in the in-flight window, so the burst takes as long
+ * as the server needs to work through it; with an {@link AdaptiveNode} the requests beyond the queue limit fail
+ * immediately and only the admitted ones wait.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class OverloadBenchmark {
+
+    private static final int BURST = 4096;
+
+    private static final int MAX_IN_FLIGHT = 64;
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, "key");
+
+    /**
+     * How requests are admitted.
+     */
+    public enum Admission {
+        QUEUED,
+        SHED
+    }
+
+    @Param({"QUEUED", "SHED"})
+    private Admission admission;
+
+    private MemcachedServer server;
+
+    private MemcachedConnection connection;
+
+    private MemcachedNode node;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new MemcachedServer();
+        server.faults().latency(Duration.ofMillis(2));
+        connection = MemcachedConnection.connect(TcpClient.newConnection().remoteAddress(server::address),
+                MAX_IN_FLIGHT).block();
+        node = admission == Admission.QUEUED
+                ? connection
+                : new AdaptiveNode(connection, new OverloadPolicy(99.0, 3.0, Duration.ofMillis(10),
+                Duration.ofSeconds(1), 2.0, Duration.ofSeconds(10)));
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connection.close().block();
+        server.close();
+    }
+
+    @Benchmark
+    public long burst() {
+        return Flux.range(0, BURST)
+                .flatMap(i -> node.execute(GET)
+                        .map(response -> {
+                            response.release();
+                            return 1L;
+                        })
+                        .onErrorResume(error -> Mono.just(0L)), BURST)
+                .reduce(0L, Long::sum)
+                .block();
+    }
+}
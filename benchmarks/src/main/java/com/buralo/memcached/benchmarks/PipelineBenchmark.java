@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures end-to-end throughput of pipelined GET and SET requests over a single connection to an in-process stub
+ * server, alongside a request/response round trip for comparison.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PipelineBenchmark {
+
+    private static final int BATCH = 256;
+
+    private static final String KEY = "user:session:0123456789abcdef";
+
+    private static final int VALUE_LENGTH = 100;
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, KEY);
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnection connection;
+
+    private ByteBuf value;
+
+    private Request set;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new StubMemcachedServer();
+        connection = MemcachedConnection.connect(server.address()).block();
+        value = PooledByteBufAllocator.DEFAULT.directBuffer(VALUE_LENGTH).writeZero(VALUE_LENGTH);
+        set = (encoder, opaque) -> encoder.store(Opcode.SET, opaque, KEY, 0, 0, 0L, value.retainedDuplicate());
+        connection.execute(set).doOnNext(Response::release).block();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        connection.close().block();
+        server.close();
+        value.release();
+    }
+
+    private static int sum(final Flux<Response> responses) {
+        return responses
+                .map(response -> {
+                    try {
+                        return response.value().readableBytes();
+                    } finally {
+                        response.release();
+                    }
+                })
+                .reduce(0, Integer::sum)
+                .block();
+    }
+
+    @Benchmark
+    public int roundTripGet() {
+        return sum(connection.execute(GET).flux());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int pipelinedGet() {
+        return sum(Flux.range(0, BATCH).flatMap(i -> connection.execute(GET), BATCH));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int pipelinedSet() {
+        return sum(Flux.range(0, BATCH).flatMap(i -> connection.execute(set), BATCH));
+    }
+}
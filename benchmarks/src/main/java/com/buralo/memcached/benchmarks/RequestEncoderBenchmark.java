@@ -0,0 +1,97 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.RequestEncoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures the throughput of encoding GET requests and SET requests with values either side of the composite
+ * threshold.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RequestEncoderBenchmark {
+
+    private final RequestEncoder encoder = new RequestEncoder();
+
+    private final String key = "user:session:0123456789abcdef";
+
+    /**
+     * Holds the value being stored so that only the SET benchmark is parameterised by value length.
+     */
+    @State(Scope.Thread)
+    public static class Value {
+
+        @Param({"100", "65536"})
+        private int valueLength;
+
+        private ByteBuf buf;
+
+        @Setup
+        public void setUp() {
+            buf = PooledByteBufAllocator.DEFAULT.directBuffer(valueLength).writeZero(valueLength);
+        }
+
+        @TearDown
+        public void tearDown() {
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public int get() {
+        final ByteBuf buf = encoder.get(Opcode.GET, 1, key);
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+
+    @Benchmark
+    public int set(final Value value) {
+        final ByteBuf buf = encoder.store(Opcode.SET, 1, key, 0, 0, 0L, value.buf.retainedDuplicate());
+        try {
+            return buf.readableBytes();
+        } finally {
+            buf.release();
+        }
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.ResponseDecoder;
+import com.buralo.memcached.Response;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures decoding of cache hit, cache miss and large value response frames with both the copying and zero-copy
+ * decoders. Run with {@code -prof gc} to compare the allocation rate of the two modes.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class ResponseDecoderBenchmark {
+
+    /**
+     * The shape of the response frame being decoded.
+     */
+    public enum Frame {
+        /**
+         * A GET hit with a 100 byte value.
+         */
+        HIT(0x0000, 100),
+        /**
+         * A GET miss carrying the textual error message.
+         */
+        MISS(0x0001, -1),
+        /**
+         * A GET hit with a 64 KiB value.
+         */
+        LARGE(0x0000, 64 * 1024);
+
+        private final int status;
+
+        private final int valueLength;
+
+        Frame(final int status,
+              final int valueLength) {
+            this.status = status;
+            this.valueLength = valueLength;
+        }
+    }
+
+    @Param
+    private Frame frame;
+
+    @Param({"false", "true"})
+    private boolean zeroCopy;
+
+    private ResponseDecoder decoder;
+
+    private ByteBuf buf;
+
+    @Setup
+    public void setUp() {
+        decoder = new ResponseDecoder(zeroCopy);
+        final byte[] value = frame.valueLength < 0
+                ? "Not found".getBytes(StandardCharsets.US_ASCII)
+                : new byte[frame.valueLength];
+        final int extrasLength = frame.status == 0 ? 4 : 0;
+        buf = PooledByteBufAllocator.DEFAULT.directBuffer(ResponseDecoder.HEADER_LENGTH + extrasLength + value.length);
+        buf.writeByte(0x81)
+                .writeByte(0x00)
+                .writeShort(0)
+                .writeByte(extrasLength)
+                .writeByte(0)
+                .writeShort(frame.status)
+                .writeInt(extrasLength + value.length)
+                .writeInt(1)
+                .writeLong(frame.status == 0 ? 1L : 0L)
+                .writeZero(extrasLength)
+                .writeBytes(value);
+    }
+
+    @TearDown
+    public void tearDown() {
+        buf.release();
+    }
+
+    @Benchmark
+    public int decode() {
+        buf.readerIndex(0);
+        final Response response = decoder.readResponse(buf);
+        try {
+            return response.value().readableBytes();
+        } finally {
+            response.release();
+        }
+    }
+}
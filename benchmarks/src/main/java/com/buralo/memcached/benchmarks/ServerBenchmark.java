@@ -0,0 +1,143 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import com.buralo.memcached.server.MemcachedServer;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Measures pipelined GET and SET throughput against the slab-backed {@link MemcachedServer} and the minimal stub
+ * server, to check that the in-process server is fast enough to stand in for memcached in the other benchmarks.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class ServerBenchmark {
+
+    private static final int BATCH = 256;
+
+    private static final int KEYS = 1024;
+
+    private static final int VALUE_LENGTH = 100;
+
+    /**
+     * The server implementation.
+     */
+    public enum Server {
+        STUB,
+        SLAB
+    }
+
+    @Param({"STUB", "SLAB"})
+    private Server server;
+
+    private AutoCloseable running;
+
+    private MemcachedConnection connection;
+
+    private ByteBuf value;
+
+    private Request[] gets;
+
+    private Request[] sets;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        final InetSocketAddress address;
+        if (server == Server.STUB) {
+            final StubMemcachedServer stub = new StubMemcachedServer();
+            address = stub.address();
+            running = stub;
+        } else {
+            final MemcachedServer slab = new MemcachedServer();
+            address = slab.address();
+            running = slab;
+        }
+        connection = MemcachedConnection.connect(address).block();
+        value = PooledByteBufAllocator.DEFAULT.directBuffer(VALUE_LENGTH).writeZero(VALUE_LENGTH);
+        gets = new Request[KEYS];
+        sets = new Request[KEYS];
+        for (int i = 0; i < KEYS; i++) {
+            final String key = "user:session:" + i;
+            gets[i] = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, key);
+            sets[i] = (encoder, opaque) -> encoder.store(Opcode.SET, opaque, key, 0, 0, 0L,
+                    value.retainedDuplicate());
+        }
+        Flux.fromArray(sets).flatMap(connection::execute).doOnNext(Response::release).blockLast();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() throws Exception {
+        connection.close().block();
+        running.close();
+        value.release();
+    }
+
+    private static int sum(final Flux<Response> responses) {
+        return responses
+                .map(response -> {
+                    try {
+                        return response.value().readableBytes();
+                    } finally {
+                        response.release();
+                    }
+                })
+                .reduce(0, Integer::sum)
+                .block();
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int pipelinedGet() {
+        return sum(Flux.range(0, BATCH).flatMap(i -> connection.execute(gets[i % KEYS]), BATCH));
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int pipelinedSet() {
+        return sum(Flux.range(0, BATCH).flatMap(i -> connection.execute(sets[i % KEYS]), BATCH));
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+
+/**
+ * Counts the read and write system calls made by the benchmark process using {@code /proc/self/io}, which is only
+ * available on Linux.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class SystemCalls {
+
+    private static final Path PROC_SELF_IO = Paths.get("/proc/self/io");
+
+    private final long reads;
+
+    private final long writes;
+
+    private SystemCalls(final long reads,
+                        final long writes) {
+        this.reads = reads;
+        this.writes = writes;
+    }
+
+    /**
+     * Read the number of system calls made by this process so far.
+     *
+     * @return The counts or {@code null} if they are not available.
+     */
+    static SystemCalls now() {
+        if (!Files.isReadable(PROC_SELF_IO)) {
+            return null;
+        }
+        try {
+            long reads = 0;
+            long writes = 0;
+            for (final String line : Files.readAllLines(PROC_SELF_IO, StandardCharsets.US_ASCII)) {
+                if (line.startsWith("syscr:")) {
+                    reads = Long.parseLong(line.substring(6).trim());
+                } else if (line.startsWith("syscw:")) {
+                    writes = Long.parseLong(line.substring(6).trim());
+                }
+            }
+            return new SystemCalls(reads, writes);
+        } catch (final IOException e) {
+            return null;
+        }
+    }
+
+    /**
+     * Print the number of system calls per request made since a starting point.
+     *
+     * @param label    Identifies the trial.
+     * @param start    The counts at the start of the trial or {@code null} if they are not available.
+     * @param requests The number of requests made during the trial.
+     */
+    static void print(final String label,
+                      final SystemCalls start,
+                      final long requests) {
+        final SystemCalls end = now();
+        if (start != null && end != null && requests > 0) {
+            System.out.printf("%n%s: %.3f read and %.3f write system calls per request%n", label,
+                    (double) (end.reads - start.reads) / requests, (double) (end.writes - start.writes) / requests);
+        }
+    }
+}
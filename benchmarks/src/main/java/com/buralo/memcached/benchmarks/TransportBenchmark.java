@@ -0,0 +1,118 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.benchmarks;
+
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import com.buralo.memcached.transport.Transport;
+import com.buralo.memcached.transport.TransportOptions;
+import com.buralo.memcached.transport.TransportResources;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import reactor.core.publisher.Flux;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares the latency of GET requests to an in-process stub server over each transport. On Linux the number of read
+ * and write system calls per request, taken from {@code /proc/self/io}, is printed at the end of each trial. The
+ * counts include the stub server, which uses the same event loops for every trial. Add {@code -p transport=IO_URING}
+ * to include io_uring when the incubator transport is on the class path.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class TransportBenchmark {
+
+    private static final int BATCH = 64;
+
+    private static final String KEY = "user:session:0123456789abcdef";
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, KEY);
+
+    @Param({"EPOLL", "NIO"})
+    private Transport transport;
+
+    private StubMemcachedServer server;
+
+    private TransportResources resources;
+
+    private MemcachedConnection connection;
+
+    private SystemCalls start;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+        server = new StubMemcachedServer();
+        resources = new TransportResources(new TransportOptions(transport));
+        connection = MemcachedConnection.connect(resources.tcpClient(server.address()),
+                MemcachedConnection.DEFAULT_MAX_IN_FLIGHT).block();
+        start = SystemCalls.now();
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        SystemCalls.print(transport.name(), start, server.requests());
+        connection.close().block();
+        resources.close();
+        server.close();
+    }
+
+    private static int sum(final Flux<Response> responses) {
+        return responses
+                .map(response -> {
+                    try {
+                        return response.value().readableBytes();
+                    } finally {
+                        response.release();
+                    }
+                })
+                .reduce(0, Integer::sum)
+                .block();
+    }
+
+    @Benchmark
+    public int roundTripGet() {
+        return sum(connection.execute(GET).flux());
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(BATCH)
+    public int pipelinedGet() {
+        return sum(Flux.range(0, BATCH).flatMap(i -> connection.execute(GET), BATCH));
+    }
+}
@@ -0,0 +1,149 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import org.reactivestreams.Subscription;
+import reactor.core.CoreSubscriber;
+import reactor.core.Exceptions;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.Operators;
+import reactor.core.scheduler.Schedulers;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Waits for the result of a {@link Mono} by parking the calling thread. Unlike a monitor, parking releases the
+ * carrier of a virtual thread while it waits.
+ *
+ * @param <T> The type of the result.
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class Await<T> implements CoreSubscriber<T> {
+
+    private final Thread waiter;
+
+    private volatile Subscription subscription;
+
+    private volatile boolean cancelled;
+
+    /**
+     * Published by the write to {@link #done}.
+     */
+    private T value;
+
+    /**
+     * Published by the write to {@link #done}.
+     */
+    private Throwable error;
+
+    private volatile boolean done;
+
+    private Await(final Thread waiter) {
+        this.waiter = waiter;
+    }
+
+    /**
+     * Subscribe to a {@link Mono} and wait for its result.
+     *
+     * @param source       The source.
+     * @param timeoutNanos The longest time to wait.
+     * @param <T>          The type of the result.
+     * @return The result or {@code null} if the source completed empty.
+     * @throws IllegalStateException If called from a non-blocking thread such as an event loop.
+     * @throws RuntimeException      The error signalled by the source, a checked error wrapped by
+     *                               {@link Exceptions#propagate(Throwable)}, or a wrapped {@link TimeoutException} or
+     *                               {@link InterruptedException}.
+     */
+    static <T> T await(final Mono<T> source,
+                       final long timeoutNanos) {
+        final Thread thread = Thread.currentThread();
+        if (Schedulers.isNonBlockingThread(thread)) {
+            throw new IllegalStateException("Cannot wait for a response on non-blocking thread " + thread.getName());
+        }
+        final Await<T> await = new Await<>(thread);
+        source.subscribe(await);
+        return await.get(timeoutNanos);
+    }
+
+    @Override
+    public void onSubscribe(final Subscription s) {
+        if (Operators.validate(subscription, s)) {
+            subscription = s;
+            if (cancelled) {
+                s.cancel();
+            } else {
+                s.request(Long.MAX_VALUE);
+            }
+        }
+    }
+
+    @Override
+    public void onNext(final T next) {
+        value = next;
+    }
+
+    @Override
+    public void onError(final Throwable throwable) {
+        error = throwable;
+        complete();
+    }
+
+    @Override
+    public void onComplete() {
+        complete();
+    }
+
+    private void complete() {
+        done = true;
+        LockSupport.unpark(waiter);
+    }
+
+    private T get(final long timeoutNanos) {
+        if (!done) {
+            final long deadline = System.nanoTime() + timeoutNanos;
+            while (!done) {
+                if (Thread.interrupted()) {
+                    cancel();
+                    Thread.currentThread().interrupt();
+                    throw Exceptions.propagate(new InterruptedException());
+                }
+                final long remaining = deadline - System.nanoTime();
+                if (remaining <= 0L) {
+                    cancel();
+                    throw Exceptions.propagate(new TimeoutException(
+                            "No response within " + TimeUnit.NANOSECONDS.toMillis(timeoutNanos) + "ms"));
+                }
+                LockSupport.parkNanos(this, remaining);
+            }
+        }
+        if (error != null) {
+            throw Exceptions.propagate(error);
+        }
+        return value;
+    }
+
+    private void cancel() {
+        cancelled = true;
+        final Subscription current = subscription;
+        if (current != null) {
+            current.cancel();
+        }
+    }
+}
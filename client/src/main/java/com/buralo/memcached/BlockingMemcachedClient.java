@@ -0,0 +1,226 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import com.buralo.memcached.codec.ValueCodec;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * A synchronous facade over a {@link MemcachedClient} for callers that do not use Reactor, such as services that run
+ * each request on its own virtual thread.
+ * <p>
+ * Each call subscribes to the reactive client and parks the calling thread until the result arrives. Nothing on the
+ * calling thread's path holds a monitor, so a virtual thread releases its carrier while it waits and thousands of
+ * callers can share a few carriers. Values written from virtual threads are encoded into unpooled heap buffers
+ * because Netty's pooled allocator keeps a cache for every thread that allocates from it. Responses are decoded and
+ * released before a call returns so callers never handle reference counted buffers.
+ * <p>
+ * A call must not be made on an event loop, where waiting for a response would stop the response from being read.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class BlockingMemcachedClient {
+
+    /**
+     * The default longest time a call waits for its result.
+     */
+    public static final Duration DEFAULT_TIMEOUT = Duration.ofSeconds(5);
+
+    private static final ByteBufAllocator HEAP = new UnpooledByteBufAllocator(false);
+
+    private final MemcachedClient client;
+
+    private final long timeoutNanos;
+
+    /**
+     * Initialize the facade with the default timeout.
+     *
+     * @param client The reactive client.
+     */
+    public BlockingMemcachedClient(final MemcachedClient client) {
+        this(client, DEFAULT_TIMEOUT);
+    }
+
+    /**
+     * Initialize the facade.
+     *
+     * @param client  The reactive client.
+     * @param timeout The longest time a call waits for its result.
+     */
+    public BlockingMemcachedClient(final MemcachedClient client,
+                                   final Duration timeout) {
+        if (timeout.isNegative() || timeout.isZero()) {
+            throw new IllegalArgumentException("timeout must be positive");
+        }
+        this.client = client;
+        this.timeoutNanos = timeout.toNanos();
+    }
+
+    /**
+     * Get the reactive client that the facade calls.
+     *
+     * @return The reactive client.
+     */
+    public MemcachedClient reactive() {
+        return client;
+    }
+
+    /**
+     * Get an item and decode its value.
+     *
+     * @param key   The key.
+     * @param codec Decodes the value.
+     * @param <T>   The type of the value.
+     * @return The value or {@code null} if the item does not exist.
+     * @throws MemcachedException If the server responded with an error status.
+     */
+    public <T> T get(final String key,
+                     final ValueCodec<T> codec) {
+        return Await.await(client.get(key, codec), timeoutNanos);
+    }
+
+    /**
+     * Get many items and decode their values. The keys are sent as quiet GETKQ requests.
+     *
+     * @param keys  The keys.
+     * @param codec Decodes the values.
+     * @param <T>   The type of the values.
+     * @return The values of the items that exist keyed by their keys.
+     */
+    public <T> Map<String, T> getMulti(final Collection<String> keys,
+                                       final ValueCodec<T> codec) {
+        final Map<String, T> values = Await.await(client.getMulti(Flux.fromIterable(keys))
+                .collect(() -> new HashMap<String, T>(keys.size() * 4 / 3 + 1), (map, response) -> {
+                    try {
+                        if (response.status() == Status.NO_ERROR) {
+                            map.put(response.key(), codec.decode(response.value()));
+                        }
+                    } finally {
+                        response.release();
+                    }
+                }), timeoutNanos);
+        return values == null ? new HashMap<>() : values;
+    }
+
+    /**
+     * Encode and set an item.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value.
+     * @param codec      Encodes the value.
+     * @param <T>        The type of the value.
+     * @throws MemcachedException If the server responded with an error status.
+     */
+    public <T> void set(final String key,
+                        final int flags,
+                        final int expiration,
+                        final T value,
+                        final ValueCodec<T> codec) {
+        final Mono<Response> response = Mono.defer(() ->
+                client.set(key, flags, expiration, codec.encode(value, allocator())));
+        Await.await(succeeded(response, null), timeoutNanos);
+    }
+
+    /**
+     * Increment a counter.
+     *
+     * @param key        The key.
+     * @param delta      The amount to add.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration or {@code 0xffffffff} to fail if the counter does not exist.
+     * @return The new value of the counter.
+     * @throws MemcachedException If the server responded with an error status.
+     */
+    public long increment(final String key,
+                          final long delta,
+                          final long initial,
+                          final int expiration) {
+        return Await.await(client.increment(key, delta, initial, expiration), timeoutNanos);
+    }
+
+    /**
+     * Decrement a counter. The server does not decrement a counter below zero.
+     *
+     * @param key        The key.
+     * @param delta      The amount to subtract.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration or {@code 0xffffffff} to fail if the counter does not exist.
+     * @return The new value of the counter.
+     * @throws MemcachedException If the server responded with an error status.
+     */
+    public long decrement(final String key,
+                          final long delta,
+                          final long initial,
+                          final int expiration) {
+        return Await.await(client.decrement(key, delta, initial, expiration), timeoutNanos);
+    }
+
+    /**
+     * Delete an item.
+     *
+     * @param key The key.
+     * @return {@code true} if the item was deleted or {@code false} if it did not exist.
+     * @throws MemcachedException If the server responded with another error status.
+     */
+    public boolean delete(final String key) {
+        return Await.await(succeeded(client.delete(key), Status.NOT_FOUND), timeoutNanos);
+    }
+
+    /**
+     * Select the allocator for values encoded on the calling thread.
+     */
+    private static ByteBufAllocator allocator() {
+        return VirtualThreads.isVirtual(Thread.currentThread()) ? HEAP : ByteBufAllocator.DEFAULT;
+    }
+
+    /**
+     * Check the status of a response and release it.
+     *
+     * @param response The response.
+     * @param miss     A status reported as {@code false} rather than an error, or {@code null}.
+     * @return {@code true} if the request succeeded.
+     */
+    private static Mono<Boolean> succeeded(final Mono<Response> response,
+                                           final Status miss) {
+        return response.handle((received, sink) -> {
+            try {
+                if (received.status() == Status.NO_ERROR) {
+                    sink.next(true);
+                } else if (received.status() == miss) {
+                    sink.next(false);
+                } else {
+                    sink.error(new MemcachedException(received.rawStatus(),
+                            received.value().toString(StandardCharsets.UTF_8)));
+                }
+            } finally {
+                received.release();
+            }
+        });
+    }
+}
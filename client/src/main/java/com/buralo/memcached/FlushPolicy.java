@@ -0,0 +1,100 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+/**
+ * Controls when a connection flushes the requests it has written. Batched flushing defers the flush to the end of
+ * the current event loop iteration so that requests issued by many callers in the same iteration leave in one
+ * gathering write, unless a byte or request limit is reached first. Immediate flushing sends the requests each time
+ * the pending queue is drained which minimises latency when the request rate is low.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class FlushPolicy {
+
+    /**
+     * The default number of unflushed bytes that triggers a flush.
+     */
+    public static final int DEFAULT_MAX_BYTES = 64 * 1024;
+
+    /**
+     * The default number of unflushed requests that triggers a flush.
+     */
+    public static final int DEFAULT_MAX_REQUESTS = 256;
+
+    /**
+     * Flush at the end of the event loop iteration or when the default limits are reached.
+     */
+    public static final FlushPolicy BATCHED = new FlushPolicy(DEFAULT_MAX_BYTES, DEFAULT_MAX_REQUESTS);
+
+    /**
+     * Flush as soon as the pending requests have been written.
+     */
+    public static final FlushPolicy IMMEDIATE = new FlushPolicy();
+
+    private final boolean immediate;
+
+    private final int maxBytes;
+
+    private final int maxRequests;
+
+    private FlushPolicy() {
+        this.immediate = true;
+        this.maxBytes = Integer.MAX_VALUE;
+        this.maxRequests = Integer.MAX_VALUE;
+    }
+
+    /**
+     * Initialize a batched flush policy.
+     *
+     * @param maxBytes    The number of unflushed bytes that triggers a flush before the end of the iteration.
+     * @param maxRequests The number of unflushed requests that triggers a flush before the end of the iteration.
+     */
+    public FlushPolicy(final int maxBytes,
+                       final int maxRequests) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        if (maxRequests < 1) {
+            throw new IllegalArgumentException("maxRequests must be positive");
+        }
+        this.immediate = false;
+        this.maxBytes = maxBytes;
+        this.maxRequests = maxRequests;
+    }
+
+    public boolean isImmediate() {
+        return immediate;
+    }
+
+    public int maxBytes() {
+        return maxBytes;
+    }
+
+    public int maxRequests() {
+        return maxRequests;
+    }
+
+    @Override
+    public String toString() {
+        if (immediate) {
+            return "FlushPolicy{immediate}";
+        }
+        return "FlushPolicy{maxBytes=" + maxBytes + ", maxRequests=" + maxRequests + '}';
+    }
+}
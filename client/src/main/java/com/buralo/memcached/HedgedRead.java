@@ -0,0 +1,237 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import com.buralo.memcached.metrics.RecentLatency;
+import reactor.core.Disposable;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Sends a read to the primary and, if it has not answered within a delay derived from its recent latency, to a
+ * replica as well. The first response wins and the other request is cancelled so its response is released when it
+ * arrives, except that the replica only wins with a hit. A replica may have missed a write so its misses and errors
+ * are held back until the primary fails. If the primary fails before the delay the replica is tried at once and an
+ * error is only signalled when every request sent has failed.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class HedgedRead {
+
+    /**
+     * The number of timed reads needed before the hedge delay adapts to the primary's latency.
+     */
+    static final int MIN_SAMPLES = 20;
+
+    private final Map<InetSocketAddress, RecentLatency> latencies = new ConcurrentHashMap<>();
+
+    /**
+     * Send a hedged read.
+     *
+     * @param primary The server that owns the key.
+     * @param replica The server that holds the first copy of the key.
+     * @param request The read.
+     * @param policy  Supplies the hedge percentile and delay bounds.
+     * @return The first response which must be released by the subscriber.
+     */
+    Mono<Response> execute(final MemcachedNode primary,
+                           final MemcachedNode replica,
+                           final Request request,
+                           final ReplicaPolicy policy) {
+        return Mono.create(sink -> {
+            final Race race = new Race(sink, primary, replica, request);
+            sink.onCancel(race::cancel);
+            race.start(delayNanos(primary.address(), policy));
+        });
+    }
+
+    /**
+     * Get the hedge delay for a server.
+     *
+     * @param node   The server address.
+     * @param policy Supplies the hedge percentile and delay bounds.
+     * @return The delay in nanoseconds.
+     */
+    long delayNanos(final InetSocketAddress node,
+                    final ReplicaPolicy policy) {
+        final RecentLatency latency = latencies.get(node);
+        if (latency == null) {
+            return policy.maxHedgeDelayNanos();
+        }
+        return policy.hedgeDelayNanos(latency.valueAtPercentile(policy.hedgePercentile(), MIN_SAMPLES,
+                policy.maxHedgeDelayNanos()));
+    }
+
+    private void record(final InetSocketAddress node,
+                        final long nanos) {
+        RecentLatency latency = latencies.get(node);
+        if (latency == null) {
+            latency = latencies.computeIfAbsent(node, address -> new RecentLatency());
+        }
+        latency.record(nanos);
+    }
+
+    /**
+     * The requests sent for one read.
+     */
+    private final class Race {
+
+        private final MonoSink<Response> sink;
+
+        private final MemcachedNode primary;
+
+        private final MemcachedNode replica;
+
+        private final Request request;
+
+        private final AtomicBoolean done = new AtomicBoolean();
+
+        private final AtomicBoolean hedged = new AtomicBoolean();
+
+        private final AtomicInteger failures = new AtomicInteger();
+
+        /**
+         * A response from the replica other than a hit which is only used if the primary fails.
+         */
+        private final AtomicReference<Response> fallback = new AtomicReference<>();
+
+        private volatile boolean primaryFailed;
+
+        private volatile long startNanos;
+
+        private volatile long hedgeNanos;
+
+        private volatile Disposable primaryRequest;
+
+        private volatile Disposable timer;
+
+        private volatile Disposable replicaRequest;
+
+        Race(final MonoSink<Response> sink,
+             final MemcachedNode primary,
+             final MemcachedNode replica,
+             final Request request) {
+            this.sink = sink;
+            this.primary = primary;
+            this.replica = replica;
+            this.request = request;
+        }
+
+        void start(final long delayNanos) {
+            startNanos = System.nanoTime();
+            primaryRequest = primary.execute(request).subscribe(
+                    response -> onResponse(response, true),
+                    error -> onError(error, true));
+            if (!done.get()) {
+                timer = Mono.delay(Duration.ofNanos(delayNanos)).subscribe(tick -> hedge());
+            }
+        }
+
+        private void hedge() {
+            if (!done.get() && hedged.compareAndSet(false, true)) {
+                hedgeNanos = System.nanoTime();
+                replicaRequest = replica.execute(request).subscribe(
+                        response -> onResponse(response, false),
+                        error -> onError(error, false));
+            }
+        }
+
+        private void onResponse(final Response response,
+                                final boolean fromPrimary) {
+            if (!fromPrimary && response.status() != Status.NO_ERROR) {
+                fallback.set(response);
+                // Checked after publishing the fallback so a primary failure or cancellation in between is not missed
+                if (primaryFailed || done.get()) {
+                    useFallback();
+                }
+                return;
+            }
+            win(response, fromPrimary);
+        }
+
+        private void useFallback() {
+            final Response response = fallback.getAndSet(null);
+            if (response != null) {
+                win(response, false);
+            }
+        }
+
+        private void win(final Response response,
+                         final boolean fromPrimary) {
+            if (!done.compareAndSet(false, true)) {
+                response.release();
+                return;
+            }
+            final long now = System.nanoTime();
+            // When the replica wins the primary has taken at least this long so the delay still adapts
+            record(primary.address(), now - startNanos);
+            if (fromPrimary) {
+                dispose(timer);
+                dispose(replicaRequest);
+                releaseFallback();
+            } else {
+                record(replica.address(), now - hedgeNanos);
+                dispose(primaryRequest);
+            }
+            sink.success(response);
+        }
+
+        private void onError(final Throwable error,
+                             final boolean fromPrimary) {
+            if (fromPrimary) {
+                primaryFailed = true;
+                dispose(timer);
+                hedge();
+                useFallback();
+            }
+            final int sent = hedged.get() ? 2 : 1;
+            if (failures.incrementAndGet() >= sent && done.compareAndSet(false, true)) {
+                sink.error(error);
+            }
+        }
+
+        void cancel() {
+            done.set(true);
+            dispose(timer);
+            dispose(primaryRequest);
+            dispose(replicaRequest);
+            releaseFallback();
+        }
+
+        private void releaseFallback() {
+            final Response response = fallback.getAndSet(null);
+            if (response != null) {
+                response.release();
+            }
+        }
+
+        private void dispose(final Disposable disposable) {
+            if (disposable != null) {
+                disposable.dispose();
+            }
+        }
+    }
+}
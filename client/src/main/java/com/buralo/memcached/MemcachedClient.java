@@ -0,0 +1,841 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import com.buralo.memcached.cache.NearCache;
+import com.buralo.memcached.codec.ValueCodec;
+import com.buralo.memcached.compression.DeflateCompressor;
+import com.buralo.memcached.hash.HashAlgorithm;
+import com.buralo.memcached.hotkey.HotKeyDetector;
+import com.buralo.memcached.locator.ArrayModNodeLocator;
+import com.buralo.memcached.locator.NodeLocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+import reactor.util.function.Tuples;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * A reactive client for a cluster of Memcached servers.
+ * <p>
+ * Responses are reference counted and must be released by the subscriber once consumed.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class MemcachedClient {
+
+    /**
+     * The default maximum number of requests sent to a server in one quiet batch.
+     */
+    public static final int DEFAULT_MAX_BATCH = 512;
+
+    private final NodeLocator<? extends MemcachedNode> locator;
+
+    private final int maxBatch;
+
+    private final NearCache nearCache;
+
+    private final SingleFlight singleFlight;
+
+    private final DeflateCompressor compressor;
+
+    private final HotKeyDetector hotKeys;
+
+    private final ReplicaPolicy replicaPolicy;
+
+    private final HedgedRead hedgedRead = new HedgedRead();
+
+    public MemcachedClient(final List<? extends MemcachedNode> nodes,
+                           final HashAlgorithm hashAlgorithm) {
+        this(nodes, hashAlgorithm, DEFAULT_MAX_BATCH);
+    }
+
+    /**
+     * Initialize a client that selects the server using the hash of the key modulo the number of servers.
+     *
+     * @param nodes         One connection or connection pool for each server.
+     * @param hashAlgorithm The hash algorithm used to select the server for a key.
+     * @param maxBatch      The maximum number of requests sent to a server in one quiet batch.
+     */
+    public MemcachedClient(final List<? extends MemcachedNode> nodes,
+                           final HashAlgorithm hashAlgorithm,
+                           final int maxBatch) {
+        this(new ArrayModNodeLocator<>(nodes, hashAlgorithm), maxBatch);
+    }
+
+    /**
+     * Initialize the client.
+     *
+     * @param locator  Selects the server that owns a key.
+     * @param maxBatch The maximum number of requests sent to a server in one quiet batch.
+     */
+    public MemcachedClient(final NodeLocator<? extends MemcachedNode> locator,
+                           final int maxBatch) {
+        this(builder().locator(locator).maxBatch(maxBatch));
+    }
+
+    private MemcachedClient(final Builder builder) {
+        if (builder.locator == null) {
+            throw new IllegalStateException("locator must be set");
+        }
+        this.locator = builder.locator;
+        this.maxBatch = builder.maxBatch;
+        this.nearCache = builder.nearCache;
+        this.compressor = builder.compressor;
+        this.hotKeys = builder.hotKeys;
+        this.replicaPolicy = builder.replicaPolicy;
+        this.singleFlight = builder.coalesceGets ? new SingleFlight(key -> fetch(key, replicaPolicy)) : null;
+    }
+
+    /**
+     * Create a builder for a client with optional features such as a near cache, compression or replicas.
+     *
+     * @return The builder.
+     */
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /**
+     * Get an item.
+     *
+     * @param key The key.
+     * @return The response.
+     */
+    public Mono<Response> get(final String key) {
+        return get(key, replicaPolicy);
+    }
+
+    /**
+     * Get an item, hedging the read to a replica if the policy allows. Concurrent reads are only coalesced when they
+     * use the client's replica policy.
+     *
+     * @param key    The key.
+     * @param policy The replica policy for this read.
+     * @return The response.
+     */
+    public Mono<Response> get(final String key,
+                              final ReplicaPolicy policy) {
+        final Mono<Response> remote = singleFlight != null && policy == replicaPolicy
+                ? singleFlight.execute(key)
+                : fetch(key, policy);
+        final Mono<Response> response;
+        if (hotKeys != null) {
+            response = Mono.defer(() -> {
+                hotKeys.record(nodeFor(key).address(), key);
+                final Response cached = nearCache == null ? null : nearCache.get(key);
+                return cached != null ? Mono.just(cached) : remote;
+            });
+        } else if (nearCache != null) {
+            response = Mono.defer(() -> {
+                final Response cached = nearCache.get(key);
+                return cached != null ? Mono.just(cached) : remote;
+            });
+        } else {
+            response = remote;
+        }
+        return compressor == null ? response : response.map(compressor::decompressing);
+    }
+
+    /**
+     * Get an item from its primary server without consulting the near cache, coalescing with other reads or hedging
+     * to a replica, for example to read the CAS value for a conditional write.
+     *
+     * @param key The key.
+     * @return The response.
+     */
+    public Mono<Response> getDirect(final String key) {
+        final Mono<Response> response = Mono.defer(() ->
+                nodeFor(key).execute((encoder, opaque) -> encoder.get(Opcode.GET, opaque, key)));
+        return compressor == null ? response : response.map(compressor::decompressing);
+    }
+
+    /**
+     * Get an item and decode its value. The response is released once the value has been decoded.
+     *
+     * @param key   The key.
+     * @param codec Decodes the value.
+     * @param <T>   The type of the value.
+     * @return The value or empty if the item does not exist. Other error statuses are signalled as a
+     * {@link MemcachedException}.
+     */
+    public <T> Mono<T> get(final String key,
+                           final ValueCodec<T> codec) {
+        return get(key).handle((response, sink) -> {
+            try {
+                if (response.status() == Status.NO_ERROR) {
+                    sink.next(codec.decode(response.value()));
+                } else if (response.status() != Status.NOT_FOUND) {
+                    sink.error(exception(response));
+                }
+            } finally {
+                response.release();
+            }
+        });
+    }
+
+    /**
+     * Get many items using quiet GETKQ requests so only the hits are returned. The keys are grouped by server and
+     * each group is sent as a run of GETKQ requests terminated by a NOOP. Only as many batches as fit in a server's
+     * in-flight capacity are outstanding at once so the keys are consumed as the responses arrive.
+     *
+     * @param keys The keys.
+     * @return The hits which can be matched to the keys using {@link Response#key()}.
+     */
+    public Flux<Response> getMulti(final Flux<String> keys) {
+        final Flux<Response> responses = keys.groupBy(this::nodeFor)
+                .flatMap(group -> {
+                    final MemcachedNode node = group.key();
+                    final Flux<String> sampled = hotKeys == null
+                            ? group
+                            : group.doOnNext(key -> hotKeys.record(node.address(), key));
+                    final int batchSize = batchSize(node);
+                    return sampled.buffer(batchSize)
+                            .flatMap(batch -> node.executeQuiet(quietGets(batch)), batches(node, batchSize));
+                });
+        return compressor == null ? responses : responses.map(compressor::decompressing);
+    }
+
+    /**
+     * Apply many writes using quiet opcodes. The mutations are grouped by server and each group is sent as a run of
+     * quiet requests terminated by a NOOP so the server only responds to the writes that fail. Like
+     * {@link #getMulti(Flux)} the mutations are consumed as the batches complete.
+     *
+     * @param mutations The writes.
+     * @return The mutations that failed paired with the response that reported the failure.
+     */
+    public Flux<Tuple2<Mutation, Response>> bulkWrite(final Flux<Mutation> mutations) {
+        return bulkWrite(mutations, replicaPolicy);
+    }
+
+    /**
+     * Apply many writes using quiet opcodes on the primary servers, deleting the keys from the replicas named by the
+     * replica policy.
+     *
+     * @param mutations The writes.
+     * @param policy    The replica policy for these writes.
+     * @return The mutations that failed paired with the response that reported the failure.
+     */
+    public Flux<Tuple2<Mutation, Response>> bulkWrite(final Flux<Mutation> mutations,
+                                                      final ReplicaPolicy policy) {
+        final Flux<Mutation> invalidated = nearCache == null
+                ? mutations
+                : mutations.doOnNext(mutation -> nearCache.invalidate(mutation.key()));
+        final Flux<Mutation> compressed = compressor == null
+                ? invalidated
+                : invalidated.map(mutation -> mutation.compress(compressor));
+        final Flux<Tuple2<MemcachedNode, Mutation>> routed = policy.replicas() == 1
+                ? compressed.map(mutation -> Tuples.of(nodeFor(mutation.key()), mutation))
+                : compressed.flatMapIterable(mutation -> withInvalidations(mutation, policy));
+        return routed.groupBy(Tuple2::getT1, Tuple2::getT2)
+                .flatMap(group -> {
+                    final MemcachedNode node = group.key();
+                    final int batchSize = batchSize(node);
+                    return group.buffer(batchSize)
+                            .flatMap(batch -> acknowledged(batch, node.executeQuiet(batch)
+                                    .map(response -> Tuples.of(batch.get(response.opaque()), response))),
+                                    batches(node, batchSize));
+                })
+                .<Tuple2<Mutation, Response>>handle((failure, sink) -> {
+                    // A replica that did not hold the key is not a failure of the write
+                    if (failure.getT1().isInvalidation()) {
+                        failure.getT2().release();
+                    } else {
+                        sink.next(failure);
+                    }
+                })
+                .doOnDiscard(Mutation.class, Mutation::discard);
+    }
+
+    /**
+     * Set an item.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value which is released once written.
+     * @return The response.
+     */
+    public Mono<Response> set(final String key,
+                              final int flags,
+                              final int expiration,
+                              final ByteBuf value) {
+        return set(key, flags, expiration, value, replicaPolicy);
+    }
+
+    /**
+     * Set an item on the primary and every replica. The primary's response is returned once every replica has
+     * responded.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value which is released once written.
+     * @param policy     The replica policy for this write.
+     * @return The response.
+     */
+    public Mono<Response> set(final String key,
+                              final int flags,
+                              final int expiration,
+                              final ByteBuf value,
+                              final ReplicaPolicy policy) {
+        if (policy.replicas() > 1) {
+            return Mono.defer(() -> {
+                final ByteBuf stored = compressor == null ? value : compressor.compress(value);
+                final int storedFlags = stored == value ? flags : flags | DeflateCompressor.COMPRESSED_FLAG;
+                final List<? extends MemcachedNode> nodes = locator.replicas(key, policy.replicas());
+                final List<Mono<Response>> writes = new ArrayList<>(nodes.size());
+                for (int i = 0; i < nodes.size(); i++) {
+                    // Each copy is released by its own request once written
+                    final ByteBuf copy = i == 0 ? stored : stored.retainedDuplicate();
+                    writes.add(nodes.get(i).execute(Request.withValue(copy, (encoder, opaque) ->
+                            encoder.store(Opcode.SET, opaque, key, storedFlags, expiration, 0L, copy))));
+                }
+                return invalidating(key, replicated(writes));
+            });
+        }
+        return store(Opcode.SET, key, flags, expiration, value, 0L, policy);
+    }
+
+    /**
+     * Add an item only if it does not already exist.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value which is released once written.
+     * @return The response which has the status {@link Status#EXISTS} if the item already exists.
+     */
+    public Mono<Response> add(final String key,
+                              final int flags,
+                              final int expiration,
+                              final ByteBuf value) {
+        return add(key, flags, expiration, value, replicaPolicy);
+    }
+
+    /**
+     * Add an item to the primary only if it does not already exist and delete it from the replicas.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value which is released once written.
+     * @param policy     The replica policy for this write.
+     * @return The primary's response which has the status {@link Status#EXISTS} if the item already exists.
+     */
+    public Mono<Response> add(final String key,
+                              final int flags,
+                              final int expiration,
+                              final ByteBuf value,
+                              final ReplicaPolicy policy) {
+        return store(Opcode.ADD, key, flags, expiration, value, 0L, policy);
+    }
+
+    /**
+     * Replace an item only if it has not been modified since it was read.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value which is released once written.
+     * @param cas        The CAS value of the item when it was read.
+     * @return The response which has the status {@link Status#EXISTS} if the item has been modified or
+     * {@link Status#NOT_FOUND} if it no longer exists.
+     */
+    public Mono<Response> compareAndSet(final String key,
+                                        final int flags,
+                                        final int expiration,
+                                        final ByteBuf value,
+                                        final long cas) {
+        return compareAndSet(key, flags, expiration, value, cas, replicaPolicy);
+    }
+
+    /**
+     * Replace an item on the primary only if it has not been modified since it was read and delete it from the
+     * replicas.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value which is released once written.
+     * @param cas        The CAS value of the item when it was read.
+     * @param policy     The replica policy for this write.
+     * @return The primary's response which has the status {@link Status#EXISTS} if the item has been modified or
+     * {@link Status#NOT_FOUND} if it no longer exists.
+     */
+    public Mono<Response> compareAndSet(final String key,
+                                        final int flags,
+                                        final int expiration,
+                                        final ByteBuf value,
+                                        final long cas,
+                                        final ReplicaPolicy policy) {
+        return store(Opcode.SET, key, flags, expiration, value, cas, policy);
+    }
+
+    /**
+     * Encode and set an item. The value is encoded when the returned {@link Mono} is subscribed.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param value      The value.
+     * @param codec      Encodes the value.
+     * @param <T>        The type of the value.
+     * @return The response.
+     */
+    public <T> Mono<Response> set(final String key,
+                                  final int flags,
+                                  final int expiration,
+                                  final T value,
+                                  final ValueCodec<T> codec) {
+        return Mono.defer(() -> set(key, flags, expiration, codec.encode(value, ByteBufAllocator.DEFAULT)));
+    }
+
+    /**
+     * Increment a counter.
+     *
+     * @param key        The key.
+     * @param delta      The amount to add.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration or {@code 0xffffffff} to fail if the counter does not exist.
+     * @return The new value of the counter.
+     */
+    public Mono<Long> increment(final String key,
+                                final long delta,
+                                final long initial,
+                                final int expiration) {
+        return increment(key, delta, initial, expiration, replicaPolicy);
+    }
+
+    /**
+     * Increment a counter on the primary and delete it from the replicas.
+     *
+     * @param key        The key.
+     * @param delta      The amount to add.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration or {@code 0xffffffff} to fail if the counter does not exist.
+     * @param policy     The replica policy for this write.
+     * @return The new value of the counter.
+     */
+    public Mono<Long> increment(final String key,
+                                final long delta,
+                                final long initial,
+                                final int expiration,
+                                final ReplicaPolicy policy) {
+        return counter(Opcode.INCREMENT, key, delta, initial, expiration, policy);
+    }
+
+    /**
+     * Decrement a counter. The server does not decrement a counter below zero.
+     *
+     * @param key        The key.
+     * @param delta      The amount to subtract.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration or {@code 0xffffffff} to fail if the counter does not exist.
+     * @return The new value of the counter.
+     */
+    public Mono<Long> decrement(final String key,
+                                final long delta,
+                                final long initial,
+                                final int expiration) {
+        return decrement(key, delta, initial, expiration, replicaPolicy);
+    }
+
+    /**
+     * Decrement a counter on the primary and delete it from the replicas. The server does not decrement a counter
+     * below zero.
+     *
+     * @param key        The key.
+     * @param delta      The amount to subtract.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration or {@code 0xffffffff} to fail if the counter does not exist.
+     * @param policy     The replica policy for this write.
+     * @return The new value of the counter.
+     */
+    public Mono<Long> decrement(final String key,
+                                final long delta,
+                                final long initial,
+                                final int expiration,
+                                final ReplicaPolicy policy) {
+        return counter(Opcode.DECREMENT, key, delta, initial, expiration, policy);
+    }
+
+    /**
+     * Delete an item.
+     *
+     * @param key The key.
+     * @return The response.
+     */
+    public Mono<Response> delete(final String key) {
+        return delete(key, replicaPolicy);
+    }
+
+    /**
+     * Delete an item from the primary and every replica. The primary's response is returned once every replica has
+     * responded.
+     *
+     * @param key    The key.
+     * @param policy The replica policy for this write.
+     * @return The response.
+     */
+    public Mono<Response> delete(final String key,
+                                 final ReplicaPolicy policy) {
+        final Request delete = (encoder, opaque) -> encoder.delete(Opcode.DELETE, opaque, key, 0L);
+        if (policy.replicas() == 1) {
+            return invalidating(key, nodeFor(key).execute(delete));
+        }
+        return Mono.defer(() -> {
+            final List<? extends MemcachedNode> nodes = locator.replicas(key, policy.replicas());
+            final List<Mono<Response>> writes = new ArrayList<>(nodes.size());
+            for (final MemcachedNode node : nodes) {
+                writes.add(node.execute(delete));
+            }
+            return invalidating(key, replicated(writes));
+        });
+    }
+
+    /**
+     * Store an item on its primary server, compressing the value if there is a compressor, and remove it from the
+     * replicas.
+     */
+    private Mono<Response> store(final Opcode opcode,
+                                 final String key,
+                                 final int flags,
+                                 final int expiration,
+                                 final ByteBuf value,
+                                 final long cas,
+                                 final ReplicaPolicy policy) {
+        if (compressor == null) {
+            return primaryWrite(key, Request.withValue(value, (encoder, opaque) ->
+                    encoder.store(opcode, opaque, key, flags, expiration, cas, value)), policy);
+        }
+        return Mono.defer(() -> {
+            // Compress on the subscribing thread rather than the event loop
+            final ByteBuf stored = compressor.compress(value);
+            final int storedFlags = stored == value ? flags : flags | DeflateCompressor.COMPRESSED_FLAG;
+            return primaryWrite(key, Request.withValue(stored, (encoder, opaque) ->
+                    encoder.store(opcode, opaque, key, storedFlags, expiration, cas, stored)), policy);
+        });
+    }
+
+    /**
+     * Send an INCREMENT or DECREMENT and read the new value of the counter from the response.
+     */
+    private Mono<Long> counter(final Opcode opcode,
+                               final String key,
+                               final long delta,
+                               final long initial,
+                               final int expiration,
+                               final ReplicaPolicy policy) {
+        return primaryWrite(key, (encoder, opaque) ->
+                encoder.counter(opcode, opaque, key, delta, initial, expiration, 0L), policy)
+                .handle((response, sink) -> {
+                    try {
+                        if (response.status() == Status.NO_ERROR) {
+                            sink.next(response.value().getLong(response.value().readerIndex()));
+                        } else {
+                            sink.error(exception(response));
+                        }
+                    } finally {
+                        response.release();
+                    }
+                });
+    }
+
+    /**
+     * Send a write that only the primary can apply, such as a conditional store or a counter, and delete the key from
+     * the replicas so that a hedged read cannot return the value the write replaced.
+     */
+    private Mono<Response> primaryWrite(final String key,
+                                        final Request request,
+                                        final ReplicaPolicy policy) {
+        if (policy.replicas() == 1) {
+            return invalidating(key, nodeFor(key).execute(request));
+        }
+        return Mono.defer(() -> {
+            final List<? extends MemcachedNode> nodes = locator.replicas(key, policy.replicas());
+            final List<Mono<Response>> writes = new ArrayList<>(nodes.size());
+            writes.add(nodes.get(0).execute(request));
+            final Request delete = (encoder, opaque) -> encoder.delete(Opcode.DELETE, opaque, key, 0L);
+            for (int i = 1; i < nodes.size(); i++) {
+                writes.add(nodes.get(i).execute(delete));
+            }
+            return invalidating(key, replicated(writes));
+        });
+    }
+
+    /**
+     * Route a bulk write to the key's primary and a delete of the key to each of its replicas.
+     */
+    private List<Tuple2<MemcachedNode, Mutation>> withInvalidations(final Mutation mutation,
+                                                                    final ReplicaPolicy policy) {
+        final List<? extends MemcachedNode> nodes = locator.replicas(mutation.key(), policy.replicas());
+        final List<Tuple2<MemcachedNode, Mutation>> routes = new ArrayList<>(nodes.size());
+        routes.add(Tuples.of(nodes.get(0), mutation));
+        for (int i = 1; i < nodes.size(); i++) {
+            routes.add(Tuples.of(nodes.get(i), Mutation.invalidation(mutation.key())));
+        }
+        return routes;
+    }
+
+    private static MemcachedException exception(final Response response) {
+        return new MemcachedException(response.rawStatus(), response.value().toString(StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Send writes to the primary and the replicas in parallel. Replica responses and failures are discarded so a slow
+     * or failed replica only reduces the number of copies.
+     *
+     * @param writes The write to the primary followed by the writes to the replicas.
+     * @return The primary's response once every write has completed.
+     */
+    private static Mono<Response> replicated(final List<Mono<Response>> writes) {
+        if (writes.size() == 1) {
+            return writes.get(0);
+        }
+        final List<Mono<Void>> replicas = new ArrayList<>(writes.size() - 1);
+        for (int i = 1; i < writes.size(); i++) {
+            replicas.add(writes.get(i)
+                    .doOnNext(Response::release)
+                    .onErrorResume(error -> Mono.empty())
+                    .then());
+        }
+        return Mono.zip(writes.get(0), Mono.when(replicas).thenReturn(Boolean.TRUE)).map(Tuple2::getT1);
+    }
+
+    /**
+     * Read an item from the server, or from the primary and a replica if reads are hedged, updating the near cache if
+     * there is one. When hot keys are being tracked only hot keys are cached and any other key is removed.
+     */
+    private Mono<Response> fetch(final String key,
+                                 final ReplicaPolicy policy) {
+        final Request get = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, key);
+        final MemcachedNode node;
+        final Mono<Response> response;
+        if (policy.hedgedReads()) {
+            final List<? extends MemcachedNode> nodes = locator.replicas(key, 2);
+            node = nodes.get(0);
+            response = nodes.size() > 1 ? hedgedRead.execute(node, nodes.get(1), get, policy) : node.execute(get);
+        } else {
+            node = nodeFor(key);
+            response = node.execute(get);
+        }
+        if (nearCache == null) {
+            return response;
+        }
+        // Captured before the GET is sent so a write invalidated after that keeps the value out of the cache
+        if (hotKeys == null) {
+            return Mono.defer(() -> {
+                final long generation = nearCache.generation(key);
+                return response.map(received -> nearCache.update(key, received, generation));
+            });
+        }
+        return Mono.defer(() -> {
+            final long generation = nearCache.generation(key);
+            return response.map(received -> {
+                if (hotKeys.isHot(node.address(), key)) {
+                    return nearCache.update(key, received, generation);
+                }
+                nearCache.invalidate(key);
+                return received;
+            });
+        });
+    }
+
+    /**
+     * Remove the item from the near cache when a write is sent and again when it is acknowledged. A read that
+     * overtakes the write on another connection is either answered before the acknowledgement, in which case its
+     * value is removed, or after it, in which case the advanced generation keeps its value out of the cache.
+     */
+    private Mono<Response> invalidating(final String key,
+                                        final Mono<Response> write) {
+        if (nearCache == null) {
+            return write;
+        }
+        return write.doOnSubscribe(subscription -> nearCache.invalidate(key))
+                .doOnNext(response -> nearCache.invalidate(key));
+    }
+
+    /**
+     * Remove the items written by a batch from the near cache again once the batch completes, as
+     * {@link #invalidating(String, Mono)} does for a single write.
+     */
+    private <T> Flux<T> acknowledged(final List<Mutation> batch,
+                                     final Flux<T> responses) {
+        if (nearCache == null) {
+            return responses;
+        }
+        return responses.doOnComplete(() -> batch.forEach(mutation -> nearCache.invalidate(mutation.key())));
+    }
+
+    MemcachedNode nodeFor(final String key) {
+        return locator.primary(key);
+    }
+
+    private int batchSize(final MemcachedNode node) {
+        return Math.max(1, Math.min(maxBatch, node.maxInFlight() - 1));
+    }
+
+    /**
+     * Get the number of batches sent to a server at once, which is as many as fit in its in-flight capacity plus one
+     * waiting to take the place of the first to complete. Further batches are not requested from the keys until one
+     * completes so a large multi-get is held back by demand rather than queued on the connections.
+     */
+    private static int batches(final MemcachedNode node,
+                               final int batchSize) {
+        return node.capacity() / (batchSize + 1) + 1;
+    }
+
+    private static List<Request> quietGets(final List<String> keys) {
+        final List<Request> requests = new ArrayList<>(keys.size());
+        for (final String key : keys) {
+            requests.add((encoder, opaque) -> encoder.get(Opcode.GETKQ, opaque, key));
+        }
+        return requests;
+    }
+
+    /**
+     * Configures a {@link MemcachedClient}. Only the locator must be set.
+     */
+    public static final class Builder {
+
+        private NodeLocator<? extends MemcachedNode> locator;
+
+        private int maxBatch = DEFAULT_MAX_BATCH;
+
+        private NearCache nearCache;
+
+        private boolean coalesceGets;
+
+        private DeflateCompressor compressor;
+
+        private HotKeyDetector hotKeys;
+
+        private ReplicaPolicy replicaPolicy = ReplicaPolicy.NONE;
+
+        private Builder() {
+        }
+
+        /**
+         * Set the locator that selects the servers that hold a key.
+         *
+         * @param locator The locator.
+         * @return This builder.
+         */
+        public Builder locator(final NodeLocator<? extends MemcachedNode> locator) {
+            this.locator = locator;
+            return this;
+        }
+
+        /**
+         * Select the server using the hash of the key modulo the number of servers.
+         *
+         * @param nodes         One connection or connection pool for each server.
+         * @param hashAlgorithm The hash algorithm used to select the server for a key.
+         * @return This builder.
+         */
+        public Builder nodes(final List<? extends MemcachedNode> nodes,
+                             final HashAlgorithm hashAlgorithm) {
+            return locator(new ArrayModNodeLocator<>(nodes, hashAlgorithm));
+        }
+
+        /**
+         * Set the maximum number of requests sent to a server in one quiet batch.
+         *
+         * @param maxBatch The maximum batch size which defaults to {@link MemcachedClient#DEFAULT_MAX_BATCH}.
+         * @return This builder.
+         */
+        public Builder maxBatch(final int maxBatch) {
+            this.maxBatch = maxBatch;
+            return this;
+        }
+
+        /**
+         * Serve repeated reads of the same key from memory. Items written through the client are removed from the
+         * near cache but writes by other clients are only seen once the cached entry expires.
+         *
+         * @param nearCache The near cache or {@code null} to always read from the servers.
+         * @return This builder.
+         */
+        public Builder nearCache(final NearCache nearCache) {
+            this.nearCache = nearCache;
+            return this;
+        }
+
+        /**
+         * Share a single request to the server between concurrent calls to {@link MemcachedClient#get(String)} for
+         * the same key.
+         *
+         * @param coalesceGets {@code true} to coalesce concurrent gets.
+         * @return This builder.
+         */
+        public Builder coalesceGets(final boolean coalesceGets) {
+            this.coalesceGets = coalesceGets;
+            return this;
+        }
+
+        /**
+         * Compress large values when they are written and decompress them when they are read.
+         *
+         * @param compressor The compressor or {@code null} to store values as they are.
+         * @return This builder.
+         */
+        public Builder compressor(final DeflateCompressor compressor) {
+            this.compressor = compressor;
+            return this;
+        }
+
+        /**
+         * Track the keys read most often from each server. When there is also a near cache only the hot keys are
+         * held in it.
+         *
+         * @param hotKeys The detector or {@code null} to not track hot keys.
+         * @return This builder.
+         */
+        public Builder hotKeys(final HotKeyDetector hotKeys) {
+            this.hotKeys = hotKeys;
+            return this;
+        }
+
+        /**
+         * Set the number of copies written of each key and whether reads are hedged, unless overridden for a call.
+         *
+         * @param replicaPolicy The replica policy which defaults to {@link ReplicaPolicy#NONE}.
+         * @return This builder.
+         */
+        public Builder replicaPolicy(final ReplicaPolicy replicaPolicy) {
+            this.replicaPolicy = replicaPolicy;
+            return this;
+        }
+
+        /**
+         * Create the client.
+         *
+         * @return The client.
+         * @throws IllegalStateException If the locator has not been set.
+         */
+        public MemcachedClient build() {
+            return new MemcachedClient(this);
+        }
+    }
+}
@@ -0,0 +1,818 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import com.buralo.memcached.metrics.MetricsRecorder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+import io.netty.channel.EventLoop;
+import io.netty.channel.SingleThreadEventLoop;
+import io.netty.util.ReferenceCountUtil;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.FluxSink;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoSink;
+import reactor.netty.Connection;
+import reactor.netty.tcp.TcpClient;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * A pipelined connection to a single Memcached server.
+ * <p>
+ * Requests are queued on a lock-free queue and written by the channel's event loop which assigns each request a
+ * monotonically increasing opaque value. Memcached answers the requests on a connection in the order they were
+ * received so the in-flight requests form a window of opaque values. The in-flight table is an array indexed by the
+ * low bits of the opaque and is only accessed from the event loop so it needs no locking. When the window is full
+ * further requests wait in the queue until responses arrive.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class MemcachedConnection implements MemcachedNode {
+
+    /**
+     * The name used for the response handler in the channel pipeline.
+     */
+    public static final String NAME = "memcached.responseHandler";
+
+    /**
+     * The default maximum number of requests in flight on a connection.
+     */
+    public static final int DEFAULT_MAX_IN_FLIGHT = 1024;
+
+    /**
+     * The smallest in-flight window, which holds a quiet request and the NOOP that terminates its batch.
+     */
+    public static final int MIN_IN_FLIGHT = 2;
+
+    private final Connection connection;
+
+    private final Channel channel;
+
+    private final EventLoop eventLoop;
+
+    private final RequestEncoder encoder;
+
+    private final Queue<Exchange> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger wip = new AtomicInteger();
+
+    /**
+     * The number of requests that are queued or waiting for a response.
+     */
+    private final AtomicInteger outstanding = new AtomicInteger();
+
+    private final Runnable drainTask = this::drain;
+
+    private final Runnable flushTask = this::flushNow;
+
+    private final FlushPolicy flushPolicy;
+
+    private final MetricsRecorder metrics;
+
+    /**
+     * Whether measurements are being recorded, in which case each exchange is timed.
+     */
+    private final boolean recording;
+
+    private final InetSocketAddress address;
+
+    private final Exchange[] inFlight;
+
+    private final int mask;
+
+    /**
+     * The opaque that will be assigned to the next request. Only accessed from the event loop.
+     */
+    private int nextOpaque;
+
+    /**
+     * The opaque of the oldest request that has not been answered. Only accessed from the event loop.
+     */
+    private int oldestOpaque;
+
+    /**
+     * Whether a flush has been scheduled for the end of the event loop iteration. Only accessed from the event loop.
+     */
+    private boolean flushScheduled;
+
+    /**
+     * The number of requests written since the last flush. Only accessed from the event loop.
+     */
+    private int unflushedRequests;
+
+    /**
+     * The number of bytes written since the last flush. Only accessed from the event loop.
+     */
+    private long unflushedBytes;
+
+    private volatile boolean closed;
+
+    /**
+     * Initialize a pipelined connection on top of a reactor-netty connection that batches flushes.
+     *
+     * @param connection  The reactor-netty connection.
+     * @param maxInFlight The maximum number of requests in flight, at least two, which is rounded up to a power of two.
+     */
+    public MemcachedConnection(final Connection connection,
+                               final int maxInFlight) {
+        this(connection, maxInFlight, FlushPolicy.BATCHED);
+    }
+
+    /**
+     * Initialize a pipelined connection on top of a reactor-netty connection.
+     *
+     * @param connection  The reactor-netty connection.
+     * @param maxInFlight The maximum number of requests in flight, at least two, which is rounded up to a power of two.
+     * @param flushPolicy Controls when written requests are flushed.
+     */
+    public MemcachedConnection(final Connection connection,
+                               final int maxInFlight,
+                               final FlushPolicy flushPolicy) {
+        this(connection, maxInFlight, flushPolicy, MetricsRecorder.NONE);
+    }
+
+    /**
+     * Initialize a pipelined connection on top of a reactor-netty connection. The connection is not registered with
+     * the metrics recorder.
+     *
+     * @param connection  The reactor-netty connection.
+     * @param maxInFlight The maximum number of requests in flight, at least two, which is rounded up to a power of two.
+     * @param flushPolicy Controls when written requests are flushed.
+     * @param metrics     Receives the latency, status and byte measurements.
+     */
+    public MemcachedConnection(final Connection connection,
+                               final int maxInFlight,
+                               final FlushPolicy flushPolicy,
+                               final MetricsRecorder metrics) {
+        checkMaxInFlight(maxInFlight);
+        this.connection = connection;
+        this.channel = connection.channel();
+        this.eventLoop = channel.eventLoop();
+        this.flushPolicy = flushPolicy;
+        this.metrics = metrics;
+        this.recording = metrics != MetricsRecorder.NONE;
+        this.address = (InetSocketAddress) channel.remoteAddress();
+        this.encoder = new RequestEncoder(channel.alloc(), RequestEncoder.DEFAULT_COMPOSITE_THRESHOLD);
+        final int capacity = Integer.highestOneBit(maxInFlight - 1) << 1;
+        this.inFlight = new Exchange[capacity];
+        this.mask = capacity - 1;
+        connection.addHandlerLast(ResponseFrameDecoder.NAME, new ResponseFrameDecoder())
+                .addHandlerLast(NAME, new ResponseHandler());
+        // reactor-netty only reads when its inbound flux requests data but the responses are consumed by our handler
+        channel.config().setAutoRead(true);
+        connection.onDispose(() -> {
+            closed = true;
+            scheduleDrain();
+        });
+    }
+
+    /**
+     * Connect to a Memcached server.
+     *
+     * @param address The server address.
+     * @return The connection.
+     */
+    public static Mono<MemcachedConnection> connect(final InetSocketAddress address) {
+        return connect(TcpClient.newConnection().remoteAddress(() -> address), DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Connect to a Memcached server.
+     *
+     * @param tcpClient   The configured TCP client.
+     * @param maxInFlight The maximum number of requests in flight, at least two.
+     * @return The connection.
+     */
+    public static Mono<MemcachedConnection> connect(final TcpClient tcpClient,
+                                                    final int maxInFlight) {
+        return connect(tcpClient, maxInFlight, FlushPolicy.BATCHED);
+    }
+
+    /**
+     * Connect to a Memcached server.
+     *
+     * @param tcpClient   The configured TCP client.
+     * @param maxInFlight The maximum number of requests in flight, at least two.
+     * @param flushPolicy Controls when written requests are flushed.
+     * @return The connection.
+     */
+    public static Mono<MemcachedConnection> connect(final TcpClient tcpClient,
+                                                    final int maxInFlight,
+                                                    final FlushPolicy flushPolicy) {
+        return connect(tcpClient, maxInFlight, flushPolicy, MetricsRecorder.NONE);
+    }
+
+    /**
+     * Connect to a Memcached server and register the connection with the metrics recorder.
+     *
+     * @param tcpClient   The configured TCP client.
+     * @param maxInFlight The maximum number of requests in flight, at least two.
+     * @param flushPolicy Controls when written requests are flushed.
+     * @param metrics     Receives the latency, status and byte measurements.
+     * @return The connection.
+     */
+    public static Mono<MemcachedConnection> connect(final TcpClient tcpClient,
+                                                    final int maxInFlight,
+                                                    final FlushPolicy flushPolicy,
+                                                    final MetricsRecorder metrics) {
+        return open(tcpClient, maxInFlight, flushPolicy, metrics).doOnNext(metrics::registerNode);
+    }
+
+    /**
+     * Connect to a Memcached server without registering the connection with the metrics recorder, for connections
+     * that belong to a pool.
+     */
+    static Mono<MemcachedConnection> open(final TcpClient tcpClient,
+                                          final int maxInFlight,
+                                          final FlushPolicy flushPolicy,
+                                          final MetricsRecorder metrics) {
+        checkMaxInFlight(maxInFlight);
+        return tcpClient.connect()
+                .map(connection -> new MemcachedConnection(connection, maxInFlight, flushPolicy, metrics));
+    }
+
+    /**
+     * Check that an in-flight window can hold a quiet batch of at least one request.
+     */
+    static void checkMaxInFlight(final int maxInFlight) {
+        if (maxInFlight < MIN_IN_FLIGHT) {
+            throw new IllegalArgumentException("maxInFlight must be at least " + MIN_IN_FLIGHT);
+        }
+    }
+
+    /**
+     * Get the address of the server.
+     *
+     * @return The remote address.
+     */
+    @Override
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    /**
+     * Get the maximum number of requests in flight.
+     *
+     * @return The size of the in-flight window.
+     */
+    @Override
+    public int maxInFlight() {
+        return inFlight.length;
+    }
+
+    public FlushPolicy flushPolicy() {
+        return flushPolicy;
+    }
+
+    public boolean isActive() {
+        return !closed && channel.isActive();
+    }
+
+    /**
+     * Get the number of requests that are queued or waiting for a response. The count is decremented before the
+     * subscriber is notified so a caller that has just received a response sees an up-to-date count.
+     *
+     * @return The number of outstanding requests.
+     */
+    @Override
+    public int outstanding() {
+        return outstanding.get();
+    }
+
+    @Override
+    public double saturation() {
+        return (double) outstanding.get() / inFlight.length;
+    }
+
+    /**
+     * Send a request that always receives a response.
+     *
+     * @param request The request.
+     * @return The response which must be released by the subscriber.
+     */
+    @Override
+    public Mono<Response> execute(final Request request) {
+        return Mono.create(sink -> {
+            final SingleExchange exchange = new SingleExchange(request, sink);
+            sink.onCancel(exchange::cancel);
+            enqueue(exchange);
+        });
+    }
+
+    /**
+     * Send a batch of quiet requests followed by a NOOP. The server only answers a quiet request when there is
+     * something to report, such as a hit for GETKQ or a failure for a quiet write, and the NOOP response marks the
+     * end of the batch. The opaque of each response is replaced by the index of the request it answers.
+     *
+     * @param requests The quiet requests.
+     * @return The responses to the quiet requests which must be released by the subscriber.
+     */
+    @Override
+    public Flux<Response> executeQuiet(final List<? extends Request> requests) {
+        return Flux.<Response>create(sink -> {
+            final QuietExchange exchange = new QuietExchange(requests, sink);
+            sink.onCancel(exchange::cancel);
+            enqueue(exchange);
+        }).doOnDiscard(Response.class, Response::release);
+    }
+
+    /**
+     * Close the connection failing any requests that are still in flight.
+     *
+     * @return Completes when the connection is closed.
+     */
+    @Override
+    public Mono<Void> close() {
+        return Mono.defer(() -> {
+            connection.dispose();
+            return connection.onDispose();
+        });
+    }
+
+    /**
+     * Fail every request that is queued or in flight and close the connection. Later requests fail as the connection
+     * is closed.
+     *
+     * @param cause The error signalled to the requests.
+     */
+    @Override
+    public void abort(final Throwable cause) {
+        if (eventLoop.inEventLoop()) {
+            closed = true;
+            failAll(cause);
+            channel.close();
+            return;
+        }
+        try {
+            eventLoop.execute(() -> abort(cause));
+        } catch (final RejectedExecutionException e) {
+            closed = true;
+            failPending(cause);
+        }
+    }
+
+    void enqueue(final Exchange exchange) {
+        if (exchange.size() > inFlight.length) {
+            exchange.discard();
+            exchange.fail(new IllegalArgumentException("Exchange is larger than the in-flight window"));
+            return;
+        }
+        if (recording) {
+            exchange.startNanos = System.nanoTime();
+        }
+        outstanding.addAndGet(exchange.size());
+        pending.offer(exchange);
+        scheduleDrain();
+    }
+
+    private void scheduleDrain() {
+        if (wip.getAndIncrement() == 0) {
+            try {
+                eventLoop.execute(drainTask);
+            } catch (final RejectedExecutionException e) {
+                closed = true;
+                wip.set(0);
+                failPending(e);
+            }
+        }
+    }
+
+    private void drain() {
+        int missed = 1;
+        do {
+            if (isActive()) {
+                dispatch();
+            } else {
+                failAll(new ClosedChannelException());
+            }
+            missed = wip.addAndGet(-missed);
+        } while (missed != 0);
+    }
+
+    /**
+     * Write pending requests while there is room in the in-flight window. Called on the event loop.
+     */
+    private void dispatch() {
+        boolean written = false;
+        Exchange exchange;
+        while ((exchange = pending.peek()) != null) {
+            if (exchange.isCancelled()) {
+                pending.poll();
+                outstanding.addAndGet(-exchange.size());
+                exchange.discard();
+                continue;
+            }
+            final int size = exchange.size();
+            if (nextOpaque - oldestOpaque + size > inFlight.length) {
+                break;
+            }
+            pending.poll();
+            final int firstOpaque = nextOpaque;
+            final long bytes;
+            try {
+                bytes = exchange.write(channel, encoder, firstOpaque);
+            } catch (final RuntimeException e) {
+                outstanding.addAndGet(-size);
+                fail(exchange, e);
+                continue;
+            }
+            if (recording) {
+                metrics.recordBytesWritten(address, bytes);
+            }
+            for (int i = 0; i < size; i++) {
+                inFlight[(firstOpaque + i) & mask] = exchange;
+            }
+            nextOpaque = firstOpaque + size;
+            written = true;
+            unflushedRequests += size;
+            unflushedBytes += bytes;
+            if (unflushedRequests >= flushPolicy.maxRequests()
+                    || unflushedBytes >= flushPolicy.maxBytes()
+                    || !channel.isWritable()) {
+                flushNow();
+                written = false;
+            }
+        }
+        if (written) {
+            if (flushPolicy.isImmediate()) {
+                flushNow();
+            } else {
+                scheduleFlush();
+            }
+        }
+    }
+
+    /**
+     * Flush once the event loop has finished its current iteration so that requests written by other tasks in the
+     * same iteration share a single gathering write. Called on the event loop.
+     */
+    private void scheduleFlush() {
+        if (!flushScheduled) {
+            flushScheduled = true;
+            if (eventLoop instanceof SingleThreadEventLoop) {
+                ((SingleThreadEventLoop) eventLoop).executeAfterEventLoopIteration(flushTask);
+            } else {
+                eventLoop.execute(flushTask);
+            }
+        }
+    }
+
+    /**
+     * Flush the requests written since the last flush. Called on the event loop.
+     */
+    private void flushNow() {
+        flushScheduled = false;
+        if (unflushedRequests != 0) {
+            unflushedRequests = 0;
+            unflushedBytes = 0;
+            channel.flush();
+        }
+    }
+
+    /**
+     * Complete the exchange that owns the response opaque. Memcached answers in order so the requests that precede
+     * it without a response were either quiet or lost. Requests waiting for the window are written once the whole
+     * read has been processed. Called on the event loop.
+     *
+     * @param response The response.
+     */
+    private void onResponse(final Response response) {
+        final int opaque = response.opaque();
+        if (opaque - oldestOpaque < 0 || opaque - nextOpaque >= 0) {
+            response.release();
+            return;
+        }
+        outstanding.addAndGet(oldestOpaque - opaque - 1);
+        while (oldestOpaque != opaque) {
+            final Exchange skipped = inFlight[oldestOpaque & mask];
+            inFlight[oldestOpaque & mask] = null;
+            oldestOpaque++;
+            if (skipped != null) {
+                skipped.onSkipped(oldestOpaque - 1);
+            }
+        }
+        final Exchange exchange = inFlight[opaque & mask];
+        inFlight[opaque & mask] = null;
+        oldestOpaque++;
+        if (exchange != null) {
+            if (recording) {
+                record(exchange, response);
+            }
+            exchange.onResponse(opaque, response);
+        } else {
+            response.release();
+        }
+    }
+
+    private void failAll(final Throwable error) {
+        outstanding.addAndGet(oldestOpaque - nextOpaque);
+        while (oldestOpaque != nextOpaque) {
+            final Exchange exchange = inFlight[oldestOpaque & mask];
+            inFlight[oldestOpaque & mask] = null;
+            oldestOpaque++;
+            if (exchange != null) {
+                fail(exchange, error);
+            }
+        }
+        failPending(error);
+    }
+
+    private void failPending(final Throwable error) {
+        Exchange exchange;
+        while ((exchange = pending.poll()) != null) {
+            outstanding.addAndGet(-exchange.size());
+            exchange.discard();
+            fail(exchange, error);
+        }
+    }
+
+    private void fail(final Exchange exchange,
+                      final Throwable error) {
+        if (recording) {
+            metrics.recordFailure(address, error);
+        }
+        exchange.fail(error);
+    }
+
+    private void record(final Exchange exchange,
+                        final Response response) {
+        metrics.recordResponse(address, response.opcode(), response.status(), System.nanoTime() - exchange.startNanos);
+        metrics.recordBytesRead(address, RequestEncoder.HEADER_LENGTH + response.keyBytes().readableBytes()
+                + response.extras().readableBytes() + response.value().readableBytes());
+    }
+
+    /**
+     * A unit of work that occupies one or more consecutive opaque values on the connection.
+     */
+    abstract static class Exchange {
+
+        private volatile boolean cancelled;
+
+        /**
+         * When the exchange was issued if measurements are being recorded.
+         */
+        long startNanos;
+
+        /**
+         * Get the number of requests, and therefore opaque values, in the exchange.
+         *
+         * @return The number of requests.
+         */
+        abstract int size();
+
+        /**
+         * Write the requests to the channel without flushing. Nothing is written if encoding fails and the requests
+         * that were not encoded are discarded.
+         *
+         * @param channel     The channel.
+         * @param encoder     The request encoder.
+         * @param firstOpaque The opaque of the first request.
+         * @return The number of bytes written.
+         */
+        abstract long write(Channel channel, RequestEncoder encoder, int firstOpaque);
+
+        /**
+         * Release the resources held by the requests when the exchange is dropped without being written.
+         */
+        abstract void discard();
+
+        /**
+         * Called when a response is received for one of the requests.
+         *
+         * @param opaque   The opaque of the request.
+         * @param response The response.
+         */
+        abstract void onResponse(int opaque, Response response);
+
+        /**
+         * Called when a later response was received before any response to one of the requests.
+         *
+         * @param opaque The opaque of the request.
+         */
+        abstract void onSkipped(int opaque);
+
+        /**
+         * Called if the exchange cannot complete.
+         *
+         * @param error The cause.
+         */
+        abstract void fail(Throwable error);
+
+        void cancel() {
+            cancelled = true;
+        }
+
+        boolean isCancelled() {
+            return cancelled;
+        }
+
+        static int write(final Channel channel,
+                         final ByteBuf buf) {
+            final int length = buf.readableBytes();
+            channel.write(buf, channel.voidPromise());
+            return length;
+        }
+    }
+
+    /**
+     * An exchange made up of a single request that always receives a response.
+     */
+    static final class SingleExchange extends Exchange {
+
+        private final Request request;
+
+        private final MonoSink<Response> sink;
+
+        SingleExchange(final Request request,
+                       final MonoSink<Response> sink) {
+            this.request = request;
+            this.sink = sink;
+        }
+
+        @Override
+        int size() {
+            return 1;
+        }
+
+        @Override
+        long write(final Channel channel,
+                   final RequestEncoder encoder,
+                   final int firstOpaque) {
+            return write(channel, request.encode(encoder, firstOpaque));
+        }
+
+        @Override
+        void discard() {
+            request.discard();
+        }
+
+        @Override
+        void onResponse(final int opaque,
+                        final Response response) {
+            if (isCancelled()) {
+                response.release();
+            } else {
+                sink.success(response);
+            }
+        }
+
+        @Override
+        void onSkipped(final int opaque) {
+            fail(new IllegalStateException("No response received for request " + opaque));
+        }
+
+        @Override
+        void fail(final Throwable error) {
+            if (!isCancelled()) {
+                sink.error(error);
+            }
+        }
+    }
+
+    /**
+     * An exchange made up of quiet requests fenced by a NOOP request.
+     */
+    static final class QuietExchange extends Exchange {
+
+        private final List<? extends Request> requests;
+
+        private final FluxSink<Response> sink;
+
+        private int firstOpaque;
+
+        private int fenceOpaque;
+
+        QuietExchange(final List<? extends Request> requests,
+                      final FluxSink<Response> sink) {
+            this.requests = requests;
+            this.sink = sink;
+        }
+
+        @Override
+        int size() {
+            return requests.size() + 1;
+        }
+
+        @Override
+        long write(final Channel channel,
+                   final RequestEncoder encoder,
+                   final int firstOpaque) {
+            final int count = requests.size();
+            final ByteBuf[] bufs = new ByteBuf[count];
+            int i = 0;
+            try {
+                for (; i < count; i++) {
+                    bufs[i] = requests.get(i).encode(encoder, firstOpaque + i);
+                }
+            } catch (final RuntimeException e) {
+                for (final ByteBuf buf : bufs) {
+                    ReferenceCountUtil.release(buf);
+                }
+                // The request that failed released its own value
+                while (++i < count) {
+                    requests.get(i).discard();
+                }
+                throw e;
+            }
+            long bytes = 0;
+            for (final ByteBuf buf : bufs) {
+                bytes += write(channel, buf);
+            }
+            this.firstOpaque = firstOpaque;
+            fenceOpaque = firstOpaque + count;
+            return bytes + write(channel, encoder.noop(fenceOpaque));
+        }
+
+        @Override
+        void discard() {
+            for (final Request request : requests) {
+                request.discard();
+            }
+        }
+
+        @Override
+        void onResponse(final int opaque,
+                        final Response response) {
+            if (opaque == fenceOpaque) {
+                response.release();
+                sink.complete();
+            } else if (isCancelled()) {
+                response.release();
+            } else {
+                sink.next(response.withOpaque(opaque - firstOpaque));
+            }
+        }
+
+        @Override
+        void onSkipped(final int opaque) {
+            if (opaque == fenceOpaque) {
+                fail(new IllegalStateException("No response received for request " + opaque));
+            }
+        }
+
+        @Override
+        void fail(final Throwable error) {
+            sink.error(error);
+        }
+    }
+
+    private final class ResponseHandler extends ChannelInboundHandlerAdapter {
+
+        @Override
+        public void channelRead(final ChannelHandlerContext ctx,
+                                final Object msg) {
+            if (msg instanceof Response) {
+                onResponse((Response) msg);
+            } else {
+                ReferenceCountUtil.release(msg);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(final ChannelHandlerContext ctx) throws Exception {
+            if (isActive()) {
+                dispatch();
+            }
+            super.channelReadComplete(ctx);
+        }
+
+        @Override
+        public void channelInactive(final ChannelHandlerContext ctx) throws Exception {
+            closed = true;
+            failAll(new ClosedChannelException());
+            super.channelInactive(ctx);
+        }
+
+        @Override
+        public void exceptionCaught(final ChannelHandlerContext ctx,
+                                    final Throwable cause) {
+            closed = true;
+            failAll(cause);
+            ctx.close();
+        }
+    }
+}
@@ -0,0 +1,391 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import com.buralo.memcached.metrics.MetricsRecorder;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpClient;
+
+import java.net.InetSocketAddress;
+import java.nio.channels.ClosedChannelException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A pool of pipelined connections to a single Memcached server.
+ * <p>
+ * Each request is sent on the connection with the fewest outstanding requests, read from the lock-free counter each
+ * connection maintains for its queued and in-flight requests. Ties are broken in favour of open connections, scanning
+ * from a random slot, so a connection is only opened when every open connection is busy.
+ * Connections are opened lazily on first use, or eagerly by {@link #warmUp()}, and are reopened if they close. Every
+ * new connection is registered with the next event loop of the TCP client so the pool spreads its I/O across cores.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class MemcachedConnectionPool implements MemcachedNode {
+
+    /**
+     * The default number of connections in a pool.
+     */
+    public static final int DEFAULT_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final InetSocketAddress address;
+
+    private final TcpClient tcpClient;
+
+    private final int maxInFlight;
+
+    private final FlushPolicy flushPolicy;
+
+    private final MetricsRecorder metrics;
+
+    private final Slot[] slots;
+
+    private volatile boolean closed;
+
+    /**
+     * Initialize a pool with the default number of connections.
+     *
+     * @param address The server address.
+     */
+    public MemcachedConnectionPool(final InetSocketAddress address) {
+        this(address, TcpClient.newConnection(), DEFAULT_SIZE, MemcachedConnection.DEFAULT_MAX_IN_FLIGHT);
+    }
+
+    /**
+     * Initialize a pool.
+     *
+     * @param address     The server address.
+     * @param tcpClient   The configured TCP client which should not be pooled.
+     * @param size        The maximum number of connections.
+     * @param maxInFlight The maximum number of requests in flight on each connection, at least two.
+     */
+    public MemcachedConnectionPool(final InetSocketAddress address,
+                                   final TcpClient tcpClient,
+                                   final int size,
+                                   final int maxInFlight) {
+        this(address, tcpClient, size, maxInFlight, FlushPolicy.BATCHED);
+    }
+
+    /**
+     * Initialize a pool.
+     *
+     * @param address     The server address.
+     * @param tcpClient   The configured TCP client which should not be pooled.
+     * @param size        The maximum number of connections.
+     * @param maxInFlight The maximum number of requests in flight on each connection, at least two.
+     * @param flushPolicy Controls when each connection flushes written requests.
+     */
+    public MemcachedConnectionPool(final InetSocketAddress address,
+                                   final TcpClient tcpClient,
+                                   final int size,
+                                   final int maxInFlight,
+                                   final FlushPolicy flushPolicy) {
+        this(address, tcpClient, size, maxInFlight, flushPolicy, MetricsRecorder.NONE);
+    }
+
+    /**
+     * Initialize a pool and register it with the metrics recorder.
+     *
+     * @param address     The server address.
+     * @param tcpClient   The configured TCP client which should not be pooled.
+     * @param size        The maximum number of connections.
+     * @param maxInFlight The maximum number of requests in flight on each connection, at least two.
+     * @param flushPolicy Controls when each connection flushes written requests.
+     * @param metrics     Receives the latency, status and byte measurements from each connection.
+     */
+    public MemcachedConnectionPool(final InetSocketAddress address,
+                                   final TcpClient tcpClient,
+                                   final int size,
+                                   final int maxInFlight,
+                                   final FlushPolicy flushPolicy,
+                                   final MetricsRecorder metrics) {
+        if (size < 1) {
+            throw new IllegalArgumentException("size must be positive");
+        }
+        MemcachedConnection.checkMaxInFlight(maxInFlight);
+        this.address = address;
+        this.tcpClient = tcpClient.remoteAddress(() -> address);
+        this.maxInFlight = maxInFlight;
+        this.flushPolicy = flushPolicy;
+        this.metrics = metrics;
+        this.slots = new Slot[size];
+        for (int i = 0; i < size; i++) {
+            slots[i] = new Slot();
+        }
+        metrics.registerNode(this);
+    }
+
+    @Override
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    @Override
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    /**
+     * Get the maximum number of connections.
+     *
+     * @return The pool size.
+     */
+    public int size() {
+        return slots.length;
+    }
+
+    /**
+     * Get the number of connections that are open.
+     *
+     * @return The number of active connections.
+     */
+    public int active() {
+        int count = 0;
+        for (final Slot slot : slots) {
+            if (slot.active() != null) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * Get the number of requests that have been sent but not yet answered across all connections.
+     *
+     * @return The number of outstanding requests.
+     */
+    @Override
+    public int outstanding() {
+        int count = 0;
+        for (final Slot slot : slots) {
+            count += slot.outstanding();
+        }
+        return count;
+    }
+
+    @Override
+    public int capacity() {
+        return slots.length * maxInFlight;
+    }
+
+    @Override
+    public double saturation() {
+        return (double) outstanding() / capacity();
+    }
+
+    /**
+     * Open every connection in the pool so the first requests do not pay for connection establishment.
+     *
+     * @return Completes when all the connections are open.
+     */
+    public Mono<Void> warmUp() {
+        return Flux.fromArray(slots)
+                .flatMap(slot -> slot.connection(0))
+                .then();
+    }
+
+    @Override
+    public Mono<Response> execute(final Request request) {
+        return Mono.defer(() -> {
+            if (closed) {
+                request.discard();
+                return Mono.error(new ClosedChannelException());
+            }
+            final Slot slot = select();
+            final MemcachedConnection connection = slot.active();
+            return connection != null
+                    ? connection.execute(request)
+                    : slot.connection(1)
+                    .doOnError(error -> request.discard())
+                    .flatMap(opened -> opened.execute(request));
+        });
+    }
+
+    @Override
+    public Flux<Response> executeQuiet(final List<? extends Request> requests) {
+        return Flux.defer(() -> {
+            if (closed) {
+                requests.forEach(Request::discard);
+                return Flux.error(new ClosedChannelException());
+            }
+            final Slot slot = select();
+            final MemcachedConnection connection = slot.active();
+            return connection != null
+                    ? connection.executeQuiet(requests)
+                    : slot.connection(requests.size() + 1)
+                    .doOnError(error -> requests.forEach(Request::discard))
+                    .flatMapMany(opened -> opened.executeQuiet(requests));
+        });
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return Mono.defer(() -> {
+            closed = true;
+            final List<Mono<Void>> closing = new ArrayList<>(slots.length);
+            for (final Slot slot : slots) {
+                final MemcachedConnection connection = slot.connection.get();
+                if (connection != null) {
+                    closing.add(connection.close());
+                }
+            }
+            return Mono.when(closing);
+        });
+    }
+
+    /**
+     * Fail the requests on every connection and close the connections. The pool stays open and the next requests
+     * open new connections.
+     *
+     * @param cause The error signalled to the requests.
+     */
+    @Override
+    public void abort(final Throwable cause) {
+        for (final Slot slot : slots) {
+            final MemcachedConnection connection = slot.connection.get();
+            if (connection != null) {
+                connection.abort(cause);
+            }
+        }
+    }
+
+    /**
+     * Select the slot with the fewest outstanding requests preferring open connections.
+     *
+     * @return The selected slot.
+     */
+    private Slot select() {
+        final int start = slots.length == 1 ? 0 : ThreadLocalRandom.current().nextInt(slots.length);
+        Slot selected = null;
+        int selectedOutstanding = Integer.MAX_VALUE;
+        boolean selectedActive = false;
+        for (int i = 0; i < slots.length; i++) {
+            final Slot slot = slots[(start + i) % slots.length];
+            final MemcachedConnection connection = slot.active();
+            final boolean active = connection != null;
+            final int outstanding = active ? connection.outstanding() : slot.waiting.get();
+            if (outstanding < selectedOutstanding || outstanding == selectedOutstanding && active && !selectedActive) {
+                selected = slot;
+                selectedOutstanding = outstanding;
+                selectedActive = active;
+                if (outstanding == 0 && active) {
+                    break;
+                }
+            }
+        }
+        return selected;
+    }
+
+    /**
+     * A position in the pool holding at most one open connection at a time.
+     */
+    private final class Slot {
+
+        /**
+         * The number of requests waiting for the connection to open.
+         */
+        private final AtomicInteger waiting = new AtomicInteger();
+
+        private final AtomicReference<MemcachedConnection> connection = new AtomicReference<>();
+
+        private final AtomicReference<Mono<MemcachedConnection>> connecting = new AtomicReference<>();
+
+        /**
+         * Get the connection if it is open.
+         *
+         * @return The open connection or {@code null}.
+         */
+        MemcachedConnection active() {
+            final MemcachedConnection current = connection.get();
+            return current != null && current.isActive() ? current : null;
+        }
+
+        /**
+         * Get the number of requests that are waiting for the connection to open or are outstanding on it.
+         *
+         * @return The number of outstanding requests.
+         */
+        int outstanding() {
+            final MemcachedConnection current = connection.get();
+            return waiting.get() + (current == null ? 0 : current.outstanding());
+        }
+
+        /**
+         * Get the open connection or open a new one. Concurrent callers share a single connection attempt and a
+         * failed attempt is retried by the next caller.
+         *
+         * @param requests The number of requests that will be sent once the connection is open.
+         * @return The open connection.
+         */
+        Mono<MemcachedConnection> connection(final int requests) {
+            waiting.addAndGet(requests);
+            return connect().doFinally(signal -> waiting.addAndGet(-requests));
+        }
+
+        private Mono<MemcachedConnection> connect() {
+            return Mono.defer(() -> {
+                for (; ; ) {
+                    final MemcachedConnection current = active();
+                    if (current != null) {
+                        return Mono.just(current);
+                    }
+                    final Mono<MemcachedConnection> pending = connecting.get();
+                    if (pending != null) {
+                        return pending;
+                    }
+                    final Mono<MemcachedConnection> attempt = MemcachedConnection
+                            .open(tcpClient, maxInFlight, flushPolicy, metrics)
+                            .map(this::install)
+                            .doFinally(signal -> connecting.set(null))
+                            .cache();
+                    if (connecting.compareAndSet(null, attempt)) {
+                        return attempt;
+                    }
+                }
+            });
+        }
+
+        /**
+         * Install a newly opened connection unless another caller raced ahead and installed one first, in which case
+         * the new connection is closed.
+         *
+         * @param opened The new connection.
+         * @return The installed connection.
+         */
+        private MemcachedConnection install(final MemcachedConnection opened) {
+            for (; ; ) {
+                final MemcachedConnection current = connection.get();
+                if (closed || current != null && current.isActive()) {
+                    opened.close().subscribe();
+                    if (closed) {
+                        throw new IllegalStateException("Connection pool is closed");
+                    }
+                    return current;
+                }
+                if (connection.compareAndSet(current, opened)) {
+                    return opened;
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+/**
+ * Signals that the server responded with an error status to a request whose result is returned as a value rather
+ * than a {@link Response}.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class MemcachedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final int rawStatus;
+
+    /**
+     * Initialize the exception from the status code received from the server.
+     *
+     * @param rawStatus The unsigned status code.
+     * @param message   The message sent by the server.
+     */
+    public MemcachedException(final int rawStatus,
+                              final String message) {
+        super(message.isEmpty() ? Status.fromCode(rawStatus).name() : message);
+        this.rawStatus = rawStatus;
+    }
+
+    public Status status() {
+        return Status.fromCode(rawStatus);
+    }
+
+    public int rawStatus() {
+        return rawStatus;
+    }
+}
@@ -0,0 +1,105 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.util.List;
+
+/**
+ * A Memcached server that requests can be sent to, either over a single connection or a pool of connections.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public interface MemcachedNode {
+
+    /**
+     * Get the address of the server.
+     *
+     * @return The server address.
+     */
+    InetSocketAddress address();
+
+    /**
+     * Get the maximum number of requests in flight on a single connection to the server. Quiet batches, including the
+     * NOOP that terminates them, must be no larger than this so it is at least two.
+     *
+     * @return The size of the in-flight window.
+     */
+    int maxInFlight();
+
+    /**
+     * Get the number of requests that can be in flight across all the connections to the server, beyond which
+     * requests are queued.
+     *
+     * @return The in-flight capacity.
+     */
+    default int capacity() {
+        return maxInFlight();
+    }
+
+    /**
+     * Get the number of requests that are queued or waiting for a response.
+     *
+     * @return The in-flight depth.
+     */
+    int outstanding();
+
+    /**
+     * Get the outstanding requests as a fraction of the in-flight capacity. Values above one mean requests are queued
+     * waiting for room in the window.
+     *
+     * @return The saturation.
+     */
+    double saturation();
+
+    /**
+     * Send a request that always receives a response.
+     *
+     * @param request The request which is discarded if it is not sent.
+     * @return The response which must be released by the subscriber.
+     */
+    Mono<Response> execute(Request request);
+
+    /**
+     * Send a batch of quiet requests followed by a NOOP. The opaque of each response is the index of the request it
+     * answers so that responses can be matched to requests.
+     *
+     * @param requests The quiet requests which are discarded if they are not sent.
+     * @return The responses to the quiet requests which must be released by the subscriber.
+     */
+    Flux<Response> executeQuiet(List<? extends Request> requests);
+
+    /**
+     * Close the node failing any requests that are still in flight.
+     *
+     * @return Completes when the node is closed.
+     */
+    Mono<Void> close();
+
+    /**
+     * Fail every request that is queued or waiting for a response and drop the connections without waiting for the
+     * server, for example when the server is known to be unreachable. The default implementation does nothing so the
+     * requests are left to complete or time out.
+     *
+     * @param cause The error signalled to the requests.
+     */
+    default void abort(final Throwable cause) {
+    }
+}
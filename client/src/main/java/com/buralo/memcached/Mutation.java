@@ -0,0 +1,193 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import com.buralo.memcached.compression.DeflateCompressor;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+
+/**
+ * A write that is sent using a quiet opcode as part of a bulk write so the server only responds if it fails.
+ * <p>
+ * Ownership of the value is transferred to the mutation and it is released once the mutation has been written or
+ * discarded.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class Mutation implements Request {
+
+    private final Opcode opcode;
+
+    private final String key;
+
+    private final int flags;
+
+    private final int expiration;
+
+    private final long delta;
+
+    private final long initial;
+
+    private final ByteBuf value;
+
+    /**
+     * Whether this is a delete sent to a replica on behalf of a write to the primary.
+     */
+    private final boolean invalidation;
+
+    private Mutation(final Opcode opcode,
+                     final String key,
+                     final int flags,
+                     final int expiration,
+                     final long delta,
+                     final long initial,
+                     final ByteBuf value) {
+        this(opcode, key, flags, expiration, delta, initial, value, false);
+    }
+
+    private Mutation(final Opcode opcode,
+                     final String key,
+                     final int flags,
+                     final int expiration,
+                     final long delta,
+                     final long initial,
+                     final ByteBuf value,
+                     final boolean invalidation) {
+        this.opcode = opcode;
+        this.key = key;
+        this.flags = flags;
+        this.expiration = expiration;
+        this.delta = delta;
+        this.initial = initial;
+        this.value = value;
+        this.invalidation = invalidation;
+    }
+
+    public static Mutation set(final String key,
+                               final int flags,
+                               final int expiration,
+                               final ByteBuf value) {
+        return new Mutation(Opcode.SETQ, key, flags, expiration, 0L, 0L, value);
+    }
+
+    public static Mutation add(final String key,
+                               final int flags,
+                               final int expiration,
+                               final ByteBuf value) {
+        return new Mutation(Opcode.ADDQ, key, flags, expiration, 0L, 0L, value);
+    }
+
+    public static Mutation replace(final String key,
+                                   final int flags,
+                                   final int expiration,
+                                   final ByteBuf value) {
+        return new Mutation(Opcode.REPLACEQ, key, flags, expiration, 0L, 0L, value);
+    }
+
+    public static Mutation append(final String key,
+                                  final ByteBuf value) {
+        return new Mutation(Opcode.APPENDQ, key, 0, 0, 0L, 0L, value);
+    }
+
+    public static Mutation prepend(final String key,
+                                   final ByteBuf value) {
+        return new Mutation(Opcode.PREPENDQ, key, 0, 0, 0L, 0L, value);
+    }
+
+    public static Mutation delete(final String key) {
+        return new Mutation(Opcode.DELETEQ, key, 0, 0, 0L, 0L, Unpooled.EMPTY_BUFFER);
+    }
+
+    /**
+     * Create a delete that removes a stale copy of a key from a replica when the key is written to its primary.
+     *
+     * @param key The key.
+     * @return The mutation.
+     */
+    static Mutation invalidation(final String key) {
+        return new Mutation(Opcode.DELETEQ, key, 0, 0, 0L, 0L, Unpooled.EMPTY_BUFFER, true);
+    }
+
+    public static Mutation increment(final String key,
+                                     final long delta,
+                                     final long initial,
+                                     final int expiration) {
+        return new Mutation(Opcode.INCREMENTQ, key, 0, expiration, delta, initial, Unpooled.EMPTY_BUFFER);
+    }
+
+    public static Mutation decrement(final String key,
+                                     final long delta,
+                                     final long initial,
+                                     final int expiration) {
+        return new Mutation(Opcode.DECREMENTQ, key, 0, expiration, delta, initial, Unpooled.EMPTY_BUFFER);
+    }
+
+    public Opcode opcode() {
+        return opcode;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    boolean isInvalidation() {
+        return invalidation;
+    }
+
+    /**
+     * Compress the value of a SET, ADD or REPLACE if it is large enough to be worth compressing.
+     *
+     * @param compressor The compressor.
+     * @return This mutation or a copy with the compressed value and the compressed flag set.
+     */
+    Mutation compress(final DeflateCompressor compressor) {
+        if (opcode != Opcode.SETQ && opcode != Opcode.ADDQ && opcode != Opcode.REPLACEQ) {
+            return this;
+        }
+        final ByteBuf compressed = compressor.compress(value);
+        if (compressed == value) {
+            return this;
+        }
+        return new Mutation(opcode, key, flags | DeflateCompressor.COMPRESSED_FLAG, expiration, delta, initial,
+                compressed);
+    }
+
+    @Override
+    public void discard() {
+        value.release();
+    }
+
+    @Override
+    public ByteBuf encode(final RequestEncoder encoder,
+                          final int opaque) {
+        switch (opcode) {
+            case SETQ:
+            case ADDQ:
+            case REPLACEQ:
+                return encoder.store(opcode, opaque, key, flags, expiration, 0L, value);
+            case APPENDQ:
+            case PREPENDQ:
+                return encoder.concat(opcode, opaque, key, 0L, value);
+            case INCREMENTQ:
+            case DECREMENTQ:
+                return encoder.counter(opcode, opaque, key, delta, initial, expiration, 0L);
+            default:
+                return encoder.delete(opcode, opaque, key, 0L);
+        }
+    }
+}
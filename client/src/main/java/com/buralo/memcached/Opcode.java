@@ -16,6 +16,8 @@
 
 package com.buralo.memcached;
 
+import java.util.Arrays;
+
 /**
  * Operation codes.
  */
@@ -36,8 +38,38 @@ public enum Opcode {
     GETKQ((byte) 0x0d),
     APPEND((byte) 0x0e),
     PREPEND((byte) 0x0f),
-    STATS((byte) 0x11);
-    private byte code;
+    STATS((byte) 0x10),
+    SETQ((byte) 0x11),
+    ADDQ((byte) 0x12),
+    REPLACEQ((byte) 0x13),
+    DELETEQ((byte) 0x14),
+    INCREMENTQ((byte) 0x15),
+    DECREMENTQ((byte) 0x16),
+    QUITQ((byte) 0x17),
+    FLUSHQ((byte) 0x18),
+    APPENDQ((byte) 0x19),
+    PREPENDQ((byte) 0x1a),
+    /**
+     * An opcode this client does not recognise. It is never sent and its code does not appear in the lookup table.
+     * The code received from the server is available from {@link Response#rawOpcode()}.
+     */
+    UNKNOWN((byte) 0xff);
+
+    /**
+     * The opcodes indexed by their unsigned code with unassigned codes mapped to {@link #UNKNOWN}.
+     */
+    private static final Opcode[] BY_CODE = new Opcode[256];
+
+    static {
+        Arrays.fill(BY_CODE, UNKNOWN);
+        for (final Opcode opcode : values()) {
+            if (opcode != UNKNOWN) {
+                BY_CODE[opcode.code & 0xff] = opcode;
+            }
+        }
+    }
+
+    private final byte code;
 
     Opcode(final byte code) {
         this.code = code;
@@ -47,12 +79,13 @@ public enum Opcode {
         return code;
     }
 
+    /**
+     * Look up the opcode for a code received from the server.
+     *
+     * @param code The code.
+     * @return The opcode or {@link #UNKNOWN} if the code is not recognised.
+     */
     public static Opcode fromCode(final byte code) {
-        for (final Opcode opcode : values()) {
-            if (opcode.code == code) {
-                return opcode;
-            }
-        }
-        return null;
+        return BY_CODE[code & 0xff];
     }
 }
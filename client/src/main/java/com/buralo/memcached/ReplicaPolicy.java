@@ -0,0 +1,155 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import java.time.Duration;
+
+/**
+ * Controls how many servers hold a copy of each key and whether reads are hedged. Writes are sent to every replica in
+ * parallel. A hedged read is sent to the primary and, if no response has arrived after the primary's recent latency
+ * at the hedge percentile, also to the first replica; the first response wins and the other request is cancelled.
+ * The hedge delay is clamped between a minimum and a maximum and the maximum is used until enough reads have been
+ * timed. Writes that only the primary can apply, which are conditional stores, counters and bulk writes, delete
+ * the key from the replicas instead so that a hedged read cannot return the value they replaced. Multi-gets only use
+ * the primary. A key that is written with a policy passed to a single call must have every later write use the same
+ * policy, otherwise the replicas it names are not updated or deleted.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class ReplicaPolicy {
+
+    /**
+     * The default latency percentile after which a read is hedged.
+     */
+    public static final double DEFAULT_HEDGE_PERCENTILE = 95.0;
+
+    /**
+     * The default shortest hedge delay.
+     */
+    public static final Duration DEFAULT_MIN_HEDGE_DELAY = Duration.ofNanos(500_000L);
+
+    /**
+     * The default longest hedge delay.
+     */
+    public static final Duration DEFAULT_MAX_HEDGE_DELAY = Duration.ofMillis(50L);
+
+    /**
+     * Keep a single copy of each key on its primary server.
+     */
+    public static final ReplicaPolicy NONE = new ReplicaPolicy(1, false);
+
+    private final int replicas;
+
+    private final boolean hedgedReads;
+
+    private final double hedgePercentile;
+
+    private final long minHedgeDelayNanos;
+
+    private final long maxHedgeDelayNanos;
+
+    /**
+     * Initialize a policy using the default hedge percentile and delays.
+     *
+     * @param replicas    The number of servers that hold a copy of each key, including the primary.
+     * @param hedgedReads {@code true} if reads are hedged to the first replica.
+     */
+    public ReplicaPolicy(final int replicas,
+                         final boolean hedgedReads) {
+        this(replicas, hedgedReads, DEFAULT_HEDGE_PERCENTILE, DEFAULT_MIN_HEDGE_DELAY, DEFAULT_MAX_HEDGE_DELAY);
+    }
+
+    /**
+     * Initialize a policy.
+     *
+     * @param replicas        The number of servers that hold a copy of each key, including the primary.
+     * @param hedgedReads     {@code true} if reads are hedged to the first replica.
+     * @param hedgePercentile The percentile of the primary's recent latency after which a read is hedged.
+     * @param minHedgeDelay   The shortest hedge delay.
+     * @param maxHedgeDelay   The longest hedge delay.
+     */
+    public ReplicaPolicy(final int replicas,
+                         final boolean hedgedReads,
+                         final double hedgePercentile,
+                         final Duration minHedgeDelay,
+                         final Duration maxHedgeDelay) {
+        if (replicas < 1) {
+            throw new IllegalArgumentException("replicas must be positive");
+        }
+        if (hedgePercentile < 0.0 || hedgePercentile > 100.0) {
+            throw new IllegalArgumentException("hedgePercentile must be between 0 and 100");
+        }
+        if (minHedgeDelay.isNegative() || minHedgeDelay.compareTo(maxHedgeDelay) > 0) {
+            throw new IllegalArgumentException("hedge delays must satisfy 0 <= minHedgeDelay <= maxHedgeDelay");
+        }
+        this.replicas = replicas;
+        this.hedgedReads = hedgedReads;
+        this.hedgePercentile = hedgePercentile;
+        this.minHedgeDelayNanos = minHedgeDelay.toNanos();
+        this.maxHedgeDelayNanos = maxHedgeDelay.toNanos();
+    }
+
+    public int replicas() {
+        return replicas;
+    }
+
+    /**
+     * Check if reads are hedged, which requires at least one replica besides the primary.
+     *
+     * @return {@code true} if reads are hedged.
+     */
+    public boolean hedgedReads() {
+        return hedgedReads && replicas > 1;
+    }
+
+    public double hedgePercentile() {
+        return hedgePercentile;
+    }
+
+    public Duration minHedgeDelay() {
+        return Duration.ofNanos(minHedgeDelayNanos);
+    }
+
+    public Duration maxHedgeDelay() {
+        return Duration.ofNanos(maxHedgeDelayNanos);
+    }
+
+    /**
+     * Clamp a latency to the hedge delay bounds.
+     *
+     * @param latencyNanos The latency at the hedge percentile.
+     * @return The hedge delay in nanoseconds.
+     */
+    long hedgeDelayNanos(final long latencyNanos) {
+        return Math.max(minHedgeDelayNanos, Math.min(maxHedgeDelayNanos, latencyNanos));
+    }
+
+    long maxHedgeDelayNanos() {
+        return maxHedgeDelayNanos;
+    }
+
+    @Override
+    public String toString() {
+        return "ReplicaPolicy{replicas=" + replicas
+                + ", hedgedReads=" + hedgedReads()
+                + ", hedgePercentile=" + hedgePercentile
+                + ", minHedgeDelay=" + minHedgeDelay()
+                + ", maxHedgeDelay=" + maxHedgeDelay()
+                + '}';
+    }
+}
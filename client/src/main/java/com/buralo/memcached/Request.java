@@ -0,0 +1,69 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A request that is encoded once the connection has assigned its opaque value.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface Request {
+
+    /**
+     * Encode the request.
+     *
+     * @param encoder The encoder that allocates and writes the request buffer.
+     * @param opaque  The opaque value assigned by the connection.
+     * @return The encoded request.
+     */
+    ByteBuf encode(RequestEncoder encoder, int opaque);
+
+    /**
+     * Release the resources held by a request that is dropped without being encoded, for example because it was
+     * cancelled or the connection closed. The default implementation does nothing.
+     */
+    default void discard() {
+    }
+
+    /**
+     * Create a request that hands a value to the encoder so the value is released if the request is discarded.
+     *
+     * @param value   The value which is released by the encoder or when the request is discarded.
+     * @param request Encodes the request and the value.
+     * @return The request.
+     */
+    static Request withValue(final ByteBuf value,
+                             final Request request) {
+        return new Request() {
+
+            @Override
+            public ByteBuf encode(final RequestEncoder encoder,
+                                  final int opaque) {
+                return request.encode(encoder, opaque);
+            }
+
+            @Override
+            public void discard() {
+                value.release();
+            }
+        };
+    }
+}
@@ -0,0 +1,345 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.EnumSet;
+import java.util.Set;
+
+/**
+ * Encodes requests using the Memcached binary protocol.
+ * <p>
+ * Each request is written into a single direct buffer obtained from the allocator. Keys are encoded as UTF-8
+ * directly into that buffer. Values smaller than the composite threshold are copied after the header and larger
+ * values are appended as a component of a composite buffer so they are never copied. Ownership of the value is
+ * transferred to the encoder.
+ */
+public class RequestEncoder {
+
+    /**
+     * The length of the fixed request header.
+     */
+    public static final int HEADER_LENGTH = 24;
+
+    /**
+     * The maximum length of a key in bytes.
+     */
+    public static final int MAX_KEY_LENGTH = 250;
+
+    /**
+     * Values larger than this are written without copying using a composite buffer.
+     */
+    public static final int DEFAULT_COMPOSITE_THRESHOLD = 1024;
+
+    private static final byte REQUEST_MAGIC = (byte) 0x80;
+
+    private static final Set<Opcode> GET_OPCODES = EnumSet.of(Opcode.GET, Opcode.GETQ, Opcode.GETK, Opcode.GETKQ);
+
+    private static final Set<Opcode> STORE_OPCODES = EnumSet.of(Opcode.SET, Opcode.ADD, Opcode.REPLACE,
+            Opcode.SETQ, Opcode.ADDQ, Opcode.REPLACEQ);
+
+    private static final Set<Opcode> CONCAT_OPCODES = EnumSet.of(Opcode.APPEND, Opcode.PREPEND,
+            Opcode.APPENDQ, Opcode.PREPENDQ);
+
+    private static final Set<Opcode> COUNTER_OPCODES = EnumSet.of(Opcode.INCREMENT, Opcode.DECREMENT,
+            Opcode.INCREMENTQ, Opcode.DECREMENTQ);
+
+    private static final Set<Opcode> DELETE_OPCODES = EnumSet.of(Opcode.DELETE, Opcode.DELETEQ);
+
+    private static final Set<Opcode> FLUSH_OPCODES = EnumSet.of(Opcode.FLUSH, Opcode.FLUSHQ);
+
+    private final ByteBufAllocator allocator;
+
+    private final int compositeThreshold;
+
+    public RequestEncoder() {
+        this(PooledByteBufAllocator.DEFAULT, DEFAULT_COMPOSITE_THRESHOLD);
+    }
+
+    /**
+     * Initialize the encoder.
+     *
+     * @param allocator          The allocator used for request buffers.
+     * @param compositeThreshold Values larger than this number of bytes are not copied.
+     */
+    public RequestEncoder(final ByteBufAllocator allocator,
+                          final int compositeThreshold) {
+        this.allocator = allocator;
+        this.compositeThreshold = compositeThreshold;
+    }
+
+    public ByteBufAllocator allocator() {
+        return allocator;
+    }
+
+    /**
+     * Encode a GET, GETQ, GETK or GETKQ request.
+     *
+     * @param opcode The operation code.
+     * @param opaque The opaque value echoed back in the response.
+     * @param key    The key.
+     * @return The encoded request.
+     */
+    public ByteBuf get(final Opcode opcode,
+                       final int opaque,
+                       final String key) {
+        checkOpcode(opcode, GET_OPCODES);
+        final int keyLength = keyLength(key);
+        final ByteBuf buf = header(opcode, opaque, keyLength, 0, 0, 0L, 0);
+        ByteBufUtil.writeUtf8(buf, key);
+        return buf;
+    }
+
+    /**
+     * Encode a SET, ADD or REPLACE request or one of their quiet variants.
+     *
+     * @param opcode     The operation code.
+     * @param opaque     The opaque value echoed back in the response.
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The item expiration.
+     * @param cas        The compare and swap value or {@code 0}.
+     * @param value      The value which will be released by the encoder.
+     * @return The encoded request.
+     */
+    public ByteBuf store(final Opcode opcode,
+                         final int opaque,
+                         final String key,
+                         final int flags,
+                         final int expiration,
+                         final long cas,
+                         final ByteBuf value) {
+        final int keyLength = checkValueRequest(opcode, STORE_OPCODES, key, value);
+        final int valueLength = value.readableBytes();
+        final ByteBuf buf = header(opcode, opaque, keyLength, 8, valueLength, cas, inlineLength(valueLength));
+        buf.writeInt(flags);
+        buf.writeInt(expiration);
+        ByteBufUtil.writeUtf8(buf, key);
+        return withValue(buf, value);
+    }
+
+    /**
+     * Encode an APPEND or PREPEND request or one of their quiet variants.
+     *
+     * @param opcode The operation code.
+     * @param opaque The opaque value echoed back in the response.
+     * @param key    The key.
+     * @param cas    The compare and swap value or {@code 0}.
+     * @param value  The value which will be released by the encoder.
+     * @return The encoded request.
+     */
+    public ByteBuf concat(final Opcode opcode,
+                          final int opaque,
+                          final String key,
+                          final long cas,
+                          final ByteBuf value) {
+        final int keyLength = checkValueRequest(opcode, CONCAT_OPCODES, key, value);
+        final int valueLength = value.readableBytes();
+        final ByteBuf buf = header(opcode, opaque, keyLength, 0, valueLength, cas, inlineLength(valueLength));
+        ByteBufUtil.writeUtf8(buf, key);
+        return withValue(buf, value);
+    }
+
+    /**
+     * Encode an INCREMENT or DECREMENT request or one of their quiet variants.
+     *
+     * @param opcode     The operation code.
+     * @param opaque     The opaque value echoed back in the response.
+     * @param key        The key.
+     * @param delta      The amount to add or subtract.
+     * @param initial    The initial value used if the key does not exist.
+     * @param expiration The expiration or {@code 0xffffffff} to fail if the key does not exist.
+     * @param cas        The compare and swap value or {@code 0}.
+     * @return The encoded request.
+     */
+    public ByteBuf counter(final Opcode opcode,
+                           final int opaque,
+                           final String key,
+                           final long delta,
+                           final long initial,
+                           final int expiration,
+                           final long cas) {
+        checkOpcode(opcode, COUNTER_OPCODES);
+        final int keyLength = keyLength(key);
+        final ByteBuf buf = header(opcode, opaque, keyLength, 20, 0, cas, 0);
+        buf.writeLong(delta);
+        buf.writeLong(initial);
+        buf.writeInt(expiration);
+        ByteBufUtil.writeUtf8(buf, key);
+        return buf;
+    }
+
+    /**
+     * Encode a DELETE or DELETEQ request.
+     *
+     * @param opcode The operation code.
+     * @param opaque The opaque value echoed back in the response.
+     * @param key    The key.
+     * @param cas    The compare and swap value or {@code 0}.
+     * @return The encoded request.
+     */
+    public ByteBuf delete(final Opcode opcode,
+                          final int opaque,
+                          final String key,
+                          final long cas) {
+        checkOpcode(opcode, DELETE_OPCODES);
+        final int keyLength = keyLength(key);
+        final ByteBuf buf = header(opcode, opaque, keyLength, 0, 0, cas, 0);
+        ByteBufUtil.writeUtf8(buf, key);
+        return buf;
+    }
+
+    /**
+     * Encode a FLUSH or FLUSHQ request.
+     *
+     * @param opcode     The operation code.
+     * @param opaque     The opaque value echoed back in the response.
+     * @param expiration Delay before the items are flushed or {@code 0} to flush immediately.
+     * @return The encoded request.
+     */
+    public ByteBuf flush(final Opcode opcode,
+                         final int opaque,
+                         final int expiration) {
+        checkOpcode(opcode, FLUSH_OPCODES);
+        if (expiration == 0) {
+            return header(opcode, opaque, 0, 0, 0, 0L, 0);
+        }
+        final ByteBuf buf = header(opcode, opaque, 0, 4, 0, 0L, 0);
+        buf.writeInt(expiration);
+        return buf;
+    }
+
+    /**
+     * Encode a NOOP request.
+     *
+     * @param opaque The opaque value echoed back in the response.
+     * @return The encoded request.
+     */
+    public ByteBuf noop(final int opaque) {
+        return header(Opcode.NOOP, opaque, 0, 0, 0, 0L, 0);
+    }
+
+    /**
+     * Encode a VERSION request.
+     *
+     * @param opaque The opaque value echoed back in the response.
+     * @return The encoded request.
+     */
+    public ByteBuf version(final int opaque) {
+        return header(Opcode.VERSION, opaque, 0, 0, 0, 0L, 0);
+    }
+
+    /**
+     * Encode a QUIT request.
+     *
+     * @param opaque The opaque value echoed back in the response.
+     * @return The encoded request.
+     */
+    public ByteBuf quit(final int opaque) {
+        return header(Opcode.QUIT, opaque, 0, 0, 0, 0L, 0);
+    }
+
+    /**
+     * Encode a STATS request.
+     *
+     * @param opaque The opaque value echoed back in the response.
+     * @param group  The statistics group or {@code null} for the general statistics.
+     * @return The encoded request.
+     */
+    public ByteBuf stats(final int opaque,
+                         final String group) {
+        final int keyLength = group == null ? 0 : keyLength(group);
+        final ByteBuf buf = header(Opcode.STATS, opaque, keyLength, 0, 0, 0L, 0);
+        if (group != null) {
+            ByteBufUtil.writeUtf8(buf, group);
+        }
+        return buf;
+    }
+
+    private static void checkOpcode(final Opcode opcode,
+                                    final Set<Opcode> allowed) {
+        if (!allowed.contains(opcode)) {
+            throw new IllegalArgumentException("Unexpected opcode " + opcode);
+        }
+    }
+
+    private static int checkValueRequest(final Opcode opcode,
+                                         final Set<Opcode> allowed,
+                                         final String key,
+                                         final ByteBuf value) {
+        try {
+            checkOpcode(opcode, allowed);
+            return keyLength(key);
+        } catch (final IllegalArgumentException e) {
+            value.release();
+            throw e;
+        }
+    }
+
+    private static int keyLength(final String key) {
+        final int keyLength = ByteBufUtil.utf8Bytes(key);
+        if (keyLength == 0 || keyLength > MAX_KEY_LENGTH) {
+            throw new IllegalArgumentException("Key length must be between 1 and " + MAX_KEY_LENGTH + " bytes");
+        }
+        return keyLength;
+    }
+
+    private int inlineLength(final int valueLength) {
+        return valueLength > compositeThreshold ? 0 : valueLength;
+    }
+
+    private ByteBuf header(final Opcode opcode,
+                           final int opaque,
+                           final int keyLength,
+                           final int extrasLength,
+                           final int valueLength,
+                           final long cas,
+                           final int inlineLength) {
+        final int bodyLength = extrasLength + keyLength + valueLength;
+        final ByteBuf buf = allocator.directBuffer(HEADER_LENGTH + extrasLength + keyLength + inlineLength);
+        buf.writeByte(REQUEST_MAGIC);
+        buf.writeByte(opcode.code());
+        buf.writeShort(keyLength);
+        buf.writeByte(extrasLength);
+        buf.writeByte(0);
+        buf.writeShort(0);
+        buf.writeInt(bodyLength);
+        buf.writeInt(opaque);
+        buf.writeLong(cas);
+        return buf;
+    }
+
+    private ByteBuf withValue(final ByteBuf buf,
+                              final ByteBuf value) {
+        if (value.readableBytes() > compositeThreshold) {
+            final CompositeByteBuf composite = allocator.compositeDirectBuffer(2);
+            composite.addComponents(true, buf, value);
+            return composite;
+        }
+        try {
+            buf.writeBytes(value);
+        } finally {
+            value.release();
+        }
+        return buf;
+    }
+}
@@ -0,0 +1,190 @@
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.util.AbstractReferenceCounted;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * A response decoded from the Memcached binary protocol.
+ * <p>
+ * The key, extras and value buffers may be views into the inbound network buffer so a response must be released
+ * by whoever consumes it.
+ */
+public class Response extends AbstractReferenceCounted {
+    private final int rawOpcode;
+    private final int rawStatus;
+    private final int opaque;
+    private final long cas;
+    private final ByteBuf keyBytes;
+    private final ByteBuf extras;
+    private final ByteBuf value;
+    private String key;
+
+    public Response(final Opcode opcode,
+                    final Status status,
+                    final int opaque,
+                    final long cas,
+                    final ByteBuf keyBytes,
+                    final ByteBuf extras,
+                    final ByteBuf value) {
+        this(opcode.code() & 0xff, status.code(), opaque, cas, keyBytes, extras, value);
+    }
+
+    /**
+     * Initialize a response from the codes received from the server which need not be recognised by this client.
+     *
+     * @param rawOpcode The unsigned opcode.
+     * @param rawStatus The unsigned status code.
+     * @param opaque    The opaque.
+     * @param cas       The CAS value.
+     * @param keyBytes  The key.
+     * @param extras    The extras.
+     * @param value     The value.
+     */
+    public Response(final int rawOpcode,
+                    final int rawStatus,
+                    final int opaque,
+                    final long cas,
+                    final ByteBuf keyBytes,
+                    final ByteBuf extras,
+                    final ByteBuf value) {
+        this.rawOpcode = rawOpcode;
+        this.rawStatus = rawStatus;
+        this.opaque = opaque;
+        this.cas = cas;
+        this.keyBytes = keyBytes;
+        this.extras = extras;
+        this.value = value;
+    }
+
+    /**
+     * Get the opcode.
+     *
+     * @return The opcode or {@link Opcode#UNKNOWN} if the server sent a code this client does not recognise.
+     */
+    public Opcode opcode() {
+        return Opcode.fromCode((byte) rawOpcode);
+    }
+
+    /**
+     * Get the opcode exactly as it was received.
+     *
+     * @return The unsigned opcode.
+     */
+    public int rawOpcode() {
+        return rawOpcode;
+    }
+
+    /**
+     * Get the status.
+     *
+     * @return The status or {@link Status#UNKNOWN} if the server sent a code this client does not recognise.
+     */
+    public Status status() {
+        return Status.fromCode(rawStatus);
+    }
+
+    /**
+     * Get the status code exactly as it was received.
+     *
+     * @return The unsigned status code.
+     */
+    public int rawStatus() {
+        return rawStatus;
+    }
+
+    public int opaque() {
+        return opaque;
+    }
+
+    public long cas() {
+        return cas;
+    }
+
+    /**
+     * Get the key decoded as a UTF-8 string. The key is only decoded the first time it is requested.
+     *
+     * @return The key or an empty string if the response did not include a key.
+     */
+    public String key() {
+        String result = key;
+        if (result == null) {
+            result = keyBytes.isReadable() ? keyBytes.toString(StandardCharsets.UTF_8) : "";
+            key = result;
+        }
+        return result;
+    }
+
+    public ByteBuf keyBytes() {
+        return keyBytes;
+    }
+
+    public ByteBuf extras() {
+        return extras;
+    }
+
+    public ByteBuf value() {
+        return value;
+    }
+
+    /**
+     * Create a response that takes over the buffers of this response but has a different opaque. This response must
+     * not be used or released afterwards.
+     *
+     * @param opaque The opaque.
+     * @return The response which now owns the buffers.
+     */
+    Response withOpaque(final int opaque) {
+        return new Response(rawOpcode, rawStatus, opaque, cas, keyBytes, extras, value);
+    }
+
+    /**
+     * Create a response that shares the buffers of this response but has its own reference count and indexes.
+     *
+     * @return The duplicate which must be released independently of this response.
+     */
+    public Response retainedDuplicate() {
+        return new Response(
+                rawOpcode,
+                rawStatus,
+                opaque,
+                cas,
+                keyBytes.retainedDuplicate(),
+                extras.retainedDuplicate(),
+                value.retainedDuplicate());
+    }
+
+    @Override
+    public Response touch(final Object hint) {
+        keyBytes.touch(hint);
+        extras.touch(hint);
+        value.touch(hint);
+        return this;
+    }
+
+    @Override
+    public Response retain() {
+        super.retain();
+        return this;
+    }
+
+    @Override
+    public Response retain(final int increment) {
+        super.retain(increment);
+        return this;
+    }
+
+    @Override
+    public Response touch() {
+        super.touch();
+        return this;
+    }
+
+    @Override
+    protected void deallocate() {
+        keyBytes.release();
+        extras.release();
+        value.release();
+    }
+}
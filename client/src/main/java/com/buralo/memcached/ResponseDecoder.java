@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.handler.codec.CorruptedFrameException;
+import reactor.core.publisher.Mono;
+
+/**
+ * Decodes responses from the Memcached binary protocol.
+ * <p>
+ * By default the extras, key and value are copied out of the inbound buffer. In zero-copy mode they are returned as
+ * retained slices of the inbound buffer instead and the {@link Response} must be released once consumed.
+ */
+public class ResponseDecoder {
+
+    /**
+     * The length of the fixed response header.
+     */
+    public static final int HEADER_LENGTH = 24;
+
+    /**
+     * The largest body accepted in a frame, which is the largest item size memcached can be configured with. A
+     * longer body is taken to be a corrupt header rather than a frame to wait for.
+     */
+    public static final int MAX_BODY_LENGTH = 1024 * 1024 * 1024;
+
+    private static final int KEY_LENGTH_OFFSET = 2;
+
+    private static final int EXTRAS_LENGTH_OFFSET = 4;
+
+    private static final int TOTAL_LENGTH_OFFSET = 8;
+
+    private final boolean zeroCopy;
+
+    public ResponseDecoder() {
+        this(false);
+    }
+
+    /**
+     * Initialize the decoder.
+     *
+     * @param zeroCopy If {@code true} the extras, key and value are retained slices of the inbound buffer.
+     */
+    public ResponseDecoder(final boolean zeroCopy) {
+        this.zeroCopy = zeroCopy;
+    }
+
+    /**
+     * Get the length of the frame at the reader index including the header.
+     *
+     * @param buf The inbound buffer.
+     * @return The frame length or {@code -1} if the header has not been completely received.
+     * @throws CorruptedFrameException If the body length is shorter than the key and extras or longer than
+     *                                 {@link #MAX_BODY_LENGTH}.
+     */
+    public static int frameLength(final ByteBuf buf) {
+        if (buf.readableBytes() < HEADER_LENGTH) {
+            return -1;
+        }
+        final int index = buf.readerIndex();
+        final int keyLength = buf.getUnsignedShort(index + KEY_LENGTH_OFFSET);
+        final int extrasLength = buf.getUnsignedByte(index + EXTRAS_LENGTH_OFFSET);
+        final int totalLength = buf.getInt(index + TOTAL_LENGTH_OFFSET);
+        if (totalLength < keyLength + extrasLength || totalLength > MAX_BODY_LENGTH) {
+            throw new CorruptedFrameException("Invalid body length " + totalLength);
+        }
+        return HEADER_LENGTH + totalLength;
+    }
+
+    /**
+     * Decode a response if the buffer holds a complete frame. Nothing is consumed if the frame is incomplete.
+     *
+     * @param buf The inbound buffer.
+     * @return The decoded response, an empty {@link Mono} if the frame is incomplete or an error if the header is
+     * invalid.
+     */
+    public Mono<Response> decode(final ByteBuf buf) {
+        try {
+            final int frameLength = frameLength(buf);
+            if (frameLength < 0 || buf.readableBytes() < frameLength) {
+                return Mono.empty();
+            }
+            return Mono.just(readResponse(buf));
+        } catch (final IllegalArgumentException | CorruptedFrameException e) {
+            return Mono.error(e);
+        }
+    }
+
+    /**
+     * Read a single response from a buffer that holds at least one complete frame.
+     *
+     * @param buf The inbound buffer.
+     * @return The decoded response.
+     * @throws IllegalArgumentException If the buffer does not start with a valid response header.
+     */
+    public Response readResponse(final ByteBuf buf) {
+        if (buf.readByte() != (byte) 0x81) {
+            throw new IllegalArgumentException("Invalid response magic");
+        }
+        final int opcode = buf.readUnsignedByte();
+        final int keyLength = buf.readUnsignedShort();
+        final int extrasLength = buf.readUnsignedByte();
+        if (buf.readByte() != (byte) 0x00) {
+            throw new IllegalArgumentException("Invalid response data type");
+        }
+        final int status = buf.readUnsignedShort();
+        final int totalLength = buf.readInt();
+        final int opaque = buf.readInt();
+        final long cas = buf.readLong();
+        if (totalLength < keyLength + extrasLength) {
+            throw new IllegalArgumentException("Invalid response body length");
+        }
+        final ByteBuf extras = read(buf, extrasLength);
+        final ByteBuf key = read(buf, keyLength);
+        final ByteBuf value = read(buf, totalLength - (keyLength + extrasLength));
+        return new Response(
+                opcode,
+                status,
+                opaque,
+                cas,
+                key,
+                extras,
+                value);
+    }
+
+    private ByteBuf read(final ByteBuf buf, final int length) {
+        if (length == 0) {
+            return Unpooled.EMPTY_BUFFER;
+        } else if (zeroCopy) {
+            return buf.readRetainedSlice(length);
+        } else {
+            return buf.readBytes(length);
+        }
+    }
+}
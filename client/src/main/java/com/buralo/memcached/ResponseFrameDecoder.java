@@ -0,0 +1,79 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.util.List;
+
+/**
+ * Incremental decoder that turns the inbound byte stream into {@link Response} messages.
+ * <p>
+ * Frames that are split across reads are accumulated in a composite buffer until the whole frame has arrived and
+ * all the complete frames in a read are emitted at once. The responses are retained slices of the inbound buffer so
+ * the handler that consumes them is responsible for releasing them.
+ * <p>
+ * Add it to a reactor-netty connection with:
+ * <pre>
+ * connection.addHandlerLast(ResponseFrameDecoder.NAME, new ResponseFrameDecoder());
+ * </pre>
+ */
+public class ResponseFrameDecoder extends ByteToMessageDecoder {
+
+    /**
+     * The name used for the handler in the channel pipeline.
+     */
+    public static final String NAME = "memcached.responseFrameDecoder";
+
+    private static final byte RESPONSE_MAGIC = (byte) 0x81;
+
+    private final ResponseDecoder decoder = new ResponseDecoder(true);
+
+    /**
+     * The length of the frame currently being received or {@code -1} if the header has not arrived yet.
+     */
+    private int frameLength = -1;
+
+    public ResponseFrameDecoder() {
+        setCumulator(COMPOSITE_CUMULATOR);
+    }
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx,
+                          final ByteBuf in,
+                          final List<Object> out) {
+        while (true) {
+            if (frameLength < 0) {
+                frameLength = ResponseDecoder.frameLength(in);
+                if (frameLength < 0) {
+                    return;
+                }
+                if (in.getByte(in.readerIndex()) != RESPONSE_MAGIC) {
+                    throw new CorruptedFrameException("Invalid response magic");
+                }
+            }
+            if (in.readableBytes() < frameLength) {
+                return;
+            }
+            out.add(decoder.readResponse(in));
+            frameLength = -1;
+        }
+    }
+}
@@ -0,0 +1,129 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+import reactor.core.publisher.Mono;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Function;
+
+/**
+ * Coalesces concurrent requests for the same key so that only one is sent to the server. Subscribers that arrive
+ * while a request is in flight join it and each receives a retained duplicate of the response so they can release it
+ * independently.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class SingleFlight {
+
+    private final Map<String, Flight> flights = new ConcurrentHashMap<>();
+
+    private final Function<String, Mono<Response>> request;
+
+    /**
+     * Initialize the single-flight group.
+     *
+     * @param request Sends the request for a key.
+     */
+    SingleFlight(final Function<String, Mono<Response>> request) {
+        this.request = request;
+    }
+
+    /**
+     * Join the request in flight for the key or send a new one.
+     *
+     * @param key The key.
+     * @return The response which must be released by the subscriber.
+     */
+    Mono<Response> execute(final String key) {
+        return Mono.defer(() -> {
+            for (; ; ) {
+                Flight flight = flights.get(key);
+                if (flight == null) {
+                    final Flight created = new Flight(key);
+                    flight = flights.putIfAbsent(key, created);
+                    if (flight == null) {
+                        flight = created;
+                    }
+                }
+                if (flight.tryRetain()) {
+                    final Flight joined = flight;
+                    return joined.result
+                            .map(Response::retainedDuplicate)
+                            .doFinally(signal -> joined.release());
+                }
+                flights.remove(key, flight);
+            }
+        });
+    }
+
+    /**
+     * Get the number of requests in flight.
+     *
+     * @return The number of keys with a request in flight.
+     */
+    int size() {
+        return flights.size();
+    }
+
+    /**
+     * A request in flight. The flight holds one reference until it leaves the map and each subscriber holds another
+     * until it has taken its duplicate, so the response is released only once nobody can join any more.
+     */
+    private final class Flight {
+
+        private final AtomicInteger refs = new AtomicInteger(1);
+
+        private final Mono<Response> result;
+
+        private volatile Response response;
+
+        Flight(final String key) {
+            this.result = request.apply(key)
+                    .doOnNext(received -> response = received)
+                    .doFinally(signal -> {
+                        flights.remove(key, this);
+                        release();
+                    })
+                    .cache();
+        }
+
+        boolean tryRetain() {
+            for (; ; ) {
+                final int current = refs.get();
+                if (current == 0) {
+                    return false;
+                }
+                if (refs.compareAndSet(current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (refs.decrementAndGet() == 0) {
+                final Response received = response;
+                if (received != null) {
+                    received.release();
+                }
+            }
+        }
+    }
+}
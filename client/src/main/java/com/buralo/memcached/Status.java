@@ -16,6 +16,8 @@
 
 package com.buralo.memcached;
 
+import java.util.Arrays;
+
 public enum Status {
     /**
      * No error
@@ -80,11 +82,35 @@ public enum Status {
     /**
      * Temporary failure
      */
-    TEMPORARY_FAILURE(134);
+    TEMPORARY_FAILURE(134),
+    /**
+     * A status this client does not recognise. The code received from the server is available from
+     * {@link Response#rawStatus()}.
+     */
+    UNKNOWN(-1);
+
+    /**
+     * The statuses indexed by their code with unassigned codes mapped to {@link #UNKNOWN}.
+     */
+    private static final Status[] BY_CODE;
+
+    static {
+        int maxCode = 0;
+        for (final Status status : values()) {
+            maxCode = Math.max(maxCode, status.code);
+        }
+        BY_CODE = new Status[maxCode + 1];
+        Arrays.fill(BY_CODE, UNKNOWN);
+        for (final Status status : values()) {
+            if (status != UNKNOWN) {
+                BY_CODE[status.code] = status;
+            }
+        }
+    }
 
     private final int code;
 
-    Status(int code) {
+    Status(final int code) {
         this.code = code;
     }
 
@@ -92,12 +118,13 @@ public enum Status {
         return code;
     }
 
-    public static Status fromCode(int code) {
-        for (final Status status : values()) {
-            if (status.code == code) {
-                return status;
-            }
-        }
-        return null;
+    /**
+     * Look up the status for a code received from the server.
+     *
+     * @param code The code.
+     * @return The status or {@link #UNKNOWN} if the code is not recognised.
+     */
+    public static Status fromCode(final int code) {
+        return code >= 0 && code < BY_CODE.length ? BY_CODE[code] : UNKNOWN;
     }
 }
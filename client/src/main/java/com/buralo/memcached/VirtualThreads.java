@@ -0,0 +1,40 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached;
+
+/**
+ * Detects virtual threads. This version is used before Java 21 where every thread is a platform thread; the jar
+ * contains a replacement for Java 21 and later under {@code META-INF/versions/21}.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
+
+    /**
+     * Check if a thread is a virtual thread.
+     *
+     * @param thread The thread.
+     * @return Always {@code false}.
+     */
+    static boolean isVirtual(final Thread thread) {
+        return false;
+    }
+}
@@ -0,0 +1,517 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.cache;
+
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+
+import java.time.Duration;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicIntegerFieldUpdater;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * An in-process cache of recently read items that sits in front of the Memcached servers.
+ * <p>
+ * Entries are bounded by the number of bytes they hold and evicted using a segmented LRU policy. New entries join a
+ * probationary segment and entries that are read again while on probation are promoted to a protected segment that
+ * holds up to 80% of the capacity. Reads are lock-free and only mark the entry as accessed; entries are promoted and
+ * evicted while holding the lock taken by writes.
+ * <p>
+ * Each entry has a time to live after which it is no longer served. The next GET from the server revalidates the
+ * entry and if the CAS value is unchanged the cached copy is kept and only its expiry is extended, avoiding another
+ * copy of the value. Values are copied out of the inbound network buffer into pooled direct buffers so that an entry
+ * does not pin the buffer it was received in.
+ * <p>
+ * A read that was sent before a write can be answered after the write has invalidated the item. To keep such a
+ * response out of the cache each invalidation advances a generation, which is captured with
+ * {@link #generation(String)} before the read is sent and checked by {@link #update(String, Response, long)}. The
+ * generations are striped by the hash of the key so an invalidation occasionally stops an unrelated key from being
+ * cached, which costs a read but never serves a stale value.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class NearCache {
+
+    private static final int PROTECTED_PERCENT = 80;
+
+    /**
+     * The number of invalidation generations, which must be a power of two.
+     */
+    private static final int GENERATIONS = 1024;
+
+    private final Map<String, Entry> entries = new ConcurrentHashMap<>();
+
+    private final AtomicLongArray generations = new AtomicLongArray(GENERATIONS);
+
+    private final ByteBufAllocator allocator;
+
+    private final long maxBytes;
+
+    private final long maxProtectedBytes;
+
+    private final long ttlNanos;
+
+    private final LongAdder hits = new LongAdder();
+
+    private final LongAdder misses = new LongAdder();
+
+    private final LongAdder evictions = new LongAdder();
+
+    private final LongAdder revalidations = new LongAdder();
+
+    /**
+     * Taken by writes. A lock rather than a monitor so virtual threads waiting for it do not pin their carriers.
+     */
+    private final ReentrantLock lock = new ReentrantLock();
+
+    /**
+     * The least and most recently used ends of the probationary segment. Guarded by {@code lock}.
+     */
+    private final Entry probation = new Entry();
+
+    /**
+     * The least and most recently used ends of the protected segment. Guarded by {@code lock}.
+     */
+    private final Entry protectedSegment = new Entry();
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private long bytes;
+
+    /**
+     * Guarded by {@code lock}.
+     */
+    private long protectedBytes;
+
+    /**
+     * Initialize a near cache that copies values into pooled direct buffers.
+     *
+     * @param maxBytes The maximum number of bytes held by the cache.
+     * @param ttl      The time to live of each entry.
+     */
+    public NearCache(final long maxBytes,
+                     final Duration ttl) {
+        this(maxBytes, ttl, PooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Initialize a near cache.
+     *
+     * @param maxBytes  The maximum number of bytes held by the cache.
+     * @param ttl       The default time to live of each entry.
+     * @param allocator Allocates the buffers that the values are copied into.
+     */
+    public NearCache(final long maxBytes,
+                     final Duration ttl,
+                     final ByteBufAllocator allocator) {
+        if (maxBytes < 1) {
+            throw new IllegalArgumentException("maxBytes must be positive");
+        }
+        if (ttl.isNegative() || ttl.isZero()) {
+            throw new IllegalArgumentException("ttl must be positive");
+        }
+        this.maxBytes = maxBytes;
+        this.maxProtectedBytes = maxBytes * PROTECTED_PERCENT / 100;
+        this.ttlNanos = ttl.toNanos();
+        this.allocator = allocator;
+        probation.prev = probation.next = probation;
+        protectedSegment.prev = protectedSegment.next = protectedSegment;
+    }
+
+    /**
+     * Get an item if it is cached and has not expired.
+     *
+     * @param key The key.
+     * @return A GET response sharing the cached value which must be released by the caller, or {@code null} if the
+     * item must be read from the server.
+     */
+    public Response get(final String key) {
+        final Entry entry = entries.get(key);
+        if (entry != null && entry.expiresAt - System.nanoTime() > 0 && entry.tryRetain()) {
+            try {
+                if (!entry.accessed) {
+                    entry.accessed = true;
+                }
+                hits.increment();
+                return new Response(
+                        Opcode.GET,
+                        Status.NO_ERROR,
+                        0,
+                        entry.cas,
+                        Unpooled.EMPTY_BUFFER,
+                        entry.buf.retainedSlice(0, entry.extrasLength),
+                        entry.buf.retainedSlice(entry.extrasLength, entry.buf.readableBytes() - entry.extrasLength));
+            } finally {
+                entry.release();
+            }
+        }
+        misses.increment();
+        return null;
+    }
+
+    /**
+     * Update the cache with a response from the server using the default time to live.
+     *
+     * @param key      The key.
+     * @param response The response to a GET which is left unchanged for the caller to consume.
+     * @return The response.
+     */
+    public Response update(final String key,
+                           final Response response) {
+        return update(key, response, ttlNanos, generation(key));
+    }
+
+    /**
+     * Update the cache with a response from the server using the default time to live, unless the item has been
+     * invalidated since the request was sent.
+     *
+     * @param key        The key.
+     * @param response   The response to a GET which is left unchanged for the caller to consume.
+     * @param generation The generation of the key captured by {@link #generation(String)} before the GET was sent.
+     * @return The response.
+     */
+    public Response update(final String key,
+                           final Response response,
+                           final long generation) {
+        return update(key, response, ttlNanos, generation);
+    }
+
+    /**
+     * Update the cache with a response from the server. A hit with the same CAS value as the cached entry only
+     * extends its expiry, a hit with a different CAS value replaces the entry and a miss removes it.
+     *
+     * @param key      The key.
+     * @param response The response to a GET which is left unchanged for the caller to consume.
+     * @param ttl      The time to live of the entry.
+     * @return The response.
+     */
+    public Response update(final String key,
+                           final Response response,
+                           final Duration ttl) {
+        return update(key, response, ttl.toNanos(), generation(key));
+    }
+
+    /**
+     * Get the invalidation generation of a key, which changes every time the key is invalidated.
+     *
+     * @param key The key.
+     * @return The generation.
+     */
+    public long generation(final String key) {
+        return generations.get(slot(key));
+    }
+
+    private Response update(final String key,
+                            final Response response,
+                            final long ttl,
+                            final long generation) {
+        final Status status = response.status();
+        if (status == Status.NO_ERROR) {
+            if (generation(key) != generation) {
+                return response;
+            }
+            final long expiresAt = System.nanoTime() + ttl;
+            final Entry current = entries.get(key);
+            if (current != null && current.cas == response.cas() && current.cas != 0L) {
+                current.expiresAt = expiresAt;
+                revalidations.increment();
+            } else {
+                final ByteBuf extras = response.extras();
+                final ByteBuf value = response.value();
+                final int length = extras.readableBytes() + value.readableBytes();
+                final int keyLength = ByteBufUtil.utf8Bytes(key);
+                if (length + keyLength <= maxBytes - maxProtectedBytes) {
+                    final ByteBuf buf = allocator.directBuffer(length, length);
+                    buf.writeBytes(extras, extras.readerIndex(), extras.readableBytes());
+                    buf.writeBytes(value, value.readerIndex(), value.readableBytes());
+                    insert(new Entry(key, keyLength, buf, extras.readableBytes(), response.cas(), expiresAt),
+                            generation);
+                } else {
+                    discard(key);
+                }
+            }
+        } else if (status == Status.NOT_FOUND) {
+            discard(key);
+        }
+        return response;
+    }
+
+    /**
+     * Remove an item, typically because it has been written, and advance its generation so that reads sent before
+     * now do not cache it again.
+     *
+     * @param key The key.
+     */
+    public void invalidate(final String key) {
+        generations.incrementAndGet(slot(key));
+        discard(key);
+    }
+
+    private void discard(final String key) {
+        if (entries.containsKey(key)) {
+            lock.lock();
+            try {
+                final Entry entry = entries.remove(key);
+                if (entry != null) {
+                    remove(entry);
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Remove every item.
+     */
+    public void invalidateAll() {
+        for (int i = 0; i < GENERATIONS; i++) {
+            generations.incrementAndGet(i);
+        }
+        lock.lock();
+        try {
+            for (final Entry entry : entries.values()) {
+                remove(entry);
+            }
+            entries.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Get the number of items in the cache.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return entries.size();
+    }
+
+    /**
+     * Get the number of bytes held by the cache, counting the values, extras and keys.
+     *
+     * @return The weight of the entries.
+     */
+    public long bytes() {
+        lock.lock();
+        try {
+            return bytes;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    /**
+     * Get the number of times an expired entry was revalidated by a GET with an unchanged CAS value.
+     *
+     * @return The number of revalidations.
+     */
+    public long revalidations() {
+        return revalidations.sum();
+    }
+
+    /**
+     * Insert an entry unless its key was invalidated after the generation was captured. The generation is checked
+     * again after the entry is visible so that either this check sees a concurrent invalidation or the invalidation
+     * sees the entry and removes it.
+     */
+    private void insert(final Entry entry,
+                        final long generation) {
+        lock.lock();
+        try {
+            final Entry previous = entries.put(entry.key, entry);
+            if (previous != null) {
+                remove(previous);
+            }
+            linkFirst(probation, entry);
+            bytes += entry.weight;
+            if (generation(entry.key) != generation) {
+                entries.remove(entry.key, entry);
+                remove(entry);
+                return;
+            }
+            while (bytes > maxBytes) {
+                Entry victim = probation.prev;
+                if (victim == probation) {
+                    victim = protectedSegment.prev;
+                    demote(victim);
+                }
+                if (victim.accessed) {
+                    promote(victim);
+                } else {
+                    entries.remove(victim.key, victim);
+                    remove(victim);
+                    evictions.increment();
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    private static int slot(final String key) {
+        final int hash = key.hashCode();
+        return (hash ^ hash >>> 16) & GENERATIONS - 1;
+    }
+
+    private void promote(final Entry entry) {
+        entry.accessed = false;
+        unlink(entry);
+        linkFirst(protectedSegment, entry);
+        entry.isProtected = true;
+        protectedBytes += entry.weight;
+        while (protectedBytes > maxProtectedBytes) {
+            demote(protectedSegment.prev);
+        }
+    }
+
+    private void demote(final Entry entry) {
+        entry.accessed = false;
+        unlink(entry);
+        entry.isProtected = false;
+        protectedBytes -= entry.weight;
+        linkFirst(probation, entry);
+    }
+
+    private void remove(final Entry entry) {
+        unlink(entry);
+        bytes -= entry.weight;
+        if (entry.isProtected) {
+            protectedBytes -= entry.weight;
+        }
+        entry.release();
+    }
+
+    private static void linkFirst(final Entry head,
+                                  final Entry entry) {
+        entry.prev = head;
+        entry.next = head.next;
+        head.next.prev = entry;
+        head.next = entry;
+    }
+
+    private static void unlink(final Entry entry) {
+        entry.prev.next = entry.next;
+        entry.next.prev = entry.prev;
+        entry.prev = entry.next = null;
+    }
+
+    /**
+     * A cached item. The cache holds one reference and readers take another while they slice the buffer so the
+     * buffer cannot be returned to the pool by a concurrent eviction.
+     */
+    private static final class Entry {
+
+        private static final AtomicIntegerFieldUpdater<Entry> REFS =
+                AtomicIntegerFieldUpdater.newUpdater(Entry.class, "refs");
+
+        private final String key;
+
+        private final ByteBuf buf;
+
+        private final int extrasLength;
+
+        private final long cas;
+
+        private final long weight;
+
+        private volatile long expiresAt;
+
+        private volatile boolean accessed;
+
+        private volatile int refs;
+
+        /**
+         * Guarded by the cache's lock.
+         */
+        private boolean isProtected;
+
+        /**
+         * Guarded by the cache's lock.
+         */
+        private Entry prev;
+
+        /**
+         * Guarded by the cache's lock.
+         */
+        private Entry next;
+
+        /**
+         * Initialize the sentinel at the head of a segment.
+         */
+        Entry() {
+            this(null, 0, Unpooled.EMPTY_BUFFER, 0, 0L, 0L);
+        }
+
+        Entry(final String key,
+              final int keyLength,
+              final ByteBuf buf,
+              final int extrasLength,
+              final long cas,
+              final long expiresAt) {
+            this.key = key;
+            this.buf = buf;
+            this.extrasLength = extrasLength;
+            this.cas = cas;
+            this.weight = buf.readableBytes() + keyLength;
+            this.expiresAt = expiresAt;
+            this.refs = 1;
+        }
+
+        boolean tryRetain() {
+            for (; ; ) {
+                final int current = refs;
+                if (current == 0) {
+                    return false;
+                }
+                if (REFS.compareAndSet(this, current, current + 1)) {
+                    return true;
+                }
+            }
+        }
+
+        void release() {
+            if (REFS.decrementAndGet(this) == 0) {
+                buf.release();
+            }
+        }
+    }
+}
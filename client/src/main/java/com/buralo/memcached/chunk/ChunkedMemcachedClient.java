@@ -0,0 +1,364 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.chunk;
+
+import com.buralo.memcached.MemcachedClient;
+import com.buralo.memcached.Mutation;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.RequestEncoder;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.util.function.Tuple2;
+
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Stores values larger than the server's item size limit by splitting them across several keys.
+ * <p>
+ * A value larger than the chunk size is written as chunks under keys derived from its key and a random version,
+ * followed by a {@link Manifest} under the key itself marked with {@link #CHUNKED_FLAG}. Smaller values are written
+ * as they are. The manifest is written with ADD if the key did not exist or with the CAS value read before the chunks
+ * were written, so of two concurrent writers only one replaces the manifest and the other's chunks are deleted. Chunks
+ * are never overwritten so a reader always combines the chunks of a single version. A reader that finds a chunk
+ * missing, because a writer deleted the chunks of the version it read or a chunk was evicted, reads the manifest again
+ * and treats the item as missing if the chunks are still incomplete.
+ * <p>
+ * The chunks are written with quiet SETs and read with quiet GETs grouped by server, so they are sent to their
+ * servers in parallel. They are assembled into a {@link CompositeByteBuf} that wraps the received buffers without
+ * copying them.
+ * <p>
+ * When a chunked value is overwritten by a value small enough to be written as it is, the old chunks are not deleted
+ * and remain until they expire or are evicted.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class ChunkedMemcachedClient {
+
+    /**
+     * The flag bit that marks a manifest.
+     */
+    public static final int CHUNKED_FLAG = 0x04;
+
+    /**
+     * The default size in bytes of each chunk, which leaves room under memcached's default 1 MiB item size limit for
+     * the key and item header.
+     */
+    public static final int DEFAULT_CHUNK_SIZE = 512 * 1024;
+
+    /**
+     * The number of times the manifest is read before a value with missing chunks is treated as missing.
+     */
+    static final int MAX_ATTEMPTS = 3;
+
+    private final MemcachedClient client;
+
+    private final int chunkSize;
+
+    /**
+     * Initialize the client with the default chunk size.
+     *
+     * @param client The client used to read and write the manifests and chunks.
+     */
+    public ChunkedMemcachedClient(final MemcachedClient client) {
+        this(client, DEFAULT_CHUNK_SIZE);
+    }
+
+    /**
+     * Initialize the client.
+     *
+     * @param client    The client used to read and write the manifests and chunks.
+     * @param chunkSize The size in bytes of each chunk. Values no larger than this are stored under their own key.
+     */
+    public ChunkedMemcachedClient(final MemcachedClient client,
+                                  final int chunkSize) {
+        if (chunkSize < Manifest.LENGTH) {
+            throw new IllegalArgumentException("chunkSize must be at least " + Manifest.LENGTH);
+        }
+        this.client = client;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Test whether item flags mark the value as a manifest.
+     *
+     * @param flags The item flags.
+     * @return {@code true} if the value is a manifest.
+     */
+    public static boolean isChunked(final int flags) {
+        return (flags & CHUNKED_FLAG) != 0;
+    }
+
+    public MemcachedClient client() {
+        return client;
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    /**
+     * Get an item, assembling its value from its chunks if it was chunked. The flags of an assembled item do not
+     * include {@link #CHUNKED_FLAG} and its CAS value is that of the manifest.
+     *
+     * @param key The key.
+     * @return The response.
+     */
+    public Mono<Response> get(final String key) {
+        return get(key, MAX_ATTEMPTS);
+    }
+
+    /**
+     * Set an item, splitting the value into chunks if it is larger than the chunk size.
+     *
+     * @param key        The key.
+     * @param flags      The item flags which must not include {@link #CHUNKED_FLAG}.
+     * @param expiration The item expiration which also applies to the chunks.
+     * @param value      The value which is released once written.
+     * @return The response, which has the status {@link Status#EXISTS} or {@link Status#NOT_FOUND} if another writer
+     * replaced or deleted the item while the chunks were being written, or the status of the first chunk that could not
+     * be written.
+     */
+    public Mono<Response> set(final String key,
+                              final int flags,
+                              final int expiration,
+                              final ByteBuf value) {
+        if (isChunked(flags)) {
+            value.release();
+            return Mono.error(new IllegalArgumentException("flags must not include CHUNKED_FLAG"));
+        }
+        if (value.readableBytes() <= chunkSize) {
+            return client.set(key, flags, expiration, value);
+        }
+        final Manifest manifest = new Manifest(ThreadLocalRandom.current().nextLong(), value.readableBytes(),
+                chunkSize);
+        if (manifest.maxChunkKeyLength(key) > RequestEncoder.MAX_KEY_LENGTH) {
+            value.release();
+            return Mono.error(new IllegalArgumentException("key is too long for the keys of its chunks"));
+        }
+        return client.getDirect(key)
+                .flatMap(current -> {
+                    final long cas;
+                    final Manifest replaced;
+                    try {
+                        cas = current.status() == Status.NO_ERROR ? current.cas() : 0L;
+                        replaced = manifest(current);
+                    } finally {
+                        current.release();
+                    }
+                    return writeChunks(key, expiration, value, manifest)
+                            .flatMap(failures -> failures.isEmpty()
+                                    ? swap(key, flags, expiration, manifest, cas, replaced)
+                                    : abandon(key, manifest, failures));
+                })
+                .doFinally(signal -> value.release());
+    }
+
+    /**
+     * Delete an item and its chunks if it was chunked.
+     *
+     * @param key The key.
+     * @return The response to deleting the item.
+     */
+    public Mono<Response> delete(final String key) {
+        return client.getDirect(key)
+                .flatMap(current -> {
+                    final Manifest manifest;
+                    try {
+                        manifest = manifest(current);
+                    } finally {
+                        current.release();
+                    }
+                    final Mono<Response> deleted = client.delete(key);
+                    return manifest == null ? deleted : deleted.flatMap(response ->
+                            deleteChunks(key, manifest).thenReturn(response));
+                });
+    }
+
+    private Mono<Response> get(final String key,
+                               final int attempts) {
+        // A retry reads the manifest from the server in case the one that named the missing chunks was cached
+        final Mono<Response> read = attempts < MAX_ATTEMPTS ? client.getDirect(key) : client.get(key);
+        return read.flatMap(response -> {
+            final Manifest manifest;
+            try {
+                manifest = manifest(response);
+            } catch (final IllegalArgumentException e) {
+                response.release();
+                return Mono.error(e);
+            }
+            if (manifest == null) {
+                return Mono.just(response);
+            }
+            return readChunks(key, manifest)
+                    .map(chunks -> assemble(response, chunks))
+                    .switchIfEmpty(Mono.defer(() -> {
+                        response.release();
+                        return attempts > 1 ? get(key, attempts - 1) : Mono.just(notFound());
+                    }));
+        });
+    }
+
+    /**
+     * Read the manifest from an item.
+     *
+     * @return The manifest or {@code null} if the item does not exist or was not chunked.
+     */
+    private static Manifest manifest(final Response response) {
+        if (response.status() != Status.NO_ERROR || !isChunked(flags(response))) {
+            return null;
+        }
+        return Manifest.decode(response.value());
+    }
+
+    private static int flags(final Response response) {
+        final ByteBuf extras = response.extras();
+        return extras.readableBytes() >= 4 ? extras.getInt(extras.readerIndex()) : 0;
+    }
+
+    /**
+     * Write the chunks with quiet SETs.
+     *
+     * @return The chunks that could not be written.
+     */
+    private Mono<List<Tuple2<Mutation, Response>>> writeChunks(final String key,
+                                                               final int expiration,
+                                                               final ByteBuf value,
+                                                               final Manifest manifest) {
+        final int start = value.readerIndex();
+        return client.bulkWrite(Flux.range(0, manifest.chunks())
+                .map(chunk -> Mutation.set(manifest.chunkKey(key, chunk), 0, expiration,
+                        value.retainedSlice(start + chunk * chunkSize, manifest.chunkLength(chunk)))))
+                .collectList();
+    }
+
+    /**
+     * Replace the manifest if the item has not changed since it was read, then delete the chunks of whichever
+     * version lost.
+     */
+    private Mono<Response> swap(final String key,
+                                final int flags,
+                                final int expiration,
+                                final Manifest manifest,
+                                final long cas,
+                                final Manifest replaced) {
+        final ByteBuf encoded = manifest.encode(ByteBufAllocator.DEFAULT);
+        final Mono<Response> write = cas == 0L
+                ? client.add(key, flags | CHUNKED_FLAG, expiration, encoded)
+                : client.compareAndSet(key, flags | CHUNKED_FLAG, expiration, encoded, cas);
+        return write.flatMap(response -> {
+            if (response.status() == Status.NO_ERROR) {
+                return replaced == null ? Mono.just(response) : deleteChunks(key, replaced).thenReturn(response);
+            }
+            return deleteChunks(key, manifest).thenReturn(response);
+        });
+    }
+
+    /**
+     * Delete the chunks that were written and report the first chunk that could not be.
+     */
+    private Mono<Response> abandon(final String key,
+                                   final Manifest manifest,
+                                   final List<Tuple2<Mutation, Response>> failures) {
+        for (int i = 1; i < failures.size(); i++) {
+            failures.get(i).getT2().release();
+        }
+        return deleteChunks(key, manifest).thenReturn(failures.get(0).getT2());
+    }
+
+    /**
+     * Delete the chunks of a version with quiet DELETEs, ignoring chunks that are already gone.
+     */
+    private Mono<Void> deleteChunks(final String key,
+                                    final Manifest manifest) {
+        return client.bulkWrite(Flux.range(0, manifest.chunks())
+                .map(chunk -> Mutation.delete(manifest.chunkKey(key, chunk))))
+                .doOnNext(failure -> failure.getT2().release())
+                .onErrorResume(error -> Mono.empty())
+                .then();
+    }
+
+    /**
+     * Read the chunks with quiet GETs.
+     *
+     * @return The chunks in order, or empty if any chunk is missing in which case the chunks that were read have been
+     * released.
+     */
+    private Mono<Response[]> readChunks(final String key,
+                                        final Manifest manifest) {
+        final Response[] chunks = new Response[manifest.chunks()];
+        return client.getMulti(Flux.range(0, chunks.length).map(chunk -> manifest.chunkKey(key, chunk)))
+                .doOnNext(response -> {
+                    final int chunk = manifest.chunkIndex(key, response.key());
+                    if (chunk < 0 || chunks[chunk] != null
+                            || response.value().readableBytes() != manifest.chunkLength(chunk)) {
+                        response.release();
+                    } else {
+                        chunks[chunk] = response;
+                    }
+                })
+                .doOnError(error -> release(chunks))
+                .doOnCancel(() -> release(chunks))
+                .then(Mono.fromSupplier(() -> {
+                    for (final Response chunk : chunks) {
+                        if (chunk == null) {
+                            release(chunks);
+                            return null;
+                        }
+                    }
+                    return chunks;
+                }));
+    }
+
+    /**
+     * Combine the chunk values into a single value without copying them and release the manifest and the chunks.
+     */
+    private static Response assemble(final Response manifest,
+                                     final Response[] chunks) {
+        final CompositeByteBuf value = ByteBufAllocator.DEFAULT.compositeBuffer(chunks.length);
+        for (final Response chunk : chunks) {
+            value.addComponent(true, chunk.value().retain());
+            chunk.release();
+        }
+        final Response assembled = new Response(Opcode.GET, Status.NO_ERROR, manifest.opaque(), manifest.cas(),
+                manifest.keyBytes().retain(), Unpooled.buffer(4, 4).writeInt(flags(manifest) & ~CHUNKED_FLAG),
+                value);
+        manifest.release();
+        return assembled;
+    }
+
+    private static void release(final Response[] chunks) {
+        for (int i = 0; i < chunks.length; i++) {
+            if (chunks[i] != null) {
+                chunks[i].release();
+                chunks[i] = null;
+            }
+        }
+    }
+
+    private static Response notFound() {
+        return new Response(Opcode.GET, Status.NOT_FOUND, 0, 0L, Unpooled.EMPTY_BUFFER, Unpooled.EMPTY_BUFFER,
+                Unpooled.EMPTY_BUFFER);
+    }
+}
@@ -0,0 +1,134 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.chunk;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+
+/**
+ * Describes a value split into chunks. The manifest is stored under the value's own key and names a version that is
+ * part of every chunk key, so a new value is written to new chunk keys and readers only ever combine the chunks of
+ * the version named by the manifest they read.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class Manifest {
+
+    /**
+     * The length of an encoded manifest.
+     */
+    static final int LENGTH = 16;
+
+    private final long version;
+
+    private final int length;
+
+    private final int chunkSize;
+
+    Manifest(final long version,
+             final int length,
+             final int chunkSize) {
+        if (length < 0) {
+            throw new IllegalArgumentException("length must not be negative");
+        }
+        if (chunkSize < 1) {
+            throw new IllegalArgumentException("chunkSize must be positive");
+        }
+        this.version = version;
+        this.length = length;
+        this.chunkSize = chunkSize;
+    }
+
+    /**
+     * Decode a manifest. The buffer is not released.
+     *
+     * @param buf The encoded manifest.
+     * @return The manifest.
+     * @throws IllegalArgumentException If the buffer does not hold a valid manifest.
+     */
+    static Manifest decode(final ByteBuf buf) {
+        if (buf.readableBytes() != LENGTH) {
+            throw new IllegalArgumentException("Invalid chunk manifest");
+        }
+        final int index = buf.readerIndex();
+        return new Manifest(buf.getLong(index), buf.getInt(index + 8), buf.getInt(index + 12));
+    }
+
+    ByteBuf encode(final ByteBufAllocator allocator) {
+        return allocator.buffer(LENGTH, LENGTH)
+                .writeLong(version)
+                .writeInt(length)
+                .writeInt(chunkSize);
+    }
+
+    long version() {
+        return version;
+    }
+
+    int length() {
+        return length;
+    }
+
+    int chunkSize() {
+        return chunkSize;
+    }
+
+    int chunks() {
+        return (int) (((long) length + chunkSize - 1) / chunkSize);
+    }
+
+    /**
+     * Get the number of bytes in a chunk, which is the chunk size for every chunk except the last.
+     */
+    int chunkLength(final int chunk) {
+        return chunk == chunks() - 1 ? length - chunk * chunkSize : chunkSize;
+    }
+
+    String chunkKey(final String key,
+                    final int chunk) {
+        return key + ':' + Long.toHexString(version) + ':' + chunk;
+    }
+
+    /**
+     * Get the length in bytes of the longest chunk key this manifest could have for a key, which is that of the last
+     * chunk when the version needs all sixteen hex digits.
+     */
+    int maxChunkKeyLength(final String key) {
+        return ByteBufUtil.utf8Bytes(key) + 18 + Integer.toString(chunks() - 1).length();
+    }
+
+    /**
+     * Get the position of a chunk from its key.
+     *
+     * @return The position or {@code -1} if the key does not name a chunk of this version.
+     */
+    int chunkIndex(final String key,
+                   final String chunkKey) {
+        final String prefix = key + ':' + Long.toHexString(version) + ':';
+        if (!chunkKey.startsWith(prefix)) {
+            return -1;
+        }
+        try {
+            final int chunk = Integer.parseInt(chunkKey.substring(prefix.length()));
+            return chunk >= 0 && chunk < chunks() ? chunk : -1;
+        } catch (final NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+
+/**
+ * Convert between item values and the buffers that are sent to and received from the server. Implementations read
+ * and write the buffers directly rather than going through an intermediate array.
+ *
+ * @param <T> The type of the value.
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public interface ValueCodec<T> {
+
+    /**
+     * Decode a value. The buffer is not released and must not be retained beyond the call because the caller
+     * releases it once this method returns.
+     *
+     * @param value The buffer holding the value.
+     * @return The decoded value.
+     * @throws IllegalArgumentException If the buffer does not hold a valid value.
+     */
+    T decode(ByteBuf value);
+
+    /**
+     * Encode a value.
+     *
+     * @param value     The value.
+     * @param allocator Allocates the buffer if one is needed.
+     * @return A buffer holding the encoded value which is released by the caller.
+     */
+    ByteBuf encode(T value,
+                   ByteBufAllocator allocator);
+}
@@ -0,0 +1,176 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * The built-in value codecs.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class ValueCodecs {
+
+    /**
+     * Copies the value into a new array when decoding and wraps the array without copying when encoding.
+     */
+    public static final ValueCodec<byte[]> BYTE_ARRAY = new ByteArrayCodec();
+
+    /**
+     * Decodes the value straight into a new heap {@link ByteBuffer} and wraps the buffer without copying when
+     * encoding. The remaining bytes of the buffer are encoded and it must not be modified until the write completes.
+     */
+    public static final ValueCodec<ByteBuffer> BYTE_BUFFER = new ByteBufferCodec();
+
+    /**
+     * Encodes strings as UTF-8.
+     */
+    public static final ValueCodec<String> STRING = new StringCodec(StandardCharsets.UTF_8);
+
+    /**
+     * Encodes counters as unsigned decimal ASCII digits, which is how the server stores them, so that an item written
+     * with this codec can be incremented or decremented and an item that has been incremented or decremented can be
+     * read with this codec. Trailing spaces, which some servers leave behind when a counter shrinks, are ignored.
+     */
+    public static final ValueCodec<Long> COUNTER = new CounterCodec();
+
+    private ValueCodecs() {
+    }
+
+    /**
+     * Get a codec that encodes strings with the given character set.
+     *
+     * @param charset The character set.
+     * @return The codec.
+     */
+    public static ValueCodec<String> string(final Charset charset) {
+        return StandardCharsets.UTF_8.equals(charset) ? STRING : new StringCodec(charset);
+    }
+
+    private static final class ByteArrayCodec implements ValueCodec<byte[]> {
+
+        @Override
+        public byte[] decode(final ByteBuf value) {
+            return ByteBufUtil.getBytes(value);
+        }
+
+        @Override
+        public ByteBuf encode(final byte[] value,
+                              final ByteBufAllocator allocator) {
+            return Unpooled.wrappedBuffer(value);
+        }
+    }
+
+    private static final class ByteBufferCodec implements ValueCodec<ByteBuffer> {
+
+        @Override
+        public ByteBuffer decode(final ByteBuf value) {
+            final ByteBuffer result = ByteBuffer.allocate(value.readableBytes());
+            value.getBytes(value.readerIndex(), result);
+            result.flip();
+            return result;
+        }
+
+        @Override
+        public ByteBuf encode(final ByteBuffer value,
+                              final ByteBufAllocator allocator) {
+            return Unpooled.wrappedBuffer(value.duplicate());
+        }
+    }
+
+    private static final class StringCodec implements ValueCodec<String> {
+
+        private final Charset charset;
+
+        StringCodec(final Charset charset) {
+            this.charset = charset;
+        }
+
+        @Override
+        public String decode(final ByteBuf value) {
+            return value.toString(charset);
+        }
+
+        @Override
+        public ByteBuf encode(final String value,
+                              final ByteBufAllocator allocator) {
+            if (charset.equals(StandardCharsets.UTF_8)) {
+                return ByteBufUtil.writeUtf8(allocator, value);
+            }
+            if (charset.equals(StandardCharsets.US_ASCII)) {
+                return ByteBufUtil.writeAscii(allocator, value);
+            }
+            return ByteBufUtil.encodeString(allocator, CharBuffer.wrap(value), charset);
+        }
+    }
+
+    private static final class CounterCodec implements ValueCodec<Long> {
+
+        private static final int MAX_DIGITS = 20;
+
+        @Override
+        public Long decode(final ByteBuf value) {
+            int end = value.writerIndex();
+            while (end > value.readerIndex() && value.getByte(end - 1) == ' ') {
+                end--;
+            }
+            if (end == value.readerIndex() || end - value.readerIndex() > MAX_DIGITS) {
+                throw new IllegalArgumentException("Value is not a counter");
+            }
+            long result = 0L;
+            for (int index = value.readerIndex(); index < end; index++) {
+                final int digit = value.getByte(index) - '0';
+                if (digit < 0 || digit > 9) {
+                    throw new IllegalArgumentException("Value is not a counter");
+                }
+                final long next = result * 10 + digit;
+                if (Long.compareUnsigned(result, Long.divideUnsigned(-1L, 10)) > 0
+                        || Long.compareUnsigned(next, result * 10) < 0) {
+                    throw new IllegalArgumentException("Counter overflows 64 bits");
+                }
+                result = next;
+            }
+            return result;
+        }
+
+        @Override
+        public ByteBuf encode(final Long value,
+                              final ByteBufAllocator allocator) {
+            long remaining = value;
+            int digits = 1;
+            for (long scan = Long.divideUnsigned(remaining, 10); scan != 0; scan /= 10) {
+                digits++;
+            }
+            final ByteBuf buf = allocator.buffer(digits, digits);
+            buf.writerIndex(digits);
+            for (int index = digits - 1; index >= 0; index--) {
+                buf.setByte(index, '0' + (int) Long.remainderUnsigned(remaining, 10));
+                remaining = Long.divideUnsigned(remaining, 10);
+            }
+            return buf;
+        }
+    }
+}
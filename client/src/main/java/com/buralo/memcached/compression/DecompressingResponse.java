@@ -0,0 +1,95 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.compression;
+
+import com.buralo.memcached.Response;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A response holding a compressed value that is only decompressed when the value is first read.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class DecompressingResponse extends Response {
+
+    private final DeflateCompressor compressor;
+
+    private ByteBuf decompressed;
+
+    /**
+     * Take over the buffers of a response with a compressed value.
+     *
+     * @param compressed The response which is released.
+     * @param compressor Decompresses the value.
+     */
+    DecompressingResponse(final Response compressed,
+                          final DeflateCompressor compressor) {
+        this(compressed.rawOpcode(), compressed.rawStatus(), compressed.opaque(), compressed.cas(),
+                compressed.keyBytes().retain(), compressed.extras().retain(), compressed.value().retain(), compressor);
+        compressed.release();
+    }
+
+    private DecompressingResponse(final int rawOpcode,
+                                  final int rawStatus,
+                                  final int opaque,
+                                  final long cas,
+                                  final ByteBuf keyBytes,
+                                  final ByteBuf extras,
+                                  final ByteBuf value,
+                                  final DeflateCompressor compressor) {
+        super(rawOpcode, rawStatus, opaque, cas, keyBytes, extras, value);
+        this.compressor = compressor;
+    }
+
+    /**
+     * Get the value, decompressing it the first time it is read.
+     *
+     * @return The uncompressed value.
+     */
+    @Override
+    public ByteBuf value() {
+        ByteBuf result = decompressed;
+        if (result == null) {
+            result = compressor.decompress(compressedValue());
+            decompressed = result;
+        }
+        return result;
+    }
+
+    /**
+     * Get the value as it was received.
+     *
+     * @return The compressed value.
+     */
+    ByteBuf compressedValue() {
+        return super.value();
+    }
+
+    @Override
+    public Response retainedDuplicate() {
+        return new DecompressingResponse(rawOpcode(), rawStatus(), opaque(), cas(), keyBytes().retainedDuplicate(),
+                extras().retainedDuplicate(), compressedValue().retainedDuplicate(), compressor);
+    }
+
+    @Override
+    protected void deallocate() {
+        super.deallocate();
+        if (decompressed != null) {
+            decompressed.release();
+        }
+    }
+}
@@ -0,0 +1,359 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.compression;
+
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+
+import java.util.Queue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * Compresses values above a size threshold using the JDK's Deflate implementation.
+ * <p>
+ * A compressed value is marked by setting {@link #COMPRESSED_FLAG} in the item flags and is stored as the length of
+ * the uncompressed value as a 4 byte big-endian integer followed by a zlib stream. The length allows the value to be
+ * inflated straight into a buffer of the right size. The format is not the GZIP stream written by spymemcached so the
+ * flag is kept out of the low byte where spymemcached and other clients put their compression flags, otherwise they
+ * would misread our values and we would misread theirs.
+ * <p>
+ * Heap buffers are read and written in place. The JDK 8 {@link Deflater} and {@link Inflater} only accept arrays so
+ * direct and composite input is fed to them in chunks through a scratch array. The deflaters, inflaters and scratch
+ * arrays hold native zlib memory that is only freed when they are ended, and compression runs on whichever thread
+ * subscribes, including virtual threads, so they are kept in a small shared pool rather than per thread. A state that
+ * does not fit back in the pool is ended straight away and {@link #close()} ends the pooled states.
+ * <p>
+ * The recorded length is checked before anything is allocated, against a maximum value length and against the most
+ * that Deflate can expand the compressed bytes, so a corrupt or foreign value cannot make the reader allocate an
+ * arbitrarily large buffer. Values longer than the maximum are stored uncompressed so they can always be read back.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class DeflateCompressor implements AutoCloseable {
+
+    /**
+     * The flag bit that marks a compressed value.
+     */
+    public static final int COMPRESSED_FLAG = 0x10000;
+
+    /**
+     * The default size in bytes at or above which values are compressed.
+     */
+    public static final int DEFAULT_THRESHOLD = 4096;
+
+    /**
+     * The default maximum length in bytes of a value that is compressed or decompressed.
+     */
+    public static final int DEFAULT_MAX_LENGTH = 64 * 1024 * 1024;
+
+    /**
+     * The most that Deflate can expand its input, which is 1032 to 1 for a stream of repeated bytes.
+     */
+    private static final int MAX_RATIO = 1032;
+
+    private static final int LENGTH_PREFIX = 4;
+
+    private static final int SCRATCH_LENGTH = 16 * 1024;
+
+    private static final int POOL_SIZE = Runtime.getRuntime().availableProcessors();
+
+    private final int threshold;
+
+    private final int maxLength;
+
+    private final ByteBufAllocator allocator;
+
+    private final int level;
+
+    private final Queue<State> pool = new ArrayBlockingQueue<>(POOL_SIZE);
+
+    private volatile boolean closed;
+
+    /**
+     * Initialize a compressor with the default threshold and compression level.
+     */
+    public DeflateCompressor() {
+        this(DEFAULT_THRESHOLD, Deflater.DEFAULT_COMPRESSION, PooledByteBufAllocator.DEFAULT);
+    }
+
+    /**
+     * Initialize a compressor.
+     *
+     * @param threshold The size in bytes at or above which values are compressed.
+     * @param level     The Deflate compression level from 0 to 9, or -1 for the default.
+     * @param allocator Allocates the compressed and decompressed buffers.
+     */
+    public DeflateCompressor(final int threshold,
+                             final int level,
+                             final ByteBufAllocator allocator) {
+        this(threshold, level, DEFAULT_MAX_LENGTH, allocator);
+    }
+
+    /**
+     * Initialize a compressor.
+     *
+     * @param threshold The size in bytes at or above which values are compressed.
+     * @param level     The Deflate compression level from 0 to 9, or -1 for the default.
+     * @param maxLength The maximum length in bytes of a value that is compressed or decompressed.
+     * @param allocator Allocates the compressed and decompressed buffers.
+     */
+    public DeflateCompressor(final int threshold,
+                             final int level,
+                             final int maxLength,
+                             final ByteBufAllocator allocator) {
+        if (threshold < 1) {
+            throw new IllegalArgumentException("threshold must be positive");
+        }
+        if (level < Deflater.DEFAULT_COMPRESSION || level > Deflater.BEST_COMPRESSION) {
+            throw new IllegalArgumentException("level must be between -1 and 9");
+        }
+        if (maxLength < threshold || maxLength == Integer.MAX_VALUE) {
+            throw new IllegalArgumentException("maxLength must be at least the threshold and less than 2 GiB");
+        }
+        this.threshold = threshold;
+        this.maxLength = maxLength;
+        this.allocator = allocator;
+        this.level = level;
+    }
+
+    public int threshold() {
+        return threshold;
+    }
+
+    public int maxLength() {
+        return maxLength;
+    }
+
+    /**
+     * Get the number of idle states in the pool.
+     */
+    int pooled() {
+        return pool.size();
+    }
+
+    /**
+     * Test whether item flags mark the value as compressed.
+     *
+     * @param flags The item flags.
+     * @return {@code true} if the value is compressed.
+     */
+    public static boolean isCompressed(final int flags) {
+        return (flags & COMPRESSED_FLAG) != 0;
+    }
+
+    /**
+     * Compress a value if it is at least the threshold and no more than the maximum length in size and compression
+     * makes it smaller.
+     *
+     * @param value The value.
+     * @return The value itself if it was not compressed, otherwise a new buffer holding the compressed value in which
+     * case the original value has been released.
+     */
+    public ByteBuf compress(final ByteBuf value) {
+        final int length = value.readableBytes();
+        if (length < threshold || length > maxLength) {
+            return value;
+        }
+        final State current = acquire();
+        final Deflater deflater = current.deflater;
+        // Anything that does not fit in the length of the original value is not worth sending compressed
+        final ByteBuf out = allocator.heapBuffer(length);
+        try {
+            out.writeInt(length);
+            int index = value.readerIndex();
+            final int end = index + length;
+            while (!deflater.finished()) {
+                if (deflater.needsInput() && index < end) {
+                    index = feed(value, index, end, current.scratch, deflater::setInput);
+                    if (index == end) {
+                        deflater.finish();
+                    }
+                }
+                if (!out.isWritable()) {
+                    out.release();
+                    return value;
+                }
+                final int written = deflater.deflate(out.array(), out.arrayOffset() + out.writerIndex(),
+                        out.writableBytes());
+                out.writerIndex(out.writerIndex() + written);
+            }
+        } catch (final RuntimeException e) {
+            out.release();
+            throw e;
+        } finally {
+            release(current);
+        }
+        value.release();
+        return out;
+    }
+
+    /**
+     * Decompress a value. The compressed value is not released.
+     *
+     * @param compressed The compressed value.
+     * @return A new buffer holding the uncompressed value.
+     * @throws IllegalArgumentException If the value is not a valid compressed value.
+     */
+    public ByteBuf decompress(final ByteBuf compressed) {
+        if (compressed.readableBytes() < LENGTH_PREFIX) {
+            throw new IllegalArgumentException("Compressed value is truncated");
+        }
+        final int length = compressed.getInt(compressed.readerIndex());
+        if (length < 0 || length > maxLength
+                || length > (long) (compressed.readableBytes() - LENGTH_PREFIX) * MAX_RATIO) {
+            throw new IllegalArgumentException("Invalid uncompressed length");
+        }
+        final State current = acquire();
+        final Inflater inflater = current.inflater;
+        ByteBuf out = null;
+        try {
+            // One spare byte so that a stream that inflates to more than the recorded length is detected
+            out = allocator.heapBuffer(length + 1, length + 1);
+            int index = compressed.readerIndex() + LENGTH_PREFIX;
+            final int end = compressed.writerIndex();
+            while (!inflater.finished()) {
+                if (inflater.needsInput()) {
+                    if (index == end) {
+                        throw new IllegalArgumentException("Compressed value is truncated");
+                    }
+                    index = feed(compressed, index, end, current.scratch, inflater::setInput);
+                }
+                if (!out.isWritable() || inflater.needsDictionary()) {
+                    throw new IllegalArgumentException("Invalid compressed value");
+                }
+                final int written = inflater.inflate(out.array(), out.arrayOffset() + out.writerIndex(),
+                        out.writableBytes());
+                out.writerIndex(out.writerIndex() + written);
+            }
+            if (out.readableBytes() != length) {
+                throw new IllegalArgumentException("Uncompressed length does not match");
+            }
+            return out;
+        } catch (final DataFormatException e) {
+            out.release();
+            throw new IllegalArgumentException("Invalid compressed value", e);
+        } catch (final RuntimeException e) {
+            if (out != null) {
+                out.release();
+            }
+            throw e;
+        } finally {
+            release(current);
+        }
+    }
+
+    /**
+     * Free the native memory held by the pooled deflaters and inflaters. States in use are freed when they are
+     * returned.
+     */
+    @Override
+    public void close() {
+        closed = true;
+        State current;
+        while ((current = pool.poll()) != null) {
+            current.end();
+        }
+    }
+
+    /**
+     * Wrap a GET response so that its value is decompressed the first time it is read if the flags in the extras
+     * mark it as compressed.
+     *
+     * @param response The response which is released if it is wrapped.
+     * @return The response itself or a response that decompresses its value lazily.
+     */
+    public Response decompressing(final Response response) {
+        final ByteBuf extras = response.extras();
+        if (response.status() == Status.NO_ERROR
+                && extras.readableBytes() >= 4
+                && isCompressed(extras.getInt(extras.readerIndex()))) {
+            return new DecompressingResponse(response, this);
+        }
+        return response;
+    }
+
+    private State acquire() {
+        final State current = pool.poll();
+        return current == null ? new State(level) : current;
+    }
+
+    /**
+     * Return a state to the pool or end it if the pool is full or the compressor is closed.
+     */
+    private void release(final State current) {
+        current.deflater.reset();
+        current.inflater.reset();
+        if (closed || !pool.offer(current)) {
+            current.end();
+        } else if (closed && pool.remove(current)) {
+            // Closed while the state was being returned
+            current.end();
+        }
+    }
+
+    /**
+     * Pass the next run of input to the deflater or inflater, in place if the buffer is backed by an array or
+     * through the scratch array otherwise.
+     */
+    private static int feed(final ByteBuf buf,
+                            final int index,
+                            final int end,
+                            final byte[] scratch,
+                            final Input input) {
+        if (buf.hasArray()) {
+            input.set(buf.array(), buf.arrayOffset() + index, end - index);
+            return end;
+        }
+        final int length = Math.min(end - index, scratch.length);
+        buf.getBytes(index, scratch, 0, length);
+        input.set(scratch, 0, length);
+        return index + length;
+    }
+
+    @FunctionalInterface
+    private interface Input {
+
+        void set(byte[] bytes, int offset, int length);
+    }
+
+    /**
+     * A deflater, inflater and scratch array used by one call at a time.
+     */
+    private static final class State {
+
+        private final Deflater deflater;
+
+        private final Inflater inflater = new Inflater();
+
+        private final byte[] scratch = new byte[SCRATCH_LENGTH];
+
+        State(final int level) {
+            this.deflater = new Deflater(level);
+        }
+
+        void end() {
+            deflater.end();
+            inflater.end();
+        }
+    }
+}
@@ -0,0 +1,389 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.hash;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.util.concurrent.FastThreadLocal;
+
+import java.nio.charset.StandardCharsets;
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.zip.CRC32;
+
+/**
+ * The built-in default hashing algorithms.
+ * <p>
+ * The algorithms are plain loops over either the characters of the key or its UTF-8 encoding. Keys supplied as
+ * strings are encoded into a thread-local buffer when an algorithm works on bytes and the encoded keys are read as
+ * characters when they are ASCII, so no hash allocates except for non-ASCII encoded keys with a character-based
+ * algorithm. The CRC32 and MD5 state is held per thread.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public enum DefaultHashAlgorithms implements HashAlgorithm {
+
+    /**
+     * Uses JDK hashCode function to calculate the hash value.
+     */
+    NATIVE(false, DefaultHashAlgorithms::nativeHash),
+    CRC(true, DefaultHashAlgorithms::crcHash),
+    FNV1_64(false, DefaultHashAlgorithms::fnv1_64Hash),
+    FNV1A_64(false, DefaultHashAlgorithms::fnv1a_64Hash),
+    FNV1_32(false, DefaultHashAlgorithms::fnv1_32Hash),
+    FNV1A_32(false, DefaultHashAlgorithms::fnv1a_32Hash),
+    KETAMA(true, DefaultHashAlgorithms::ketamaHash),
+    MYSQL(false, DefaultHashAlgorithms::mysqlHash),
+    ELF(false, DefaultHashAlgorithms::elfHash),
+    RS(false, DefaultHashAlgorithms::rsHash),
+    LUA(false, DefaultHashAlgorithms::luaHash),
+    ONE_AT_A_TIME(true, DefaultHashAlgorithms::oneAtATimeHash);
+
+    private static final long FNV_64_INIT = 0xcbf29ce484222325L;
+    private static final long FNV_64_PRIME = 0x100000001b3L;
+
+    private static final long FNV_32_INIT = 2166136261L;
+    private static final long FNV_32_PRIME = 16777619;
+
+    private static final int RS_B = 378551;
+    private static final int RS_A = 63689;
+
+    private static final FastThreadLocal<HashState> STATE = new FastThreadLocal<HashState>() {
+        @Override
+        protected HashState initialValue() {
+            return new HashState();
+        }
+    };
+
+    /**
+     * {@code true} if the algorithm hashes the UTF-8 encoding of the key rather than its characters.
+     */
+    private final boolean utf8;
+
+    private final HashFunction delegate;
+
+    /**
+     * Initialize an enumeration value by supplying the delegate hash function that calculates the hash value.
+     *
+     * @param utf8     {@code true} if the delegate hashes the UTF-8 encoding of the key.
+     * @param delegate The delegate hash function.
+     */
+    DefaultHashAlgorithms(final boolean utf8,
+                          final HashFunction delegate) {
+        this.utf8 = utf8;
+        this.delegate = delegate;
+    }
+
+    /**
+     * Calculate the hash of a Memcached key.
+     *
+     * @param key The Memcached key.
+     * @return The hash value.
+     */
+    @Override
+    public long hash(final String key) {
+        if (utf8) {
+            final ByteBuf encoded = STATE.get().encode(key);
+            return delegate.hash(null, encoded.array(), encoded.arrayOffset(), encoded.readableBytes()) & 0xFFFFFFFFL;
+        }
+        return delegate.hash(key, null, 0, key.length()) & 0xFFFFFFFFL;
+    }
+
+    /**
+     * Calculate the hash of a Memcached key encoded as UTF-8.
+     *
+     * @param key    The array containing the encoded key.
+     * @param offset The offset of the key in the array.
+     * @param length The length of the encoded key.
+     * @return The hash value.
+     */
+    @Override
+    public long hash(final byte[] key,
+                     final int offset,
+                     final int length) {
+        if (utf8 || isAscii(key, offset, length)) {
+            return delegate.hash(null, key, offset, length) & 0xFFFFFFFFL;
+        }
+        return hash(new String(key, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Calculate the hash of a Memcached key encoded as UTF-8.
+     *
+     * @param key    The buffer containing the encoded key.
+     * @param offset The index of the key in the buffer.
+     * @param length The length of the encoded key.
+     * @return The hash value.
+     */
+    @Override
+    public long hash(final ByteBuf key,
+                     final int offset,
+                     final int length) {
+        if (key.hasArray()) {
+            return hash(key.array(), key.arrayOffset() + offset, length);
+        }
+        return hash(STATE.get().copy(key, offset, length), 0, length);
+    }
+
+    private static boolean isAscii(final byte[] key,
+                                   final int offset,
+                                   final int length) {
+        for (int i = offset, end = offset + length; i < end; i++) {
+            if (key[i] < 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Get a character of the key from the string, or from the bytes when the string is {@code null} in which case the
+     * bytes are known to be ASCII.
+     */
+    private static int charAt(final String key,
+                              final byte[] bytes,
+                              final int offset,
+                              final int index) {
+        return key != null ? key.charAt(index) : bytes[offset + index];
+    }
+
+    private static long nativeHash(final String key,
+                                   final byte[] bytes,
+                                   final int offset,
+                                   final int length) {
+        if (key != null) {
+            return key.hashCode();
+        }
+        int hash = 0;
+        for (int i = 0; i < length; i++) {
+            hash = 31 * hash + bytes[offset + i];
+        }
+        return hash;
+    }
+
+    /**
+     * Calculate a string hash using CRC32.
+     */
+    private static long crcHash(final String key,
+                                final byte[] bytes,
+                                final int offset,
+                                final int length) {
+        final CRC32 crc32 = STATE.get().crc32;
+        crc32.reset();
+        crc32.update(bytes, offset, length);
+        return (crc32.getValue() >> 16) & 0x7FFFL;
+    }
+
+    private static long fnv1_64Hash(final String key,
+                                    final byte[] bytes,
+                                    final int offset,
+                                    final int length) {
+        return fnv1_Hash(key, bytes, offset, length, FNV_64_INIT, FNV_64_PRIME);
+    }
+
+    private static long fnv1a_64Hash(final String key,
+                                     final byte[] bytes,
+                                     final int offset,
+                                     final int length) {
+        return fnv1a_Hash(key, bytes, offset, length, FNV_64_INIT, FNV_64_PRIME);
+    }
+
+    private static long fnv1_32Hash(final String key,
+                                    final byte[] bytes,
+                                    final int offset,
+                                    final int length) {
+        return fnv1_Hash(key, bytes, offset, length, FNV_32_INIT, FNV_32_PRIME);
+    }
+
+    private static long fnv1a_32Hash(final String key,
+                                     final byte[] bytes,
+                                     final int offset,
+                                     final int length) {
+        return fnv1a_Hash(key, bytes, offset, length, FNV_32_INIT, FNV_32_PRIME);
+    }
+
+    private static long fnv1_Hash(final String key,
+                                  final byte[] bytes,
+                                  final int offset,
+                                  final int length,
+                                  final long init,
+                                  final long prime) {
+        long rv = init;
+        for (int i = 0; i < length; i++) {
+            rv = (rv * prime) ^ charAt(key, bytes, offset, i);
+        }
+        return rv;
+    }
+
+    private static long fnv1a_Hash(final String key,
+                                   final byte[] bytes,
+                                   final int offset,
+                                   final int length,
+                                   final long init,
+                                   final long prime) {
+        long rv = init;
+        for (int i = 0; i < length; i++) {
+            rv = (rv ^ charAt(key, bytes, offset, i)) * prime;
+        }
+        return rv;
+    }
+
+    private static long ketamaHash(final String key,
+                                   final byte[] bytes,
+                                   final int offset,
+                                   final int length) {
+        final byte[] hashBytes = STATE.get().md5(bytes, offset, length);
+        return ((hashBytes[3] & 0xFFL) << 24) | ((hashBytes[2] & 0xFFL) << 16) | ((hashBytes[1] & 0xFFL) << 8) | (hashBytes[0] & 0xFFL);
+    }
+
+    private static long mysqlHash(final String key,
+                                  final byte[] bytes,
+                                  final int offset,
+                                  final int length) {
+        long rv = 0L;
+        for (int i = 0, nr2 = 4; i < length; i++, nr2 += 3) {
+            rv ^= ((rv & 63) + nr2) * charAt(key, bytes, offset, i) + (rv << 8);
+        }
+        return rv;
+    }
+
+    private static long elfHash(final String key,
+                                final byte[] bytes,
+                                final int offset,
+                                final int length) {
+        long rv = 0L;
+        for (int i = 0; i < length; i++) {
+            rv = (rv << 4) + charAt(key, bytes, offset, i);
+            final long x = rv & 0xF0000000L;
+            if (x != 0) {
+                rv = (rv ^ x >> 24) & ~x;
+            }
+        }
+        return rv & 0x7FFFFFFFL;
+    }
+
+    private static long rsHash(final String key,
+                               final byte[] bytes,
+                               final int offset,
+                               final int length) {
+        long rv = 0L;
+        int a = RS_A;
+        for (int i = 0; i < length; i++) {
+            rv = rv * a + charAt(key, bytes, offset, i);
+            a *= RS_B;
+        }
+        return rv & 0x7FFFFFFF;
+    }
+
+    private static long luaHash(final String key,
+                                final byte[] bytes,
+                                final int offset,
+                                final int length) {
+        final int step = (length >> 5) + 1;
+        long rv = length;
+        for (int len = length; len >= step; len -= step) {
+            rv = rv ^ (rv << 5) + (rv >> 2) + charAt(key, bytes, offset, len - 1);
+        }
+        return rv;
+    }
+
+    private static long oneAtATimeHash(final String key,
+                                       final byte[] bytes,
+                                       final int offset,
+                                       final int length) {
+        int hash = 0;
+        for (int i = offset, end = offset + length; i < end; i++) {
+            hash += (bytes[i] & 0xFF);
+            hash += (hash << 10);
+            hash ^= (hash >>> 6);
+        }
+        hash += (hash << 3);
+        hash ^= (hash >>> 11);
+        hash += (hash << 15);
+        return hash;
+    }
+
+    /**
+     * Defines an interface for lambda functions that calculate hashes from keys. The key is supplied either as a
+     * string, or as UTF-8 bytes when the string is {@code null}.
+     */
+    @FunctionalInterface
+    interface HashFunction {
+
+        /**
+         * Calculate hashes from keys.
+         *
+         * @param key    Key string or {@code null} if the key is supplied as bytes.
+         * @param bytes  The array containing the encoded key if the key string is {@code null}.
+         * @param offset The offset of the encoded key.
+         * @param length The number of characters in the key string or bytes in the encoded key.
+         * @return The hash value.
+         */
+        long hash(String key, byte[] bytes, int offset, int length);
+    }
+
+    /**
+     * The per-thread state used to hash keys without allocating.
+     */
+    private static final class HashState {
+
+        private final ByteBuf buffer = Unpooled.buffer(256);
+
+        private final CRC32 crc32 = new CRC32();
+
+        private final MessageDigest md5;
+
+        private final byte[] digest = new byte[16];
+
+        private HashState() {
+            try {
+                md5 = MessageDigest.getInstance("MD5");
+            } catch (final NoSuchAlgorithmException e) {
+                throw new UnsupportedOperationException("MD5 not supported", e);
+            }
+        }
+
+        private ByteBuf encode(final String key) {
+            buffer.clear();
+            ByteBufUtil.writeUtf8(buffer, key);
+            return buffer;
+        }
+
+        private byte[] copy(final ByteBuf key,
+                            final int offset,
+                            final int length) {
+            buffer.clear();
+            buffer.writeBytes(key, offset, length);
+            return buffer.array();
+        }
+
+        private byte[] md5(final byte[] bytes,
+                           final int offset,
+                           final int length) {
+            md5.update(bytes, offset, length);
+            try {
+                md5.digest(digest, 0, digest.length);
+            } catch (final DigestException e) {
+                throw new IllegalStateException("MD5 digest failed", e);
+            }
+            return digest;
+        }
+    }
+}
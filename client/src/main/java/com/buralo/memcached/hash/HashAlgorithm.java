@@ -0,0 +1,72 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.hash;
+
+import io.netty.buffer.ByteBuf;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Calculate the hash of a Memcached key.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface HashAlgorithm {
+
+    /**
+     * Calculate the hash of a Memcached key.
+     *
+     * @param key The Memcached key.
+     * @return The hash.
+     */
+    long hash(String key);
+
+    /**
+     * Calculate the hash of a Memcached key that has been encoded as UTF-8. The result is the same as hashing the
+     * decoded key.
+     *
+     * @param key    The array containing the encoded key.
+     * @param offset The offset of the key in the array.
+     * @param length The length of the encoded key.
+     * @return The hash.
+     */
+    default long hash(final byte[] key,
+                      final int offset,
+                      final int length) {
+        return hash(new String(key, offset, length, StandardCharsets.UTF_8));
+    }
+
+    /**
+     * Calculate the hash of a Memcached key that has been encoded as UTF-8. The result is the same as hashing the
+     * decoded key.
+     *
+     * @param key    The buffer containing the encoded key.
+     * @param offset The index of the key in the buffer.
+     * @param length The length of the encoded key.
+     * @return The hash.
+     */
+    default long hash(final ByteBuf key,
+                      final int offset,
+                      final int length) {
+        if (key.hasArray()) {
+            return hash(key.array(), key.arrayOffset() + offset, length);
+        }
+        return hash(key.toString(offset, length, StandardCharsets.UTF_8));
+    }
+}
@@ -0,0 +1,197 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.health;
+
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import com.buralo.memcached.hash.HashAlgorithm;
+import com.buralo.memcached.locator.KetamaNodeLocator;
+import com.buralo.memcached.locator.NodeLocator;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.core.scheduler.Scheduler;
+import reactor.core.scheduler.Schedulers;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * A ketama locator that tracks the health of each server and removes unhealthy servers from the continuum until they
+ * recover.
+ * <p>
+ * Every node is wrapped with a circuit breaker that counts consecutive I/O errors and timeouts from requests and from
+ * NOOP heartbeats sent to idle servers. When a server reaches the failure threshold it is ejected: its keys move to
+ * the next servers on the continuum, the requests waiting on it fail at once and requests that still reach it fail
+ * without being sent. After the retry interval it is probed with a NOOP and put back if the probe succeeds.
+ * <p>
+ * Lookups read the continuum from a volatile field without locking. The continuum is rebuilt on the health thread,
+ * never on an event loop. If every server is ejected the continuum keeps them all so keys still map to a server, and
+ * requests fail fast until one recovers.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class HealthCheckedNodeLocator implements NodeLocator<MemcachedNode>, AutoCloseable {
+
+    private final List<MonitoredNode> nodes;
+
+    private final KetamaNodeLocator<MemcachedNode> continuum;
+
+    private final Scheduler scheduler;
+
+    private final Disposable heartbeats;
+
+    /**
+     * Initialize a locator that hashes keys with the ketama hash.
+     *
+     * @param nodes  One connection pool for each server.
+     * @param policy Controls when servers are ejected and probed.
+     */
+    public HealthCheckedNodeLocator(final Collection<? extends MemcachedNode> nodes,
+                                    final HealthPolicy policy) {
+        this(nodes, policy, DefaultHashAlgorithms.KETAMA);
+    }
+
+    /**
+     * Initialize the locator.
+     *
+     * @param nodes         One connection pool for each server.
+     * @param policy        Controls when servers are ejected and probed.
+     * @param hashAlgorithm The algorithm used to hash the Memcached keys.
+     */
+    public HealthCheckedNodeLocator(final Collection<? extends MemcachedNode> nodes,
+                                    final HealthPolicy policy,
+                                    final HashAlgorithm hashAlgorithm) {
+        final List<MonitoredNode> monitored = new ArrayList<>(nodes.size());
+        for (final MemcachedNode node : nodes) {
+            monitored.add(new MonitoredNode(node, policy, this::membershipChanged));
+        }
+        this.nodes = Collections.unmodifiableList(monitored);
+        this.continuum = new KetamaNodeLocator<>(new ArrayList<MemcachedNode>(this.nodes),
+                node -> KetamaNodeLocator.nodeKey(node.address()),
+                node -> 1,
+                hashAlgorithm);
+        this.scheduler = Schedulers.newSingle("memcached-health", true);
+        this.heartbeats = Flux.interval(policy.heartbeatInterval(), scheduler)
+                .subscribe(tick -> heartbeat());
+    }
+
+    @Override
+    public MemcachedNode primary(final String key) {
+        return continuum.primary(key);
+    }
+
+    @Override
+    public List<MemcachedNode> replicas(final String key,
+                                       final int count) {
+        return continuum.replicas(key, count);
+    }
+
+    /**
+     * Get every node whatever its health.
+     *
+     * @return The nodes.
+     */
+    public List<? extends MemcachedNode> nodes() {
+        return nodes;
+    }
+
+    /**
+     * Get the nodes currently on the continuum.
+     *
+     * @return The healthy nodes, or every node if none is healthy.
+     */
+    public List<MemcachedNode> healthyNodes() {
+        return continuum.nodes();
+    }
+
+    /**
+     * Get the health of a server.
+     *
+     * @param address The server address.
+     * @return The health.
+     * @throws IllegalArgumentException If the server is not known to the locator.
+     */
+    public NodeState state(final InetSocketAddress address) {
+        return node(address).state();
+    }
+
+    /**
+     * Get the number of times a server has been ejected.
+     *
+     * @param address The server address.
+     * @return The number of ejections.
+     * @throws IllegalArgumentException If the server is not known to the locator.
+     */
+    public long ejections(final InetSocketAddress address) {
+        return node(address).ejections();
+    }
+
+    /**
+     * Stop sending heartbeats. The nodes are not closed.
+     */
+    @Override
+    public void close() {
+        heartbeats.dispose();
+        scheduler.dispose();
+    }
+
+    private MonitoredNode node(final InetSocketAddress address) {
+        for (final MonitoredNode node : nodes) {
+            if (node.address().equals(address)) {
+                return node;
+            }
+        }
+        throw new IllegalArgumentException("Unknown server " + address);
+    }
+
+    private void heartbeat() {
+        final long now = System.nanoTime();
+        for (final MonitoredNode node : nodes) {
+            node.heartbeat(now);
+        }
+    }
+
+    private void membershipChanged() {
+        try {
+            scheduler.schedule(this::rebuild);
+        } catch (final RejectedExecutionException e) {
+            // The locator has been closed
+        }
+    }
+
+    /**
+     * Put the healthy nodes on the continuum. Rebuilding from the current states rather than applying each change
+     * means changes that race each other cannot leave the continuum out of date.
+     */
+    private void rebuild() {
+        final List<MemcachedNode> healthy = new ArrayList<>(nodes.size());
+        for (final MonitoredNode node : nodes) {
+            if (node.state() == NodeState.HEALTHY) {
+                healthy.add(node);
+            }
+        }
+        final List<MemcachedNode> members = healthy.isEmpty() ? new ArrayList<>(nodes) : healthy;
+        if (!members.equals(continuum.nodes())) {
+            continuum.setNodes(members);
+        }
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.health;
+
+import java.time.Duration;
+
+/**
+ * Controls how the health of each server is judged. A server is ejected after a number of consecutive failed
+ * requests or heartbeats, where a failure is an I/O error such as a refused connection, or a timeout. Once it has been
+ * ejected for the retry interval it is probed with a NOOP and readmitted if the probe succeeds.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class HealthPolicy {
+
+    /**
+     * The default number of consecutive failures that ejects a server.
+     */
+    public static final int DEFAULT_FAILURE_THRESHOLD = 3;
+
+    /**
+     * The default time to wait for a response before a request counts as failed.
+     */
+    public static final Duration DEFAULT_REQUEST_TIMEOUT = Duration.ofSeconds(1);
+
+    /**
+     * The default interval between heartbeats to healthy servers.
+     */
+    public static final Duration DEFAULT_HEARTBEAT_INTERVAL = Duration.ofSeconds(1);
+
+    /**
+     * The default time to wait for a heartbeat or probe response.
+     */
+    public static final Duration DEFAULT_HEARTBEAT_TIMEOUT = Duration.ofMillis(500);
+
+    /**
+     * The default time a server stays ejected before it is probed.
+     */
+    public static final Duration DEFAULT_RETRY_INTERVAL = Duration.ofSeconds(5);
+
+    /**
+     * The default policy.
+     */
+    public static final HealthPolicy DEFAULT = new HealthPolicy(DEFAULT_FAILURE_THRESHOLD, DEFAULT_REQUEST_TIMEOUT,
+            DEFAULT_HEARTBEAT_INTERVAL, DEFAULT_HEARTBEAT_TIMEOUT, DEFAULT_RETRY_INTERVAL);
+
+    private final int failureThreshold;
+
+    private final Duration requestTimeout;
+
+    private final Duration heartbeatInterval;
+
+    private final Duration heartbeatTimeout;
+
+    private final Duration retryInterval;
+
+    /**
+     * Initialize a policy.
+     *
+     * @param failureThreshold  The number of consecutive failures that ejects a server.
+     * @param requestTimeout    The time to wait for a response before a request fails, or {@link Duration#ZERO} to
+     *                          wait indefinitely.
+     * @param heartbeatInterval The interval between heartbeats to healthy servers and checks for servers to probe.
+     * @param heartbeatTimeout  The time to wait for a heartbeat or probe response.
+     * @param retryInterval     The time a server stays ejected before it is probed.
+     */
+    public HealthPolicy(final int failureThreshold,
+                        final Duration requestTimeout,
+                        final Duration heartbeatInterval,
+                        final Duration heartbeatTimeout,
+                        final Duration retryInterval) {
+        if (failureThreshold < 1) {
+            throw new IllegalArgumentException("failureThreshold must be positive");
+        }
+        if (requestTimeout.isNegative()) {
+            throw new IllegalArgumentException("requestTimeout must not be negative");
+        }
+        if (heartbeatInterval.isNegative() || heartbeatInterval.isZero()) {
+            throw new IllegalArgumentException("heartbeatInterval must be positive");
+        }
+        if (heartbeatTimeout.isNegative() || heartbeatTimeout.isZero()) {
+            throw new IllegalArgumentException("heartbeatTimeout must be positive");
+        }
+        if (retryInterval.isNegative()) {
+            throw new IllegalArgumentException("retryInterval must not be negative");
+        }
+        this.failureThreshold = failureThreshold;
+        this.requestTimeout = requestTimeout;
+        this.heartbeatInterval = heartbeatInterval;
+        this.heartbeatTimeout = heartbeatTimeout;
+        this.retryInterval = retryInterval;
+    }
+
+    public int failureThreshold() {
+        return failureThreshold;
+    }
+
+    public Duration requestTimeout() {
+        return requestTimeout;
+    }
+
+    public Duration heartbeatInterval() {
+        return heartbeatInterval;
+    }
+
+    public Duration heartbeatTimeout() {
+        return heartbeatTimeout;
+    }
+
+    public Duration retryInterval() {
+        return retryInterval;
+    }
+
+    @Override
+    public String toString() {
+        return "HealthPolicy{failureThreshold=" + failureThreshold
+                + ", requestTimeout=" + requestTimeout
+                + ", heartbeatInterval=" + heartbeatInterval
+                + ", heartbeatTimeout=" + heartbeatTimeout
+                + ", retryInterval=" + retryInterval
+                + '}';
+    }
+}
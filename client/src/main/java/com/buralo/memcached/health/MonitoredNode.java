@@ -0,0 +1,231 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.health;
+
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A node wrapped with a circuit breaker. Consecutive failures are counted on the lock-free request path and the
+ * state moves between healthy, ejected and probing by compare-and-set. Requests to a node that is not healthy fail
+ * without being sent.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class MonitoredNode implements MemcachedNode {
+
+    private static final Request NOOP = (encoder, opaque) -> encoder.noop(opaque);
+
+    private final MemcachedNode delegate;
+
+    private final HealthPolicy policy;
+
+    private final long retryNanos;
+
+    private final long heartbeatNanos;
+
+    /**
+     * Called when the node is ejected or readmitted.
+     */
+    private final Runnable membershipChanged;
+
+    private final AtomicReference<NodeState> state = new AtomicReference<>(NodeState.HEALTHY);
+
+    private final AtomicInteger failures = new AtomicInteger();
+
+    private final AtomicBoolean heartbeating = new AtomicBoolean();
+
+    private final LongAdder ejections = new LongAdder();
+
+    private volatile long ejectedAt;
+
+    /**
+     * When the last response was received, so that a heartbeat is only sent to a server that has been idle.
+     */
+    private volatile long respondedAt = System.nanoTime();
+
+    MonitoredNode(final MemcachedNode delegate,
+                  final HealthPolicy policy,
+                  final Runnable membershipChanged) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.retryNanos = policy.retryInterval().toNanos();
+        this.heartbeatNanos = policy.heartbeatInterval().toNanos();
+        this.membershipChanged = membershipChanged;
+    }
+
+    MemcachedNode delegate() {
+        return delegate;
+    }
+
+    NodeState state() {
+        return state.get();
+    }
+
+    long ejections() {
+        return ejections.sum();
+    }
+
+    @Override
+    public InetSocketAddress address() {
+        return delegate.address();
+    }
+
+    @Override
+    public int maxInFlight() {
+        return delegate.maxInFlight();
+    }
+
+    @Override
+    public int capacity() {
+        return delegate.capacity();
+    }
+
+    @Override
+    public int outstanding() {
+        return delegate.outstanding();
+    }
+
+    @Override
+    public double saturation() {
+        return delegate.saturation();
+    }
+
+    @Override
+    public Mono<Response> execute(final Request request) {
+        if (state.get() != NodeState.HEALTHY) {
+            request.discard();
+            return Mono.error(new NodeUnavailableException(address(), null));
+        }
+        return observe(delegate.execute(request), policy.requestTimeout());
+    }
+
+    @Override
+    public Flux<Response> executeQuiet(final List<? extends Request> requests) {
+        if (state.get() != NodeState.HEALTHY) {
+            requests.forEach(Request::discard);
+            return Flux.error(new NodeUnavailableException(address(), null));
+        }
+        final Flux<Response> responses = delegate.executeQuiet(requests);
+        return (policy.requestTimeout().isZero() ? responses : responses.timeout(policy.requestTimeout()))
+                .doOnComplete(this::onSuccess)
+                .doOnError(this::onFailure);
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return delegate.close();
+    }
+
+    @Override
+    public void abort(final Throwable cause) {
+        delegate.abort(cause);
+    }
+
+    /**
+     * Send a heartbeat to a healthy node that has not responded for the heartbeat interval or a probe to a node that
+     * has been ejected for the retry interval. Only one heartbeat or probe is outstanding at a time.
+     *
+     * @param now The current time from {@link System#nanoTime()}.
+     */
+    void heartbeat(final long now) {
+        final NodeState current = state.get();
+        if (current == NodeState.HEALTHY) {
+            if (now - respondedAt >= heartbeatNanos && heartbeating.compareAndSet(false, true)) {
+                observe(delegate.execute(NOOP), policy.heartbeatTimeout())
+                        .doFinally(signal -> heartbeating.set(false))
+                        .subscribe(Response::release, error -> {
+                        });
+            }
+        } else if (current == NodeState.EJECTED && now - ejectedAt >= retryNanos
+                && state.compareAndSet(NodeState.EJECTED, NodeState.PROBING)) {
+            delegate.execute(NOOP)
+                    .timeout(policy.heartbeatTimeout())
+                    .subscribe(response -> {
+                        response.release();
+                        readmit();
+                    }, error -> {
+                        ejectedAt = System.nanoTime();
+                        state.set(NodeState.EJECTED);
+                    });
+        }
+    }
+
+    private Mono<Response> observe(final Mono<Response> response,
+                                   final Duration timeout) {
+        return (timeout.isZero() ? response : response.timeout(timeout))
+                .doOnNext(received -> onSuccess())
+                .doOnError(this::onFailure);
+    }
+
+    private void onSuccess() {
+        respondedAt = System.nanoTime();
+        if (failures.get() != 0) {
+            failures.set(0);
+        }
+    }
+
+    private void onFailure(final Throwable error) {
+        if (!isNodeFailure(error) || state.get() != NodeState.HEALTHY) {
+            return;
+        }
+        if (failures.incrementAndGet() >= policy.failureThreshold()
+                && state.compareAndSet(NodeState.HEALTHY, NodeState.EJECTED)) {
+            ejectedAt = System.nanoTime();
+            ejections.increment();
+            membershipChanged.run();
+            // Requests still waiting on the node fail now rather than at their timeouts
+            delegate.abort(new NodeUnavailableException(address(), error));
+        }
+    }
+
+    private void readmit() {
+        failures.set(0);
+        if (state.compareAndSet(NodeState.PROBING, NodeState.HEALTHY)) {
+            membershipChanged.run();
+        }
+    }
+
+    /**
+     * Check if an error says something about the server rather than the request, that is an I/O error or a timeout.
+     */
+    private static boolean isNodeFailure(final Throwable error) {
+        for (Throwable cause = error; cause != null; cause = cause.getCause()) {
+            if (cause instanceof NodeUnavailableException) {
+                return false;
+            }
+            if (cause instanceof IOException || cause instanceof TimeoutException) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
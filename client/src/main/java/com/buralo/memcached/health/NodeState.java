@@ -0,0 +1,42 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.health;
+
+/**
+ * The health of a server as seen by a {@link HealthCheckedNodeLocator}.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public enum NodeState {
+
+    /**
+     * The server is on the ring and receiving requests.
+     */
+    HEALTHY,
+
+    /**
+     * The server failed too many consecutive requests or heartbeats and has been removed from the ring. Requests
+     * that still reach it fail at once.
+     */
+    EJECTED,
+
+    /**
+     * The server has been ejected for the retry interval and a probe is checking whether it has recovered.
+     */
+    PROBING
+}
@@ -0,0 +1,49 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.health;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Signals that a request was not sent because its server has been ejected, or that a request in flight was failed
+ * when its server was ejected.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class NodeUnavailableException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final InetSocketAddress address;
+
+    /**
+     * Initialize the exception.
+     *
+     * @param address The server address.
+     * @param cause   The failure that caused the server to be ejected or {@code null}.
+     */
+    public NodeUnavailableException(final InetSocketAddress address,
+                                    final Throwable cause) {
+        super("Memcached server " + address + " is unavailable", cause);
+        this.address = address;
+    }
+
+    public InetSocketAddress address() {
+        return address;
+    }
+}
@@ -0,0 +1,68 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.hotkey;
+
+/**
+ * A key that is among the most frequently read from a server.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class HotKey {
+
+    private final String key;
+
+    private final long requests;
+
+    private final double share;
+
+    HotKey(final String key,
+           final long requests,
+           final double share) {
+        this.key = key;
+        this.requests = requests;
+        this.share = share;
+    }
+
+    public String key() {
+        return key;
+    }
+
+    /**
+     * Get the estimated number of reads of the key in the window, scaled up by the sample rate. Estimates from the
+     * count-min sketch may be slightly high but are never low.
+     *
+     * @return The estimated number of reads.
+     */
+    public long requests() {
+        return requests;
+    }
+
+    /**
+     * Get the estimated fraction of the reads from the server that were for the key.
+     *
+     * @return The share between 0 and 1.
+     */
+    public double share() {
+        return share;
+    }
+
+    @Override
+    public String toString() {
+        return key + "=" + requests;
+    }
+}
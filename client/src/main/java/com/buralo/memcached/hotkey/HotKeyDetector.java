@@ -0,0 +1,187 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.hotkey;
+
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import com.buralo.memcached.hash.HashAlgorithm;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Detects the keys that are read most often from each server so that hot spots can be seen as they develop.
+ * <p>
+ * Reads are sampled and each sampled key is counted in a count-min sketch. The sketch estimate is then offered to a
+ * fixed number of space-saving candidates that hold the hottest keys. Both are kept for each server over a sliding
+ * window, so the memory used is constant and recording only takes atomic increments and, when a key becomes a
+ * candidate, a compare-and-set.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class HotKeyDetector {
+
+    /**
+     * The default number of hot keys tracked for each server.
+     */
+    public static final int DEFAULT_CAPACITY = 16;
+
+    /**
+     * The default length of the sliding window.
+     */
+    public static final Duration DEFAULT_WINDOW = Duration.ofSeconds(10);
+
+    /**
+     * The default sample rate which counts one read in eight.
+     */
+    public static final int DEFAULT_SAMPLE_RATE = 8;
+
+    private final ConcurrentMap<InetSocketAddress, KeyTracker> trackers = new ConcurrentHashMap<>();
+
+    private final int capacity;
+
+    private final long windowNanos;
+
+    private final int sampleRate;
+
+    private final HashAlgorithm hashAlgorithm;
+
+    /**
+     * Initialize a detector with the default capacity, window and sample rate.
+     */
+    public HotKeyDetector() {
+        this(DEFAULT_CAPACITY, DEFAULT_WINDOW, DEFAULT_SAMPLE_RATE);
+    }
+
+    /**
+     * Initialize a detector that hashes keys using FNV-1a.
+     *
+     * @param capacity   The number of hot keys tracked for each server.
+     * @param window     The length of the sliding window.
+     * @param sampleRate Count one read in this many, or every read if {@code 1}.
+     */
+    public HotKeyDetector(final int capacity,
+                          final Duration window,
+                          final int sampleRate) {
+        this(capacity, window, sampleRate, DefaultHashAlgorithms.FNV1A_32);
+    }
+
+    /**
+     * Initialize a detector.
+     *
+     * @param capacity      The number of hot keys tracked for each server.
+     * @param window        The length of the sliding window.
+     * @param sampleRate    Count one read in this many, or every read if {@code 1}.
+     * @param hashAlgorithm Hashes the keys into the count-min sketch.
+     */
+    public HotKeyDetector(final int capacity,
+                          final Duration window,
+                          final int sampleRate,
+                          final HashAlgorithm hashAlgorithm) {
+        if (capacity < 1) {
+            throw new IllegalArgumentException("capacity must be positive");
+        }
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        if (sampleRate < 1) {
+            throw new IllegalArgumentException("sampleRate must be positive");
+        }
+        this.capacity = capacity;
+        this.windowNanos = window.toNanos();
+        this.sampleRate = sampleRate;
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    /**
+     * Record a read of a key from a server, subject to sampling.
+     *
+     * @param node The server address.
+     * @param key  The key.
+     */
+    public void record(final InetSocketAddress node,
+                       final String key) {
+        if (sampleRate == 1 || ThreadLocalRandom.current().nextInt(sampleRate) == 0) {
+            tracker(node).record(key, (int) hashAlgorithm.hash(key));
+        }
+    }
+
+    /**
+     * Check if a key is currently one of the hottest keys read from a server.
+     *
+     * @param node The server address.
+     * @param key  The key.
+     * @return {@code true} if the key is hot.
+     */
+    public boolean isHot(final InetSocketAddress node,
+                         final String key) {
+        final KeyTracker tracker = trackers.get(node);
+        return tracker != null && tracker.contains(key, (int) hashAlgorithm.hash(key));
+    }
+
+    /**
+     * Get the hottest keys read from a server in the window.
+     *
+     * @param node The server address.
+     * @return The hot keys in descending order of reads.
+     */
+    public List<HotKey> hotKeys(final InetSocketAddress node) {
+        final KeyTracker tracker = trackers.get(node);
+        if (tracker == null) {
+            return Collections.emptyList();
+        }
+        final Map<String, Long> counts = new HashMap<>();
+        final long total = tracker.snapshot(counts);
+        final List<HotKey> hotKeys = new ArrayList<>(counts.size());
+        for (final Map.Entry<String, Long> entry : counts.entrySet()) {
+            final long count = entry.getValue();
+            hotKeys.add(new HotKey(entry.getKey(), count * sampleRate, total == 0 ? 0.0 : Math.min(1.0,
+                    (double) count / total)));
+        }
+        hotKeys.sort(Comparator.comparingLong(HotKey::requests).reversed());
+        return hotKeys.size() > capacity ? new ArrayList<>(hotKeys.subList(0, capacity)) : hotKeys;
+    }
+
+    /**
+     * Get the hottest keys read from every server in the window.
+     *
+     * @return The hot keys in descending order of reads for each server address.
+     */
+    public Map<InetSocketAddress, List<HotKey>> hotKeys() {
+        final Map<InetSocketAddress, List<HotKey>> hotKeys = new LinkedHashMap<>();
+        for (final InetSocketAddress node : trackers.keySet()) {
+            hotKeys.put(node, hotKeys(node));
+        }
+        return hotKeys;
+    }
+
+    private KeyTracker tracker(final InetSocketAddress node) {
+        final KeyTracker tracker = trackers.get(node);
+        return tracker != null ? tracker : trackers.computeIfAbsent(node, address -> new KeyTracker(capacity,
+                windowNanos));
+    }
+}
@@ -0,0 +1,264 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.hotkey;
+
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Tracks the most frequently read keys of one server over a sliding window. The window is split into two halves, each
+ * with its own count-min sketch and space-saving candidates. When the current half ends the older half is cleared and
+ * reused, so the counts cover between one half and the whole of the window and the memory used never grows.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class KeyTracker {
+
+    private static final int DEPTH = 4;
+
+    private static final int WIDTH_BITS = 10;
+
+    private static final int WIDTH = 1 << WIDTH_BITS;
+
+    /**
+     * Odd multipliers for the multiply-shift hash of each row of the sketch.
+     */
+    private static final int[] SEEDS = {0x9E3779B9, 0x85EBCA6B, 0xC2B2AE35, 0x27D4EB2F};
+
+    private final long halfWindowNanos;
+
+    private final AtomicReference<Window> current;
+
+    private volatile Window previous;
+
+    KeyTracker(final int capacity,
+               final long windowNanos) {
+        this.halfWindowNanos = Math.max(1L, windowNanos / 2);
+        final long now = System.nanoTime();
+        this.current = new AtomicReference<>(new Window(capacity, now));
+        this.previous = new Window(capacity, now - halfWindowNanos);
+    }
+
+    /**
+     * Count a sampled read and offer the key as a candidate.
+     *
+     * @param key  The key.
+     * @param hash The hash of the key.
+     */
+    void record(final String key,
+                final int hash) {
+        final Window window = current(System.nanoTime());
+        window.total.incrementAndGet();
+        final long count = window.increment(hash) + previous.estimate(hash);
+        window.offer(key, hash, count);
+    }
+
+    /**
+     * Check if a key is currently one of the candidates.
+     *
+     * @param key  The key.
+     * @param hash The hash of the key.
+     * @return {@code true} if the key is hot.
+     */
+    boolean contains(final String key,
+                     final int hash) {
+        final Window window = current(System.nanoTime());
+        return window.contains(key, hash) || previous.contains(key, hash);
+    }
+
+    /**
+     * Get the sampled count of every candidate over the whole window.
+     *
+     * @param counts Receives the counts keyed by key.
+     * @return The total number of sampled reads.
+     */
+    long snapshot(final Map<String, Long> counts) {
+        final Window window = current(System.nanoTime());
+        final Window older = previous;
+        window.collect(counts, older);
+        older.collect(counts, window);
+        return window.total.get() + older.total.get();
+    }
+
+    /**
+     * Get the current half of the window, recycling the older half if the current half has ended. Recording that
+     * races with the rotation may be counted in either half or lost which is acceptable for an estimate.
+     */
+    private Window current(final long now) {
+        final Window window = current.get();
+        if (now - window.start < halfWindowNanos) {
+            return window;
+        }
+        final Window recycled = previous;
+        if (recycled == window || !window.rotating.compareAndSet(0L, 1L)) {
+            return window;
+        }
+        recycled.clear(now);
+        if (now - window.start >= 2 * halfWindowNanos) {
+            // Nothing was read for a whole window so the current half is stale as well
+            window.clear(now - halfWindowNanos);
+        }
+        previous = window;
+        current.set(recycled);
+        return recycled;
+    }
+
+    /**
+     * One half of the sliding window.
+     */
+    private static final class Window {
+
+        private final AtomicLongArray sketch = new AtomicLongArray(DEPTH * WIDTH);
+
+        private final AtomicReferenceArray<Candidate> candidates;
+
+        private final AtomicLong total = new AtomicLong();
+
+        /**
+         * Set while the window is the current half and it is being replaced.
+         */
+        private final AtomicLong rotating = new AtomicLong();
+
+        private volatile long start;
+
+        Window(final int capacity,
+               final long start) {
+            this.candidates = new AtomicReferenceArray<>(capacity);
+            this.start = start;
+        }
+
+        long increment(final int hash) {
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, sketch.incrementAndGet(index(row, hash)));
+            }
+            return min;
+        }
+
+        long estimate(final int hash) {
+            long min = Long.MAX_VALUE;
+            for (int row = 0; row < DEPTH; row++) {
+                min = Math.min(min, sketch.get(index(row, hash)));
+            }
+            return min;
+        }
+
+        /**
+         * Offer a key using the space-saving policy: a key that is already a candidate has its count raised and
+         * otherwise the key replaces the candidate with the lowest count if its own count is higher.
+         */
+        void offer(final String key,
+                   final int hash,
+                   final long count) {
+            int minIndex = -1;
+            Candidate min = null;
+            for (int i = 0; i < candidates.length(); i++) {
+                Candidate candidate = candidates.get(i);
+                if (candidate == null) {
+                    if (candidates.compareAndSet(i, null, new Candidate(key, hash, count))) {
+                        return;
+                    }
+                    candidate = candidates.get(i);
+                }
+                if (candidate.matches(key, hash)) {
+                    if (count > candidate.count) {
+                        candidate.count = count;
+                    }
+                    return;
+                }
+                if (min == null || candidate.count < min.count) {
+                    min = candidate;
+                    minIndex = i;
+                }
+            }
+            if (min != null && count > min.count) {
+                candidates.compareAndSet(minIndex, min, new Candidate(key, hash, count));
+            }
+        }
+
+        boolean contains(final String key,
+                         final int hash) {
+            for (int i = 0; i < candidates.length(); i++) {
+                final Candidate candidate = candidates.get(i);
+                if (candidate == null) {
+                    continue;
+                }
+                if (candidate.matches(key, hash)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void collect(final Map<String, Long> counts,
+                     final Window other) {
+            for (int i = 0; i < candidates.length(); i++) {
+                final Candidate candidate = candidates.get(i);
+                if (candidate == null) {
+                    continue;
+                }
+                counts.putIfAbsent(candidate.key, estimate(candidate.hash) + other.estimate(candidate.hash));
+            }
+        }
+
+        void clear(final long now) {
+            for (int i = 0; i < sketch.length(); i++) {
+                sketch.set(i, 0L);
+            }
+            for (int i = 0; i < candidates.length(); i++) {
+                candidates.set(i, null);
+            }
+            total.set(0L);
+            rotating.set(0L);
+            start = now;
+        }
+
+        private static int index(final int row,
+                                 final int hash) {
+            return row * WIDTH + ((hash * SEEDS[row]) >>> (Integer.SIZE - WIDTH_BITS));
+        }
+    }
+
+    /**
+     * A key being tracked and the highest count seen for it.
+     */
+    private static final class Candidate {
+
+        private final String key;
+
+        private final int hash;
+
+        private volatile long count;
+
+        Candidate(final String key,
+                  final int hash,
+                  final long count) {
+            this.key = key;
+            this.hash = hash;
+            this.count = count;
+        }
+
+        boolean matches(final String key,
+                        final int hash) {
+            return this.hash == hash && this.key.equals(key);
+        }
+    }
+}
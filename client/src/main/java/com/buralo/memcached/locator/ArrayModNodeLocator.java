@@ -0,0 +1,73 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.locator;
+
+import com.buralo.memcached.hash.HashAlgorithm;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Selects a node using the hash of the key modulo the number of nodes.
+ *
+ * @param <N> The node type.
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class ArrayModNodeLocator<N> implements NodeLocator<N> {
+
+    private final List<N> nodes;
+
+    private final HashAlgorithm hashAlgorithm;
+
+    public ArrayModNodeLocator(final Collection<N> nodes,
+                               final HashAlgorithm hashAlgorithm) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        this.nodes = new ArrayList<>(nodes);
+        this.hashAlgorithm = hashAlgorithm;
+    }
+
+    @Override
+    public N primary(final String key) {
+        return nodes.get(indexOf(key));
+    }
+
+    /**
+     * Get the node that owns a key and the nodes that follow it in the array.
+     *
+     * @param key   The Memcached key.
+     * @param count The number of copies, which is reduced to the number of nodes if there are fewer.
+     * @return The primary node followed by the replica nodes.
+     */
+    @Override
+    public List<N> replicas(final String key,
+                            final int count) {
+        final int first = indexOf(key);
+        final int size = Math.min(count, nodes.size());
+        final List<N> replicas = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            replicas.add(nodes.get((first + i) % nodes.size()));
+        }
+        return replicas;
+    }
+
+    private int indexOf(final String key) {
+        return (int) Math.floorMod(hashAlgorithm.hash(key), (long) nodes.size());
+    }
+}
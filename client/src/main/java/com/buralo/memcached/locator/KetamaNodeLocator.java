@@ -0,0 +1,269 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.locator;
+
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import com.buralo.memcached.hash.HashAlgorithm;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.function.Function;
+import java.util.function.ToIntFunction;
+
+/**
+ * Selects a node using a ketama consistent hashing continuum that is compatible with spymemcached and libketama.
+ * <p>
+ * Each node is placed on the continuum at 160 points, or a number proportional to its weight when the nodes have
+ * different weights, with 4 points taken from each MD5 digest of the node key. The continuum is held in parallel
+ * sorted arrays and searched with a binary search so a lookup does not allocate. Adding or removing nodes builds a
+ * new continuum on the calling thread and publishes it atomically so lookups never wait.
+ *
+ * @param <N> The node type.
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class KetamaNodeLocator<N> implements NodeLocator<N> {
+
+    /**
+     * The number of points on the continuum for each node when all the nodes have the same weight.
+     */
+    public static final int NODE_REPETITIONS = 160;
+
+    private static final int POINTS_PER_DIGEST = 4;
+
+    private final HashAlgorithm hashAlgorithm;
+
+    private final Function<? super N, String> nodeKey;
+
+    private final ToIntFunction<? super N> nodeWeight;
+
+    private volatile Continuum<N> continuum;
+
+    /**
+     * Initialize a locator for nodes of equal weight using the ketama hash.
+     *
+     * @param nodes   The nodes.
+     * @param nodeKey Get the key from which the continuum points of a node are calculated.
+     */
+    public KetamaNodeLocator(final Collection<N> nodes,
+                             final Function<? super N, String> nodeKey) {
+        this(nodes, nodeKey, node -> 1, DefaultHashAlgorithms.KETAMA);
+    }
+
+    /**
+     * Initialize the locator.
+     *
+     * @param nodes         The nodes.
+     * @param nodeKey       Get the key from which the continuum points of a node are calculated.
+     * @param nodeWeight    Get the weight of a node.
+     * @param hashAlgorithm The algorithm used to hash the Memcached keys.
+     */
+    public KetamaNodeLocator(final Collection<N> nodes,
+                             final Function<? super N, String> nodeKey,
+                             final ToIntFunction<? super N> nodeWeight,
+                             final HashAlgorithm hashAlgorithm) {
+        this.hashAlgorithm = hashAlgorithm;
+        this.nodeKey = nodeKey;
+        this.nodeWeight = nodeWeight;
+        this.continuum = build(new ArrayList<>(nodes));
+    }
+
+    /**
+     * Get the key used for a node by spymemcached, which is the socket address without a leading slash.
+     *
+     * @param address The node address.
+     * @return The node key.
+     */
+    public static String nodeKey(final InetSocketAddress address) {
+        final String key = String.valueOf(address);
+        return key.startsWith("/") ? key.substring(1) : key;
+    }
+
+    @Override
+    public N primary(final String key) {
+        final Continuum<N> current = continuum;
+        return current.nodes.get(current.nodeIndexes[current.indexOf(hashAlgorithm.hash(key))]);
+    }
+
+    /**
+     * Get the node that owns a key and the next distinct nodes found by walking clockwise around the continuum, so
+     * that the replicas of a key move as little as its primary when nodes are added or removed.
+     *
+     * @param key   The Memcached key.
+     * @param count The number of copies, which is reduced to the number of nodes if there are fewer.
+     * @return The primary node followed by the replica nodes.
+     */
+    @Override
+    public List<N> replicas(final String key,
+                            final int count) {
+        final Continuum<N> current = continuum;
+        final int size = Math.min(count, current.nodes.size());
+        final List<N> replicas = new ArrayList<>(size);
+        final boolean[] seen = new boolean[current.nodes.size()];
+        final int first = current.indexOf(hashAlgorithm.hash(key));
+        for (int i = 0; replicas.size() < size && i < current.hashes.length; i++) {
+            final int nodeIndex = current.nodeIndexes[(first + i) % current.hashes.length];
+            if (!seen[nodeIndex]) {
+                seen[nodeIndex] = true;
+                replicas.add(current.nodes.get(nodeIndex));
+            }
+        }
+        return replicas;
+    }
+
+    /**
+     * Get the nodes currently on the continuum.
+     *
+     * @return The nodes.
+     */
+    public List<N> nodes() {
+        return continuum.nodes;
+    }
+
+    /**
+     * Add a node to the continuum.
+     *
+     * @param node The node.
+     */
+    public synchronized void addNode(final N node) {
+        final List<N> nodes = new ArrayList<>(continuum.nodes);
+        nodes.add(node);
+        continuum = build(nodes);
+    }
+
+    /**
+     * Remove a node from the continuum.
+     *
+     * @param node The node.
+     */
+    public synchronized void removeNode(final N node) {
+        final List<N> nodes = new ArrayList<>(continuum.nodes);
+        nodes.remove(node);
+        continuum = build(nodes);
+    }
+
+    /**
+     * Replace all the nodes on the continuum.
+     *
+     * @param nodes The nodes.
+     */
+    public synchronized void setNodes(final Collection<N> nodes) {
+        continuum = build(new ArrayList<>(nodes));
+    }
+
+    private Continuum<N> build(final List<N> nodes) {
+        if (nodes.isEmpty()) {
+            throw new IllegalArgumentException("At least one node is required");
+        }
+        final MessageDigest md5 = md5();
+        final int[] weights = new int[nodes.size()];
+        long totalWeight = 0;
+        boolean weighted = false;
+        for (int i = 0; i < weights.length; i++) {
+            weights[i] = nodeWeight.applyAsInt(nodes.get(i));
+            totalWeight += weights[i];
+            weighted |= weights[i] != weights[0];
+        }
+        final TreeMap<Long, Integer> points = new TreeMap<>();
+        for (int i = 0; i < weights.length; i++) {
+            final int repetitions;
+            if (weighted) {
+                final float percent = totalWeight == 0 ? 0f : (float) weights[i] / (float) totalWeight;
+                repetitions = (int) Math.floor(
+                        percent * (float) NODE_REPETITIONS / POINTS_PER_DIGEST * (float) nodes.size() + 0.0000000001);
+            } else {
+                repetitions = NODE_REPETITIONS / POINTS_PER_DIGEST;
+            }
+            final String key = nodeKey.apply(nodes.get(i));
+            for (int j = 0; j < repetitions; j++) {
+                final byte[] digest = md5.digest((key + "-" + j).getBytes(StandardCharsets.UTF_8));
+                for (int h = 0; h < POINTS_PER_DIGEST; h++) {
+                    final long point = ((long) (digest[3 + h * 4] & 0xFF) << 24)
+                            | ((long) (digest[2 + h * 4] & 0xFF) << 16)
+                            | ((long) (digest[1 + h * 4] & 0xFF) << 8)
+                            | (digest[h * 4] & 0xFF);
+                    points.put(point, i);
+                }
+            }
+        }
+        if (points.isEmpty()) {
+            throw new IllegalArgumentException("None of the nodes has a positive weight");
+        }
+        final long[] hashes = new long[points.size()];
+        final int[] nodeIndexes = new int[points.size()];
+        int index = 0;
+        for (final Map.Entry<Long, Integer> point : points.entrySet()) {
+            hashes[index] = point.getKey();
+            nodeIndexes[index] = point.getValue();
+            index++;
+        }
+        return new Continuum<>(Collections.unmodifiableList(nodes), hashes, nodeIndexes);
+    }
+
+    private static MessageDigest md5() {
+        try {
+            return MessageDigest.getInstance("MD5");
+        } catch (final NoSuchAlgorithmException e) {
+            throw new UnsupportedOperationException("MD5 not supported", e);
+        }
+    }
+
+    /**
+     * An immutable snapshot of the continuum.
+     *
+     * @param <N> The node type.
+     */
+    private static final class Continuum<N> {
+
+        private final List<N> nodes;
+
+        private final long[] hashes;
+
+        private final int[] nodeIndexes;
+
+        private Continuum(final List<N> nodes,
+                          final long[] hashes,
+                          final int[] nodeIndexes) {
+            this.nodes = nodes;
+            this.hashes = hashes;
+            this.nodeIndexes = nodeIndexes;
+        }
+
+        /**
+         * Find the first point at or after the hash wrapping around to the start of the continuum.
+         *
+         * @param hash The key hash.
+         * @return The index of the point.
+         */
+        private int indexOf(final long hash) {
+            final int index = Arrays.binarySearch(hashes, hash);
+            if (index >= 0) {
+                return index;
+            }
+            final int insertionPoint = -(index + 1);
+            return insertionPoint == hashes.length ? 0 : insertionPoint;
+        }
+    }
+}
@@ -0,0 +1,51 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.locator;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Selects the node responsible for a Memcached key.
+ *
+ * @param <N> The node type.
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+@FunctionalInterface
+public interface NodeLocator<N> {
+
+    /**
+     * Get the node that owns a key.
+     *
+     * @param key The Memcached key.
+     * @return The primary node.
+     */
+    N primary(String key);
+
+    /**
+     * Get the distinct nodes that hold copies of a key in order of preference, starting with the primary. Locators
+     * that do not support replicas return only the primary.
+     *
+     * @param key   The Memcached key.
+     * @param count The number of copies, which is reduced to the number of nodes if there are fewer.
+     * @return The primary node followed by the replica nodes.
+     */
+    default List<N> replicas(final String key,
+                             final int count) {
+        return Collections.singletonList(primary(key));
+    }
+}
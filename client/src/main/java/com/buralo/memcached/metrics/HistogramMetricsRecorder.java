@@ -0,0 +1,90 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.metrics;
+
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Status;
+
+import java.net.InetSocketAddress;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+/**
+ * Keeps lock-free latency histograms for each opcode and counters for each status, bytes and failures for each
+ * server in memory.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class HistogramMetricsRecorder implements MetricsRecorder {
+
+    private final ConcurrentMap<InetSocketAddress, NodeMetrics> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Get the measurements for a server.
+     *
+     * @param address The server address.
+     * @return The measurements.
+     */
+    public NodeMetrics node(final InetSocketAddress address) {
+        final NodeMetrics metrics = nodes.get(address);
+        return metrics != null ? metrics : nodes.computeIfAbsent(address, NodeMetrics::new);
+    }
+
+    /**
+     * Get the measurements for all the servers that have been seen.
+     *
+     * @return The measurements.
+     */
+    public Collection<NodeMetrics> nodes() {
+        return Collections.unmodifiableCollection(nodes.values());
+    }
+
+    @Override
+    public void registerNode(final MemcachedNode node) {
+        node(node.address()).register(node);
+    }
+
+    @Override
+    public void recordResponse(final InetSocketAddress node,
+                               final Opcode opcode,
+                               final Status status,
+                               final long latencyNanos) {
+        node(node).recordResponse(opcode, status, latencyNanos);
+    }
+
+    @Override
+    public void recordFailure(final InetSocketAddress node,
+                              final Throwable error) {
+        node(node).recordFailure();
+    }
+
+    @Override
+    public void recordBytesWritten(final InetSocketAddress node,
+                                   final long bytes) {
+        node(node).recordBytesWritten(bytes);
+    }
+
+    @Override
+    public void recordBytesRead(final InetSocketAddress node,
+                                final long bytes) {
+        node(node).recordBytesRead(bytes);
+    }
+}
@@ -0,0 +1,138 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A lock-free log-linear histogram of durations in nanoseconds in the style of HdrHistogram. Values below 64 are
+ * counted exactly and larger values fall into one of 32 linear sub-buckets for each power of two, so a recorded value
+ * is reported to within about 3%. Values of 2<sup>40</sup> nanoseconds (about 18 minutes) or more are counted in the
+ * highest bucket. Recording is a single atomic increment and never allocates.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class LatencyHistogram {
+
+    private static final int LINEAR_BITS = 6;
+
+    private static final int LINEAR_LIMIT = 1 << LINEAR_BITS;
+
+    private static final int SUB_BUCKET_BITS = LINEAR_BITS - 1;
+
+    private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+
+    private static final int MAX_EXPONENT = 40;
+
+    private static final int BUCKETS = LINEAR_LIMIT + (MAX_EXPONENT - LINEAR_BITS) * SUB_BUCKETS;
+
+    private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos The duration in nanoseconds. Negative values are counted as zero.
+     */
+    public void record(final long nanos) {
+        counts.getAndIncrement(bucket(nanos));
+    }
+
+    /**
+     * Get the number of recorded durations.
+     *
+     * @return The count.
+     */
+    public long count() {
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            count += counts.get(i);
+        }
+        return count;
+    }
+
+    /**
+     * Get the duration at or below which the given percentage of the recorded durations fall.
+     *
+     * @param percentile The percentile between 0 and 100.
+     * @return The highest duration that is equivalent to the percentile or {@code 0} if nothing has been recorded.
+     */
+    public long valueAtPercentile(final double percentile) {
+        return valueAtPercentile(percentile, this);
+    }
+
+    /**
+     * Clear the recorded durations. Durations recorded concurrently may or may not be cleared.
+     */
+    public void reset() {
+        for (int i = 0; i < BUCKETS; i++) {
+            counts.set(i, 0L);
+        }
+    }
+
+    /**
+     * Get the duration at or below which the given percentage of the durations recorded by several histograms fall.
+     */
+    static long valueAtPercentile(final double percentile,
+                                  final LatencyHistogram... histograms) {
+        if (percentile < 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be between 0 and 100");
+        }
+        final long[] snapshot = new long[BUCKETS];
+        long count = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            for (final LatencyHistogram histogram : histograms) {
+                snapshot[i] += histogram.counts.get(i);
+            }
+            count += snapshot[i];
+        }
+        if (count == 0) {
+            return 0L;
+        }
+        final long rank = Math.max(1L, (long) Math.ceil(percentile / 100.0 * count));
+        long seen = 0;
+        for (int i = 0; i < BUCKETS; i++) {
+            seen += snapshot[i];
+            if (seen >= rank) {
+                return highestEquivalentValue(i);
+            }
+        }
+        return highestEquivalentValue(BUCKETS - 1);
+    }
+
+    static int bucket(final long nanos) {
+        if (nanos < LINEAR_LIMIT) {
+            return nanos < 0 ? 0 : (int) nanos;
+        }
+        final int exponent = 63 - Long.numberOfLeadingZeros(nanos);
+        if (exponent >= MAX_EXPONENT) {
+            return BUCKETS - 1;
+        }
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return LINEAR_LIMIT + (exponent - LINEAR_BITS) * SUB_BUCKETS + (int) (nanos >>> shift) - SUB_BUCKETS;
+    }
+
+    static long highestEquivalentValue(final int bucket) {
+        if (bucket < LINEAR_LIMIT) {
+            return bucket;
+        }
+        final int exponent = (bucket - LINEAR_LIMIT) / SUB_BUCKETS + LINEAR_BITS;
+        final long mantissa = (bucket - LINEAR_LIMIT) % SUB_BUCKETS + SUB_BUCKETS;
+        final int shift = exponent - SUB_BUCKET_BITS;
+        return ((mantissa + 1) << shift) - 1;
+    }
+}
@@ -0,0 +1,91 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.metrics;
+
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Status;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Receives measurements from the connections. The recording methods are called on the event loop for every request
+ * so implementations must be thread-safe, must not block and should not allocate.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public interface MetricsRecorder {
+
+    /**
+     * A recorder that discards every measurement. Connections using it do not read the clock.
+     */
+    MetricsRecorder NONE = new MetricsRecorder() {
+    };
+
+    /**
+     * Called once for each server node so that gauges such as the in-flight depth can be sampled from it.
+     *
+     * @param node The connection or connection pool.
+     */
+    default void registerNode(final MemcachedNode node) {
+    }
+
+    /**
+     * Record a response.
+     *
+     * @param node         The server address.
+     * @param opcode       The opcode of the response.
+     * @param status       The status of the response.
+     * @param latencyNanos The time from the request being issued to the response being received.
+     */
+    default void recordResponse(final InetSocketAddress node,
+                                final Opcode opcode,
+                                final Status status,
+                                final long latencyNanos) {
+    }
+
+    /**
+     * Record a request that failed without a response, for example because the connection was closed.
+     *
+     * @param node  The server address.
+     * @param error The cause.
+     */
+    default void recordFailure(final InetSocketAddress node,
+                               final Throwable error) {
+    }
+
+    /**
+     * Record bytes written to a server.
+     *
+     * @param node  The server address.
+     * @param bytes The number of bytes.
+     */
+    default void recordBytesWritten(final InetSocketAddress node,
+                                    final long bytes) {
+    }
+
+    /**
+     * Record bytes read from a server.
+     *
+     * @param node  The server address.
+     * @param bytes The number of bytes.
+     */
+    default void recordBytesRead(final InetSocketAddress node,
+                                 final long bytes) {
+    }
+}
@@ -0,0 +1,163 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.metrics;
+
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Status;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * The measurements collected by a {@link HistogramMetricsRecorder} for one server.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class NodeMetrics {
+
+    private static final Opcode[] OPCODES = Opcode.values();
+
+    private static final Status[] STATUSES = Status.values();
+
+    private final InetSocketAddress address;
+
+    private final AtomicReferenceArray<LatencyHistogram> latencies = new AtomicReferenceArray<>(OPCODES.length);
+
+    private final LatencyHistogram latency = new LatencyHistogram();
+
+    private final LongAdder[] responses = new LongAdder[STATUSES.length];
+
+    private final LongAdder failures = new LongAdder();
+
+    private final LongAdder bytesRead = new LongAdder();
+
+    private final LongAdder bytesWritten = new LongAdder();
+
+    private volatile MemcachedNode node;
+
+    NodeMetrics(final InetSocketAddress address) {
+        this.address = address;
+        for (int i = 0; i < responses.length; i++) {
+            responses[i] = new LongAdder();
+        }
+    }
+
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    /**
+     * Get the latency of responses with an opcode.
+     *
+     * @param opcode The opcode.
+     * @return The histogram which is empty if no responses have been received with the opcode.
+     */
+    public LatencyHistogram latency(final Opcode opcode) {
+        return histogram(opcode);
+    }
+
+    /**
+     * Get the latency of all responses.
+     *
+     * @return The histogram.
+     */
+    public LatencyHistogram latency() {
+        return latency;
+    }
+
+    /**
+     * Get the number of responses with a status.
+     *
+     * @param status The status.
+     * @return The count.
+     */
+    public long responses(final Status status) {
+        return responses[status.ordinal()].sum();
+    }
+
+    public long failures() {
+        return failures.sum();
+    }
+
+    public long bytesRead() {
+        return bytesRead.sum();
+    }
+
+    public long bytesWritten() {
+        return bytesWritten.sum();
+    }
+
+    /**
+     * Get the number of requests that are queued or waiting for a response.
+     *
+     * @return The in-flight depth or {@code 0} if the node has not been registered.
+     */
+    public int inFlight() {
+        final MemcachedNode current = node;
+        return current == null ? 0 : current.outstanding();
+    }
+
+    /**
+     * Get the outstanding requests as a fraction of the in-flight capacity of the node's connections.
+     *
+     * @return The saturation or {@code 0} if the node has not been registered.
+     */
+    public double saturation() {
+        final MemcachedNode current = node;
+        return current == null ? 0.0 : current.saturation();
+    }
+
+    void register(final MemcachedNode node) {
+        this.node = node;
+    }
+
+    void recordResponse(final Opcode opcode,
+                        final Status status,
+                        final long latencyNanos) {
+        histogram(opcode).record(latencyNanos);
+        latency.record(latencyNanos);
+        responses[status.ordinal()].increment();
+    }
+
+    void recordFailure() {
+        failures.increment();
+    }
+
+    void recordBytesRead(final long bytes) {
+        bytesRead.add(bytes);
+    }
+
+    void recordBytesWritten(final long bytes) {
+        bytesWritten.add(bytes);
+    }
+
+    private LatencyHistogram histogram(final Opcode opcode) {
+        final int index = opcode.ordinal();
+        LatencyHistogram histogram = latencies.get(index);
+        if (histogram == null) {
+            // Only allocated the first time an opcode is seen
+            histogram = new LatencyHistogram();
+            if (!latencies.compareAndSet(index, null, histogram)) {
+                histogram = latencies.get(index);
+            }
+        }
+        return histogram;
+    }
+}
@@ -0,0 +1,201 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.metrics;
+
+import java.time.Duration;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Latency over a sliding window, used to adapt hedging delays and timeouts to how a server is behaving now rather
+ * than over its whole lifetime. The window is split into two halves each with its own {@link LatencyHistogram}; when
+ * the current half ends the older half is cleared and reused. Percentiles are cached for a sixteenth of the window so
+ * they can be read on every request.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class RecentLatency {
+
+    /**
+     * The default length of the sliding window.
+     */
+    public static final Duration DEFAULT_WINDOW = Duration.ofSeconds(10);
+
+    private final long halfWindowNanos;
+
+    private final long refreshNanos;
+
+    private final AtomicReference<Half> current;
+
+    private final AtomicBoolean rotating = new AtomicBoolean();
+
+    private volatile Half previous;
+
+    private volatile Cached cached;
+
+    /**
+     * Initialize with the default window.
+     */
+    public RecentLatency() {
+        this(DEFAULT_WINDOW);
+    }
+
+    /**
+     * Initialize.
+     *
+     * @param window The length of the sliding window.
+     */
+    public RecentLatency(final Duration window) {
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        final long now = System.nanoTime();
+        this.halfWindowNanos = Math.max(1L, window.toNanos() / 2);
+        this.refreshNanos = window.toNanos() / 16;
+        this.current = new AtomicReference<>(new Half(now));
+        this.previous = new Half(now - halfWindowNanos);
+        this.cached = new Cached(-1.0, 0L, 0L, now);
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param nanos The duration in nanoseconds.
+     */
+    public void record(final long nanos) {
+        final Half half = current(System.nanoTime());
+        half.histogram.record(nanos);
+    }
+
+    /**
+     * Get the number of durations recorded in the window.
+     *
+     * @return The count.
+     */
+    public long count() {
+        return current(System.nanoTime()).histogram.count() + previous.histogram.count();
+    }
+
+    /**
+     * Get the duration at or below which the given percentage of the durations recorded in the window fall. The
+     * result may be up to a sixteenth of the window old.
+     *
+     * @param percentile The percentile between 0 and 100.
+     * @return The duration in nanoseconds or {@code 0} if nothing has been recorded.
+     */
+    public long valueAtPercentile(final double percentile) {
+        return snapshot(percentile, 0L).value;
+    }
+
+    /**
+     * Get a percentile only if enough durations have been recorded for it to be meaningful. The percentile is
+     * recomputed on every call until there are enough durations.
+     *
+     * @param percentile The percentile between 0 and 100.
+     * @param minCount   The fewest durations needed.
+     * @param otherwise  The value returned when there are too few durations.
+     * @return The duration in nanoseconds or {@code otherwise}.
+     */
+    public long valueAtPercentile(final double percentile,
+                                  final long minCount,
+                                  final long otherwise) {
+        final Cached snapshot = snapshot(percentile, minCount);
+        return snapshot.count < minCount ? otherwise : snapshot.value;
+    }
+
+    private Cached snapshot(final double percentile,
+                            final long minCount) {
+        final long now = System.nanoTime();
+        final Cached snapshot = cached;
+        if (snapshot.percentile == percentile && snapshot.count >= minCount
+                && now - snapshot.computedAt < refreshNanos) {
+            return snapshot;
+        }
+        final Half half = current(now);
+        final Half older = previous;
+        final Cached refreshed = new Cached(percentile,
+                LatencyHistogram.valueAtPercentile(percentile, half.histogram, older.histogram),
+                half.histogram.count() + older.histogram.count(),
+                now);
+        cached = refreshed;
+        return refreshed;
+    }
+
+    private Half current(final long now) {
+        final Half half = current.get();
+        if (now - half.start < halfWindowNanos || !rotating.compareAndSet(false, true)) {
+            return half;
+        }
+        try {
+            if (current.get() != half) {
+                // Another thread rotated the halves after this one read the current half
+                return current.get();
+            }
+            final Half recycled = previous;
+            recycled.histogram.reset();
+            recycled.start = now;
+            if (now - half.start >= 2 * halfWindowNanos) {
+                // Nothing was recorded for a whole window so the current half is stale as well
+                half.histogram.reset();
+            }
+            previous = half;
+            current.set(recycled);
+            return recycled;
+        } finally {
+            rotating.set(false);
+        }
+    }
+
+    /**
+     * One half of the window.
+     */
+    private static final class Half {
+
+        private final LatencyHistogram histogram = new LatencyHistogram();
+
+        private volatile long start;
+
+        Half(final long start) {
+            this.start = start;
+        }
+    }
+
+    /**
+     * A percentile computed from the window.
+     */
+    private static final class Cached {
+
+        private final double percentile;
+
+        private final long value;
+
+        private final long count;
+
+        private final long computedAt;
+
+        Cached(final double percentile,
+               final long value,
+               final long count,
+               final long computedAt) {
+            this.percentile = percentile;
+            this.value = value;
+            this.count = count;
+            this.computedAt = computedAt;
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.overload;
+
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.metrics.RecentLatency;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * A node that times out requests based on the latency recently observed from its server and sheds requests when
+ * too many are already waiting.
+ * <p>
+ * Each response is timed and the timeout of the next request is a multiple of a latency percentile over a sliding
+ * window, so a fast server fails requests quickly once they are clearly lost while a server that slows down as a
+ * whole is given longer rather than having every request time out. A request that times out is recorded with the time
+ * it waited so the timeout grows if the server stops answering within it.
+ * <p>
+ * A connection queues requests that do not fit in its in-flight window. Once the outstanding requests reach the
+ * policy's multiple of the server's capacity further requests fail immediately with a
+ * {@link NodeOverloadedException} rather than joining the queue, which bounds the memory held for a slow server and
+ * the time a request can spend queued. Cancelled and timed out requests leave the queue before they are written.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class AdaptiveNode implements MemcachedNode {
+
+    /**
+     * The number of timed responses needed before the timeout adapts to the server's latency.
+     */
+    static final int MIN_SAMPLES = 20;
+
+    private final MemcachedNode delegate;
+
+    private final OverloadPolicy policy;
+
+    private final RecentLatency latency;
+
+    private final LongAdder timeouts = new LongAdder();
+
+    private final LongAdder shed = new LongAdder();
+
+    /**
+     * Wrap a node using the default policy.
+     *
+     * @param delegate The connection or connection pool.
+     */
+    public AdaptiveNode(final MemcachedNode delegate) {
+        this(delegate, OverloadPolicy.DEFAULT);
+    }
+
+    /**
+     * Wrap a node.
+     *
+     * @param delegate The connection or connection pool.
+     * @param policy   Controls the timeouts and when requests are shed.
+     */
+    public AdaptiveNode(final MemcachedNode delegate,
+                        final OverloadPolicy policy) {
+        this.delegate = delegate;
+        this.policy = policy;
+        this.latency = new RecentLatency(policy.window());
+    }
+
+    public MemcachedNode delegate() {
+        return delegate;
+    }
+
+    public OverloadPolicy policy() {
+        return policy;
+    }
+
+    /**
+     * Get the timeout the next request will be given.
+     *
+     * @return The timeout.
+     */
+    public Duration timeout() {
+        return Duration.ofNanos(timeoutNanos());
+    }
+
+    /**
+     * Get the number of requests that timed out.
+     *
+     * @return The count.
+     */
+    public long timeouts() {
+        return timeouts.sum();
+    }
+
+    /**
+     * Get the number of requests that were shed because the server was overloaded.
+     *
+     * @return The count.
+     */
+    public long shed() {
+        return shed.sum();
+    }
+
+    @Override
+    public InetSocketAddress address() {
+        return delegate.address();
+    }
+
+    @Override
+    public int maxInFlight() {
+        return delegate.maxInFlight();
+    }
+
+    @Override
+    public int capacity() {
+        return delegate.capacity();
+    }
+
+    @Override
+    public int outstanding() {
+        return delegate.outstanding();
+    }
+
+    @Override
+    public double saturation() {
+        return delegate.saturation();
+    }
+
+    @Override
+    public Mono<Response> execute(final Request request) {
+        return Mono.defer(() -> {
+            final int outstanding = delegate.outstanding();
+            if (isOverloaded(outstanding, 1)) {
+                shed.increment();
+                request.discard();
+                return Mono.error(new NodeOverloadedException(address(), outstanding));
+            }
+            final long start = System.nanoTime();
+            return delegate.execute(request)
+                    .timeout(Duration.ofNanos(timeoutNanos()))
+                    .doOnNext(response -> latency.record(System.nanoTime() - start))
+                    .doOnError(TimeoutException.class, error -> {
+                        timeouts.increment();
+                        latency.record(System.nanoTime() - start);
+                    });
+        });
+    }
+
+    /**
+     * Send a batch of quiet requests unless the server is overloaded. A batch takes longer than a single request so
+     * it is not timed and waits for up to the maximum timeout for each response.
+     *
+     * @param requests The quiet requests.
+     * @return The responses to the quiet requests which must be released by the subscriber.
+     */
+    @Override
+    public Flux<Response> executeQuiet(final List<? extends Request> requests) {
+        return Flux.defer(() -> {
+            final int outstanding = delegate.outstanding();
+            if (isOverloaded(outstanding, requests.size() + 1)) {
+                shed.increment();
+                requests.forEach(Request::discard);
+                return Flux.error(new NodeOverloadedException(address(), outstanding));
+            }
+            return delegate.executeQuiet(requests)
+                    .timeout(policy.maxTimeout())
+                    .doOnError(TimeoutException.class, error -> timeouts.increment());
+        });
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return delegate.close();
+    }
+
+    @Override
+    public void abort(final Throwable cause) {
+        delegate.abort(cause);
+    }
+
+    long timeoutNanos() {
+        return policy.timeoutNanos(latency.valueAtPercentile(policy.percentile(), MIN_SAMPLES,
+                policy.maxTimeoutNanos()));
+    }
+
+    /**
+     * Check if adding requests would take the server past the saturation at which requests are shed. Concurrent
+     * callers may each be admitted so the limit can be overshot by the requests being admitted at the same moment.
+     */
+    private boolean isOverloaded(final int outstanding,
+                                 final int size) {
+        return outstanding + size > delegate.capacity() * policy.maxSaturation();
+    }
+}
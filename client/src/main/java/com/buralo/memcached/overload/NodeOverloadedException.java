@@ -0,0 +1,56 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.overload;
+
+import java.net.InetSocketAddress;
+
+/**
+ * Signals that a request was shed without being sent because too many requests were already waiting on its server.
+ * The request can be retried later or served from elsewhere without adding to the backlog.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class NodeOverloadedException extends RuntimeException {
+
+    private static final long serialVersionUID = 1L;
+
+    private final InetSocketAddress address;
+
+    private final int outstanding;
+
+    /**
+     * Initialize the exception.
+     *
+     * @param address     The server address.
+     * @param outstanding The number of requests that were queued or waiting for a response.
+     */
+    public NodeOverloadedException(final InetSocketAddress address,
+                                   final int outstanding) {
+        super("Memcached server " + address + " is overloaded with " + outstanding + " outstanding requests");
+        this.address = address;
+        this.outstanding = outstanding;
+    }
+
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    public int outstanding() {
+        return outstanding;
+    }
+}
@@ -0,0 +1,156 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.overload;
+
+import com.buralo.memcached.metrics.RecentLatency;
+
+import java.time.Duration;
+
+/**
+ * Controls how an {@link AdaptiveNode} times out and sheds requests. The timeout is a multiple of a percentile of
+ * the latency observed over a sliding window, clamped between a minimum and a maximum, and requests are shed once the
+ * outstanding requests reach a multiple of the server's in-flight capacity.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class OverloadPolicy {
+
+    /**
+     * The default latency percentile the timeout is derived from.
+     */
+    public static final double DEFAULT_PERCENTILE = 99.0;
+
+    /**
+     * The default multiple of the latency percentile a request waits for.
+     */
+    public static final double DEFAULT_MULTIPLIER = 3.0;
+
+    /**
+     * The default shortest timeout.
+     */
+    public static final Duration DEFAULT_MIN_TIMEOUT = Duration.ofMillis(10);
+
+    /**
+     * The default longest timeout, which is also used until enough latencies have been observed.
+     */
+    public static final Duration DEFAULT_MAX_TIMEOUT = Duration.ofSeconds(1);
+
+    /**
+     * The default saturation at which requests are shed, allowing one in-flight capacity of requests to be queued.
+     */
+    public static final double DEFAULT_MAX_SATURATION = 2.0;
+
+    /**
+     * The default policy.
+     */
+    public static final OverloadPolicy DEFAULT = new OverloadPolicy(DEFAULT_PERCENTILE, DEFAULT_MULTIPLIER,
+            DEFAULT_MIN_TIMEOUT, DEFAULT_MAX_TIMEOUT, DEFAULT_MAX_SATURATION, RecentLatency.DEFAULT_WINDOW);
+
+    private final double percentile;
+
+    private final double multiplier;
+
+    private final long minTimeoutNanos;
+
+    private final long maxTimeoutNanos;
+
+    private final double maxSaturation;
+
+    private final Duration window;
+
+    /**
+     * Initialize a policy.
+     *
+     * @param percentile    The latency percentile between 0 and 100 the timeout is derived from.
+     * @param multiplier    The multiple of the latency percentile a request waits for which must be at least one.
+     * @param minTimeout    The shortest timeout.
+     * @param maxTimeout    The longest timeout, also used until enough latencies have been observed.
+     * @param maxSaturation The outstanding requests as a fraction of the in-flight capacity at which requests are
+     *                      shed, which must be at least one so that the window can be filled.
+     * @param window        The length of the sliding window over which latency is observed.
+     */
+    public OverloadPolicy(final double percentile,
+                          final double multiplier,
+                          final Duration minTimeout,
+                          final Duration maxTimeout,
+                          final double maxSaturation,
+                          final Duration window) {
+        if (percentile <= 0.0 || percentile > 100.0) {
+            throw new IllegalArgumentException("percentile must be greater than 0 and at most 100");
+        }
+        if (multiplier < 1.0) {
+            throw new IllegalArgumentException("multiplier must be at least 1");
+        }
+        if (minTimeout.isNegative() || minTimeout.isZero()) {
+            throw new IllegalArgumentException("minTimeout must be positive");
+        }
+        if (maxTimeout.compareTo(minTimeout) < 0) {
+            throw new IllegalArgumentException("maxTimeout must not be less than minTimeout");
+        }
+        if (maxSaturation < 1.0) {
+            throw new IllegalArgumentException("maxSaturation must be at least 1");
+        }
+        if (window.isNegative() || window.isZero()) {
+            throw new IllegalArgumentException("window must be positive");
+        }
+        this.percentile = percentile;
+        this.multiplier = multiplier;
+        this.minTimeoutNanos = minTimeout.toNanos();
+        this.maxTimeoutNanos = maxTimeout.toNanos();
+        this.maxSaturation = maxSaturation;
+        this.window = window;
+    }
+
+    public double percentile() {
+        return percentile;
+    }
+
+    public double multiplier() {
+        return multiplier;
+    }
+
+    public Duration minTimeout() {
+        return Duration.ofNanos(minTimeoutNanos);
+    }
+
+    public Duration maxTimeout() {
+        return Duration.ofNanos(maxTimeoutNanos);
+    }
+
+    public double maxSaturation() {
+        return maxSaturation;
+    }
+
+    public Duration window() {
+        return window;
+    }
+
+    /**
+     * Scale a latency by the multiplier and clamp it to the timeout bounds.
+     *
+     * @param latencyNanos The latency at the percentile.
+     * @return The timeout in nanoseconds.
+     */
+    long timeoutNanos(final long latencyNanos) {
+        return Math.max(minTimeoutNanos, Math.min(maxTimeoutNanos, (long) (latencyNanos * multiplier)));
+    }
+
+    long maxTimeoutNanos() {
+        return maxTimeoutNanos;
+    }
+}
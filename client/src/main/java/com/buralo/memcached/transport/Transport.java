@@ -0,0 +1,166 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.transport;
+
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollSocketChannel;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioSocketChannel;
+
+import java.lang.reflect.Constructor;
+import java.util.concurrent.ThreadFactory;
+
+/**
+ * The Netty transports that can carry connections to the servers, in order of preference.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public enum Transport {
+
+    /**
+     * Linux io_uring. Only available when {@code io.netty.incubator:netty-incubator-transport-native-io_uring} is on
+     * the class path and the kernel supports it.
+     */
+    IO_URING {
+        @Override
+        public boolean isAvailable() {
+            return IoUring.AVAILABLE;
+        }
+
+        @Override
+        EventLoopGroup newEventLoopGroup(final int threads,
+                                         final ThreadFactory threadFactory) {
+            try {
+                return IoUring.EVENT_LOOP_GROUP.newInstance(threads, threadFactory);
+            } catch (final ReflectiveOperationException e) {
+                throw new IllegalStateException("Cannot create io_uring event loop group", e);
+            }
+        }
+
+        @Override
+        Class<? extends SocketChannel> channelClass() {
+            return IoUring.SOCKET_CHANNEL;
+        }
+    },
+
+    /**
+     * Linux epoll.
+     */
+    EPOLL {
+        @Override
+        public boolean isAvailable() {
+            return Epoll.isAvailable();
+        }
+
+        @Override
+        EventLoopGroup newEventLoopGroup(final int threads,
+                                         final ThreadFactory threadFactory) {
+            return new EpollEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        Class<? extends SocketChannel> channelClass() {
+            return EpollSocketChannel.class;
+        }
+    },
+
+    /**
+     * The portable JDK NIO transport which is always available.
+     */
+    NIO {
+        @Override
+        public boolean isAvailable() {
+            return true;
+        }
+
+        @Override
+        EventLoopGroup newEventLoopGroup(final int threads,
+                                         final ThreadFactory threadFactory) {
+            return new NioEventLoopGroup(threads, threadFactory);
+        }
+
+        @Override
+        Class<? extends SocketChannel> channelClass() {
+            return NioSocketChannel.class;
+        }
+    };
+
+    /**
+     * Test whether the transport can be used on this platform.
+     *
+     * @return {@code true} if the transport is available.
+     */
+    public abstract boolean isAvailable();
+
+    abstract EventLoopGroup newEventLoopGroup(int threads,
+                                              ThreadFactory threadFactory);
+
+    abstract Class<? extends SocketChannel> channelClass();
+
+    /**
+     * Get the most efficient transport that is available on this platform.
+     *
+     * @return The transport.
+     */
+    public static Transport preferred() {
+        for (final Transport transport : values()) {
+            if (transport.isAvailable()) {
+                return transport;
+            }
+        }
+        return NIO;
+    }
+
+    /**
+     * Looks up the optional io_uring transport reflectively so that it is not a compile time dependency.
+     */
+    private static final class IoUring {
+
+        private static final String PACKAGE = "io.netty.incubator.channel.uring.";
+
+        static final boolean AVAILABLE;
+
+        static final Constructor<? extends EventLoopGroup> EVENT_LOOP_GROUP;
+
+        static final Class<? extends SocketChannel> SOCKET_CHANNEL;
+
+        static {
+            boolean available = false;
+            Constructor<? extends EventLoopGroup> eventLoopGroup = null;
+            Class<? extends SocketChannel> socketChannel = null;
+            try {
+                final ClassLoader loader = Transport.class.getClassLoader();
+                final Class<?> ioUring = Class.forName(PACKAGE + "IOUring", true, loader);
+                eventLoopGroup = Class.forName(PACKAGE + "IOUringEventLoopGroup", true, loader)
+                        .asSubclass(EventLoopGroup.class)
+                        .getConstructor(int.class, ThreadFactory.class);
+                socketChannel = Class.forName(PACKAGE + "IOUringSocketChannel", true, loader)
+                        .asSubclass(SocketChannel.class);
+                available = (Boolean) ioUring.getMethod("isAvailable").invoke(null);
+            } catch (final ReflectiveOperationException | LinkageError | ClassCastException e) {
+                available = false;
+            }
+            AVAILABLE = available;
+            EVENT_LOOP_GROUP = eventLoopGroup;
+            SOCKET_CHANNEL = socketChannel;
+        }
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.transport;
+
+/**
+ * The transport, event loop and socket settings used for connections to the servers.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public final class TransportOptions {
+
+    /**
+     * The default number of event loop threads.
+     */
+    public static final int DEFAULT_EVENT_LOOP_THREADS = Math.max(Runtime.getRuntime().availableProcessors(), 4);
+
+    /**
+     * The default number of pending outbound bytes below which a channel becomes writable again.
+     */
+    public static final int DEFAULT_WRITE_BUFFER_LOW_WATER_MARK = 32 * 1024;
+
+    /**
+     * The default number of pending outbound bytes above which a channel stops being writable.
+     */
+    public static final int DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK = 64 * 1024;
+
+    /**
+     * The preferred transport with the default settings, TCP_NODELAY enabled and the operating system's socket buffer
+     * sizes.
+     */
+    public static final TransportOptions DEFAULT = new TransportOptions(Transport.preferred());
+
+    private final Transport transport;
+
+    private final int eventLoopThreads;
+
+    private final boolean tcpNoDelay;
+
+    private final int receiveBufferSize;
+
+    private final int sendBufferSize;
+
+    private final int writeBufferLowWaterMark;
+
+    private final int writeBufferHighWaterMark;
+
+    /**
+     * Initialize the options with the default settings for a transport.
+     *
+     * @param transport The transport.
+     */
+    public TransportOptions(final Transport transport) {
+        this(transport, DEFAULT_EVENT_LOOP_THREADS, true, 0, 0, DEFAULT_WRITE_BUFFER_LOW_WATER_MARK,
+                DEFAULT_WRITE_BUFFER_HIGH_WATER_MARK);
+    }
+
+    /**
+     * Initialize the options.
+     *
+     * @param transport                The transport.
+     * @param eventLoopThreads         The number of event loop threads shared by all the connections.
+     * @param tcpNoDelay               If {@code true} Nagle's algorithm is disabled so small requests are sent
+     *                                 immediately.
+     * @param receiveBufferSize        The SO_RCVBUF size in bytes or {@code 0} to leave it to the operating system.
+     * @param sendBufferSize           The SO_SNDBUF size in bytes or {@code 0} to leave it to the operating system.
+     * @param writeBufferLowWaterMark  The number of pending outbound bytes below which a channel becomes writable.
+     * @param writeBufferHighWaterMark The number of pending outbound bytes above which a channel is not writable.
+     */
+    public TransportOptions(final Transport transport,
+                            final int eventLoopThreads,
+                            final boolean tcpNoDelay,
+                            final int receiveBufferSize,
+                            final int sendBufferSize,
+                            final int writeBufferLowWaterMark,
+                            final int writeBufferHighWaterMark) {
+        if (!transport.isAvailable()) {
+            throw new IllegalArgumentException(transport + " transport is not available");
+        }
+        if (eventLoopThreads < 1) {
+            throw new IllegalArgumentException("eventLoopThreads must be positive");
+        }
+        if (receiveBufferSize < 0 || sendBufferSize < 0) {
+            throw new IllegalArgumentException("Socket buffer sizes must not be negative");
+        }
+        if (writeBufferLowWaterMark < 0 || writeBufferHighWaterMark < writeBufferLowWaterMark) {
+            throw new IllegalArgumentException("Write buffer water marks must satisfy 0 <= low <= high");
+        }
+        this.transport = transport;
+        this.eventLoopThreads = eventLoopThreads;
+        this.tcpNoDelay = tcpNoDelay;
+        this.receiveBufferSize = receiveBufferSize;
+        this.sendBufferSize = sendBufferSize;
+        this.writeBufferLowWaterMark = writeBufferLowWaterMark;
+        this.writeBufferHighWaterMark = writeBufferHighWaterMark;
+    }
+
+    public Transport transport() {
+        return transport;
+    }
+
+    public int eventLoopThreads() {
+        return eventLoopThreads;
+    }
+
+    public boolean tcpNoDelay() {
+        return tcpNoDelay;
+    }
+
+    public int receiveBufferSize() {
+        return receiveBufferSize;
+    }
+
+    public int sendBufferSize() {
+        return sendBufferSize;
+    }
+
+    public int writeBufferLowWaterMark() {
+        return writeBufferLowWaterMark;
+    }
+
+    public int writeBufferHighWaterMark() {
+        return writeBufferHighWaterMark;
+    }
+
+    @Override
+    public String toString() {
+        return "TransportOptions{transport=" + transport
+                + ", eventLoopThreads=" + eventLoopThreads
+                + ", tcpNoDelay=" + tcpNoDelay
+                + ", receiveBufferSize=" + receiveBufferSize
+                + ", sendBufferSize=" + sendBufferSize
+                + ", writeBufferLowWaterMark=" + writeBufferLowWaterMark
+                + ", writeBufferHighWaterMark=" + writeBufferHighWaterMark
+                + '}';
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.transport;
+
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.util.concurrent.DefaultThreadFactory;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpClient;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Owns the event loops for a transport and creates {@link TcpClient}s that run on them with the socket options
+ * applied. The clients can be passed to {@code MemcachedConnection.connect} or a {@code MemcachedConnectionPool}.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class TransportResources implements AutoCloseable {
+
+    private final TransportOptions options;
+
+    private final EventLoopGroup eventLoopGroup;
+
+    public TransportResources() {
+        this(TransportOptions.DEFAULT);
+    }
+
+    /**
+     * Start the event loops.
+     *
+     * @param options The transport, event loop and socket settings.
+     */
+    public TransportResources(final TransportOptions options) {
+        final Transport transport = options.transport();
+        this.options = options;
+        this.eventLoopGroup = transport.newEventLoopGroup(options.eventLoopThreads(),
+                new DefaultThreadFactory("memcached-" + transport.name().toLowerCase(Locale.ROOT), true));
+    }
+
+    public TransportOptions options() {
+        return options;
+    }
+
+    public Transport transport() {
+        return options.transport();
+    }
+
+    /**
+     * Create an unpooled {@link TcpClient} for a server that runs on these event loops.
+     *
+     * @param address The server address.
+     * @return The TCP client.
+     */
+    public TcpClient tcpClient(final InetSocketAddress address) {
+        TcpClient client = TcpClient.newConnection()
+                .remoteAddress(() -> address)
+                // Setting the group and channel class directly keeps reactor-netty's own event loops out of it
+                .bootstrap(bootstrap -> bootstrap.group(eventLoopGroup).channel(options.transport().channelClass()))
+                .option(ChannelOption.TCP_NODELAY, options.tcpNoDelay())
+                .option(ChannelOption.WRITE_BUFFER_WATER_MARK, new WriteBufferWaterMark(
+                        options.writeBufferLowWaterMark(), options.writeBufferHighWaterMark()));
+        if (options.receiveBufferSize() > 0) {
+            client = client.option(ChannelOption.SO_RCVBUF, options.receiveBufferSize());
+        }
+        if (options.sendBufferSize() > 0) {
+            client = client.option(ChannelOption.SO_SNDBUF, options.sendBufferSize());
+        }
+        return client;
+    }
+
+    /**
+     * Shut down the event loops once the connections running on them have been closed.
+     *
+     * @param quietPeriod The period during which no tasks may be submitted for the shutdown to proceed.
+     * @param timeout     The maximum time to wait for the shutdown.
+     * @return Completes when the event loops have terminated.
+     */
+    public Mono<Void> closeLater(final Duration quietPeriod,
+                                 final Duration timeout) {
+        return Mono.create(sink -> eventLoopGroup.shutdownGracefully(
+                quietPeriod.toMillis(), timeout.toMillis(), TimeUnit.MILLISECONDS)
+                .addListener(future -> {
+                    if (future.isSuccess()) {
+                        sink.success();
+                    } else {
+                        sink.error(future.cause());
+                    }
+                }));
+    }
+
+    @Override
+    public void close() {
+        closeLater(Duration.ZERO, Duration.ofSeconds(2)).block();
+    }
+}
@@ -14,22 +14,26 @@
  * limitations under the License.
  */
 
-package com.buralo.memcached.hash;
+package com.buralo.memcached;
 
 /**
- * Calculate the hash of a Memcached key.
+ * Detects virtual threads on Java 21 and later.
  *
  * @author Brian Matthews
  * @since 1.0.0
  */
-@FunctionalInterface
-public interface HashAlgorithm {
+final class VirtualThreads {
+
+    private VirtualThreads() {
+    }
 
     /**
-     * Calculate the hash of a Memcached key.
+     * Check if a thread is a virtual thread.
      *
-     * @param key The Memcached key.
-     * @return The hash.
+     * @param thread The thread.
+     * @return {@code true} if the thread is a virtual thread.
      */
-    long hash(String key);
+    static boolean isVirtual(final Thread thread) {
+        return thread.isVirtual();
+    }
 }
@@ -0,0 +1,184 @@
+package com.buralo.memcached;
+
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.core.publisher.MonoProcessor;
+import reactor.core.publisher.MonoSink;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * A node for tests that wraps another node to delay or fail its requests or hold back their responses, or that
+ * stands in for a server that never responds.
+ * <p>
+ * Without a delegate each request waits until it is cancelled or the node is aborted, and quiet batches never
+ * complete.
+ */
+public class StubMemcachedNode implements MemcachedNode {
+
+    private final MemcachedNode delegate;
+
+    private final InetSocketAddress address;
+
+    private final int maxInFlight;
+
+    private final Queue<MonoSink<Response>> pending = new ConcurrentLinkedQueue<>();
+
+    private final AtomicInteger batches = new AtomicInteger();
+
+    private final AtomicInteger concurrentBatches = new AtomicInteger();
+
+    private final AtomicInteger maxConcurrentBatches = new AtomicInteger();
+
+    private final AtomicReference<MonoProcessor<Void>> held = new AtomicReference<>();
+
+    private volatile Duration delay = Duration.ZERO;
+
+    private volatile Throwable failure;
+
+    /**
+     * Wrap a node, passing requests through until the node is told to delay or fail them.
+     */
+    public StubMemcachedNode(final MemcachedNode delegate) {
+        this.delegate = delegate;
+        this.address = delegate.address();
+        this.maxInFlight = delegate.maxInFlight();
+    }
+
+    /**
+     * Stand in for a server that never responds.
+     */
+    public StubMemcachedNode(final InetSocketAddress address,
+                             final int maxInFlight) {
+        this.delegate = null;
+        this.address = address;
+        this.maxInFlight = maxInFlight;
+    }
+
+    /**
+     * Hold back each request by a delay before it is sent.
+     */
+    public StubMemcachedNode delay(final Duration delay) {
+        this.delay = delay;
+        return this;
+    }
+
+    /**
+     * Fail each request without sending it.
+     */
+    public StubMemcachedNode fail(final Throwable failure) {
+        this.failure = failure;
+        return this;
+    }
+
+    /**
+     * Hold back the response to the next request until the returned action is run. The request itself is sent
+     * straight away.
+     *
+     * @return Releases the response.
+     */
+    public Runnable holdNextResponse() {
+        final MonoProcessor<Void> gate = MonoProcessor.create();
+        held.set(gate);
+        return gate::onComplete;
+    }
+
+    /**
+     * Get the number of quiet batches that have been sent.
+     */
+    public int batches() {
+        return batches.get();
+    }
+
+    /**
+     * Get the most quiet batches that were outstanding at once.
+     */
+    public int maxConcurrentBatches() {
+        return maxConcurrentBatches.get();
+    }
+
+    @Override
+    public InetSocketAddress address() {
+        return address;
+    }
+
+    @Override
+    public int maxInFlight() {
+        return maxInFlight;
+    }
+
+    @Override
+    public int capacity() {
+        return delegate == null ? maxInFlight : delegate.capacity();
+    }
+
+    @Override
+    public int outstanding() {
+        return delegate == null ? pending.size() : delegate.outstanding();
+    }
+
+    @Override
+    public double saturation() {
+        return delegate == null ? (double) pending.size() / maxInFlight : delegate.saturation();
+    }
+
+    @Override
+    public Mono<Response> execute(final Request request) {
+        if (failure != null) {
+            request.discard();
+            return Mono.error(failure);
+        }
+        if (delegate == null) {
+            return Mono.create(sink -> {
+                pending.add(sink);
+                sink.onCancel(() -> pending.remove(sink));
+            });
+        }
+        final Mono<Response> response = delay.isZero()
+                ? delegate.execute(request)
+                : delegate.execute(request).delaySubscription(delay);
+        final MonoProcessor<Void> gate = held.getAndSet(null);
+        return gate == null ? response : response.delayUntil(received -> gate);
+    }
+
+    @Override
+    public Flux<Response> executeQuiet(final List<? extends Request> requests) {
+        if (failure != null) {
+            requests.forEach(Request::discard);
+            return Flux.error(failure);
+        }
+        if (delegate == null) {
+            return Flux.never();
+        }
+        final Flux<Response> responses = delay.isZero()
+                ? delegate.executeQuiet(requests)
+                : delegate.executeQuiet(requests).delaySubscription(delay);
+        return responses
+                .doOnSubscribe(subscription -> {
+                    batches.incrementAndGet();
+                    maxConcurrentBatches.accumulateAndGet(concurrentBatches.incrementAndGet(), Math::max);
+                })
+                .doOnTerminate(concurrentBatches::decrementAndGet);
+    }
+
+    @Override
+    public Mono<Void> close() {
+        return delegate == null ? Mono.empty() : delegate.close();
+    }
+
+    @Override
+    public void abort(final Throwable cause) {
+        if (delegate != null) {
+            delegate.abort(cause);
+        }
+        for (MonoSink<Response> sink = pending.poll(); sink != null; sink = pending.poll()) {
+            sink.error(cause);
+        }
+    }
+}
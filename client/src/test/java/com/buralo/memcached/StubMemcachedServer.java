@@ -0,0 +1,247 @@
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.tcp.TcpServer;
+
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * A minimal in-process stand-in for a Memcached server that understands enough of the binary protocol to exercise
+ * the client.
+ */
+public class StubMemcachedServer implements AutoCloseable {
+
+    private final Map<String, byte[]> items = new ConcurrentHashMap<>();
+
+    private final Map<String, Long> casValues = new ConcurrentHashMap<>();
+
+    private final Map<String, Integer> flagValues = new ConcurrentHashMap<>();
+
+    private final AtomicLong nextCas = new AtomicLong();
+
+    private final AtomicLong connections = new AtomicLong();
+
+    private final AtomicLong requests = new AtomicLong();
+
+    private final AtomicLong responses = new AtomicLong();
+
+    private final DisposableServer server;
+
+    public StubMemcachedServer() {
+        this(0);
+    }
+
+    /**
+     * Start a server on a fixed port, for example to restart a server that has been closed.
+     */
+    public StubMemcachedServer(final int port) {
+        server = TcpServer.create()
+                .host("127.0.0.1")
+                .port(port)
+                .doOnConnection(connection -> {
+                    connections.incrementAndGet();
+                    connection.addHandlerLast(new RequestHandler());
+                    connection.channel().config().setAutoRead(true);
+                })
+                .handle((inbound, outbound) -> Mono.never())
+                .bindNow();
+    }
+
+    public InetSocketAddress address() {
+        return (InetSocketAddress) server.address();
+    }
+
+    public Map<String, byte[]> items() {
+        return items;
+    }
+
+    public Map<String, Integer> flags() {
+        return flagValues;
+    }
+
+    public long connections() {
+        return connections.get();
+    }
+
+    public long requests() {
+        return requests.get();
+    }
+
+    public long responses() {
+        return responses.get();
+    }
+
+    @Override
+    public void close() {
+        server.disposeNow();
+    }
+
+    private final class RequestHandler extends ByteToMessageDecoder {
+
+        @Override
+        protected void decode(final ChannelHandlerContext ctx,
+                              final ByteBuf in,
+                              final List<Object> out) {
+            while (in.readableBytes() >= 24 && in.readableBytes() >= 24 + in.getInt(in.readerIndex() + 8)) {
+                requests.incrementAndGet();
+                in.skipBytes(1);
+                final Opcode opcode = Opcode.fromCode(in.readByte());
+                final int keyLength = in.readUnsignedShort();
+                final int extrasLength = in.readUnsignedByte();
+                in.skipBytes(3);
+                final int totalLength = in.readInt();
+                final int opaque = in.readInt();
+                final long cas = in.readLong();
+                final ByteBuf extras = in.readSlice(extrasLength);
+                final String key = in.readCharSequence(keyLength, StandardCharsets.UTF_8).toString();
+                final byte[] value = new byte[totalLength - keyLength - extrasLength];
+                in.readBytes(value);
+                handle(ctx, opcode, opaque, cas, key, extras, value);
+            }
+        }
+
+        @Override
+        public void channelReadComplete(final ChannelHandlerContext ctx) throws Exception {
+            ctx.flush();
+            super.channelReadComplete(ctx);
+        }
+
+        private void handle(final ChannelHandlerContext ctx,
+                            final Opcode opcode,
+                            final int opaque,
+                            final long cas,
+                            final String key,
+                            final ByteBuf extras,
+                            final byte[] value) {
+            final int flags = extras.readableBytes() >= 4 ? extras.getInt(0) : 0;
+            switch (opcode) {
+                case GET:
+                case GETQ:
+                case GETK:
+                case GETKQ: {
+                    final byte[] item = items.get(key);
+                    final boolean withKey = opcode == Opcode.GETK || opcode == Opcode.GETKQ;
+                    if (item != null) {
+                        respond(ctx, opcode, Status.NO_ERROR, opaque, casValues.getOrDefault(key, 0L),
+                                withKey ? key : "", flagValues.getOrDefault(key, 0), 4, item);
+                    } else if (opcode == Opcode.GET || opcode == Opcode.GETK) {
+                        respond(ctx, opcode, Status.NOT_FOUND, opaque, 0L, withKey ? key : "", 0, 0,
+                                "Not found".getBytes(StandardCharsets.UTF_8));
+                    }
+                    break;
+                }
+                case SET:
+                case SETQ:
+                    if (cas != 0L && !Long.valueOf(cas).equals(casValues.get(key))) {
+                        respondUnlessQuiet(ctx, opcode, items.containsKey(key) ? Status.EXISTS : Status.NOT_FOUND,
+                                opaque);
+                        break;
+                    }
+                    items.put(key, value);
+                    casValues.put(key, nextCas.incrementAndGet());
+                    flagValues.put(key, flags);
+                    respondUnlessQuiet(ctx, opcode, Status.NO_ERROR, opaque);
+                    break;
+                case ADD:
+                case ADDQ:
+                    if (items.putIfAbsent(key, value) == null) {
+                        casValues.put(key, nextCas.incrementAndGet());
+                        flagValues.put(key, flags);
+                        respondUnlessQuiet(ctx, opcode, Status.NO_ERROR, opaque);
+                    } else {
+                        respondUnlessQuiet(ctx, opcode, Status.EXISTS, opaque);
+                    }
+                    break;
+                case INCREMENT:
+                case DECREMENT: {
+                    final byte[] item = items.get(key);
+                    final long counter;
+                    if (item == null) {
+                        counter = extras.getLong(8);
+                    } else {
+                        final long current;
+                        try {
+                            current = Long.parseUnsignedLong(new String(item, StandardCharsets.US_ASCII).trim());
+                        } catch (final NumberFormatException e) {
+                            respond(ctx, opcode, Status.NON_NUMERIC_VALUE, opaque, 0L, "", 0, 0,
+                                    "Non-numeric value".getBytes(StandardCharsets.UTF_8));
+                            break;
+                        }
+                        final long delta = extras.getLong(0);
+                        counter = opcode == Opcode.INCREMENT
+                                ? current + delta
+                                : Long.compareUnsigned(current, delta) > 0 ? current - delta : 0L;
+                    }
+                    items.put(key, Long.toUnsignedString(counter).getBytes(StandardCharsets.US_ASCII));
+                    casValues.put(key, nextCas.incrementAndGet());
+                    final byte[] response = new byte[8];
+                    for (int i = 0; i < 8; i++) {
+                        response[i] = (byte) (counter >>> (56 - 8 * i));
+                    }
+                    respond(ctx, opcode, Status.NO_ERROR, opaque, casValues.get(key), "", 0, 0, response);
+                    break;
+                }
+                case DELETE:
+                case DELETEQ:
+                    casValues.remove(key);
+                    flagValues.remove(key);
+                    respondUnlessQuiet(ctx, opcode, items.remove(key) == null
+                            ? Status.NOT_FOUND : Status.NO_ERROR, opaque);
+                    break;
+                default:
+                    respond(ctx, opcode, Status.NO_ERROR, opaque, 0L, "", 0, 0, new byte[0]);
+                    break;
+            }
+        }
+
+        private void respondUnlessQuiet(final ChannelHandlerContext ctx,
+                                        final Opcode opcode,
+                                        final Status status,
+                                        final int opaque) {
+            final boolean quiet = opcode == Opcode.SETQ || opcode == Opcode.ADDQ || opcode == Opcode.DELETEQ;
+            if (!quiet || status != Status.NO_ERROR) {
+                respond(ctx, opcode, status, opaque, 0L, "", 0, 0, new byte[0]);
+            }
+        }
+
+        private void respond(final ChannelHandlerContext ctx,
+                             final Opcode opcode,
+                             final Status status,
+                             final int opaque,
+                             final long cas,
+                             final String key,
+                             final int flags,
+                             final int extrasLength,
+                             final byte[] value) {
+            responses.incrementAndGet();
+            final byte[] keyBytes = key.getBytes(StandardCharsets.UTF_8);
+            final ByteBuf buf = ctx.alloc().buffer(24 + extrasLength + keyBytes.length + value.length);
+            buf.writeByte(0x81);
+            buf.writeByte(opcode.code());
+            buf.writeShort(keyBytes.length);
+            buf.writeByte(extrasLength);
+            buf.writeByte(0);
+            buf.writeShort(status.code());
+            buf.writeInt(extrasLength + keyBytes.length + value.length);
+            buf.writeInt(opaque);
+            buf.writeLong(cas);
+            if (extrasLength == 4) {
+                buf.writeInt(flags);
+            } else {
+                buf.writeZero(extrasLength);
+            }
+            buf.writeBytes(keyBytes);
+            buf.writeBytes(value);
+            ctx.write(buf);
+        }
+    }
+}
@@ -0,0 +1,133 @@
+package com.buralo.memcached;
+
+import com.buralo.memcached.codec.ValueCodecs;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Exceptions;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+import static org.assertj.core.api.Assertions.catchThrowable;
+
+public class TestBlockingMemcachedClient {
+
+    private final List<StubMemcachedServer> servers = new ArrayList<>();
+
+    private final List<MemcachedConnection> connections = new ArrayList<>();
+
+    private BlockingMemcachedClient client;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 2; i++) {
+            final StubMemcachedServer server = new StubMemcachedServer();
+            servers.add(server);
+            connections.add(MemcachedConnection.connect(server.address()).block());
+        }
+        client = new BlockingMemcachedClient(new MemcachedClient(connections, DefaultHashAlgorithms.FNV1A_32));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connections.forEach(connection -> connection.close().block());
+        servers.forEach(StubMemcachedServer::close);
+    }
+
+    @Test
+    public void setGetAndDelete() {
+        client.set("Hello", 0, 0, "World", ValueCodecs.STRING);
+        assertThat(client.get("Hello", ValueCodecs.STRING)).isEqualTo("World");
+        assertThat(client.delete("Hello")).isTrue();
+        assertThat(client.delete("Hello")).isFalse();
+        assertThat(client.get("Hello", ValueCodecs.STRING)).isNull();
+    }
+
+    @Test
+    public void getMultiReturnsOnlyHits() {
+        client.set("a", 0, 0, "1", ValueCodecs.STRING);
+        client.set("b", 0, 0, "2", ValueCodecs.STRING);
+        final Map<String, String> values = client.getMulti(Arrays.asList("a", "b", "c"), ValueCodecs.STRING);
+        assertThat(values).hasSize(2).containsEntry("a", "1").containsEntry("b", "2");
+    }
+
+    @Test
+    public void countersReturnTheirNewValue() {
+        assertThat(client.increment("counter", 5, 10, 0)).isEqualTo(10);
+        assertThat(client.increment("counter", 5, 10, 0)).isEqualTo(15);
+        assertThat(client.decrement("counter", 20, 0, 0)).isEqualTo(0);
+    }
+
+    @Test
+    public void errorStatusesAreThrown() {
+        client.set("text", 0, 0, "abc", ValueCodecs.STRING);
+        assertThatThrownBy(() -> client.increment("text", 1, 0, 0))
+                .isInstanceOf(MemcachedException.class)
+                .extracting(e -> ((MemcachedException) e).status())
+                .isEqualTo(Status.NON_NUMERIC_VALUE);
+    }
+
+    @Test
+    public void callsGiveUpAfterTheTimeout() {
+        final BlockingMemcachedClient silent = new BlockingMemcachedClient(
+                new MemcachedClient(Collections.singletonList(new StubMemcachedNode(new InetSocketAddress("127.0.0.1", 11211), 1)), DefaultHashAlgorithms.FNV1A_32),
+                Duration.ofMillis(50));
+        final Throwable thrown = catchThrowable(() -> silent.get("Hello", ValueCodecs.STRING));
+        assertThat(Exceptions.unwrap(thrown)).isInstanceOf(TimeoutException.class);
+    }
+
+    @Test
+    public void interruptedCallsAreCancelled() {
+        final BlockingMemcachedClient silent = new BlockingMemcachedClient(
+                new MemcachedClient(Collections.singletonList(new StubMemcachedNode(new InetSocketAddress("127.0.0.1", 11211), 1)), DefaultHashAlgorithms.FNV1A_32));
+        Thread.currentThread().interrupt();
+        try {
+            final Throwable thrown = catchThrowable(() -> silent.get("Hello", ValueCodecs.STRING));
+            assertThat(Exceptions.unwrap(thrown)).isInstanceOf(InterruptedException.class);
+            assertThat(Thread.currentThread().isInterrupted()).isTrue();
+        } finally {
+            Thread.interrupted();
+        }
+    }
+
+    @Test
+    public void manyThreadsShareTheConnections() throws Exception {
+        final int callers = 200;
+        final ExecutorService executor = Executors.newFixedThreadPool(callers);
+        try {
+            final List<Future<String>> results = new ArrayList<>(callers);
+            for (int i = 0; i < callers; i++) {
+                final String key = "key" + i;
+                results.add(executor.submit(() -> {
+                    client.set(key, 0, 0, key, ValueCodecs.STRING);
+                    return client.get(key, ValueCodecs.STRING);
+                }));
+            }
+            for (int i = 0; i < callers; i++) {
+                assertThat(results.get(i).get()).isEqualTo("key" + i);
+            }
+        } finally {
+            executor.shutdownNow();
+        }
+    }
+
+    @Test
+    public void timeoutMustBePositive() {
+        final MemcachedClient reactive = client.reactive();
+        assertThatThrownBy(() -> new BlockingMemcachedClient(reactive, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
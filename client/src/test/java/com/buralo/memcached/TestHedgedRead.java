@@ -0,0 +1,111 @@
+package com.buralo.memcached;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestHedgedRead {
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, "Hello");
+
+    private static final ReplicaPolicy POLICY = new ReplicaPolicy(2, true, 95.0, Duration.ofMillis(1),
+            Duration.ofSeconds(5));
+
+    private final HedgedRead hedgedRead = new HedgedRead();
+
+    private StubMemcachedServer primaryServer;
+
+    private StubMemcachedServer replicaServer;
+
+    private MemcachedConnection primary;
+
+    private MemcachedConnection replica;
+
+    @BeforeEach
+    public void setUp() {
+        primaryServer = new StubMemcachedServer();
+        replicaServer = new StubMemcachedServer();
+        primaryServer.items().put("Hello", "primary".getBytes(StandardCharsets.UTF_8));
+        replicaServer.items().put("Hello", "replica".getBytes(StandardCharsets.UTF_8));
+        primary = MemcachedConnection.connect(primaryServer.address()).block();
+        replica = MemcachedConnection.connect(replicaServer.address()).block();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        primary.close().block();
+        replica.close().block();
+        primaryServer.close();
+        replicaServer.close();
+    }
+
+    private static MemcachedNode failing(final MemcachedNode node) {
+        return new StubMemcachedNode(node.address(), 1).fail(new IOException("Connection refused"));
+    }
+
+    private static String valueOf(final Response response) {
+        try {
+            return response.value().toString(StandardCharsets.UTF_8);
+        } finally {
+            response.release();
+        }
+    }
+
+    @Test
+    public void delayAdaptsToThePrimaryLatency() {
+        assertThat(hedgedRead.delayNanos(primary.address(), POLICY)).isEqualTo(Duration.ofSeconds(5).toNanos());
+        final List<String> values = Flux.range(0, HedgedRead.MIN_SAMPLES)
+                .concatMap(i -> hedgedRead.execute(primary, replica, GET, POLICY))
+                .map(TestHedgedRead::valueOf)
+                .collectList()
+                .block();
+        assertThat(values).containsOnly("primary");
+        assertThat(replicaServer.requests()).isZero();
+        assertThat(hedgedRead.delayNanos(primary.address(), POLICY)).isLessThan(Duration.ofSeconds(1).toNanos());
+    }
+
+    @Test
+    public void replicaIsReadAtOnceWhenThePrimaryFails() {
+        final MemcachedNode failing = failing(primary);
+        final long start = System.nanoTime();
+        assertThat(hedgedRead.execute(failing, replica, GET, POLICY).map(TestHedgedRead::valueOf).block())
+                .isEqualTo("replica");
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(2));
+    }
+
+    @Test
+    public void errorIsSignalledWhenBothFail() {
+        final Mono<Response> read = hedgedRead.execute(failing(primary),
+                failing(replica), GET, POLICY);
+        assertThatThrownBy(read::block).hasCauseInstanceOf(IOException.class);
+    }
+
+    @Test
+    public void replicaMissWaitsForThePrimary() {
+        replicaServer.items().clear();
+        final ReplicaPolicy eager = new ReplicaPolicy(2, true, 95.0, Duration.ofMillis(1), Duration.ofMillis(1));
+        final MemcachedNode slow = new StubMemcachedNode(primary).delay(Duration.ofMillis(200));
+        assertThat(hedgedRead.execute(slow, replica, GET, eager).map(TestHedgedRead::valueOf).block())
+                .isEqualTo("primary");
+        assertThat(replicaServer.requests()).isEqualTo(1);
+    }
+
+    @Test
+    public void replicaMissIsReturnedWhenThePrimaryFails() {
+        replicaServer.items().clear();
+        final Response response = hedgedRead.execute(failing(primary), replica, GET, POLICY)
+                .block();
+        assertThat(response.status()).isEqualTo(Status.NOT_FOUND);
+        response.release();
+    }
+}
@@ -0,0 +1,492 @@
+package com.buralo.memcached;
+
+import com.buralo.memcached.cache.NearCache;
+import com.buralo.memcached.codec.ValueCodecs;
+import com.buralo.memcached.compression.DeflateCompressor;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import com.buralo.memcached.hotkey.HotKeyDetector;
+import com.buralo.memcached.locator.ArrayModNodeLocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.netty.tcp.TcpClient;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestMemcachedClient {
+
+    private final List<StubMemcachedServer> servers = new ArrayList<>();
+
+    private final List<MemcachedConnection> connections = new ArrayList<>();
+
+    private MemcachedClient client;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            final StubMemcachedServer server = new StubMemcachedServer();
+            servers.add(server);
+            connections.add(MemcachedConnection.connect(server.address()).block());
+        }
+        client = new MemcachedClient(connections, DefaultHashAlgorithms.FNV1A_32);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connections.forEach(connection -> connection.close().block());
+        servers.forEach(StubMemcachedServer::close);
+    }
+
+    private long totalRequests() {
+        return servers.stream().mapToLong(StubMemcachedServer::requests).sum();
+    }
+
+    private long totalResponses() {
+        return servers.stream().mapToLong(StubMemcachedServer::responses).sum();
+    }
+
+    @Test
+    public void setGetAndDelete() {
+        client.set("Hello", 0, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8)).block().release();
+        final Response hit = client.get("Hello").block();
+        assertThat(hit.status()).isEqualTo(Status.NO_ERROR);
+        assertThat(hit.value().toString(StandardCharsets.UTF_8)).isEqualTo("World");
+        hit.release();
+        client.delete("Hello").block().release();
+        final Response miss = client.get("Hello").block();
+        assertThat(miss.status()).isEqualTo(Status.NOT_FOUND);
+        miss.release();
+    }
+
+    @Test
+    public void addAndCompareAndSet() {
+        final Response added = client.add("Hello", 0, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8))
+                .block();
+        assertThat(added.status()).isEqualTo(Status.NO_ERROR);
+        added.release();
+        final Response exists = client.add("Hello", 0, 0, Unpooled.copiedBuffer("There", StandardCharsets.UTF_8))
+                .block();
+        assertThat(exists.status()).isEqualTo(Status.EXISTS);
+        exists.release();
+
+        final Response read = client.get("Hello").block();
+        final long cas = read.cas();
+        read.release();
+        final Response swapped = client.compareAndSet("Hello", 0, 0,
+                Unpooled.copiedBuffer("There", StandardCharsets.UTF_8), cas).block();
+        assertThat(swapped.status()).isEqualTo(Status.NO_ERROR);
+        swapped.release();
+        final Response stale = client.compareAndSet("Hello", 0, 0,
+                Unpooled.copiedBuffer("Again", StandardCharsets.UTF_8), cas).block();
+        assertThat(stale.status()).isEqualTo(Status.EXISTS);
+        stale.release();
+
+        final Response hit = client.get("Hello").block();
+        assertThat(hit.value().toString(StandardCharsets.UTF_8)).isEqualTo("There");
+        hit.release();
+    }
+
+    @Test
+    public void nearCacheServesRepeatedReads() {
+        final NearCache nearCache = new NearCache(1024 * 1024, Duration.ofMinutes(1));
+        final MemcachedClient cachingClient = MemcachedClient.builder()
+                .nodes(connections, DefaultHashAlgorithms.FNV1A_32)
+                .maxBatch(16)
+                .nearCache(nearCache)
+                .build();
+        cachingClient.set("Hello", 0, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8)).block().release();
+        final long requestsBefore = totalRequests();
+
+        for (int i = 0; i < 10; i++) {
+            final Response hit = cachingClient.get("Hello").block();
+            assertThat(hit.value().toString(StandardCharsets.UTF_8)).isEqualTo("World");
+            hit.release();
+        }
+
+        assertThat(totalRequests() - requestsBefore).isEqualTo(1L);
+        assertThat(nearCache.hits()).isEqualTo(9L);
+
+        cachingClient.set("Hello", 0, 0, Unpooled.copiedBuffer("There", StandardCharsets.UTF_8)).block().release();
+        final Response updated = cachingClient.get("Hello").block();
+        assertThat(updated.value().toString(StandardCharsets.UTF_8)).isEqualTo("There");
+        updated.release();
+
+        cachingClient.delete("Hello").block().release();
+        final Response miss = cachingClient.get("Hello").block();
+        assertThat(miss.status()).isEqualTo(Status.NOT_FOUND);
+        miss.release();
+        assertThat(nearCache.size()).isZero();
+    }
+
+    @Test
+    public void readAnsweredBeforeAWriteIsNotCachedAfterIt() throws Exception {
+        final NearCache nearCache = new NearCache(1024 * 1024, Duration.ofMinutes(1));
+        final StubMemcachedNode node = new StubMemcachedNode(connections.get(0));
+        final MemcachedClient cachingClient = MemcachedClient.builder()
+                .nodes(Collections.singletonList(node), DefaultHashAlgorithms.FNV1A_32)
+                .nearCache(nearCache)
+                .build();
+        cachingClient.set("Hello", 0, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8)).block().release();
+
+        final Runnable releaseRead = node.holdNextResponse();
+        final CompletableFuture<Response> read = cachingClient.get("Hello").toFuture();
+        // The GET is answered before the SET on the same connection but its response is handled after the SET's
+        cachingClient.set("Hello", 0, 0, Unpooled.copiedBuffer("There", StandardCharsets.UTF_8)).block().release();
+        releaseRead.run();
+        final Response stale = read.get(5, TimeUnit.SECONDS);
+        assertThat(stale.value().toString(StandardCharsets.UTF_8)).isEqualTo("World");
+        stale.release();
+
+        assertThat(nearCache.size()).isZero();
+        final Response current = cachingClient.get("Hello").block();
+        assertThat(current.value().toString(StandardCharsets.UTF_8)).isEqualTo("There");
+        current.release();
+    }
+
+    @Test
+    public void nearCacheHoldsOnlyHotKeys() {
+        final NearCache nearCache = new NearCache(1024 * 1024, Duration.ofMinutes(1));
+        final HotKeyDetector hotKeys = new HotKeyDetector(2, Duration.ofMinutes(1), 1);
+        final MemcachedClient hotKeyClient = MemcachedClient.builder()
+                .nodes(connections, DefaultHashAlgorithms.FNV1A_32)
+                .maxBatch(16)
+                .nearCache(nearCache)
+                .hotKeys(hotKeys)
+                .build();
+        hotKeyClient.set("hot", 0, 0, Unpooled.copiedBuffer("value", StandardCharsets.UTF_8)).block().release();
+        for (int i = 0; i < 30; i++) {
+            hotKeyClient.set("cold" + i, 0, 0, Unpooled.copiedBuffer("value", StandardCharsets.UTF_8)).block()
+                    .release();
+        }
+        final long requestsBefore = totalRequests();
+
+        for (int i = 0; i < 30; i++) {
+            hotKeyClient.get("hot").block().release();
+            hotKeyClient.get("cold" + i).block().release();
+        }
+
+        assertThat(totalRequests() - requestsBefore).isEqualTo(31L);
+        assertThat(nearCache.size()).isLessThanOrEqualTo(6);
+        final MemcachedNode node = hotKeyClient.nodeFor("hot");
+        assertThat(hotKeys.isHot(node.address(), "hot")).isTrue();
+        assertThat(hotKeys.hotKeys(node.address()).get(0).key()).isEqualTo("hot");
+        assertThat(hotKeys.hotKeys(node.address()).get(0).requests()).isEqualTo(30L);
+    }
+
+    @Test
+    public void concurrentGetsOfTheSameKeyAreCoalesced() {
+        final MemcachedClient coalescingClient = MemcachedClient.builder()
+                .nodes(connections, DefaultHashAlgorithms.FNV1A_32)
+                .maxBatch(16)
+                .coalesceGets(true)
+                .build();
+        coalescingClient.set("Hello", 0, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8)).block().release();
+        final long requestsBefore = totalRequests();
+
+        final List<Response> responses = Flux.range(0, 100)
+                .flatMap(i -> coalescingClient.get("Hello"), 100)
+                .collectList()
+                .block();
+
+        assertThat(totalRequests() - requestsBefore).isLessThan(10L);
+        assertThat(responses).hasSize(100).allSatisfy(response -> {
+            assertThat(response.value().toString(StandardCharsets.UTF_8)).isEqualTo("World");
+            assertThat(response.release()).isTrue();
+        });
+        assertThat(responses.get(0).value().refCnt()).isZero();
+    }
+
+    @Test
+    public void typedGetDecodesAndReleasesTheValue() {
+        client.set("Hello", 0, 0, "Grüß Gott", ValueCodecs.STRING).block().release();
+        assertThat(client.get("Hello", ValueCodecs.STRING).block()).isEqualTo("Grüß Gott");
+        assertThat(client.get("Hello", ValueCodecs.BYTE_ARRAY).block())
+                .isEqualTo("Grüß Gott".getBytes(StandardCharsets.UTF_8));
+        assertThat(client.get("Goodbye", ValueCodecs.STRING).blockOptional()).isEmpty();
+
+        final Response response = client.get("Hello").block();
+        final ByteBuf value = response.value();
+        response.release();
+        assertThat(value.refCnt()).isZero();
+    }
+
+    @Test
+    public void countersCanBeIncrementedAndRead() {
+        assertThat(client.increment("counter", 5L, 10L, 0).block()).isEqualTo(10L);
+        assertThat(client.increment("counter", 5L, 10L, 0).block()).isEqualTo(15L);
+        assertThat(client.decrement("counter", 20L, 10L, 0).block()).isEqualTo(0L);
+        client.set("counter", 0, 0, 41L, ValueCodecs.COUNTER).block().release();
+        assertThat(client.increment("counter", 1L, 0L, 0).block()).isEqualTo(42L);
+        assertThat(client.get("counter", ValueCodecs.COUNTER).block()).isEqualTo(42L);
+
+        client.set("Hello", 0, 0, "World", ValueCodecs.STRING).block().release();
+        assertThatThrownBy(() -> client.increment("Hello", 1L, 0L, 0).block())
+                .isInstanceOf(MemcachedException.class)
+                .extracting(e -> ((MemcachedException) e).status())
+                .isEqualTo(Status.NON_NUMERIC_VALUE);
+    }
+
+    @Test
+    public void largeValuesAreCompressed() {
+        final MemcachedClient compressingClient = MemcachedClient.builder()
+                .nodes(connections, DefaultHashAlgorithms.FNV1A_32)
+                .maxBatch(16)
+                .compressor(new DeflateCompressor())
+                .build();
+        final StringBuilder builder = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item").append(i).append("\"},");
+        }
+        final String large = builder.toString();
+        compressingClient.set("large", 0x100, 0, Unpooled.copiedBuffer(large, StandardCharsets.UTF_8))
+                .block().release();
+        compressingClient.set("small", 0x100, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8))
+                .block().release();
+
+        final StubMemcachedServer largeServer = servers.get(connections.indexOf(client.nodeFor("large")));
+        assertThat(largeServer.items().get("large").length).isLessThan(large.length() / 4);
+        assertThat(largeServer.flags().get("large")).isEqualTo(0x100 | DeflateCompressor.COMPRESSED_FLAG);
+        final StubMemcachedServer smallServer = servers.get(connections.indexOf(client.nodeFor("small")));
+        assertThat(smallServer.flags().get("small")).isEqualTo(0x100);
+
+        final Response hit = compressingClient.get("large").block();
+        assertThat(hit.value().toString(StandardCharsets.UTF_8)).isEqualTo(large);
+        hit.release();
+        final Map<String, String> hits = compressingClient.getMulti(Flux.just("large", "small"))
+                .collectMap(Response::key, response -> {
+                    final String value = response.value().toString(StandardCharsets.UTF_8);
+                    response.release();
+                    return value;
+                })
+                .block();
+        assertThat(hits).containsEntry("large", large).containsEntry("small", "World");
+    }
+
+    @Test
+    public void getMultiReturnsOnlyHitsInOneBatchPerServer() {
+        for (int i = 0; i < 100; i += 2) {
+            client.set("key" + i, 0, 0, Unpooled.copiedBuffer("value" + i, StandardCharsets.UTF_8)).block().release();
+        }
+        final long requestsBefore = totalRequests();
+        final long responsesBefore = totalResponses();
+
+        final Map<String, String> hits = client.getMulti(Flux.range(0, 100).map(i -> "key" + i))
+                .collectMap(Response::key, response -> {
+                    final String value = response.value().toString(StandardCharsets.UTF_8);
+                    response.release();
+                    return value;
+                })
+                .block();
+
+        assertThat(hits).hasSize(50);
+        for (int i = 0; i < 100; i += 2) {
+            assertThat(hits).containsEntry("key" + i, "value" + i);
+        }
+        assertThat(totalRequests() - requestsBefore).isEqualTo(100 + servers.size());
+        assertThat(totalResponses() - responsesBefore).isEqualTo(50 + servers.size());
+    }
+
+    @Test
+    public void getMultiSplitsLargeBatches() {
+        final MemcachedClient smallBatches = new MemcachedClient(connections, DefaultHashAlgorithms.FNV1A_32, 10);
+        client.set("key0", 0, 0, Unpooled.copiedBuffer("value0", StandardCharsets.UTF_8)).block().release();
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 95; i++) {
+            keys.add("key" + i);
+        }
+        final List<String> hits = smallBatches.getMulti(Flux.fromIterable(keys))
+                .map(response -> {
+                    final String key = response.key();
+                    response.release();
+                    return key;
+                })
+                .collectList()
+                .block();
+        assertThat(hits).isEqualTo(Arrays.asList("key0"));
+    }
+
+    @Test
+    public void getMultiLimitsTheBatchesInFlightToEachServer() {
+        final StubMemcachedNode node = new StubMemcachedNode(MemcachedConnection.connect(
+                TcpClient.newConnection().remoteAddress(() -> servers.get(0).address()), 8).block());
+        final MemcachedClient smallBatches = new MemcachedClient(Collections.singletonList(node),
+                DefaultHashAlgorithms.FNV1A_32, 3);
+        final List<String> keys = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            keys.add("key" + i);
+            smallBatches.set("key" + i, 0, 0, Unpooled.copiedBuffer("value", StandardCharsets.UTF_8)).block()
+                    .release();
+        }
+        final Long hits = smallBatches.getMulti(Flux.fromIterable(keys))
+                .doOnNext(Response::release)
+                .count()
+                .block();
+        assertThat(hits).isEqualTo(100L);
+        assertThat(node.batches()).isEqualTo(34);
+        // Each batch of three GETKQs and a NOOP takes four places in the window of eight, plus one waiting
+        assertThat(node.maxConcurrentBatches()).isLessThanOrEqualTo(3);
+        node.close().block();
+    }
+
+    @Test
+    public void bulkWriteOnlyReportsFailures() {
+        client.set("key7", 0, 0, Unpooled.copiedBuffer("existing", StandardCharsets.UTF_8)).block().release();
+        final long requestsBefore = totalRequests();
+        final long responsesBefore = totalResponses();
+
+        final List<String> failures = client.bulkWrite(Flux.range(0, 1000)
+                .map(i -> Mutation.add("key" + i, 0, 0, Unpooled.copiedBuffer("value" + i, StandardCharsets.UTF_8))))
+                .map(failure -> {
+                    assertThat(failure.getT2().status()).isEqualTo(Status.EXISTS);
+                    assertThat(failure.getT2().opcode()).isEqualTo(Opcode.ADDQ);
+                    failure.getT2().release();
+                    return failure.getT1().key();
+                })
+                .collectList()
+                .block();
+
+        assertThat(failures).containsExactly("key7");
+        assertThat(totalRequests() - requestsBefore).isGreaterThanOrEqualTo(1000 + servers.size());
+        assertThat(totalResponses() - responsesBefore).isLessThan(10);
+        final Response hit = client.get("key999").block();
+        assertThat(hit.value().toString(StandardCharsets.UTF_8)).isEqualTo("value999");
+        hit.release();
+    }
+
+    @Test
+    public void bulkDelete() {
+        client.set("Hello", 0, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8)).block().release();
+        final List<String> failures = client.bulkWrite(Flux.just(Mutation.delete("Hello"), Mutation.delete("Goodbye")))
+                .map(failure -> {
+                    failure.getT2().release();
+                    return failure.getT1().key();
+                })
+                .collectList()
+                .block();
+        assertThat(failures).containsExactly("Goodbye");
+        assertThat(servers.stream().noneMatch(server -> server.items().containsKey("Hello"))).isTrue();
+    }
+
+    @Test
+    public void getMultiWithNoKeys() {
+        assertThat(client.getMulti(Flux.empty()).count().block()).isEqualTo(0L);
+    }
+
+    @Test
+    public void replicatedWritesReachEveryReplica() {
+        final ReplicaPolicy policy = new ReplicaPolicy(2, false);
+        final MemcachedClient replicatingClient = MemcachedClient.builder()
+                .nodes(connections, DefaultHashAlgorithms.FNV1A_32)
+                .maxBatch(16)
+                .replicaPolicy(policy)
+                .build();
+        final Response set = replicatingClient.set("Hello", 0, 0, Unpooled.copiedBuffer("World",
+                StandardCharsets.UTF_8)).block();
+        assertThat(set.status()).isEqualTo(Status.NO_ERROR);
+        set.release();
+        assertThat(servers.stream().filter(server -> server.items().containsKey("Hello")).count()).isEqualTo(2L);
+
+        final Response single = replicatingClient.set("Single", 0, 0, Unpooled.copiedBuffer("Copy",
+                StandardCharsets.UTF_8), ReplicaPolicy.NONE).block();
+        single.release();
+        assertThat(servers.stream().filter(server -> server.items().containsKey("Single")).count()).isEqualTo(1L);
+
+        replicatingClient.delete("Hello").block().release();
+        assertThat(servers.stream().filter(server -> server.items().containsKey("Hello")).count()).isZero();
+    }
+
+    @Test
+    public void primaryOnlyWritesRemoveTheReplicaCopies() {
+        final ReplicaPolicy policy = new ReplicaPolicy(2, false);
+        final MemcachedClient replicatingClient = MemcachedClient.builder()
+                .nodes(connections, DefaultHashAlgorithms.FNV1A_32)
+                .maxBatch(16)
+                .replicaPolicy(policy)
+                .build();
+        for (final String key : Arrays.asList("Hello", "Counter", "Bulk")) {
+            replicatingClient.set(key, 0, 0, Unpooled.copiedBuffer("1", StandardCharsets.UTF_8)).block().release();
+            assertThat(servers.stream().filter(server -> server.items().containsKey(key)).count()).isEqualTo(2L);
+        }
+
+        final Response add = replicatingClient.add("Hello", 0, 0, Unpooled.copiedBuffer("World",
+                StandardCharsets.UTF_8)).block();
+        assertThat(add.status()).isEqualTo(Status.EXISTS);
+        add.release();
+        assertThat(replicatingClient.increment("Counter", 1L, 0L, 0).block()).isEqualTo(2L);
+        assertThat(replicatingClient.bulkWrite(Flux.just(Mutation.set("Bulk", 0, 0,
+                Unpooled.copiedBuffer("2", StandardCharsets.UTF_8)))).collectList().block()).isEmpty();
+
+        for (final String key : Arrays.asList("Hello", "Counter", "Bulk")) {
+            assertThat(servers.stream().filter(server -> server.items().containsKey(key)).count()).isEqualTo(1L);
+        }
+    }
+
+    @Test
+    public void primaryOnlyWritesWithAPerCallPolicyRemoveTheReplicaCopies() {
+        final ReplicaPolicy policy = new ReplicaPolicy(2, false);
+        for (final String key : Arrays.asList("Hello", "Counter", "Bulk")) {
+            client.set(key, 0, 0, Unpooled.copiedBuffer("1", StandardCharsets.UTF_8), policy).block().release();
+            assertThat(servers.stream().filter(server -> server.items().containsKey(key)).count()).isEqualTo(2L);
+        }
+
+        final Response hello = client.get("Hello").block();
+        final long cas = hello.cas();
+        hello.release();
+        client.compareAndSet("Hello", 0, 0, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8), cas, policy)
+                .block().release();
+        assertThat(client.increment("Counter", 1L, 0L, 0, policy).block()).isEqualTo(2L);
+        assertThat(client.bulkWrite(Flux.just(Mutation.set("Bulk", 0, 0,
+                Unpooled.copiedBuffer("2", StandardCharsets.UTF_8))), policy).collectList().block()).isEmpty();
+
+        for (final String key : Arrays.asList("Hello", "Counter", "Bulk")) {
+            assertThat(servers.stream().filter(server -> server.items().containsKey(key)).count()).isEqualTo(1L);
+        }
+        final ReplicaPolicy hedged = new ReplicaPolicy(2, true, ReplicaPolicy.DEFAULT_HEDGE_PERCENTILE,
+                Duration.ofNanos(1), Duration.ofNanos(1));
+        final Response hit = client.get("Hello", hedged).block();
+        assertThat(hit.value().toString(StandardCharsets.UTF_8)).isEqualTo("World");
+        hit.release();
+    }
+
+    @Test
+    public void hedgedReadsAreAnsweredByAReplicaWhenThePrimaryIsSlow() {
+        final List<MemcachedNode> nodes = new ArrayList<>(connections);
+        nodes.set(0, new StubMemcachedNode(connections.get(0)).delay(Duration.ofSeconds(2)));
+        final ArrayModNodeLocator<MemcachedNode> locator = new ArrayModNodeLocator<>(nodes,
+                DefaultHashAlgorithms.FNV1A_32);
+        final MemcachedClient hedgingClient = new MemcachedClient(locator, 16);
+        String key = "key";
+        for (int i = 0; locator.primary(key) != nodes.get(0); i++) {
+            key = "key" + i;
+        }
+        final String slowKey = key;
+        servers.forEach(server -> server.items().put(slowKey, "value".getBytes(StandardCharsets.UTF_8)));
+        final long slowRequests = servers.get(0).requests();
+        final ReplicaPolicy policy = new ReplicaPolicy(2, true, ReplicaPolicy.DEFAULT_HEDGE_PERCENTILE,
+                Duration.ofMillis(1), Duration.ofMillis(20));
+
+        final long start = System.nanoTime();
+        final Response hit = hedgingClient.get(slowKey, policy).block(Duration.ofSeconds(1));
+
+        assertThat(Duration.ofNanos(System.nanoTime() - start)).isLessThan(Duration.ofSeconds(1));
+        assertThat(hit.value().toString(StandardCharsets.UTF_8)).isEqualTo("value");
+        hit.release();
+        // The request to the slow primary was cancelled before it was sent
+        assertThat(servers.get(0).requests()).isEqualTo(slowRequests);
+        assertThat(servers.get(1).requests()).isEqualTo(1L);
+    }
+}
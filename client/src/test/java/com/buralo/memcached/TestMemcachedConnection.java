@@ -0,0 +1,265 @@
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelOutboundHandlerAdapter;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.core.publisher.Mono;
+import reactor.netty.Connection;
+import reactor.netty.tcp.TcpClient;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestMemcachedConnection {
+
+    private static final int REQUESTS = 20000;
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnection connection;
+
+    private static Request get(final String key) {
+        return (encoder, opaque) -> encoder.get(Opcode.GET, opaque, key);
+    }
+
+    private static Request set(final String key, final String value) {
+        return (encoder, opaque) -> encoder.store(Opcode.SET, opaque, key, 0, 0, 0L,
+                Unpooled.copiedBuffer(value, StandardCharsets.UTF_8));
+    }
+
+    private static String valueOf(final Response response) {
+        try {
+            return response.status() == Status.NO_ERROR ? response.value().toString(StandardCharsets.UTF_8) : null;
+        } finally {
+            response.release();
+        }
+    }
+
+    @BeforeEach
+    public void setUp() {
+        server = new StubMemcachedServer();
+        connection = MemcachedConnection.connect(server.address()).block();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connection.close().block();
+        server.close();
+    }
+
+    @Test
+    public void setThenGet() {
+        final Response set = connection.execute(set("Hello", "World")).block();
+        assertThat(set.status()).isEqualTo(Status.NO_ERROR);
+        set.release();
+        assertThat(connection.execute(get("Hello")).map(TestMemcachedConnection::valueOf).block())
+                .isEqualTo("World");
+        final Response miss = connection.execute(get("Goodbye")).block();
+        assertThat(miss.status()).isEqualTo(Status.NOT_FOUND);
+        miss.release();
+    }
+
+    @Test
+    public void correlateManyRequestsInFlight() {
+        for (int i = 0; i < 100; i++) {
+            server.items().put("key" + i, ("value" + i).getBytes(StandardCharsets.UTF_8));
+        }
+        final List<Boolean> matches = Flux.range(0, 1000)
+                .flatMap(i -> connection.execute(get("key" + i % 100))
+                        .map(response -> ("value" + i % 100).equals(valueOf(response))), 256)
+                .collectList()
+                .block();
+        assertThat(matches).hasSize(1000).containsOnly(true);
+    }
+
+    @Test
+    public void queueRequestsBeyondTheInFlightCap() {
+        final MemcachedConnection small = MemcachedConnection.connect(
+                TcpClient.newConnection().remoteAddress(server::address), 4).block();
+        assertThat(small.maxInFlight()).isEqualTo(4);
+        final Long count = Flux.range(0, 500)
+                .flatMap(i -> small.execute(get("key")).doOnNext(Response::release))
+                .count()
+                .block();
+        assertThat(count).isEqualTo(500L);
+        assertThat(small.outstanding()).isZero();
+        small.close().block();
+    }
+
+    @Test
+    public void failRequestsAfterClose() {
+        connection.close().block();
+        assertThatThrownBy(() -> connection.execute(get("Hello")).block(Duration.ofSeconds(5)))
+                .hasCauseInstanceOf(ClosedChannelException.class);
+    }
+
+    @Test
+    public void pipeliningBeatsRoundTrips() {
+        Flux.range(0, REQUESTS).flatMap(i -> connection.execute(get("key")), 512)
+                .doOnNext(Response::release).blockLast();
+        Flux.range(0, REQUESTS / 10).concatMap(i -> connection.execute(get("key")))
+                .doOnNext(Response::release).blockLast();
+
+        // Take the best of a few runs so a slow or busy machine does not decide the outcome
+        long pipelined = Long.MAX_VALUE;
+        long roundTrips = Long.MAX_VALUE;
+        for (int run = 0; run < 3; run++) {
+            final long pipelineStart = System.nanoTime();
+            Flux.range(0, REQUESTS).flatMap(i -> connection.execute(get("key")), 512)
+                    .doOnNext(Response::release).blockLast();
+            pipelined = Math.min(pipelined, System.nanoTime() - pipelineStart);
+
+            final long roundTripStart = System.nanoTime();
+            Flux.range(0, REQUESTS).concatMap(i -> connection.execute(get("key")))
+                    .doOnNext(Response::release).blockLast();
+            roundTrips = Math.min(roundTrips, System.nanoTime() - roundTripStart);
+        }
+
+        assertThat(pipelined * 2).isLessThan(roundTrips);
+    }
+
+    /**
+     * Issue two bursts of requests from the event loop, the second from a task that runs after the first burst has
+     * been drained, and count the flushes that reach the channel.
+     */
+    private int flushesFor(final FlushPolicy flushPolicy,
+                           final int burst) throws InterruptedException {
+        final Connection raw = TcpClient.newConnection().remoteAddress(server::address).connectNow();
+        final AtomicInteger flushes = new AtomicInteger();
+        raw.channel().pipeline().addFirst(new ChannelOutboundHandlerAdapter() {
+            @Override
+            public void flush(final ChannelHandlerContext ctx) throws Exception {
+                flushes.incrementAndGet();
+                super.flush(ctx);
+            }
+        });
+        final MemcachedConnection batching = new MemcachedConnection(raw, 1024, flushPolicy);
+        final CountDownLatch responses = new CountDownLatch(2 * burst);
+        final Runnable send = () -> {
+            for (int i = 0; i < burst; i++) {
+                batching.execute(get("key")).subscribe(response -> {
+                    response.release();
+                    responses.countDown();
+                });
+            }
+        };
+        raw.channel().eventLoop().execute(() -> {
+            send.run();
+            raw.channel().eventLoop().execute(send);
+        });
+        assertThat(responses.await(5, TimeUnit.SECONDS)).isTrue();
+        batching.close().block();
+        return flushes.get();
+    }
+
+    @Test
+    public void batchedFlushCoalescesDrainsInOneIteration() throws InterruptedException {
+        assertThat(flushesFor(FlushPolicy.IMMEDIATE, 10)).isEqualTo(2);
+        assertThat(flushesFor(FlushPolicy.BATCHED, 10)).isEqualTo(1);
+    }
+
+    @Test
+    public void batchedFlushHonoursLimits() throws InterruptedException {
+        assertThat(flushesFor(new FlushPolicy(Integer.MAX_VALUE, 4), 10)).isEqualTo(5);
+        // A GET for "key" is 27 bytes so the byte limit is reached every fifth request
+        assertThat(flushesFor(new FlushPolicy(5 * 27, 1000), 10)).isEqualTo(4);
+        assertThatThrownBy(() -> new FlushPolicy(0, 1)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new FlushPolicy(1, 0)).isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void windowsTooSmallForAQuietBatchAreRejected() {
+        final Connection raw = TcpClient.newConnection().remoteAddress(server::address).connectNow();
+        try {
+            assertThatThrownBy(() -> new MemcachedConnection(raw, 1)).isInstanceOf(IllegalArgumentException.class);
+        } finally {
+            raw.disposeNow();
+        }
+        assertThatThrownBy(() -> MemcachedConnection.connect(
+                TcpClient.newConnection().remoteAddress(server::address), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void cancelledRequestReleasesResponse() {
+        final Mono<Response> request = connection.execute(get("Hello"));
+        request.subscribe().dispose();
+        assertThat(connection.execute(get("Hello")).map(Response::status).block()).isEqualTo(Status.NOT_FOUND);
+    }
+
+    @Test
+    public void quietResponsesCarryTheIndexOfTheirRequest() {
+        server.items().put("b", "2".getBytes(StandardCharsets.UTF_8));
+        server.items().put("c", "3".getBytes(StandardCharsets.UTF_8));
+        connection.execute(get("a")).block().release();
+        final List<Integer> indexes = connection.executeQuiet(Arrays.asList(
+                        (encoder, opaque) -> encoder.get(Opcode.GETKQ, opaque, "a"),
+                        (encoder, opaque) -> encoder.get(Opcode.GETKQ, opaque, "b"),
+                        (encoder, opaque) -> encoder.get(Opcode.GETKQ, opaque, "c")))
+                .map(response -> {
+                    response.release();
+                    return response.opaque();
+                })
+                .collectList()
+                .block();
+        assertThat(indexes).containsExactly(1, 2);
+    }
+
+    @Test
+    public void discardedRequestsReleaseTheirValues() throws InterruptedException {
+        final ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.PARANOID);
+        try {
+            final ByteBuf cancelled = PooledByteBufAllocator.DEFAULT.directBuffer().writeInt(1);
+            final ByteBuf oversized = PooledByteBufAllocator.DEFAULT.directBuffer().writeInt(2);
+            final ByteBuf closed = PooledByteBufAllocator.DEFAULT.directBuffer().writeInt(3);
+
+            // Cancel from the event loop so the request is still queued when it is cancelled
+            final Connection raw = TcpClient.newConnection().remoteAddress(server::address).connectNow();
+            final MemcachedConnection cancelling = new MemcachedConnection(raw, 2);
+            final CountDownLatch issued = new CountDownLatch(1);
+            raw.channel().eventLoop().execute(() -> {
+                cancelling.execute(Mutation.set("Hello", 0, 0, cancelled)).subscribe().dispose();
+                issued.countDown();
+            });
+            assertThat(issued.await(5, TimeUnit.SECONDS)).isTrue();
+            final Response miss = cancelling.execute(get("Hello")).block();
+            assertThat(miss.status()).isEqualTo(Status.NOT_FOUND);
+            miss.release();
+            cancelling.close().block();
+
+            final MemcachedConnection small = MemcachedConnection.connect(
+                    TcpClient.newConnection().remoteAddress(server::address), 2).block();
+            assertThatThrownBy(() -> small.executeQuiet(Arrays.asList(
+                    Mutation.set("Hello", 0, 0, oversized), Mutation.delete("World"))).blockLast())
+                    .isInstanceOf(IllegalArgumentException.class);
+            small.close().block();
+
+            connection.close().block();
+            assertThatThrownBy(() -> connection.execute(Mutation.set("Hello", 0, 0, closed)).block())
+                    .hasCauseInstanceOf(ClosedChannelException.class);
+
+            assertThat(cancelled.refCnt()).isZero();
+            assertThat(oversized.refCnt()).isZero();
+            assertThat(closed.refCnt()).isZero();
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+}
@@ -0,0 +1,131 @@
+package com.buralo.memcached;
+
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.netty.tcp.TcpClient;
+
+import java.nio.channels.ClosedChannelException;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestMemcachedConnectionPool {
+
+    private static final int SIZE = 4;
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnectionPool pool;
+
+    private static Request get(final String key) {
+        return (encoder, opaque) -> encoder.get(Opcode.GET, opaque, key);
+    }
+
+    private static Request set(final String key, final String value) {
+        return (encoder, opaque) -> encoder.store(Opcode.SET, opaque, key, 0, 0, 0L,
+                Unpooled.copiedBuffer(value, StandardCharsets.UTF_8));
+    }
+
+    private static String valueOf(final Response response) {
+        try {
+            return response.status() == Status.NO_ERROR ? response.value().toString(StandardCharsets.UTF_8) : null;
+        } finally {
+            response.release();
+        }
+    }
+
+    private void awaitServerConnections(final long expected) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (server.connections() < expected && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(server.connections()).isEqualTo(expected);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        server = new StubMemcachedServer();
+        pool = new MemcachedConnectionPool(server.address(), TcpClient.newConnection(), SIZE, 16);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close().block();
+        server.close();
+    }
+
+    @Test
+    public void connectionsAreOpenedLazily() throws InterruptedException {
+        assertThat(pool.active()).isZero();
+        assertThat(server.connections()).isZero();
+
+        for (int i = 0; i < 10; i++) {
+            assertThat(valueOf(pool.execute(set("key" + i, "value" + i)).block())).isEmpty();
+        }
+
+        assertThat(pool.active()).isEqualTo(1);
+        awaitServerConnections(1);
+    }
+
+    @Test
+    public void warmUpOpensEveryConnection() throws InterruptedException {
+        pool.warmUp().block();
+
+        assertThat(pool.active()).isEqualTo(SIZE);
+        awaitServerConnections(SIZE);
+    }
+
+    @Test
+    public void concurrentRequestsAreSpreadOverTheConnections() throws InterruptedException {
+        pool.execute(set("Hello", "World")).block().release();
+
+        final List<String> values = Flux.range(0, 1000)
+                .flatMap(i -> pool.execute(get("Hello")), 256)
+                .map(TestMemcachedConnectionPool::valueOf)
+                .collectList()
+                .block();
+
+        assertThat(values).hasSize(1000).containsOnly("World");
+        assertThat(pool.active()).isEqualTo(SIZE);
+        awaitServerConnections(SIZE);
+        assertThat(pool.outstanding()).isZero();
+    }
+
+    @Test
+    public void quietBatchesAreCounted() {
+        pool.execute(set("a", "1")).block().release();
+
+        final List<String> values = pool.executeQuiet(
+                        Arrays.asList(
+                                (encoder, opaque) -> encoder.get(Opcode.GETKQ, opaque, "a"),
+                                (encoder, opaque) -> encoder.get(Opcode.GETKQ, opaque, "b")))
+                .map(TestMemcachedConnectionPool::valueOf)
+                .collectList()
+                .block();
+
+        assertThat(values).containsExactly("1");
+        assertThat(pool.outstanding()).isZero();
+    }
+
+    @Test
+    public void windowsTooSmallForAQuietBatchAreRejected() {
+        assertThatThrownBy(() -> new MemcachedConnectionPool(server.address(), TcpClient.newConnection(), SIZE, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void failRequestsAfterClose() {
+        pool.warmUp().block();
+        pool.close().block();
+
+        assertThatThrownBy(() -> pool.execute(get("Hello")).block())
+                .hasCauseInstanceOf(ClosedChannelException.class);
+    }
+}
@@ -0,0 +1,21 @@
+package com.buralo.memcached;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestOpcode {
+
+    @Test
+    public void lookUpEveryOpcode() {
+        for (final Opcode opcode : Opcode.values()) {
+            assertThat(Opcode.fromCode(opcode.code())).isEqualTo(opcode);
+        }
+    }
+
+    @Test
+    public void unassignedCodesAreUnknown() {
+        assertThat(Opcode.fromCode((byte) 0x1b)).isEqualTo(Opcode.UNKNOWN);
+        assertThat(Opcode.fromCode((byte) 0x80)).isEqualTo(Opcode.UNKNOWN);
+    }
+}
@@ -0,0 +1,193 @@
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.util.ResourceLeakDetector;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRequestEncoder {
+
+    private static final int ITERATIONS = 100000;
+
+    private final RequestEncoder encoder = new RequestEncoder();
+
+    private static void assertHeader(final ByteBuf buf,
+                                     final Opcode opcode,
+                                     final int keyLength,
+                                     final int extrasLength,
+                                     final int totalLength,
+                                     final int opaque,
+                                     final long cas) {
+        assertThat(buf.getByte(0)).isEqualTo((byte) 0x80);
+        assertThat(buf.getByte(1)).isEqualTo(opcode.code());
+        assertThat(buf.getShort(2)).isEqualTo((short) keyLength);
+        assertThat(buf.getByte(4)).isEqualTo((byte) extrasLength);
+        assertThat(buf.getByte(5)).isEqualTo((byte) 0);
+        assertThat(buf.getShort(6)).isEqualTo((short) 0);
+        assertThat(buf.getInt(8)).isEqualTo(totalLength);
+        assertThat(buf.getInt(12)).isEqualTo(opaque);
+        assertThat(buf.getLong(16)).isEqualTo(cas);
+        assertThat(buf.readableBytes()).isEqualTo(RequestEncoder.HEADER_LENGTH + totalLength);
+    }
+
+    private static String body(final ByteBuf buf, final int offset) {
+        return buf.toString(offset, buf.readableBytes() - offset, StandardCharsets.UTF_8);
+    }
+
+    @Test
+    public void encodeGet() {
+        final ByteBuf buf = encoder.get(Opcode.GETKQ, 12, "Hello");
+        assertThat(buf.isDirect()).isTrue();
+        assertHeader(buf, Opcode.GETKQ, 5, 0, 5, 12, 0L);
+        assertThat(body(buf, 24)).isEqualTo("Hello");
+        buf.release();
+    }
+
+    @Test
+    public void encodeMultiByteKey() {
+        final ByteBuf buf = encoder.get(Opcode.GET, 1, "Búraló");
+        assertHeader(buf, Opcode.GET, 8, 0, 8, 1, 0L);
+        assertThat(body(buf, 24)).isEqualTo("Búraló");
+        buf.release();
+    }
+
+    @Test
+    public void encodeSetWithSmallValue() {
+        final ByteBuf value = Unpooled.copiedBuffer("World", StandardCharsets.UTF_8);
+        final ByteBuf buf = encoder.store(Opcode.SET, 3, "Hello", 0xdeadbeef, 3600, 99L, value);
+        assertThat(value.refCnt()).isEqualTo(0);
+        assertHeader(buf, Opcode.SET, 5, 8, 18, 3, 99L);
+        assertThat(buf.getInt(24)).isEqualTo(0xdeadbeef);
+        assertThat(buf.getInt(28)).isEqualTo(3600);
+        assertThat(body(buf, 32)).isEqualTo("HelloWorld");
+        buf.release();
+    }
+
+    @Test
+    public void encodeSetWithLargeValueWithoutCopying() {
+        final ByteBuf value = Unpooled.directBuffer(4096).writeZero(4096);
+        final ByteBuf buf = encoder.store(Opcode.ADD, 4, "Hello", 0, 0, 0L, value);
+        assertThat(buf).isInstanceOf(CompositeByteBuf.class);
+        assertThat(((CompositeByteBuf) buf).internalComponent(1)).isSameAs(value);
+        assertHeader(buf, Opcode.ADD, 5, 8, 8 + 5 + 4096, 4, 0L);
+        buf.release();
+        assertThat(value.refCnt()).isEqualTo(0);
+    }
+
+    @Test
+    public void encodeQuietSet() {
+        final ByteBuf buf = encoder.store(Opcode.SETQ, 3, "Hello", 0, 0, 0L, Unpooled.EMPTY_BUFFER);
+        assertThat(buf.getByte(1)).isEqualTo((byte) 0x11);
+        assertHeader(buf, Opcode.SETQ, 5, 8, 13, 3, 0L);
+        buf.release();
+        final ByteBuf stats = encoder.stats(4, null);
+        assertThat(stats.getByte(1)).isEqualTo((byte) 0x10);
+        stats.release();
+    }
+
+    @Test
+    public void encodeAppend() {
+        final ByteBuf buf = encoder.concat(Opcode.PREPEND, 5, "Hello", 0L,
+                Unpooled.copiedBuffer("World", StandardCharsets.UTF_8));
+        assertHeader(buf, Opcode.PREPEND, 5, 0, 10, 5, 0L);
+        assertThat(body(buf, 24)).isEqualTo("HelloWorld");
+        buf.release();
+    }
+
+    @Test
+    public void encodeIncrement() {
+        final ByteBuf buf = encoder.counter(Opcode.INCREMENT, 6, "counter", 2L, 10L, 0, 0L);
+        assertHeader(buf, Opcode.INCREMENT, 7, 20, 27, 6, 0L);
+        assertThat(buf.getLong(24)).isEqualTo(2L);
+        assertThat(buf.getLong(32)).isEqualTo(10L);
+        assertThat(buf.getInt(40)).isEqualTo(0);
+        assertThat(body(buf, 44)).isEqualTo("counter");
+        buf.release();
+    }
+
+    @Test
+    public void encodeDelete() {
+        final ByteBuf buf = encoder.delete(Opcode.DELETE, 7, "Hello", 5L);
+        assertHeader(buf, Opcode.DELETE, 5, 0, 5, 7, 5L);
+        buf.release();
+    }
+
+    @Test
+    public void encodeFlush() {
+        final ByteBuf immediate = encoder.flush(Opcode.FLUSH, 8, 0);
+        assertHeader(immediate, Opcode.FLUSH, 0, 0, 0, 8, 0L);
+        immediate.release();
+        final ByteBuf delayed = encoder.flush(Opcode.FLUSH, 9, 60);
+        assertHeader(delayed, Opcode.FLUSH, 0, 4, 4, 9, 0L);
+        assertThat(delayed.getInt(24)).isEqualTo(60);
+        delayed.release();
+    }
+
+    @Test
+    public void encodeNoopVersionAndStats() {
+        final ByteBuf noop = encoder.noop(10);
+        assertHeader(noop, Opcode.NOOP, 0, 0, 0, 10, 0L);
+        noop.release();
+        final ByteBuf version = encoder.version(11);
+        assertHeader(version, Opcode.VERSION, 0, 0, 0, 11, 0L);
+        version.release();
+        final ByteBuf stats = encoder.stats(12, "slabs");
+        assertHeader(stats, Opcode.STATS, 5, 0, 5, 12, 0L);
+        stats.release();
+        final ByteBuf allStats = encoder.stats(13, null);
+        assertHeader(allStats, Opcode.STATS, 0, 0, 0, 13, 0L);
+        allStats.release();
+    }
+
+    @Test
+    public void rejectInvalidRequests() {
+        final StringBuilder longKey = new StringBuilder();
+        for (int i = 0; i <= RequestEncoder.MAX_KEY_LENGTH; i++) {
+            longKey.append('k');
+        }
+        assertThatThrownBy(() -> encoder.get(Opcode.GET, 0, longKey.toString()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> encoder.get(Opcode.GET, 0, ""))
+                .isInstanceOf(IllegalArgumentException.class);
+        final ByteBuf value = Unpooled.buffer().writeZero(4);
+        assertThatThrownBy(() -> encoder.store(Opcode.GET, 0, "Hello", 0, 0, 0L, value))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(value.refCnt()).isEqualTo(0);
+    }
+
+    /**
+     * Leak detection samples a fraction of the allocated buffers and records them so it is disabled while measuring.
+     */
+    @Test
+    public void encodeGetWithoutGarbage() {
+        final ResourceLeakDetector.Level level = ResourceLeakDetector.getLevel();
+        ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.DISABLED);
+        try {
+            assertThat(allocatedBytesPerGet()).isLessThan(1.0);
+        } finally {
+            ResourceLeakDetector.setLevel(level);
+        }
+    }
+
+    private double allocatedBytesPerGet() {
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < ITERATIONS; i++) {
+            encoder.get(Opcode.GET, i, "user:session:0123456789").release();
+        }
+        final long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            encoder.get(Opcode.GET, i, "user:session:0123456789").release();
+        }
+        final double allocated = (double) (threadMXBean.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+        return allocated;
+    }
+}
@@ -0,0 +1,143 @@
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestResponseDecoder {
+
+    private static final byte[] ERROR_MESSAGE = {
+            (byte) 0x81, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x01,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x09,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x00, (byte) 0x00, (byte) 0x00, (byte) 0x00,
+            (byte) 0x4e, (byte) 0x6f, (byte) 0x74, (byte) 0x20,
+            (byte) 0x66, (byte) 0x6f, (byte) 0x75, (byte) 0x6e,
+            (byte) 0x64
+    };
+
+    private static final int LARGE_VALUE_LENGTH = 4096;
+
+    private static final int ITERATIONS = 20000;
+
+    private final ResponseDecoder decoder = new ResponseDecoder();
+
+    private final ResponseDecoder zeroCopyDecoder = new ResponseDecoder(true);
+
+    private static ByteBuf largeValueResponse() {
+        final ByteBuf buf = new UnpooledByteBufAllocator(false).heapBuffer();
+        buf.writeByte(0x81);
+        buf.writeByte(Opcode.GETK.code());
+        buf.writeShort(3);
+        buf.writeByte(4);
+        buf.writeByte(0);
+        buf.writeShort(Status.NO_ERROR.code());
+        buf.writeInt(4 + 3 + LARGE_VALUE_LENGTH);
+        buf.writeInt(7);
+        buf.writeLong(42L);
+        buf.writeInt(0xdeadbeef);
+        buf.writeCharSequence("key", StandardCharsets.UTF_8);
+        buf.writeZero(LARGE_VALUE_LENGTH);
+        return buf;
+    }
+
+    private static long allocatedBytesPerResponse(final ResponseDecoder decoder, final ByteBuf buf) {
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        for (int i = 0; i < ITERATIONS; i++) {
+            buf.readerIndex(0);
+            decoder.readResponse(buf).release();
+        }
+        final long start = threadMXBean.getThreadAllocatedBytes(threadId);
+        for (int i = 0; i < ITERATIONS; i++) {
+            buf.readerIndex(0);
+            decoder.readResponse(buf).release();
+        }
+        return (threadMXBean.getThreadAllocatedBytes(threadId) - start) / ITERATIONS;
+    }
+
+    @Test
+    public void unknownCodesAreDecoded() {
+        final ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(0x81);
+        buf.writeByte(0xfe);
+        buf.writeShort(0);
+        buf.writeByte(0);
+        buf.writeByte(0);
+        buf.writeShort(0xbeef);
+        buf.writeInt(0);
+        buf.writeInt(3);
+        buf.writeLong(0L);
+        final Response response = decoder.readResponse(buf);
+        assertThat(response.opcode()).isEqualTo(Opcode.UNKNOWN);
+        assertThat(response.rawOpcode()).isEqualTo(0xfe);
+        assertThat(response.status()).isEqualTo(Status.UNKNOWN);
+        assertThat(response.rawStatus()).isEqualTo(0xbeef);
+        assertThat(response.opaque()).isEqualTo(3);
+        response.release();
+    }
+
+    @Test
+    public void parseErrorMessageResponse() {
+        final Response header = decoder.decode(Unpooled.wrappedBuffer(ERROR_MESSAGE)).block();
+        assertThat(header).isNotNull();
+        assertThat(header.opcode()).isEqualTo(Opcode.GET);
+        assertThat(header.status()).isEqualTo(Status.NOT_FOUND);
+        assertThat(header.opaque()).isEqualTo(0);
+        assertThat(header.cas()).isEqualTo(0L);
+        assertThat(header.key()).isEqualTo("");
+        assertThat(header.extras()).isEqualTo(Unpooled.EMPTY_BUFFER);
+        assertThat(header.value().toString(StandardCharsets.UTF_8)).isEqualTo("Not found");
+    }
+
+    @Test
+    public void incompleteFrameIsNotConsumed() {
+        final ByteBuf buf = Unpooled.wrappedBuffer(ERROR_MESSAGE, 0, ERROR_MESSAGE.length - 1);
+        assertThat(decoder.decode(buf).block()).isNull();
+        assertThat(buf.readerIndex()).isEqualTo(0);
+    }
+
+    @Test
+    public void zeroCopyResponseSharesInboundBuffer() {
+        final ByteBuf buf = largeValueResponse();
+        final Response response = zeroCopyDecoder.readResponse(buf);
+        assertThat(response.opcode()).isEqualTo(Opcode.GETK);
+        assertThat(response.status()).isEqualTo(Status.NO_ERROR);
+        assertThat(response.opaque()).isEqualTo(7);
+        assertThat(response.cas()).isEqualTo(42L);
+        assertThat(response.key()).isEqualTo("key");
+        assertThat(response.extras().getInt(0)).isEqualTo(0xdeadbeef);
+        assertThat(response.value().readableBytes()).isEqualTo(LARGE_VALUE_LENGTH);
+        assertThat(response.value().unwrap()).isSameAs(buf);
+        assertThat(buf.refCnt()).isEqualTo(4);
+        assertThat(response.release()).isTrue();
+        assertThat(buf.refCnt()).isEqualTo(1);
+        buf.release();
+    }
+
+    @Test
+    public void copyingDecoderAllocatesTheValue() {
+        final ByteBuf buf = largeValueResponse();
+        final long allocated = allocatedBytesPerResponse(decoder, buf);
+        assertThat(allocated).isGreaterThanOrEqualTo(LARGE_VALUE_LENGTH);
+        buf.release();
+    }
+
+    @Test
+    public void zeroCopyDecoderDoesNotAllocateTheValue() {
+        final ByteBuf buf = largeValueResponse();
+        final long allocated = allocatedBytesPerResponse(zeroCopyDecoder, buf);
+        assertThat(allocated).isLessThan(512L);
+        assertThat(buf.refCnt()).isEqualTo(1);
+        buf.release();
+    }
+}
@@ -0,0 +1,118 @@
+package com.buralo.memcached;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.CorruptedFrameException;
+import io.netty.handler.codec.DecoderException;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestResponseFrameDecoder {
+
+    private final EmbeddedChannel channel = new EmbeddedChannel(new ResponseFrameDecoder());
+
+    private static ByteBuf frame(final int opaque, final String value) {
+        final byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        final ByteBuf buf = Unpooled.buffer();
+        buf.writeByte(0x81);
+        buf.writeByte(Opcode.GET.code());
+        buf.writeShort(0);
+        buf.writeByte(0);
+        buf.writeByte(0);
+        buf.writeShort(Status.NO_ERROR.code());
+        buf.writeInt(bytes.length);
+        buf.writeInt(opaque);
+        buf.writeLong(0L);
+        buf.writeBytes(bytes);
+        return buf;
+    }
+
+    private void assertResponse(final int opaque, final String value) {
+        final Response response = channel.readInbound();
+        assertThat(response).isNotNull();
+        assertThat(response.opaque()).isEqualTo(opaque);
+        assertThat(response.value().toString(StandardCharsets.UTF_8)).isEqualTo(value);
+        response.release();
+    }
+
+    @Test
+    public void decodeCoalescedFrames() {
+        final ByteBuf buf = Unpooled.buffer();
+        for (int i = 0; i < 10; i++) {
+            final ByteBuf frame = frame(i, "value" + i);
+            buf.writeBytes(frame);
+            frame.release();
+        }
+        assertThat(channel.writeInbound(buf)).isTrue();
+        for (int i = 0; i < 10; i++) {
+            assertResponse(i, "value" + i);
+        }
+        assertThat((Object) channel.readInbound()).isNull();
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    public void decodeFrameSplitAcrossReads() {
+        final ByteBuf frame = frame(1, "Hello World");
+        while (frame.readableBytes() > 1) {
+            assertThat(channel.writeInbound(frame.readRetainedSlice(1))).isFalse();
+        }
+        assertThat(channel.writeInbound(frame.readRetainedSlice(1))).isTrue();
+        frame.release();
+        assertResponse(1, "Hello World");
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    public void decodePartialFrameFollowedByRemainderAndNextFrame() {
+        final ByteBuf first = frame(1, "first");
+        final ByteBuf second = frame(2, "second");
+        assertThat(channel.writeInbound(first.readRetainedSlice(10))).isFalse();
+        final ByteBuf remainder = Unpooled.buffer();
+        remainder.writeBytes(first);
+        remainder.writeBytes(second);
+        first.release();
+        second.release();
+        assertThat(channel.writeInbound(remainder)).isTrue();
+        assertResponse(1, "first");
+        assertResponse(2, "second");
+        assertThat(channel.finish()).isFalse();
+    }
+
+    @Test
+    public void rejectInvalidMagic() {
+        final ByteBuf frame = frame(1, "value");
+        frame.setByte(0, 0x80);
+        assertThatThrownBy(() -> channel.writeInbound(frame)).isInstanceOf(DecoderException.class);
+    }
+
+    @Test
+    public void rejectBodyLengthThatOverflowsTheFrameLength() {
+        final ByteBuf frame = frame(1, "value");
+        frame.setInt(8, Integer.MAX_VALUE - 10);
+        assertThatThrownBy(() -> channel.writeInbound(frame)).isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    public void rejectBodyLengthLongerThanTheMaximum() {
+        final ByteBuf frame = frame(1, "value");
+        frame.setInt(8, ResponseDecoder.MAX_BODY_LENGTH + 1);
+        assertThatThrownBy(() -> channel.writeInbound(frame)).isInstanceOf(CorruptedFrameException.class);
+    }
+
+    @Test
+    public void rejectBodyLengthShorterThanTheKeyAndExtrasWithoutSlicingThem() {
+        final ByteBuf frame = frame(1, "value");
+        frame.setShort(2, 3);
+        frame.setByte(4, 4);
+        assertThatThrownBy(() -> channel.writeInbound(frame)).isInstanceOf(CorruptedFrameException.class);
+        // No slices of the extras or key were retained
+        assertThat(frame.refCnt()).isEqualTo(1);
+        frame.release();
+    }
+}
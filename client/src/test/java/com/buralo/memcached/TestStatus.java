@@ -0,0 +1,22 @@
+package com.buralo.memcached;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestStatus {
+
+    @Test
+    public void lookUpEveryStatus() {
+        for (final Status status : Status.values()) {
+            assertThat(Status.fromCode(status.code())).isEqualTo(status);
+        }
+    }
+
+    @Test
+    public void unassignedCodesAreUnknown() {
+        assertThat(Status.fromCode(10)).isEqualTo(Status.UNKNOWN);
+        assertThat(Status.fromCode(135)).isEqualTo(Status.UNKNOWN);
+        assertThat(Status.fromCode(0xffff)).isEqualTo(Status.UNKNOWN);
+    }
+}
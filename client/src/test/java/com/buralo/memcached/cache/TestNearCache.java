@@ -0,0 +1,169 @@
+package com.buralo.memcached.cache;
+
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestNearCache {
+
+    private static Response hit(final long cas,
+                                final String value) {
+        return new Response(Opcode.GET, Status.NO_ERROR, 1, cas, Unpooled.EMPTY_BUFFER,
+                Unpooled.buffer(4).writeInt(0xcafe), Unpooled.copiedBuffer(value, StandardCharsets.UTF_8));
+    }
+
+    private static Response miss() {
+        return new Response(Opcode.GET, Status.NOT_FOUND, 1, 0L, Unpooled.EMPTY_BUFFER, Unpooled.EMPTY_BUFFER,
+                Unpooled.copiedBuffer("Not found", StandardCharsets.UTF_8));
+    }
+
+    private static void put(final NearCache cache,
+                            final String key,
+                            final long cas,
+                            final String value) {
+        cache.update(key, hit(cas, value)).release();
+    }
+
+    private static String valueOf(final Response response) {
+        try {
+            return response.value().toString(StandardCharsets.UTF_8);
+        } finally {
+            response.release();
+        }
+    }
+
+    @Test
+    public void serveCachedItems() {
+        final NearCache cache = new NearCache(1024, Duration.ofMinutes(1));
+        assertThat(cache.get("key")).isNull();
+
+        put(cache, "key", 1L, "value");
+        final Response response = cache.get("key");
+
+        assertThat(response.status()).isEqualTo(Status.NO_ERROR);
+        assertThat(response.cas()).isEqualTo(1L);
+        assertThat(response.extras().getInt(0)).isEqualTo(0xcafe);
+        assertThat(valueOf(response)).isEqualTo("value");
+        assertThat(cache.hits()).isEqualTo(1L);
+        assertThat(cache.misses()).isEqualTo(1L);
+        assertThat(cache.bytes()).isEqualTo(4 + 5 + 3);
+    }
+
+    @Test
+    public void expiredItemsAreNotServed() throws InterruptedException {
+        final NearCache cache = new NearCache(1024, Duration.ofMillis(1));
+        put(cache, "key", 1L, "value");
+        Thread.sleep(5);
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.misses()).isEqualTo(1L);
+    }
+
+    @Test
+    public void unchangedCasRevalidatesWithoutCopying() throws InterruptedException {
+        final NearCache cache = new NearCache(1024, Duration.ofMillis(1));
+        put(cache, "key", 1L, "value");
+        final Response before = cache.get("key");
+        final ByteBuf cached = before.value().unwrap();
+        before.release();
+        Thread.sleep(5);
+        assertThat(cache.get("key")).isNull();
+
+        put(cache, "key", 1L, "value");
+
+        final Response after = cache.get("key");
+        assertThat(after.value().unwrap()).isSameAs(cached);
+        assertThat(valueOf(after)).isEqualTo("value");
+        assertThat(cache.revalidations()).isEqualTo(1L);
+    }
+
+    @Test
+    public void changedCasReplacesTheItem() {
+        final NearCache cache = new NearCache(1024, Duration.ofMinutes(1));
+        put(cache, "key", 1L, "old");
+        final Response old = cache.get("key");
+
+        put(cache, "key", 2L, "new");
+
+        assertThat(valueOf(cache.get("key"))).isEqualTo("new");
+        assertThat(valueOf(old)).isEqualTo("old");
+        assertThat(old.value().unwrap().refCnt()).isZero();
+        assertThat(cache.revalidations()).isZero();
+    }
+
+    @Test
+    public void missRemovesTheItem() {
+        final NearCache cache = new NearCache(1024, Duration.ofMinutes(1));
+        put(cache, "key", 1L, "value");
+
+        cache.update("key", miss()).release();
+
+        assertThat(cache.get("key")).isNull();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.bytes()).isZero();
+    }
+
+    @Test
+    public void evictUnusedItemsBeforeFrequentlyUsedItems() {
+        final NearCache cache = new NearCache(200, Duration.ofMinutes(1));
+        put(cache, "hot", 1L, "value");
+        cache.get("hot").release();
+        for (int i = 0; i < 50; i++) {
+            put(cache, "cold" + i, 1L, "value");
+        }
+
+        assertThat(cache.bytes()).isLessThanOrEqualTo(200L);
+        assertThat(cache.evictions()).isGreaterThan(0L);
+        assertThat(cache.get("hot")).isNotNull().satisfies(Response::release);
+        assertThat(cache.get("cold0")).isNull();
+        assertThat(cache.get("cold49")).isNotNull().satisfies(Response::release);
+    }
+
+    @Test
+    public void invalidateReleasesTheItem() {
+        final NearCache cache = new NearCache(1024, Duration.ofMinutes(1));
+        put(cache, "a", 1L, "value");
+        put(cache, "b", 1L, "value");
+        final Response a = cache.get("a");
+        final ByteBuf buf = a.value().unwrap();
+        a.release();
+
+        cache.invalidate("a");
+        assertThat(buf.refCnt()).isZero();
+        assertThat(cache.get("a")).isNull();
+
+        cache.invalidateAll();
+        assertThat(cache.size()).isZero();
+        assertThat(cache.bytes()).isZero();
+    }
+
+    @Test
+    public void responsesToReadsSentBeforeAnInvalidationAreNotCached() {
+        final NearCache cache = new NearCache(1024, Duration.ofMinutes(1));
+        final long generation = cache.generation("key");
+        cache.invalidate("key");
+
+        cache.update("key", hit(1L, "stale"), generation).release();
+        assertThat(cache.get("key")).isNull();
+
+        cache.update("key", hit(2L, "fresh"), cache.generation("key")).release();
+        assertThat(valueOf(cache.get("key"))).isEqualTo("fresh");
+    }
+
+    @Test
+    public void rejectInvalidLimits() {
+        assertThatThrownBy(() -> new NearCache(0, Duration.ofMinutes(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new NearCache(1024, Duration.ZERO))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
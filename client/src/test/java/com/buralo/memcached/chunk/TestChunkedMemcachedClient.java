@@ -0,0 +1,213 @@
+package com.buralo.memcached.chunk;
+
+import com.buralo.memcached.MemcachedClient;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import com.buralo.memcached.StubMemcachedServer;
+import com.buralo.memcached.cache.NearCache;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestChunkedMemcachedClient {
+
+    private static final int CHUNK_SIZE = 64;
+
+    private final List<StubMemcachedServer> servers = new ArrayList<>();
+
+    private final List<MemcachedConnection> connections = new ArrayList<>();
+
+    private ChunkedMemcachedClient client;
+
+    @BeforeEach
+    public void setUp() {
+        for (int i = 0; i < 3; i++) {
+            final StubMemcachedServer server = new StubMemcachedServer();
+            servers.add(server);
+            connections.add(MemcachedConnection.connect(server.address()).block());
+        }
+        client = new ChunkedMemcachedClient(new MemcachedClient(connections, DefaultHashAlgorithms.FNV1A_32),
+                CHUNK_SIZE);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connections.forEach(connection -> connection.close().block());
+        servers.forEach(StubMemcachedServer::close);
+    }
+
+    private static byte[] value(final int length,
+                                final long seed) {
+        final byte[] value = new byte[length];
+        new Random(seed).nextBytes(value);
+        return value;
+    }
+
+    private int items() {
+        return servers.stream().mapToInt(server -> server.items().size()).sum();
+    }
+
+    private StubMemcachedServer serverHolding(final String key) {
+        return servers.stream().filter(server -> server.items().containsKey(key)).findFirst().orElse(null);
+    }
+
+    private byte[] get(final String key) {
+        final Response response = client.get(key).block();
+        try {
+            assertThat(response.status()).isEqualTo(Status.NO_ERROR);
+            return ByteBufUtil.getBytes(response.value());
+        } finally {
+            response.release();
+        }
+    }
+
+    @Test
+    public void smallValuesAreStoredAsTheyAre() {
+        final byte[] value = value(CHUNK_SIZE, 1L);
+        client.set("small", 0, 0, Unpooled.wrappedBuffer(value)).block().release();
+        assertThat(items()).isEqualTo(1);
+        assertThat(serverHolding("small").items().get("small")).isEqualTo(value);
+        assertThat(get("small")).isEqualTo(value);
+    }
+
+    @Test
+    public void largeValuesAreSplitIntoChunksAndReassembledWithoutCopying() {
+        final byte[] value = value(1000, 2L);
+        final Response stored = client.set("large", 0x10, 0, Unpooled.wrappedBuffer(value)).block();
+        assertThat(stored.status()).isEqualTo(Status.NO_ERROR);
+        stored.release();
+
+        assertThat(items()).isEqualTo(1 + 16);
+        assertThat(serverHolding("large").items().get("large")).hasSize(Manifest.LENGTH);
+        assertThat(serverHolding("large").flags().get("large")).isEqualTo(0x10 | ChunkedMemcachedClient.CHUNKED_FLAG);
+        assertThat(servers).allMatch(server -> !server.items().isEmpty());
+
+        final Response response = client.get("large").block();
+        assertThat(response.status()).isEqualTo(Status.NO_ERROR);
+        assertThat(response.extras().getInt(response.extras().readerIndex())).isEqualTo(0x10);
+        assertThat(response.value()).isInstanceOf(CompositeByteBuf.class);
+        assertThat(((CompositeByteBuf) response.value()).numComponents()).isEqualTo(16);
+        assertThat(ByteBufUtil.getBytes(response.value())).isEqualTo(value);
+        response.release();
+    }
+
+    @Test
+    public void overwritingAChunkedValueDeletesTheOldChunks() {
+        client.set("large", 0, 0, Unpooled.wrappedBuffer(value(1000, 3L))).block().release();
+        final byte[] replacement = value(300, 4L);
+        client.set("large", 0, 0, Unpooled.wrappedBuffer(replacement)).block().release();
+        assertThat(items()).isEqualTo(1 + 5);
+        assertThat(get("large")).isEqualTo(replacement);
+    }
+
+    @Test
+    public void concurrentWritersNeverLeaveATornValue() {
+        final byte[] first = value(1000, 5L);
+        final byte[] second = value(1000, 6L);
+        final List<Response> responses = Mono.zip(
+                client.set("large", 0, 0, Unpooled.wrappedBuffer(first)),
+                client.set("large", 0, 0, Unpooled.wrappedBuffer(second)))
+                .map(both -> {
+                    final List<Response> list = new ArrayList<>();
+                    list.add(both.getT1());
+                    list.add(both.getT2());
+                    return list;
+                })
+                .block();
+        assertThat(responses).anyMatch(response -> response.status() == Status.NO_ERROR);
+        responses.forEach(Response::release);
+        assertThat(items()).isEqualTo(1 + 16);
+        assertThat(get("large")).isIn(first, second);
+    }
+
+    @Test
+    public void aValueWithAMissingChunkIsMissing() {
+        client.set("large", 0, 0, Unpooled.wrappedBuffer(value(1000, 7L))).block().release();
+        final String chunkKey = servers.stream()
+                .flatMap(server -> server.items().keySet().stream())
+                .filter(key -> key.endsWith(":7"))
+                .findFirst()
+                .get();
+        serverHolding(chunkKey).items().remove(chunkKey);
+
+        final Response response = client.get("large").block();
+        assertThat(response.status()).isEqualTo(Status.NOT_FOUND);
+        response.release();
+    }
+
+    @Test
+    public void deletingAChunkedValueDeletesItsChunks() {
+        client.set("large", 0, 0, Unpooled.wrappedBuffer(value(1000, 8L))).block().release();
+        final Response response = client.delete("large").block();
+        assertThat(response.status()).isEqualTo(Status.NO_ERROR);
+        response.release();
+        assertThat(items()).isZero();
+        final Response miss = client.get("large").block();
+        assertThat(miss.status()).isEqualTo(Status.NOT_FOUND);
+        miss.release();
+    }
+
+    @Test
+    public void theChunkedFlagIsReserved() {
+        assertThatThrownBy(() -> client.set("key", ChunkedMemcachedClient.CHUNKED_FLAG, 0,
+                Unpooled.wrappedBuffer(value(10, 9L))).block())
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void writesReadTheManifestPastTheNearCache() {
+        final ChunkedMemcachedClient cachingClient = new ChunkedMemcachedClient(MemcachedClient.builder()
+                .nodes(connections, DefaultHashAlgorithms.FNV1A_32)
+                .nearCache(new NearCache(1024 * 1024, Duration.ofMinutes(1)))
+                .build(), CHUNK_SIZE);
+        cachingClient.set("large", 0, 0, Unpooled.wrappedBuffer(value(1000, 10L))).block().release();
+        assertThat(cachingClient.get("large").block().release()).isTrue();
+
+        // Another client replaces the value so the cached manifest is stale
+        client.set("large", 0, 0, Unpooled.wrappedBuffer(value(1000, 11L))).block().release();
+
+        final byte[] replacement = value(1000, 12L);
+        final Response stored = cachingClient.set("large", 0, 0, Unpooled.wrappedBuffer(replacement)).block();
+        assertThat(stored.status()).isEqualTo(Status.NO_ERROR);
+        stored.release();
+        assertThat(items()).isEqualTo(1 + 16);
+        assertThat(get("large")).isEqualTo(replacement);
+    }
+
+    @Test
+    public void keysTooLongForTheirChunkKeysAreRejected() {
+        // 16 chunks so the chunk keys add a colon, 16 hex digits, a colon and two digits
+        final ByteBuf value = Unpooled.wrappedBuffer(value(1000, 13L));
+        assertThatThrownBy(() -> client.set(repeat('k', 231), 0, 0, value).block())
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThat(value.refCnt()).isZero();
+        assertThat(items()).isZero();
+
+        final Response stored = client.set(repeat('k', 230), 0, 0, Unpooled.wrappedBuffer(value(1000, 13L))).block();
+        assertThat(stored.status()).isEqualTo(Status.NO_ERROR);
+        stored.release();
+    }
+
+    private static String repeat(final char c,
+                                 final int count) {
+        final char[] chars = new char[count];
+        Arrays.fill(chars, c);
+        return new String(chars);
+    }
+}
@@ -0,0 +1,97 @@
+package com.buralo.memcached.codec;
+
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestValueCodecs {
+
+    private static <T> T roundTrip(final ValueCodec<T> codec,
+                                   final T value) {
+        final ByteBuf buf = codec.encode(value, PooledByteBufAllocator.DEFAULT);
+        try {
+            return codec.decode(buf);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static String encoded(final ValueCodec<Long> codec,
+                                  final long value) {
+        final ByteBuf buf = codec.encode(value, PooledByteBufAllocator.DEFAULT);
+        try {
+            return buf.toString(StandardCharsets.US_ASCII);
+        } finally {
+            buf.release();
+        }
+    }
+
+    private static long decoded(final String value) {
+        return ValueCodecs.COUNTER.decode(Unpooled.copiedBuffer(value, StandardCharsets.US_ASCII));
+    }
+
+    @Test
+    public void byteArray() {
+        final byte[] bytes = {1, 2, 3, 4};
+        assertThat(roundTrip(ValueCodecs.BYTE_ARRAY, bytes)).containsExactly(1, 2, 3, 4);
+        final ByteBuf wrapped = ValueCodecs.BYTE_ARRAY.encode(bytes, PooledByteBufAllocator.DEFAULT);
+        assertThat(wrapped.array()).isSameAs(bytes);
+    }
+
+    @Test
+    public void byteBuffer() {
+        final ByteBuffer value = ByteBuffer.allocateDirect(8).putInt(0xcafe).putInt(0xbabe);
+        value.flip().getInt();
+        final ByteBuffer decoded = roundTrip(ValueCodecs.BYTE_BUFFER, value);
+        assertThat(decoded.remaining()).isEqualTo(4);
+        assertThat(decoded.getInt()).isEqualTo(0xbabe);
+        assertThat(value.position()).isEqualTo(4);
+    }
+
+    @Test
+    public void string() {
+        assertThat(roundTrip(ValueCodecs.STRING, "Grüß Gott")).isEqualTo("Grüß Gott");
+        assertThat(roundTrip(ValueCodecs.string(StandardCharsets.UTF_16BE), "Grüß Gott")).isEqualTo("Grüß Gott");
+        assertThat(roundTrip(ValueCodecs.string(StandardCharsets.US_ASCII), "Hello")).isEqualTo("Hello");
+        assertThat(ValueCodecs.string(StandardCharsets.UTF_8)).isSameAs(ValueCodecs.STRING);
+        final ByteBuf direct = Unpooled.directBuffer().writeBytes("Grüß Gott".getBytes(StandardCharsets.UTF_8));
+        assertThat(ValueCodecs.STRING.decode(direct)).isEqualTo("Grüß Gott");
+        direct.release();
+    }
+
+    @Test
+    public void counterIsEncodedAsDecimalDigits() {
+        assertThat(encoded(ValueCodecs.COUNTER, 0L)).isEqualTo("0");
+        assertThat(encoded(ValueCodecs.COUNTER, 9L)).isEqualTo("9");
+        assertThat(encoded(ValueCodecs.COUNTER, 10L)).isEqualTo("10");
+        assertThat(encoded(ValueCodecs.COUNTER, 1234567890L)).isEqualTo("1234567890");
+        assertThat(encoded(ValueCodecs.COUNTER, Long.MAX_VALUE)).isEqualTo("9223372036854775807");
+        assertThat(encoded(ValueCodecs.COUNTER, -1L)).isEqualTo("18446744073709551615");
+    }
+
+    @Test
+    public void counterIsDecodedFromDecimalDigits() {
+        assertThat(decoded("0")).isEqualTo(0L);
+        assertThat(decoded("42")).isEqualTo(42L);
+        assertThat(decoded("42   ")).isEqualTo(42L);
+        assertThat(decoded("18446744073709551615")).isEqualTo(-1L);
+        assertThat(roundTrip(ValueCodecs.COUNTER, Long.MIN_VALUE)).isEqualTo(Long.MIN_VALUE);
+    }
+
+    @Test
+    public void invalidCountersAreRejected() {
+        assertThatThrownBy(() -> decoded("")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoded("4x")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoded("-1")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoded("18446744073709551616")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoded("99999999999999999999")).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> decoded("123456789012345678901")).isInstanceOf(IllegalArgumentException.class);
+    }
+}
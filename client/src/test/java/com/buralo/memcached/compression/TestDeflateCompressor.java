@@ -0,0 +1,242 @@
+package com.buralo.memcached.compression;
+
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import io.netty.buffer.AbstractByteBufAllocator;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.CompositeByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.buffer.UnpooledByteBufAllocator;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestDeflateCompressor {
+
+    private final DeflateCompressor compressor = new DeflateCompressor();
+
+    private static String document(final int length) {
+        final StringBuilder builder = new StringBuilder(length + 64);
+        for (int i = 0; builder.length() < length; i++) {
+            builder.append("{\"id\":").append(i).append(",\"name\":\"item").append(i).append("\",\"active\":true},");
+        }
+        return builder.substring(0, length);
+    }
+
+    private static Response hit(final int flags,
+                                final ByteBuf value) {
+        return new Response(Opcode.GET, Status.NO_ERROR, 1, 1L, Unpooled.EMPTY_BUFFER,
+                Unpooled.buffer(4).writeInt(flags), value);
+    }
+
+    private String roundTrip(final ByteBuf value) {
+        final ByteBuf compressed = compressor.compress(value);
+        assertThat(compressed).isNotSameAs(value);
+        assertThat(value.refCnt()).isZero();
+        try {
+            final ByteBuf decompressed = compressor.decompress(compressed);
+            try {
+                return decompressed.toString(StandardCharsets.UTF_8);
+            } finally {
+                decompressed.release();
+            }
+        } finally {
+            compressed.release();
+        }
+    }
+
+    @Test
+    public void roundTripHeapBuffer() {
+        final String text = document(100000);
+        assertThat(roundTrip(Unpooled.copiedBuffer(text, StandardCharsets.UTF_8))).isEqualTo(text);
+    }
+
+    @Test
+    public void roundTripDirectBuffer() {
+        final String text = document(100000);
+        final ByteBuf value = Unpooled.directBuffer().writeBytes(text.getBytes(StandardCharsets.UTF_8));
+        assertThat(roundTrip(value)).isEqualTo(text);
+    }
+
+    @Test
+    public void roundTripCompositeBuffer() {
+        final String text = document(50000);
+        final CompositeByteBuf value = Unpooled.compositeBuffer();
+        value.addComponent(true, Unpooled.copiedBuffer(text.substring(0, 20000), StandardCharsets.UTF_8));
+        value.addComponent(true, Unpooled.directBuffer().writeBytes(
+                text.substring(20000).getBytes(StandardCharsets.UTF_8)));
+        assertThat(roundTrip(value)).isEqualTo(text);
+    }
+
+    @Test
+    public void smallValuesAreNotCompressed() {
+        final ByteBuf value = Unpooled.copiedBuffer(document(DeflateCompressor.DEFAULT_THRESHOLD - 1),
+                StandardCharsets.UTF_8);
+        assertThat(compressor.compress(value)).isSameAs(value);
+        assertThat(value.refCnt()).isEqualTo(1);
+        value.release();
+    }
+
+    @Test
+    public void incompressibleValuesAreNotCompressed() {
+        final byte[] bytes = new byte[16384];
+        new Random(42).nextBytes(bytes);
+        final ByteBuf value = Unpooled.wrappedBuffer(bytes);
+        assertThat(compressor.compress(value)).isSameAs(value);
+        assertThat(value.refCnt()).isEqualTo(1);
+        assertThat(value.readableBytes()).isEqualTo(bytes.length);
+        value.release();
+    }
+
+    @Test
+    public void corruptValuesAreRejected() {
+        final ByteBuf compressed = compressor.compress(Unpooled.copiedBuffer(document(10000), StandardCharsets.UTF_8));
+        final ByteBuf truncated = compressed.slice(0, compressed.readableBytes() / 2);
+        assertThatThrownBy(() -> compressor.decompress(truncated)).isInstanceOf(IllegalArgumentException.class);
+        final ByteBuf wrongLength = compressed.copy().setInt(0, 9999);
+        assertThatThrownBy(() -> compressor.decompress(wrongLength)).isInstanceOf(IllegalArgumentException.class);
+        final ByteBuf garbage = Unpooled.buffer().writeInt(100).writeLong(0x0123456789abcdefL);
+        assertThatThrownBy(() -> compressor.decompress(garbage)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> compressor.decompress(Unpooled.buffer().writeShort(1)))
+                .isInstanceOf(IllegalArgumentException.class);
+        compressed.release();
+    }
+
+    @Test
+    public void implausibleLengthsAreRejectedBeforeAllocating() {
+        final DeflateCompressor limited = new DeflateCompressor(16, -1, 1024, UnpooledByteBufAllocator.DEFAULT);
+        final ByteBuf large = Unpooled.copiedBuffer(document(2000), StandardCharsets.UTF_8);
+        assertThat(limited.compress(large)).isSameAs(large);
+        large.release();
+
+        final ByteBuf compressed = limited.compress(Unpooled.copiedBuffer(document(1000), StandardCharsets.UTF_8));
+        assertThat(compressed.copy().setInt(0, 1025)).satisfies(tooLong ->
+                assertThatThrownBy(() -> limited.decompress(tooLong)).isInstanceOf(IllegalArgumentException.class));
+        compressed.release();
+        final ByteBuf expandsTooFar = Unpooled.buffer().writeInt(20 * 1024 * 1024).writeLong(0L);
+        assertThatThrownBy(() -> compressor.decompress(expandsTooFar)).isInstanceOf(IllegalArgumentException.class);
+        assertThat(limited.pooled()).isEqualTo(1);
+        assertThat(compressor.pooled()).isZero();
+    }
+
+    @Test
+    public void stateIsReturnedWhenTheOutputCannotBeAllocated() {
+        final ByteBuf compressed = compressor.compress(Unpooled.copiedBuffer(document(10000), StandardCharsets.UTF_8));
+        final DeflateCompressor failing = new DeflateCompressor(16, -1, new AbstractByteBufAllocator() {
+            @Override
+            protected ByteBuf newHeapBuffer(final int initialCapacity,
+                                            final int maxCapacity) {
+                throw new IllegalStateException("Out of memory");
+            }
+
+            @Override
+            protected ByteBuf newDirectBuffer(final int initialCapacity,
+                                              final int maxCapacity) {
+                throw new IllegalStateException("Out of memory");
+            }
+
+            @Override
+            public boolean isDirectBufferPooled() {
+                return false;
+            }
+        });
+        assertThatThrownBy(() -> failing.decompress(compressed)).isInstanceOf(IllegalStateException.class);
+        assertThat(failing.pooled()).isEqualTo(1);
+        compressed.release();
+    }
+
+    @Test
+    public void responsesAreDecompressedOnFirstRead() {
+        final String text = document(20000);
+        final ByteBuf compressed = compressor.compress(Unpooled.copiedBuffer(text, StandardCharsets.UTF_8));
+        final Response original = hit(DeflateCompressor.COMPRESSED_FLAG | 0x100, compressed);
+
+        final Response response = compressor.decompressing(original);
+        assertThat(response).isNotSameAs(original);
+        assertThat(original.refCnt()).isZero();
+        assertThat(((DecompressingResponse) response).compressedValue()).isSameAs(compressed);
+
+        final Response duplicate = response.retainedDuplicate();
+        assertThat(response.value().toString(StandardCharsets.UTF_8)).isEqualTo(text);
+        assertThat(response.value()).isSameAs(response.value());
+        assertThat(duplicate.value().toString(StandardCharsets.UTF_8)).isEqualTo(text);
+        assertThat(response.extras().getInt(0)).isEqualTo(DeflateCompressor.COMPRESSED_FLAG | 0x100);
+
+        final ByteBuf decompressed = response.value();
+        response.release();
+        assertThat(decompressed.refCnt()).isZero();
+        assertThat(compressed.refCnt()).isEqualTo(1);
+        duplicate.release();
+        assertThat(compressed.refCnt()).isZero();
+    }
+
+    @Test
+    public void uncompressedResponsesAreUnchanged() {
+        final Response plain = hit(0x100, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8));
+        assertThat(compressor.decompressing(plain)).isSameAs(plain);
+        // spymemcached's compressed bit marks a GZIP stream which is not our format
+        final Response foreign = hit(0x02, Unpooled.copiedBuffer("World", StandardCharsets.UTF_8));
+        assertThat(compressor.decompressing(foreign)).isSameAs(foreign);
+        final Response miss = new Response(Opcode.GET, Status.NOT_FOUND, 1, 0L, Unpooled.EMPTY_BUFFER,
+                Unpooled.EMPTY_BUFFER, Unpooled.copiedBuffer("Not found", StandardCharsets.UTF_8));
+        assertThat(compressor.decompressing(miss)).isSameAs(miss);
+        plain.release();
+        foreign.release();
+        miss.release();
+    }
+
+    @Test
+    public void invalidSettingsAreRejected() {
+        assertThatThrownBy(() -> new DeflateCompressor(0, 6, Unpooled.buffer().alloc()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DeflateCompressor(1024, 10, Unpooled.buffer().alloc()))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new DeflateCompressor(1024, 6, 1023, Unpooled.buffer().alloc()))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+
+    @Test
+    public void statesArePooledUpToALimitAndEndedOnClose() throws Exception {
+        final int threads = 4 * Runtime.getRuntime().availableProcessors();
+        final String text = document(100000);
+        final CountDownLatch start = new CountDownLatch(1);
+        final ExecutorService executor = Executors.newFixedThreadPool(threads);
+        try {
+            final List<CompletableFuture<String>> results = new ArrayList<>(threads);
+            for (int i = 0; i < threads; i++) {
+                results.add(CompletableFuture.supplyAsync(() -> {
+                    try {
+                        start.await();
+                    } catch (final InterruptedException e) {
+                        throw new IllegalStateException(e);
+                    }
+                    return roundTrip(Unpooled.copiedBuffer(text, StandardCharsets.UTF_8));
+                }, executor));
+            }
+            start.countDown();
+            for (final CompletableFuture<String> result : results) {
+                assertThat(result.get(10, TimeUnit.SECONDS)).isEqualTo(text);
+            }
+        } finally {
+            executor.shutdown();
+        }
+        assertThat(compressor.pooled()).isBetween(1, Runtime.getRuntime().availableProcessors());
+
+        compressor.close();
+        assertThat(compressor.pooled()).isZero();
+        assertThat(roundTrip(Unpooled.copiedBuffer(text, StandardCharsets.UTF_8))).isEqualTo(text);
+        assertThat(compressor.pooled()).isZero();
+    }
+}
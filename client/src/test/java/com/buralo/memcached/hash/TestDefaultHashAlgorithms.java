@@ -16,8 +16,13 @@
 
 package com.buralo.memcached.hash;
 
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
 import org.junit.jupiter.api.Test;
 
+import java.lang.management.ManagementFactory;
+import java.nio.charset.StandardCharsets;
+
 import static org.assertj.core.api.Assertions.assertThat;
 
 public class TestDefaultHashAlgorithms {
@@ -26,6 +31,13 @@ public class TestDefaultHashAlgorithms {
                                    final String key,
                                    final long expectedValue) {
         assertThat(algorithm.hash(key)).isEqualTo(expectedValue);
+        final byte[] encoded = ("<" + key + ">").getBytes(StandardCharsets.UTF_8);
+        assertThat(algorithm.hash(encoded, 1, encoded.length - 2)).isEqualTo(expectedValue);
+        final ByteBuf heap = Unpooled.wrappedBuffer(encoded);
+        assertThat(algorithm.hash(heap, 1, encoded.length - 2)).isEqualTo(expectedValue);
+        final ByteBuf direct = Unpooled.directBuffer(encoded.length).writeBytes(encoded);
+        assertThat(algorithm.hash(direct, 1, encoded.length - 2)).isEqualTo(expectedValue);
+        direct.release();
     }
 
     @Test
@@ -130,4 +142,39 @@ public class TestDefaultHashAlgorithms {
         assertHash(DefaultHashAlgorithms.ONE_AT_A_TIME, "network", 2981967937L);
         assertHash(DefaultHashAlgorithms.ONE_AT_A_TIME, "hammer", 1218821080L);
     }
+
+    @Test
+    public void verifyEncodedNonAsciiKeys() {
+        for (final DefaultHashAlgorithms algorithm : DefaultHashAlgorithms.values()) {
+            for (final String key : new String[]{"Búraló", "\u20ac\ud83d\ude00", "key:\u00e9t\u00e9"}) {
+                assertHash(algorithm, key, algorithm.hash(key));
+            }
+        }
+    }
+
+    @Test
+    public void hashWithoutAllocating() {
+        final com.sun.management.ThreadMXBean threadMXBean =
+                (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+        final long threadId = Thread.currentThread().getId();
+        final String key = "user:session:0123456789";
+        final byte[] encoded = key.getBytes(StandardCharsets.UTF_8);
+        final ByteBuf direct = Unpooled.directBuffer(encoded.length).writeBytes(encoded);
+        for (final DefaultHashAlgorithms algorithm : DefaultHashAlgorithms.values()) {
+            long sum = 0;
+            for (int i = 0; i < 10000; i++) {
+                sum += algorithm.hash(key) + algorithm.hash(encoded, 0, encoded.length)
+                        + algorithm.hash(direct, 0, encoded.length);
+            }
+            final long start = threadMXBean.getThreadAllocatedBytes(threadId);
+            for (int i = 0; i < 10000; i++) {
+                sum += algorithm.hash(key) + algorithm.hash(encoded, 0, encoded.length)
+                        + algorithm.hash(direct, 0, encoded.length);
+            }
+            final double allocated = (threadMXBean.getThreadAllocatedBytes(threadId) - start) / 30000.0;
+            assertThat(allocated).as("%s allocated %.3f bytes per hash (%d)", algorithm, allocated, sum)
+                    .isLessThan(1.0);
+        }
+        direct.release();
+    }
 }
@@ -0,0 +1,144 @@
+package com.buralo.memcached.health;
+
+import com.buralo.memcached.MemcachedConnectionPool;
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedNode;
+import com.buralo.memcached.StubMemcachedServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Mono;
+import reactor.netty.tcp.TcpClient;
+
+import java.time.Duration;
+import java.util.Arrays;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestHealthCheckedNodeLocator {
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, "key");
+
+    private StubMemcachedServer first;
+
+    private StubMemcachedServer second;
+
+    private MemcachedConnectionPool firstPool;
+
+    private MemcachedConnectionPool secondPool;
+
+    private HealthCheckedNodeLocator locator;
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    private HealthCheckedNodeLocator locator(final Duration retryInterval) {
+        return new HealthCheckedNodeLocator(Arrays.asList(firstPool, secondPool),
+                new HealthPolicy(2, Duration.ofSeconds(1), Duration.ofMillis(20), Duration.ofMillis(200),
+                        retryInterval));
+    }
+
+    @BeforeEach
+    public void setUp() {
+        first = new StubMemcachedServer();
+        second = new StubMemcachedServer();
+        firstPool = new MemcachedConnectionPool(first.address(), TcpClient.newConnection(), 1, 16);
+        secondPool = new MemcachedConnectionPool(second.address(), TcpClient.newConnection(), 1, 16);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        if (locator != null) {
+            locator.close();
+        }
+        firstPool.close().block();
+        secondPool.close().block();
+        first.close();
+        second.close();
+    }
+
+    @Test
+    public void healthyServersStayOnTheContinuum() throws InterruptedException {
+        locator = locator(Duration.ofSeconds(10));
+        Thread.sleep(200);
+        assertThat(locator.healthyNodes()).hasSize(2);
+        assertThat(locator.state(first.address())).isEqualTo(NodeState.HEALTHY);
+        assertThat(locator.state(second.address())).isEqualTo(NodeState.HEALTHY);
+        assertThat(first.requests()).isPositive();
+    }
+
+    @Test
+    public void busyServersAreNotSentHeartbeats() throws InterruptedException {
+        locator = new HealthCheckedNodeLocator(Arrays.asList(firstPool, secondPool),
+                new HealthPolicy(2, Duration.ofSeconds(1), Duration.ofMillis(100), Duration.ofMillis(200),
+                        Duration.ofSeconds(10)));
+        final MemcachedNode node = locator.nodes().get(0);
+        for (int i = 0; i < 60; i++) {
+            node.execute(GET).block().release();
+            Thread.sleep(5);
+        }
+        assertThat(first.requests()).isEqualTo(60L);
+        await(() -> first.requests() > 60L);
+    }
+
+    @Test
+    public void unreachableServerIsEjectedAndItsKeysMove() throws InterruptedException {
+        locator = locator(Duration.ofSeconds(10));
+        second.close();
+        await(() -> locator.state(second.address()) == NodeState.EJECTED);
+        await(() -> locator.healthyNodes().size() == 1);
+        assertThat(locator.ejections(second.address())).isEqualTo(1);
+        for (int i = 0; i < 100; i++) {
+            assertThat(locator.primary("key" + i).address()).isEqualTo(first.address());
+        }
+    }
+
+    @Test
+    public void requestsToAnEjectedServerFailFast() throws InterruptedException {
+        locator = locator(Duration.ofSeconds(10));
+        second.close();
+        await(() -> locator.state(second.address()) == NodeState.EJECTED);
+        final MemcachedNode node = locator.nodes().get(1);
+        final long start = System.nanoTime();
+        assertThatThrownBy(() -> node.execute(GET).block())
+                .isInstanceOf(NodeUnavailableException.class);
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void ejectedServerIsReadmittedWhenAProbeSucceeds() throws InterruptedException {
+        locator = locator(Duration.ofMillis(100));
+        final int port = second.address().getPort();
+        second.close();
+        await(() -> locator.state(second.address()) == NodeState.EJECTED);
+        second = new StubMemcachedServer(port);
+        await(() -> locator.state(second.address()) == NodeState.HEALTHY);
+        await(() -> locator.healthyNodes().size() == 2);
+    }
+
+    @Test
+    public void inFlightRequestsFailWhenTheServerIsEjected() throws InterruptedException {
+        final StubMemcachedNode hanging = new StubMemcachedNode(first.address(), 1);
+        locator = new HealthCheckedNodeLocator(Arrays.asList(hanging, secondPool),
+                new HealthPolicy(2, Duration.ZERO, Duration.ofMillis(20), Duration.ofMillis(50),
+                        Duration.ofSeconds(10)));
+        final Mono<Response> response = locator.nodes().get(0).execute(GET);
+        assertThatThrownBy(response::block)
+                .isInstanceOf(NodeUnavailableException.class)
+                .hasRootCauseInstanceOf(TimeoutException.class);
+        assertThat(locator.state(first.address())).isEqualTo(NodeState.EJECTED);
+        await(() -> locator.healthyNodes().size() == 1);
+    }
+}
@@ -0,0 +1,107 @@
+package com.buralo.memcached.hotkey;
+
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.time.Duration;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestHotKeyDetector {
+
+    private static final InetSocketAddress NODE = InetSocketAddress.createUnresolved("node1", 11211);
+
+    private static final InetSocketAddress OTHER = InetSocketAddress.createUnresolved("node2", 11211);
+
+    private static List<String> keys(final List<HotKey> hotKeys) {
+        return hotKeys.stream().map(HotKey::key).collect(Collectors.toList());
+    }
+
+    @Test
+    public void hottestKeysAreReportedInOrder() {
+        final HotKeyDetector detector = new HotKeyDetector(4, Duration.ofMinutes(1), 1);
+        for (int i = 0; i < 2000; i++) {
+            detector.record(NODE, "cold" + i);
+            if (i % 2 == 0) {
+                detector.record(NODE, "a");
+            }
+            if (i % 4 == 0) {
+                detector.record(NODE, "b");
+            }
+            if (i % 8 == 0) {
+                detector.record(NODE, "c");
+            }
+        }
+        final List<HotKey> hotKeys = detector.hotKeys(NODE);
+        assertThat(hotKeys).hasSizeLessThanOrEqualTo(4);
+        assertThat(keys(hotKeys)).startsWith("a", "b", "c");
+        assertThat(hotKeys.get(0).requests()).isBetween(1000L, 1050L);
+        assertThat(hotKeys.get(1).requests()).isBetween(500L, 550L);
+        assertThat(hotKeys.get(2).requests()).isBetween(250L, 300L);
+        assertThat(hotKeys.get(0).share()).isBetween(0.26, 0.28);
+        assertThat(detector.isHot(NODE, "a")).isTrue();
+        assertThat(detector.isHot(NODE, "cold1")).isFalse();
+        assertThat(detector.isHot(OTHER, "a")).isFalse();
+        assertThat(detector.hotKeys(OTHER)).isEmpty();
+        assertThat(detector.hotKeys()).containsOnlyKeys(NODE);
+    }
+
+    @Test
+    public void sampledCountsAreScaled() {
+        final HotKeyDetector detector = new HotKeyDetector(4, Duration.ofMinutes(1), 4);
+        for (int i = 0; i < 40000; i++) {
+            detector.record(NODE, "a");
+        }
+        assertThat(detector.hotKeys(NODE)).singleElement()
+                .satisfies(hotKey -> assertThat(hotKey.requests()).isBetween(36000L, 44000L));
+    }
+
+    @Test
+    public void keysAgeOutOfTheWindow() throws InterruptedException {
+        final HotKeyDetector detector = new HotKeyDetector(4, Duration.ofMillis(400), 1);
+        detector.record(NODE, "old");
+        Thread.sleep(250);
+        detector.record(NODE, "new");
+        assertThat(keys(detector.hotKeys(NODE))).containsExactlyInAnyOrder("old", "new");
+        Thread.sleep(250);
+        detector.record(NODE, "new");
+        assertThat(keys(detector.hotKeys(NODE))).containsExactly("new");
+        Thread.sleep(500);
+        assertThat(detector.hotKeys(NODE)).isEmpty();
+    }
+
+    @Test
+    public void concurrentRecordingIsCounted() throws InterruptedException {
+        final HotKeyDetector detector = new HotKeyDetector(8, Duration.ofMinutes(1), 1);
+        final ExecutorService executor = Executors.newFixedThreadPool(4);
+        for (int t = 0; t < 4; t++) {
+            executor.execute(() -> {
+                for (int i = 0; i < 10000; i++) {
+                    detector.record(NODE, "hot");
+                    detector.record(NODE, "key" + i % 64);
+                }
+            });
+        }
+        executor.shutdown();
+        assertThat(executor.awaitTermination(30, TimeUnit.SECONDS)).isTrue();
+        final HotKey hottest = detector.hotKeys(NODE).get(0);
+        assertThat(hottest.key()).isEqualTo("hot");
+        assertThat(hottest.requests()).isBetween(40000L, 41000L);
+    }
+
+    @Test
+    public void argumentsAreValidated() {
+        assertThatThrownBy(() -> new HotKeyDetector(0, Duration.ofSeconds(1), 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HotKeyDetector(1, Duration.ZERO, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new HotKeyDetector(1, Duration.ofSeconds(1), 0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,107 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package com.buralo.memcached.locator;
+
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import org.junit.jupiter.api.Test;
+
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Function;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestKetamaNodeLocator {
+
+    private static final List<String> NODES = Arrays.asList("127.0.0.1:11211", "127.0.0.1:11212", "127.0.0.1:11213");
+
+    private static final String[] KEYS = {
+            "key0", "key1", "key2", "key3", "key4", "key5", "key6", "key7", "key8", "key9", "Hello", "Búraló"
+    };
+
+    private static void assertPlacement(final NodeLocator<String> locator,
+                                        final int... expected) {
+        for (int i = 0; i < KEYS.length; i++) {
+            assertThat(locator.primary(KEYS[i])).as(KEYS[i]).isEqualTo(NODES.get(expected[i]));
+        }
+    }
+
+    @Test
+    public void placeKeysLikeSpymemcached() {
+        final KetamaNodeLocator<String> locator = new KetamaNodeLocator<>(NODES, Function.identity());
+        assertPlacement(locator, 0, 0, 2, 0, 0, 1, 1, 0, 1, 1, 1, 0);
+    }
+
+    @Test
+    public void removingANodeOnlyMovesItsKeys() {
+        final KetamaNodeLocator<String> locator = new KetamaNodeLocator<>(NODES, Function.identity());
+        locator.removeNode(NODES.get(2));
+        assertThat(locator.nodes()).containsExactly(NODES.get(0), NODES.get(1));
+        assertPlacement(locator, 0, 0, 1, 0, 0, 1, 1, 0, 1, 1, 1, 0);
+        locator.addNode(NODES.get(2));
+        assertPlacement(locator, 0, 0, 2, 0, 0, 1, 1, 0, 1, 1, 1, 0);
+    }
+
+    @Test
+    public void weightedNodesReceiveProportionalShare() {
+        final Map<String, Integer> weights = new HashMap<>();
+        weights.put(NODES.get(0), 1);
+        weights.put(NODES.get(1), 2);
+        weights.put(NODES.get(2), 1);
+        final KetamaNodeLocator<String> locator = new KetamaNodeLocator<>(NODES, Function.identity(), weights::get,
+                DefaultHashAlgorithms.KETAMA);
+        final Map<String, Integer> counts = new HashMap<>();
+        for (int i = 0; i < 10000; i++) {
+            counts.merge(locator.primary("key" + i), 1, Integer::sum);
+        }
+        assertThat(counts.get(NODES.get(1))).isBetween(4000, 6000);
+        assertThat(counts.get(NODES.get(0))).isBetween(1500, 3500);
+        assertThat(counts.get(NODES.get(2))).isBetween(1500, 3500);
+    }
+
+    @Test
+    public void nodeKeyOmitsLeadingSlash() {
+        assertThat(KetamaNodeLocator.nodeKey(new InetSocketAddress("127.0.0.1", 11211))).isEqualTo("127.0.0.1:11211");
+        assertThat(KetamaNodeLocator.nodeKey(InetSocketAddress.createUnresolved("cache1", 11211)))
+                .startsWith("cache1");
+    }
+
+    @Test
+    public void replicasAreDistinctAndStartWithThePrimary() {
+        final KetamaNodeLocator<String> locator = new KetamaNodeLocator<>(NODES, Function.identity());
+        for (final String key : KEYS) {
+            final List<String> replicas = locator.replicas(key, 2);
+            assertThat(replicas).hasSize(2).doesNotHaveDuplicates();
+            assertThat(replicas.get(0)).isEqualTo(locator.primary(key));
+            assertThat(locator.replicas(key, 5)).hasSize(3).containsExactlyInAnyOrderElementsOf(NODES)
+                    .startsWith(replicas.get(0), replicas.get(1));
+        }
+    }
+
+    @Test
+    public void replicasMoveToTheNextNodeWhenTheirNodeIsRemoved() {
+        final KetamaNodeLocator<String> locator = new KetamaNodeLocator<>(NODES, Function.identity());
+        for (final String key : KEYS) {
+            final List<String> replicas = locator.replicas(key, 3);
+            final KetamaNodeLocator<String> reduced = new KetamaNodeLocator<>(NODES, Function.identity());
+            reduced.removeNode(replicas.get(0));
+            assertThat(reduced.replicas(key, 2)).containsExactly(replicas.get(1), replicas.get(2));
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.buralo.memcached.metrics;
+
+import com.buralo.memcached.FlushPolicy;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.MemcachedConnectionPool;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import com.buralo.memcached.StubMemcachedServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.netty.tcp.TcpClient;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestHistogramMetricsRecorder {
+
+    private final HistogramMetricsRecorder metrics = new HistogramMetricsRecorder();
+
+    private StubMemcachedServer server;
+
+    private static Request get(final String key) {
+        return (encoder, opaque) -> encoder.get(Opcode.GET, opaque, key);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        server = new StubMemcachedServer();
+        server.items().put("hit", "value".getBytes(StandardCharsets.UTF_8));
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void connectionRecordsLatencyStatusAndBytes() {
+        final MemcachedConnection connection = MemcachedConnection.connect(
+                TcpClient.newConnection().remoteAddress(server::address), MemcachedConnection.DEFAULT_MAX_IN_FLIGHT,
+                FlushPolicy.BATCHED, metrics).block();
+        try {
+            Flux.range(0, 10)
+                    .flatMap(i -> connection.execute(get(i % 2 == 0 ? "hit" : "miss")))
+                    .doOnNext(Response::release)
+                    .blockLast();
+            final NodeMetrics node = metrics.node(server.address());
+            assertThat(metrics.nodes()).containsExactly(node);
+            assertThat(node.latency(Opcode.GET).count()).isEqualTo(10L);
+            assertThat(node.latency(Opcode.SET).count()).isZero();
+            assertThat(node.latency().valueAtPercentile(50.0)).isPositive();
+            assertThat(node.responses(Status.NO_ERROR)).isEqualTo(5L);
+            assertThat(node.responses(Status.NOT_FOUND)).isEqualTo(5L);
+            // Each GET is a header and a key of 3 or 4 bytes
+            assertThat(node.bytesWritten()).isEqualTo(10L * 24 + 5 * 3 + 5 * 4);
+            // Hits carry 4 bytes of flags and the value, misses carry a message
+            assertThat(node.bytesRead()).isGreaterThan(10L * 24 + 5 * (4 + 5));
+            assertThat(node.inFlight()).isZero();
+            assertThat(node.saturation()).isZero();
+            assertThat(node.failures()).isZero();
+        } finally {
+            connection.close().block();
+        }
+    }
+
+    @Test
+    public void poolRegistersItselfRatherThanItsConnections() {
+        final MemcachedConnectionPool pool = new MemcachedConnectionPool(server.address(), TcpClient.newConnection(),
+                2, 16, FlushPolicy.BATCHED, metrics);
+        try {
+            Flux.range(0, 100)
+                    .flatMap(i -> pool.execute(get("hit")))
+                    .doOnNext(Response::release)
+                    .blockLast();
+            final NodeMetrics node = metrics.node(server.address());
+            assertThat(metrics.nodes()).containsExactly(node);
+            assertThat(node.latency(Opcode.GET).count()).isEqualTo(100L);
+            assertThat(node.responses(Status.NO_ERROR)).isEqualTo(100L);
+            assertThat(node.inFlight()).isZero();
+        } finally {
+            pool.close().block();
+        }
+    }
+}
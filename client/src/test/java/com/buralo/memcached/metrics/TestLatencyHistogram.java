@@ -0,0 +1,61 @@
+package com.buralo.memcached.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestLatencyHistogram {
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long value = 0; value < 64; value++) {
+            assertThat(LatencyHistogram.highestEquivalentValue(LatencyHistogram.bucket(value))).isEqualTo(value);
+        }
+        assertThat(LatencyHistogram.bucket(-5L)).isZero();
+    }
+
+    @Test
+    public void bucketsAreContiguousAndWithinThreePercent() {
+        int previous = LatencyHistogram.bucket(63L);
+        for (long value = 64; value < 1L << 24; value += 1 + value / 1000) {
+            final int bucket = LatencyHistogram.bucket(value);
+            assertThat(bucket).isBetween(previous, previous + 1);
+            final long highest = LatencyHistogram.highestEquivalentValue(bucket);
+            assertThat(highest).isGreaterThanOrEqualTo(value);
+            assertThat((double) (highest - value) / value).isLessThan(0.032);
+            previous = bucket;
+        }
+    }
+
+    @Test
+    public void hugeValuesAreClamped() {
+        final int last = LatencyHistogram.bucket(Long.MAX_VALUE);
+        assertThat(LatencyHistogram.bucket(1L << 40)).isEqualTo(last);
+        assertThat(LatencyHistogram.bucket((1L << 40) - 1)).isEqualTo(last);
+        assertThat(LatencyHistogram.bucket(1L << 39)).isLessThan(last);
+    }
+
+    @Test
+    public void percentiles() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertThat(histogram.valueAtPercentile(99.0)).isZero();
+        for (long micros = 1; micros <= 1000; micros++) {
+            histogram.record(micros * 1000L);
+        }
+        assertThat(histogram.count()).isEqualTo(1000L);
+        assertThat(histogram.valueAtPercentile(50.0)).isBetween(500_000L, 515_000L);
+        assertThat(histogram.valueAtPercentile(99.0)).isBetween(990_000L, 1_020_000L);
+        assertThat(histogram.valueAtPercentile(100.0)).isBetween(1_000_000L, 1_030_000L);
+        assertThat(histogram.valueAtPercentile(0.0)).isBetween(1_000L, 1_031L);
+        histogram.reset();
+        assertThat(histogram.count()).isZero();
+    }
+
+    @Test
+    public void percentileMustBeInRange() {
+        final LatencyHistogram histogram = new LatencyHistogram();
+        assertThatThrownBy(() -> histogram.valueAtPercentile(-1.0)).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> histogram.valueAtPercentile(100.5)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
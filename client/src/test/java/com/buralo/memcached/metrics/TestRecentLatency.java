@@ -0,0 +1,44 @@
+package com.buralo.memcached.metrics;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.Duration;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestRecentLatency {
+
+    @Test
+    public void percentilesNeedEnoughSamples() {
+        final RecentLatency latency = new RecentLatency(Duration.ofMinutes(1));
+        assertThat(latency.valueAtPercentile(95.0, 10, -1L)).isEqualTo(-1L);
+        for (long i = 1; i <= 100; i++) {
+            latency.record(i * 1000L);
+        }
+        assertThat(latency.count()).isEqualTo(100L);
+        assertThat(latency.valueAtPercentile(50.0, 10, -1L)).isBetween(50_000L, 51_600L);
+        assertThat(latency.valueAtPercentile(95.0)).isBetween(95_000L, 98_000L);
+    }
+
+    @Test
+    public void oldLatenciesLeaveTheWindow() throws InterruptedException {
+        final RecentLatency latency = new RecentLatency(Duration.ofMillis(200));
+        for (int i = 0; i < 10; i++) {
+            latency.record(1_000_000L);
+        }
+        Thread.sleep(120);
+        latency.record(1_000L);
+        assertThat(latency.count()).isEqualTo(11L);
+        Thread.sleep(120);
+        assertThat(latency.count()).isEqualTo(1L);
+        Thread.sleep(250);
+        assertThat(latency.count()).isZero();
+        assertThat(latency.valueAtPercentile(99.0)).isZero();
+    }
+
+    @Test
+    public void windowMustBePositive() {
+        assertThatThrownBy(() -> new RecentLatency(Duration.ZERO)).isInstanceOf(IllegalArgumentException.class);
+    }
+}
@@ -0,0 +1,143 @@
+package com.buralo.memcached.overload;
+
+import com.buralo.memcached.MemcachedConnectionPool;
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedNode;
+import com.buralo.memcached.StubMemcachedServer;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.Disposable;
+import reactor.core.publisher.Flux;
+import reactor.netty.tcp.TcpClient;
+
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestAdaptiveNode {
+
+    private static final Request GET = (encoder, opaque) -> encoder.get(Opcode.GET, opaque, "key");
+
+    private static final OverloadPolicy POLICY = new OverloadPolicy(99.0, 3.0, Duration.ofMillis(50),
+            Duration.ofSeconds(2), 2.0, Duration.ofSeconds(10));
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnectionPool pool;
+
+    @BeforeEach
+    public void setUp() {
+        server = new StubMemcachedServer();
+        pool = new MemcachedConnectionPool(server.address(), TcpClient.newConnection(), 1, 16);
+        pool.warmUp().block();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        pool.close().block();
+        server.close();
+    }
+
+    private static void execute(final MemcachedNode node,
+                                final int count) {
+        Flux.range(0, count)
+                .flatMap(i -> node.execute(GET))
+                .doOnNext(Response::release)
+                .blockLast();
+    }
+
+    @Test
+    public void timeoutIsTheMaximumUntilEnoughResponsesAreTimed() {
+        final AdaptiveNode node = new AdaptiveNode(pool, POLICY);
+        assertThat(node.timeout()).isEqualTo(Duration.ofSeconds(2));
+        for (int i = 1; i < AdaptiveNode.MIN_SAMPLES; i++) {
+            node.execute(GET).block().release();
+        }
+        assertThat(node.timeout()).isEqualTo(Duration.ofSeconds(2));
+        node.execute(GET).block().release();
+        assertThat(node.timeout()).isEqualTo(Duration.ofMillis(50));
+    }
+
+    @Test
+    public void timeoutGrowsWithTheLatencyOfASlowServer() {
+        final StubMemcachedNode delayed = new StubMemcachedNode(pool).delay(Duration.ofMillis(200));
+        final AdaptiveNode node = new AdaptiveNode(delayed, POLICY);
+        execute(node, AdaptiveNode.MIN_SAMPLES);
+        assertThat(node.timeout()).isBetween(Duration.ofMillis(600), Duration.ofSeconds(2));
+        assertThat(node.timeouts()).isZero();
+    }
+
+    @Test
+    public void requestsSlowerThanTheTimeoutFail() {
+        final StubMemcachedNode delayed = new StubMemcachedNode(pool);
+        final AdaptiveNode node = new AdaptiveNode(delayed, POLICY);
+        for (int i = 0; i < AdaptiveNode.MIN_SAMPLES; i++) {
+            node.execute(GET).block().release();
+        }
+        assertThat(node.timeout()).isLessThan(Duration.ofMillis(500));
+        delayed.delay(Duration.ofMillis(1500));
+        final long start = System.nanoTime();
+        assertThatThrownBy(() -> node.execute(GET).block())
+                .hasCauseInstanceOf(TimeoutException.class);
+        assertThat(System.nanoTime() - start).isLessThan(TimeUnit.SECONDS.toNanos(1));
+        assertThat(node.timeouts()).isEqualTo(1L);
+    }
+
+    @Test
+    public void requestsAreShedWhenTheServerIsSaturated() {
+        final StubMemcachedNode hanging = new StubMemcachedNode(server.address(), 4);
+        final AdaptiveNode node = new AdaptiveNode(hanging, POLICY);
+        final List<Disposable> waiting = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            waiting.add(node.execute(GET).subscribe());
+        }
+        assertThat(node.outstanding()).isEqualTo(8);
+
+        assertThatThrownBy(() -> node.execute(GET).block())
+                .isInstanceOf(NodeOverloadedException.class)
+                .hasMessageContaining("8 outstanding");
+        assertThatThrownBy(() -> node.executeQuiet(Collections.singletonList(GET)).blockLast())
+                .isInstanceOf(NodeOverloadedException.class);
+        assertThat(node.shed()).isEqualTo(2L);
+
+        waiting.forEach(Disposable::dispose);
+        assertThat(node.outstanding()).isZero();
+        final Disposable admitted = node.execute(GET).subscribe();
+        assertThat(node.outstanding()).isEqualTo(1);
+        assertThat(node.shed()).isEqualTo(2L);
+        admitted.dispose();
+    }
+
+    @Test
+    public void quietBatchesThatDoNotFitAreShed() {
+        final StubMemcachedNode hanging = new StubMemcachedNode(server.address(), 4);
+        final AdaptiveNode node = new AdaptiveNode(hanging, POLICY);
+        final Disposable waiting = node.execute(GET).subscribe();
+        assertThatThrownBy(() -> node.executeQuiet(Collections.nCopies(7, GET)).blockLast())
+                .isInstanceOf(NodeOverloadedException.class);
+        assertThat(node.shed()).isEqualTo(1L);
+        waiting.dispose();
+    }
+
+    @Test
+    public void invalidPoliciesAreRejected() {
+        assertThatThrownBy(() -> new OverloadPolicy(0.0, 3.0, Duration.ofMillis(10), Duration.ofSeconds(1), 2.0,
+                Duration.ofSeconds(10))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new OverloadPolicy(99.0, 0.5, Duration.ofMillis(10), Duration.ofSeconds(1), 2.0,
+                Duration.ofSeconds(10))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new OverloadPolicy(99.0, 3.0, Duration.ofSeconds(2), Duration.ofSeconds(1), 2.0,
+                Duration.ofSeconds(10))).isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new OverloadPolicy(99.0, 3.0, Duration.ofMillis(10), Duration.ofSeconds(1), 0.5,
+                Duration.ofSeconds(10))).isInstanceOf(IllegalArgumentException.class);
+    }
+}
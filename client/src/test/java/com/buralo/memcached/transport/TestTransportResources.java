@@ -0,0 +1,93 @@
+package com.buralo.memcached.transport;
+
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import com.buralo.memcached.StubMemcachedServer;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.WriteBufferWaterMark;
+import io.netty.channel.epoll.Epoll;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.netty.Connection;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestTransportResources {
+
+    private StubMemcachedServer server;
+
+    @BeforeEach
+    public void setUp() {
+        server = new StubMemcachedServer();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        server.close();
+    }
+
+    @Test
+    public void preferNativeTransports() {
+        assertThat(Transport.NIO.isAvailable()).isTrue();
+        if (Epoll.isAvailable()) {
+            assertThat(Transport.preferred()).isIn(Transport.IO_URING, Transport.EPOLL);
+        }
+        assertThat(TransportOptions.DEFAULT.transport()).isEqualTo(Transport.preferred());
+    }
+
+    @Test
+    public void connectUsingEachAvailableTransport() {
+        for (final Transport transport : Transport.values()) {
+            if (transport.isAvailable()) {
+                connectUsing(transport);
+            }
+        }
+    }
+
+    private void connectUsing(final Transport transport) {
+        final TransportOptions options = new TransportOptions(transport, 1, true, 128 * 1024, 256 * 1024,
+                16 * 1024, 128 * 1024);
+        try (TransportResources resources = new TransportResources(options)) {
+            final Connection connection = resources.tcpClient(server.address()).connectNow();
+            assertThat(connection.channel()).isInstanceOf(transport.channelClass());
+            assertThat(connection.channel().config().getOption(ChannelOption.TCP_NODELAY)).isTrue();
+            assertThat(connection.channel().config().getOption(ChannelOption.SO_RCVBUF))
+                    .isGreaterThanOrEqualTo(128 * 1024);
+            assertThat(connection.channel().config().getOption(ChannelOption.SO_SNDBUF))
+                    .isGreaterThanOrEqualTo(256 * 1024);
+            final WriteBufferWaterMark waterMark = connection.channel().config()
+                    .getOption(ChannelOption.WRITE_BUFFER_WATER_MARK);
+            assertThat(waterMark.low()).isEqualTo(16 * 1024);
+            assertThat(waterMark.high()).isEqualTo(128 * 1024);
+            connection.disposeNow();
+
+            final MemcachedConnection memcached = MemcachedConnection.connect(
+                    resources.tcpClient(server.address()), MemcachedConnection.DEFAULT_MAX_IN_FLIGHT).block();
+            final Response response = memcached.execute((encoder, opaque) ->
+                    encoder.get(Opcode.GET, opaque, "Hello")).block();
+            assertThat(response.status()).isEqualTo(Status.NOT_FOUND);
+            response.release();
+            memcached.close().block();
+        }
+    }
+
+    @Test
+    public void invalidOptionsAreRejected() {
+        assertThatThrownBy(() -> new TransportOptions(Transport.NIO, 0, true, 0, 0, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TransportOptions(Transport.NIO, 1, true, -1, 0, 0, 0))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> new TransportOptions(Transport.NIO, 1, true, 0, 0, 2, 1))
+                .isInstanceOf(IllegalArgumentException.class);
+        for (final Transport transport : Transport.values()) {
+            if (!transport.isAvailable()) {
+                assertThatThrownBy(() -> new TransportOptions(transport))
+                        .isInstanceOf(IllegalArgumentException.class);
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.micrometer;
+
+import com.buralo.memcached.MemcachedNode;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Status;
+import com.buralo.memcached.metrics.MetricsRecorder;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * Publishes the measurements to a Micrometer {@link MeterRegistry}. Every meter is tagged with the server address and
+ * response timers are also tagged with the opcode and status. Meters are looked up once and cached so recording does
+ * not allocate beyond what the registry's own meters do. Percentile histograms can be enabled for the
+ * {@code memcached.requests} timers with a {@link io.micrometer.core.instrument.config.MeterFilter}.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class MicrometerMetricsRecorder implements MetricsRecorder {
+
+    /**
+     * The default prefix for meter names.
+     */
+    public static final String DEFAULT_PREFIX = "memcached";
+
+    private static final Opcode[] OPCODES = Opcode.values();
+
+    private static final Status[] STATUSES = Status.values();
+
+    private final MeterRegistry registry;
+
+    private final String prefix;
+
+    private final ConcurrentMap<InetSocketAddress, NodeMeters> nodes = new ConcurrentHashMap<>();
+
+    /**
+     * Initialize a recorder using the default prefix.
+     *
+     * @param registry The meter registry.
+     */
+    public MicrometerMetricsRecorder(final MeterRegistry registry) {
+        this(registry, DEFAULT_PREFIX);
+    }
+
+    /**
+     * Initialize a recorder.
+     *
+     * @param registry The meter registry.
+     * @param prefix   The prefix for meter names.
+     */
+    public MicrometerMetricsRecorder(final MeterRegistry registry,
+                                     final String prefix) {
+        this.registry = registry;
+        this.prefix = prefix;
+    }
+
+    @Override
+    public void registerNode(final MemcachedNode node) {
+        final String tag = tag(node.address());
+        Gauge.builder(prefix + ".requests.inflight", node, MemcachedNode::outstanding)
+                .description("Requests that are queued or waiting for a response")
+                .tag("node", tag)
+                .register(registry);
+        Gauge.builder(prefix + ".requests.saturation", node, MemcachedNode::saturation)
+                .description("Outstanding requests as a fraction of the in-flight capacity")
+                .tag("node", tag)
+                .register(registry);
+    }
+
+    @Override
+    public void recordResponse(final InetSocketAddress node,
+                               final Opcode opcode,
+                               final Status status,
+                               final long latencyNanos) {
+        meters(node).timer(opcode, status).record(latencyNanos, TimeUnit.NANOSECONDS);
+    }
+
+    @Override
+    public void recordFailure(final InetSocketAddress node,
+                              final Throwable error) {
+        meters(node).failures.increment();
+    }
+
+    @Override
+    public void recordBytesWritten(final InetSocketAddress node,
+                                   final long bytes) {
+        meters(node).bytesWritten.increment(bytes);
+    }
+
+    @Override
+    public void recordBytesRead(final InetSocketAddress node,
+                                final long bytes) {
+        meters(node).bytesRead.increment(bytes);
+    }
+
+    private NodeMeters meters(final InetSocketAddress address) {
+        final NodeMeters meters = nodes.get(address);
+        return meters != null ? meters : nodes.computeIfAbsent(address, NodeMeters::new);
+    }
+
+    private static String tag(final InetSocketAddress address) {
+        return address.getHostString() + ":" + address.getPort();
+    }
+
+    /**
+     * The meters for one server.
+     */
+    private final class NodeMeters {
+
+        private final String node;
+
+        private final AtomicReferenceArray<Timer> timers = new AtomicReferenceArray<>(OPCODES.length * STATUSES.length);
+
+        private final Counter failures;
+
+        private final Counter bytesRead;
+
+        private final Counter bytesWritten;
+
+        NodeMeters(final InetSocketAddress address) {
+            node = tag(address);
+            failures = Counter.builder(prefix + ".requests.failures")
+                    .description("Requests that failed without a response")
+                    .tag("node", node)
+                    .register(registry);
+            bytesRead = Counter.builder(prefix + ".bytes.read")
+                    .baseUnit("bytes")
+                    .tag("node", node)
+                    .register(registry);
+            bytesWritten = Counter.builder(prefix + ".bytes.written")
+                    .baseUnit("bytes")
+                    .tag("node", node)
+                    .register(registry);
+        }
+
+        Timer timer(final Opcode opcode,
+                    final Status status) {
+            final int index = opcode.ordinal() * STATUSES.length + status.ordinal();
+            Timer timer = timers.get(index);
+            if (timer == null) {
+                // The registry returns the same timer if another thread gets here first
+                timer = Timer.builder(prefix + ".requests")
+                        .description("Latency from a request being issued to its response being received")
+                        .tag("node", node)
+                        .tag("opcode", opcode.name())
+                        .tag("status", status.name())
+                        .register(registry);
+                timers.lazySet(index, timer);
+            }
+            return timer;
+        }
+    }
+}
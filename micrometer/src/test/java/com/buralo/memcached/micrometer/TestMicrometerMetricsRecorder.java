@@ -0,0 +1,68 @@
+package com.buralo.memcached.micrometer;
+
+import com.buralo.memcached.FlushPolicy;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.StubMemcachedServer;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+import reactor.netty.tcp.TcpClient;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+public class TestMicrometerMetricsRecorder {
+
+    private final SimpleMeterRegistry registry = new SimpleMeterRegistry();
+
+    private StubMemcachedServer server;
+
+    private MemcachedConnection connection;
+
+    private String node;
+
+    private static Request get(final String key) {
+        return (encoder, opaque) -> encoder.get(Opcode.GET, opaque, key);
+    }
+
+    @BeforeEach
+    public void setUp() {
+        server = new StubMemcachedServer();
+        server.items().put("hit", "value".getBytes(StandardCharsets.UTF_8));
+        connection = MemcachedConnection.connect(TcpClient.newConnection().remoteAddress(server::address),
+                MemcachedConnection.DEFAULT_MAX_IN_FLIGHT, FlushPolicy.BATCHED,
+                new MicrometerMetricsRecorder(registry)).block();
+        node = server.address().getHostString() + ":" + server.address().getPort();
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connection.close().block();
+        server.close();
+        registry.close();
+    }
+
+    @Test
+    public void publishesTimersCountersAndGauges() {
+        Flux.range(0, 10)
+                .flatMap(i -> connection.execute(get(i < 7 ? "hit" : "miss")))
+                .doOnNext(Response::release)
+                .blockLast();
+        assertThat(registry.get("memcached.requests").tags("node", node, "opcode", "GET", "status", "NO_ERROR")
+                .timer().count()).isEqualTo(7L);
+        assertThat(registry.get("memcached.requests").tags("node", node, "opcode", "GET", "status", "NOT_FOUND")
+                .timer().count()).isEqualTo(3L);
+        assertThat(registry.get("memcached.bytes.written").tag("node", node).counter().count())
+                .isEqualTo(10 * 24 + 7 * 3 + 3 * 4);
+        assertThat(registry.get("memcached.bytes.read").tag("node", node).counter().count()).isPositive();
+        assertThat(registry.get("memcached.requests.failures").tag("node", node).counter().count()).isZero();
+        assertThat(registry.get("memcached.requests.inflight").tag("node", node).gauge().value()).isZero();
+        assertThat(registry.get("memcached.requests.saturation").tag("node", node).gauge().value()).isZero();
+    }
+}
@@ -0,0 +1,89 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.server;
+
+import com.buralo.memcached.Opcode;
+import io.netty.buffer.ByteBuf;
+
+/**
+ * A request received by the server. The extras and value are retained slices of the inbound buffer and are released
+ * by {@link #release()} once the request has been handled.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class BinaryRequest {
+
+    private final int rawOpcode;
+
+    private final int opaque;
+
+    private final long cas;
+
+    private final String key;
+
+    private final ByteBuf extras;
+
+    private final ByteBuf value;
+
+    BinaryRequest(final int rawOpcode,
+                  final int opaque,
+                  final long cas,
+                  final String key,
+                  final ByteBuf extras,
+                  final ByteBuf value) {
+        this.rawOpcode = rawOpcode;
+        this.opaque = opaque;
+        this.cas = cas;
+        this.key = key;
+        this.extras = extras;
+        this.value = value;
+    }
+
+    Opcode opcode() {
+        return Opcode.fromCode((byte) rawOpcode);
+    }
+
+    int rawOpcode() {
+        return rawOpcode;
+    }
+
+    int opaque() {
+        return opaque;
+    }
+
+    long cas() {
+        return cas;
+    }
+
+    String key() {
+        return key;
+    }
+
+    ByteBuf extras() {
+        return extras;
+    }
+
+    ByteBuf value() {
+        return value;
+    }
+
+    void release() {
+        extras.release();
+        value.release();
+    }
+}
@@ -0,0 +1,145 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.server;
+
+import com.buralo.memcached.Status;
+
+import java.time.Duration;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * Injects faults into the responses of a {@link MemcachedServer}. Faults can be changed while the server is running
+ * and apply to the requests received after the change.
+ * <p>
+ * Each fault has a probability so that, for example, one request in fifty can be delayed. Delayed responses are
+ * still returned in the order the requests arrived, so a delay also holds back the responses that follow it on the
+ * same connection, just as a slow server would.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class FaultInjector {
+
+    private volatile long latencyNanos;
+
+    private volatile double latencyProbability;
+
+    private volatile double dropProbability;
+
+    private volatile Status failureStatus;
+
+    private volatile double failureProbability;
+
+    /**
+     * Delay every response.
+     *
+     * @param latency The delay.
+     */
+    public void latency(final Duration latency) {
+        latency(latency, 1.0);
+    }
+
+    /**
+     * Delay some responses.
+     *
+     * @param latency     The delay.
+     * @param probability The fraction of responses that are delayed.
+     */
+    public void latency(final Duration latency,
+                        final double probability) {
+        if (latency.isNegative()) {
+            throw new IllegalArgumentException("latency must not be negative");
+        }
+        this.latencyNanos = latency.toNanos();
+        this.latencyProbability = checkProbability(probability);
+    }
+
+    /**
+     * Close the connection instead of handling some requests. The request and any that follow it in the same read are
+     * discarded without a response.
+     *
+     * @param probability The fraction of requests that close their connection.
+     */
+    public void dropConnections(final double probability) {
+        this.dropProbability = checkProbability(probability);
+    }
+
+    /**
+     * Answer some requests with an error status instead of handling them. NOOP, VERSION and QUIT requests are always
+     * handled.
+     *
+     * @param status      The error status such as {@link Status#BUSY} or {@link Status#TEMPORARY_FAILURE}.
+     * @param probability The fraction of requests that fail.
+     */
+    public void failRequests(final Status status,
+                             final double probability) {
+        if (status == Status.NO_ERROR || status == Status.UNKNOWN) {
+            throw new IllegalArgumentException("status must be an error status");
+        }
+        this.failureProbability = checkProbability(probability);
+        this.failureStatus = status;
+    }
+
+    /**
+     * Remove every fault.
+     */
+    public void reset() {
+        latencyProbability = 0.0;
+        latencyNanos = 0L;
+        dropProbability = 0.0;
+        failureProbability = 0.0;
+        failureStatus = null;
+    }
+
+    /**
+     * Decide how long to delay a response.
+     *
+     * @return The delay in nanoseconds which is usually {@code 0}.
+     */
+    long delayNanos() {
+        final long latency = latencyNanos;
+        return latency != 0L && happens(latencyProbability) ? latency : 0L;
+    }
+
+    /**
+     * Decide whether to close the connection instead of handling a request.
+     */
+    boolean dropConnection() {
+        return happens(dropProbability);
+    }
+
+    /**
+     * Decide whether to fail a request.
+     *
+     * @return The status to respond with or {@code null} to handle the request.
+     */
+    Status failure() {
+        final Status status = failureStatus;
+        return status != null && happens(failureProbability) ? status : null;
+    }
+
+    private static boolean happens(final double probability) {
+        return probability >= 1.0 || probability > 0.0 && ThreadLocalRandom.current().nextDouble() < probability;
+    }
+
+    private static double checkProbability(final double probability) {
+        if (probability < 0.0 || probability > 1.0) {
+            throw new IllegalArgumentException("probability must be between 0 and 1");
+        }
+        return probability;
+    }
+}
@@ -0,0 +1,183 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.server;
+
+import io.netty.channel.group.ChannelGroup;
+import io.netty.channel.group.DefaultChannelGroup;
+import io.netty.util.concurrent.GlobalEventExecutor;
+import reactor.core.publisher.Mono;
+import reactor.netty.DisposableServer;
+import reactor.netty.tcp.TcpServer;
+
+import java.net.InetSocketAddress;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * An in-process server that speaks the memcached binary protocol, for tests and benchmarks that cannot start a real
+ * memcached. It runs on the same Netty stack as the client and shares its {@code Opcode} and {@code Status}
+ * definitions.
+ * <p>
+ * Items are held in a memory-bounded {@link SlabStore} and faults such as added latency, dropped connections and
+ * error statuses can be injected through {@link #faults()} while the server is running. The server supports the
+ * GET, SET, ADD, REPLACE, APPEND, PREPEND, INCREMENT, DECREMENT, DELETE, FLUSH, NOOP, VERSION, STATS and QUIT
+ * commands and their quiet variants. SASL authentication and TOUCH are not supported.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class MemcachedServer implements AutoCloseable {
+
+    /**
+     * The default memory limit for items.
+     */
+    public static final long DEFAULT_MAX_BYTES = 64L * 1024L * 1024L;
+
+    /**
+     * The version returned by the VERSION command.
+     */
+    public static final String VERSION = "1.6.9";
+
+    private final SlabStore store;
+
+    private final FaultInjector faults = new FaultInjector();
+
+    private final LongAdder connections = new LongAdder();
+
+    private final ChannelGroup channels = new DefaultChannelGroup(GlobalEventExecutor.INSTANCE);
+
+    private final LongAdder requests = new LongAdder();
+
+    private final LongAdder gets = new LongAdder();
+
+    private final LongAdder hits = new LongAdder();
+
+    private final DisposableServer server;
+
+    /**
+     * Start a server on a free port of the loopback interface with the default memory limit.
+     */
+    public MemcachedServer() {
+        this(0);
+    }
+
+    /**
+     * Start a server on the loopback interface with the default memory limit.
+     *
+     * @param port The port or {@code 0} to choose a free port.
+     */
+    public MemcachedServer(final int port) {
+        this(port, new SlabStore(DEFAULT_MAX_BYTES));
+    }
+
+    /**
+     * Start a server on the loopback interface.
+     *
+     * @param port  The port or {@code 0} to choose a free port.
+     * @param store The store which may be shared with a server that has been closed, so that a restarted server
+     *              keeps its items.
+     */
+    public MemcachedServer(final int port,
+                           final SlabStore store) {
+        this.store = store;
+        this.server = TcpServer.create()
+                .host("127.0.0.1")
+                .port(port)
+                .doOnConnection(connection -> {
+                    connections.increment();
+                    channels.add(connection.channel());
+                    connection.addHandlerLast(RequestDecoder.NAME, new RequestDecoder());
+                    connection.addHandlerLast(RequestHandler.NAME, new RequestHandler(this));
+                    connection.channel().config().setAutoRead(true);
+                })
+                .handle((inbound, outbound) -> Mono.never())
+                .bindNow();
+    }
+
+    public InetSocketAddress address() {
+        return (InetSocketAddress) server.address();
+    }
+
+    public SlabStore store() {
+        return store;
+    }
+
+    public FaultInjector faults() {
+        return faults;
+    }
+
+    /**
+     * Get the number of connections accepted since the server started.
+     *
+     * @return The number of connections.
+     */
+    public long connections() {
+        return connections.sum();
+    }
+
+    /**
+     * Get the number of open connections.
+     *
+     * @return The number of connections.
+     */
+    public int currentConnections() {
+        return channels.size();
+    }
+
+    /**
+     * Get the number of requests received, including those that failed or were dropped by an injected fault.
+     *
+     * @return The number of requests.
+     */
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long gets() {
+        return gets.sum();
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    /**
+     * Close the open connections while still accepting new ones.
+     */
+    public void disconnect() {
+        channels.close().awaitUninterruptibly();
+    }
+
+    /**
+     * Stop accepting connections and close the open connections.
+     */
+    @Override
+    public void close() {
+        server.disposeNow();
+        channels.close().awaitUninterruptibly();
+    }
+
+    void recordRequest() {
+        requests.increment();
+    }
+
+    void recordGet(final boolean hit) {
+        gets.increment();
+        if (hit) {
+            hits.increment();
+        }
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.server;
+
+import com.buralo.memcached.ResponseDecoder;
+import io.netty.buffer.ByteBuf;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.ByteToMessageDecoder;
+import io.netty.handler.codec.CorruptedFrameException;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+
+/**
+ * Turns the inbound byte stream into {@link BinaryRequest} messages. Requests and responses share the same frame
+ * layout so frames are measured with {@link ResponseDecoder#frameLength(ByteBuf)}.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class RequestDecoder extends ByteToMessageDecoder {
+
+    /**
+     * The name used for the handler in the channel pipeline.
+     */
+    static final String NAME = "memcached.requestDecoder";
+
+    private static final byte REQUEST_MAGIC = (byte) 0x80;
+
+    @Override
+    protected void decode(final ChannelHandlerContext ctx,
+                          final ByteBuf in,
+                          final List<Object> out) {
+        for (int frameLength = ResponseDecoder.frameLength(in);
+             frameLength >= 0 && in.readableBytes() >= frameLength;
+             frameLength = ResponseDecoder.frameLength(in)) {
+            if (in.readByte() != REQUEST_MAGIC) {
+                throw new CorruptedFrameException("Invalid request magic");
+            }
+            final int rawOpcode = in.readUnsignedByte();
+            final int keyLength = in.readUnsignedShort();
+            final int extrasLength = in.readUnsignedByte();
+            // Data type and vbucket
+            in.skipBytes(3);
+            final int totalLength = in.readInt();
+            final int opaque = in.readInt();
+            final long cas = in.readLong();
+            if (totalLength < keyLength + extrasLength) {
+                throw new CorruptedFrameException("Invalid request body length");
+            }
+            final ByteBuf extras = in.readRetainedSlice(extrasLength);
+            final String key = in.readCharSequence(keyLength, StandardCharsets.UTF_8).toString();
+            final ByteBuf value = in.readRetainedSlice(totalLength - keyLength - extrasLength);
+            out.add(new BinaryRequest(rawOpcode, opaque, cas, key, extras, value));
+        }
+    }
+}
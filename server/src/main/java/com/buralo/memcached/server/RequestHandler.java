@@ -0,0 +1,450 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.server;
+
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.RequestEncoder;
+import com.buralo.memcached.Status;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInboundHandlerAdapter;
+
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Executes the requests received on one connection against the store and writes the responses. Responses are
+ * flushed once per read, or when they are released if a fault has delayed them.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+final class RequestHandler extends ChannelInboundHandlerAdapter {
+
+    /**
+     * The name used for the handler in the channel pipeline.
+     */
+    static final String NAME = "memcached.requestHandler";
+
+    private static final byte RESPONSE_MAGIC = (byte) 0x81;
+
+    private static final int HEADER_LENGTH = 24;
+
+    private static final byte[] EMPTY = new byte[0];
+
+    private final MemcachedServer server;
+
+    private final SlabStore store;
+
+    private final FaultInjector faults;
+
+    /**
+     * The time from {@link System#nanoTime()} at which the last delayed response is written. Later responses are held
+     * back until then so that responses stay in request order.
+     */
+    private long releaseAt;
+
+    private boolean dropped;
+
+    RequestHandler(final MemcachedServer server) {
+        this.server = server;
+        this.store = server.store();
+        this.faults = server.faults();
+    }
+
+    @Override
+    public void channelRead(final ChannelHandlerContext ctx,
+                            final Object msg) {
+        final BinaryRequest request = (BinaryRequest) msg;
+        try {
+            if (!dropped) {
+                handle(ctx, request);
+            }
+        } finally {
+            request.release();
+        }
+    }
+
+    @Override
+    public void channelReadComplete(final ChannelHandlerContext ctx) {
+        ctx.flush();
+    }
+
+    private void handle(final ChannelHandlerContext ctx,
+                        final BinaryRequest request) {
+        server.recordRequest();
+        if (faults.dropConnection()) {
+            dropped = true;
+            ctx.close();
+            return;
+        }
+        final Opcode opcode = request.opcode();
+        if (opcode != Opcode.NOOP && opcode != Opcode.VERSION && opcode != Opcode.QUIT && opcode != Opcode.QUITQ) {
+            final Status failure = faults.failure();
+            if (failure != null) {
+                error(ctx, request, failure);
+                return;
+            }
+        }
+        if (!validKey(opcode, request)) {
+            error(ctx, request, Status.INVALID_ARGUMENTS);
+            return;
+        }
+        switch (opcode) {
+            case GET:
+            case GETQ:
+            case GETK:
+            case GETKQ:
+                get(ctx, request, opcode);
+                break;
+            case SET:
+            case SETQ:
+            case ADD:
+            case ADDQ:
+            case REPLACE:
+            case REPLACEQ:
+                store(ctx, request, opcode);
+                break;
+            case APPEND:
+            case APPENDQ:
+            case PREPEND:
+            case PREPENDQ:
+                concat(ctx, request, opcode);
+                break;
+            case INCREMENT:
+            case INCREMENTQ:
+            case DECREMENT:
+            case DECREMENTQ:
+                counter(ctx, request, opcode);
+                break;
+            case DELETE:
+            case DELETEQ:
+                delete(ctx, request, opcode);
+                break;
+            case FLUSH:
+            case FLUSHQ:
+                flush(ctx, request, opcode);
+                break;
+            case NOOP:
+                respond(ctx, request, Status.NO_ERROR, 0L, 0, false, EMPTY);
+                break;
+            case VERSION:
+                respond(ctx, request, Status.NO_ERROR, 0L, 0, false,
+                        MemcachedServer.VERSION.getBytes(StandardCharsets.US_ASCII));
+                break;
+            case STATS:
+                stats(ctx, request);
+                break;
+            case QUIT:
+            case QUITQ:
+                dropped = true;
+                if (opcode == Opcode.QUIT) {
+                    respond(ctx, request, Status.NO_ERROR, 0L, 0, false, EMPTY);
+                    ctx.flush();
+                }
+                ctx.close();
+                break;
+            default:
+                error(ctx, request, Status.UNKNOWN_COMMAND);
+                break;
+        }
+    }
+
+    private void get(final ChannelHandlerContext ctx,
+                     final BinaryRequest request,
+                     final Opcode opcode) {
+        if (request.extras().isReadable() || request.value().isReadable()) {
+            error(ctx, request, Status.INVALID_ARGUMENTS);
+            return;
+        }
+        final boolean withKey = opcode == Opcode.GETK || opcode == Opcode.GETKQ;
+        final SlabStore.Item item = store.get(request.key());
+        server.recordGet(item != null);
+        if (item != null) {
+            respond(ctx, request, Status.NO_ERROR, item.cas(), item.flags(), withKey, item.value());
+        } else if (opcode == Opcode.GET || opcode == Opcode.GETK) {
+            error(ctx, request, Status.NOT_FOUND);
+        }
+    }
+
+    private void store(final ChannelHandlerContext ctx,
+                       final BinaryRequest request,
+                       final Opcode opcode) {
+        final ByteBuf extras = request.extras();
+        if (extras.readableBytes() != 8) {
+            error(ctx, request, Status.INVALID_ARGUMENTS);
+            return;
+        }
+        final int flags = extras.getInt(0);
+        final int expiration = extras.getInt(4);
+        final byte[] value = ByteBufUtil.getBytes(request.value());
+        final SlabStore.Result result;
+        switch (opcode) {
+            case ADD:
+            case ADDQ:
+                result = request.cas() != 0L
+                        ? SlabStore.Result.INVALID_ARGUMENTS
+                        : store.add(request.key(), flags, expiration, value);
+                break;
+            case REPLACE:
+            case REPLACEQ:
+                result = store.replace(request.key(), flags, expiration, request.cas(), value);
+                break;
+            default:
+                result = store.set(request.key(), flags, expiration, request.cas(), value);
+                break;
+        }
+        written(ctx, request, opcode, result);
+    }
+
+    private void concat(final ChannelHandlerContext ctx,
+                        final BinaryRequest request,
+                        final Opcode opcode) {
+        if (request.extras().isReadable()) {
+            error(ctx, request, Status.INVALID_ARGUMENTS);
+            return;
+        }
+        final byte[] value = ByteBufUtil.getBytes(request.value());
+        final SlabStore.Result result = opcode == Opcode.APPEND || opcode == Opcode.APPENDQ
+                ? store.append(request.key(), request.cas(), value)
+                : store.prepend(request.key(), request.cas(), value);
+        written(ctx, request, opcode, result);
+    }
+
+    private void counter(final ChannelHandlerContext ctx,
+                         final BinaryRequest request,
+                         final Opcode opcode) {
+        final ByteBuf extras = request.extras();
+        if (extras.readableBytes() != 20 || request.value().isReadable()) {
+            error(ctx, request, Status.INVALID_ARGUMENTS);
+            return;
+        }
+        final long delta = extras.getLong(0);
+        final long initial = extras.getLong(8);
+        final int expiration = extras.getInt(16);
+        final SlabStore.Result result = opcode == Opcode.INCREMENT || opcode == Opcode.INCREMENTQ
+                ? store.increment(request.key(), delta, initial, expiration, request.cas())
+                : store.decrement(request.key(), delta, initial, expiration, request.cas());
+        if (result.status() != Status.NO_ERROR) {
+            error(ctx, request, result.status());
+        } else if (!isQuiet(opcode)) {
+            final byte[] counter = new byte[8];
+            for (int i = 0; i < 8; i++) {
+                counter[i] = (byte) (result.counter() >>> (56 - 8 * i));
+            }
+            respond(ctx, request, Status.NO_ERROR, result.cas(), 0, false, counter);
+        }
+    }
+
+    private void delete(final ChannelHandlerContext ctx,
+                        final BinaryRequest request,
+                        final Opcode opcode) {
+        if (request.extras().isReadable() || request.value().isReadable()) {
+            error(ctx, request, Status.INVALID_ARGUMENTS);
+            return;
+        }
+        written(ctx, request, opcode, store.delete(request.key(), request.cas()));
+    }
+
+    private void flush(final ChannelHandlerContext ctx,
+                       final BinaryRequest request,
+                       final Opcode opcode) {
+        final ByteBuf extras = request.extras();
+        if (extras.isReadable() && extras.readableBytes() != 4) {
+            error(ctx, request, Status.INVALID_ARGUMENTS);
+            return;
+        }
+        store.flush(extras.isReadable() ? extras.getInt(0) : 0);
+        if (!isQuiet(opcode)) {
+            respond(ctx, request, Status.NO_ERROR, 0L, 0, false, EMPTY);
+        }
+    }
+
+    /**
+     * Send one response for each statistic followed by a response with an empty key.
+     */
+    private void stats(final ChannelHandlerContext ctx,
+                       final BinaryRequest request) {
+        stat(ctx, request, "curr_connections", server.currentConnections());
+        stat(ctx, request, "total_connections", server.connections());
+        stat(ctx, request, "cmd_get", server.gets());
+        stat(ctx, request, "get_hits", server.hits());
+        stat(ctx, request, "get_misses", server.gets() - server.hits());
+        stat(ctx, request, "curr_items", store.items());
+        stat(ctx, request, "bytes", store.bytes());
+        stat(ctx, request, "limit_maxbytes", store.maxBytes());
+        stat(ctx, request, "evictions", store.evictions());
+        respond(ctx, request, Status.NO_ERROR, 0L, 0, false, EMPTY);
+    }
+
+    private void stat(final ChannelHandlerContext ctx,
+                      final BinaryRequest request,
+                      final String name,
+                      final long value) {
+        write(ctx, response(ctx, request.rawOpcode(), Status.NO_ERROR, request.opaque(), 0L, 0, 0,
+                name.getBytes(StandardCharsets.US_ASCII), Long.toString(value).getBytes(StandardCharsets.US_ASCII)));
+    }
+
+    /**
+     * Respond to a write, which only needs a response if it failed or is not quiet.
+     */
+    private void written(final ChannelHandlerContext ctx,
+                         final BinaryRequest request,
+                         final Opcode opcode,
+                         final SlabStore.Result result) {
+        if (result.status() != Status.NO_ERROR) {
+            error(ctx, request, result.status());
+        } else if (!isQuiet(opcode)) {
+            respond(ctx, request, Status.NO_ERROR, result.cas(), 0, false, EMPTY);
+        }
+    }
+
+    private void error(final ChannelHandlerContext ctx,
+                       final BinaryRequest request,
+                       final Status status) {
+        respond(ctx, request, status, 0L, 0, false, message(status).getBytes(StandardCharsets.US_ASCII));
+    }
+
+    /**
+     * Write a response with flags as extras if the status is {@link Status#NO_ERROR} and the request was a GET.
+     */
+    private void respond(final ChannelHandlerContext ctx,
+                         final BinaryRequest request,
+                         final Status status,
+                         final long cas,
+                         final int flags,
+                         final boolean withKey,
+                         final byte[] value) {
+        final Opcode opcode = request.opcode();
+        final boolean isGet = status == Status.NO_ERROR
+                && (opcode == Opcode.GET || opcode == Opcode.GETQ || opcode == Opcode.GETK || opcode == Opcode.GETKQ);
+        final byte[] key = withKey ? request.key().getBytes(StandardCharsets.UTF_8) : EMPTY;
+        write(ctx, response(ctx, request.rawOpcode(), status, request.opaque(), cas, isGet ? 4 : 0, flags, key,
+                value));
+    }
+
+    private void write(final ChannelHandlerContext ctx,
+                       final ByteBuf response) {
+        final long delay = faults.delayNanos();
+        final long now = System.nanoTime();
+        if (delay == 0L && releaseAt - now <= 0L) {
+            ctx.write(response);
+            return;
+        }
+        if (now + delay - releaseAt > 0L) {
+            releaseAt = now + delay;
+        }
+        // Tasks scheduled for the same time run in the order they were scheduled
+        ctx.executor().schedule(() -> ctx.writeAndFlush(response), releaseAt - now, TimeUnit.NANOSECONDS);
+    }
+
+    private static ByteBuf response(final ChannelHandlerContext ctx,
+                                    final int rawOpcode,
+                                    final Status status,
+                                    final int opaque,
+                                    final long cas,
+                                    final int extrasLength,
+                                    final int flags,
+                                    final byte[] key,
+                                    final byte[] value) {
+        final ByteBuf buf = ctx.alloc().buffer(HEADER_LENGTH + extrasLength + key.length + value.length);
+        buf.writeByte(RESPONSE_MAGIC);
+        buf.writeByte(rawOpcode);
+        buf.writeShort(key.length);
+        buf.writeByte(extrasLength);
+        buf.writeByte(0);
+        buf.writeShort(status.code());
+        buf.writeInt(extrasLength + key.length + value.length);
+        buf.writeInt(opaque);
+        buf.writeLong(cas);
+        if (extrasLength == 4) {
+            buf.writeInt(flags);
+        }
+        buf.writeBytes(key);
+        buf.writeBytes(value);
+        return buf;
+    }
+
+    private static boolean validKey(final Opcode opcode,
+                                    final BinaryRequest request) {
+        switch (opcode) {
+            case NOOP:
+            case VERSION:
+            case QUIT:
+            case QUITQ:
+            case FLUSH:
+            case FLUSHQ:
+                return request.key().isEmpty();
+            case STATS:
+            case UNKNOWN:
+                return true;
+            default:
+                return !request.key().isEmpty() && ByteBufUtil.utf8Bytes(request.key()) <= RequestEncoder.MAX_KEY_LENGTH;
+        }
+    }
+
+    private static boolean isQuiet(final Opcode opcode) {
+        switch (opcode) {
+            case GETQ:
+            case GETKQ:
+            case SETQ:
+            case ADDQ:
+            case REPLACEQ:
+            case APPENDQ:
+            case PREPENDQ:
+            case INCREMENTQ:
+            case DECREMENTQ:
+            case DELETEQ:
+            case FLUSHQ:
+            case QUITQ:
+                return true;
+            default:
+                return false;
+        }
+    }
+
+    /**
+     * Get the message that memcached sends with an error status.
+     */
+    private static String message(final Status status) {
+        switch (status) {
+            case NOT_FOUND:
+                return "Not found";
+            case EXISTS:
+                return "Data exists for key.";
+            case TOO_LARGE:
+                return "Too large.";
+            case INVALID_ARGUMENTS:
+                return "Invalid arguments";
+            case NOT_STORED:
+                return "Not stored.";
+            case NON_NUMERIC_VALUE:
+                return "Non-numeric server-side value for incr or decr";
+            case UNKNOWN_COMMAND:
+                return "Unknown command";
+            case OUT_OF_MEMORY:
+                return "Out of memory";
+            case BUSY:
+                return "System is busy";
+            case TEMPORARY_FAILURE:
+                return "Temporary failure";
+            default:
+                return status.name();
+        }
+    }
+}
@@ -0,0 +1,879 @@
+/*
+ * Copyright 2021 Búraló Technologies
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package com.buralo.memcached.server;
+
+import com.buralo.memcached.Status;
+import io.netty.buffer.ByteBufUtil;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * A memory-bounded item store modelled on the memcached slab allocator.
+ * <p>
+ * Memory is handed out in pages. Each page belongs to one slab class and is divided into chunks of that class's size.
+ * The chunk sizes start at 96 bytes and grow by a factor of 1.25 up to the page size. An item takes one chunk of the
+ * smallest class it fits, counting a fixed header, its key and its value. When a class has no free chunk and no page
+ * can be allocated, it evicts its least recently used item. Items read since they were last considered for eviction
+ * get a second chance. As in memcached, pages are never moved between classes once allocated.
+ * <p>
+ * The index is a concurrent map updated by compare-and-set, so reads and writes to different keys do not block each
+ * other. Each slab class has its own lock around its LRU list and chunk accounting. Expired and flushed items are
+ * removed lazily when they are read.
+ *
+ * @author Brian Matthews
+ * @since 1.0.0
+ */
+public class SlabStore {
+
+    /**
+     * The default size of a page, which is also the largest item that can be stored.
+     */
+    public static final int DEFAULT_PAGE_SIZE = 1024 * 1024;
+
+    /**
+     * The bytes counted for each item in addition to its key and value.
+     */
+    public static final int ITEM_HEADER_SIZE = 48;
+
+    private static final int MIN_CHUNK_SIZE = 96;
+
+    private static final double GROWTH_FACTOR = 1.25;
+
+    private static final int CHUNK_ALIGNMENT = 8;
+
+    /**
+     * Expirations up to 30 days are relative to now and longer ones are absolute Unix times.
+     */
+    private static final long MAX_RELATIVE_EXPIRATION = 60L * 60L * 24L * 30L;
+
+    /**
+     * The expiration that tells an increment or decrement to fail rather than create a missing counter.
+     */
+    private static final int NO_CREATE = 0xffffffff;
+
+    private final ConcurrentMap<String, Item> index = new ConcurrentHashMap<>();
+
+    private final SlabClass[] slabClasses;
+
+    private final long maxBytes;
+
+    private final int pageSize;
+
+    private final int maxPages;
+
+    private final AtomicInteger pages = new AtomicInteger();
+
+    private final AtomicLong nextCas = new AtomicLong();
+
+    private final LongAdder evictions = new LongAdder();
+
+    /**
+     * Items with a CAS value at or below this were flushed immediately.
+     */
+    private volatile long flushedCas;
+
+    /**
+     * The time in milliseconds of a delayed flush or {@code 0}. Items stored before it expire when it is reached.
+     */
+    private volatile long flushAt;
+
+    /**
+     * Initialize a store with the default page size.
+     *
+     * @param maxBytes The memory limit.
+     */
+    public SlabStore(final long maxBytes) {
+        this(maxBytes, DEFAULT_PAGE_SIZE);
+    }
+
+    /**
+     * Initialize a store.
+     *
+     * @param maxBytes The memory limit which is rounded down to a whole number of pages.
+     * @param pageSize The size of a page which is also the largest item that can be stored.
+     */
+    public SlabStore(final long maxBytes,
+                     final int pageSize) {
+        if (pageSize < MIN_CHUNK_SIZE) {
+            throw new IllegalArgumentException("pageSize must be at least " + MIN_CHUNK_SIZE);
+        }
+        if (maxBytes < pageSize) {
+            throw new IllegalArgumentException("maxBytes must be at least one page");
+        }
+        this.maxBytes = maxBytes;
+        this.pageSize = pageSize;
+        this.maxPages = (int) Math.min(Integer.MAX_VALUE, maxBytes / pageSize);
+        final List<SlabClass> classes = new ArrayList<>();
+        for (int size = MIN_CHUNK_SIZE; size < pageSize; ) {
+            classes.add(new SlabClass(size));
+            final int next = (int) (size * GROWTH_FACTOR);
+            size = (next + CHUNK_ALIGNMENT - 1) / CHUNK_ALIGNMENT * CHUNK_ALIGNMENT;
+        }
+        classes.add(new SlabClass(pageSize));
+        this.slabClasses = classes.toArray(new SlabClass[0]);
+    }
+
+    /**
+     * Get a live item.
+     *
+     * @param key The key.
+     * @return The item or {@code null} if it does not exist or has expired.
+     */
+    public Item get(final String key) {
+        final Item item = index.get(key);
+        if (item == null) {
+            return null;
+        }
+        if (!isLive(item, System.currentTimeMillis())) {
+            if (index.remove(key, item)) {
+                item.slabClass.unlink(item);
+            }
+            return null;
+        }
+        item.accessed = true;
+        return item;
+    }
+
+    /**
+     * Store an item whether or not it exists.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The expiration in seconds from now, an absolute Unix time or {@code 0} to never expire.
+     * @param cas        The CAS value the existing item must have or {@code 0} to skip the check.
+     * @param value      The value which must not be modified once stored.
+     * @return The outcome.
+     */
+    public Result set(final String key,
+                      final int flags,
+                      final int expiration,
+                      final long cas,
+                      final byte[] value) {
+        return store(Mode.SET, key, flags, expiration, cas, value);
+    }
+
+    /**
+     * Store an item only if it does not exist.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The expiration.
+     * @param value      The value which must not be modified once stored.
+     * @return The outcome which is {@link Status#EXISTS} if the item exists.
+     */
+    public Result add(final String key,
+                      final int flags,
+                      final int expiration,
+                      final byte[] value) {
+        return store(Mode.ADD, key, flags, expiration, 0L, value);
+    }
+
+    /**
+     * Store an item only if it exists.
+     *
+     * @param key        The key.
+     * @param flags      The item flags.
+     * @param expiration The expiration.
+     * @param cas        The CAS value the existing item must have or {@code 0} to skip the check.
+     * @param value      The value which must not be modified once stored.
+     * @return The outcome which is {@link Status#NOT_FOUND} if the item does not exist.
+     */
+    public Result replace(final String key,
+                          final int flags,
+                          final int expiration,
+                          final long cas,
+                          final byte[] value) {
+        return store(Mode.REPLACE, key, flags, expiration, cas, value);
+    }
+
+    /**
+     * Add bytes to the end of an existing item's value keeping its flags and expiration.
+     *
+     * @param key   The key.
+     * @param cas   The CAS value the existing item must have or {@code 0} to skip the check.
+     * @param value The bytes to add.
+     * @return The outcome which is {@link Status#NOT_STORED} if the item does not exist.
+     */
+    public Result append(final String key,
+                         final long cas,
+                         final byte[] value) {
+        return store(Mode.APPEND, key, 0, 0, cas, value);
+    }
+
+    /**
+     * Add bytes to the start of an existing item's value keeping its flags and expiration.
+     *
+     * @param key   The key.
+     * @param cas   The CAS value the existing item must have or {@code 0} to skip the check.
+     * @param value The bytes to add.
+     * @return The outcome which is {@link Status#NOT_STORED} if the item does not exist.
+     */
+    public Result prepend(final String key,
+                          final long cas,
+                          final byte[] value) {
+        return store(Mode.PREPEND, key, 0, 0, cas, value);
+    }
+
+    /**
+     * Add to a counter, wrapping at 2<sup>64</sup>.
+     *
+     * @param key        The key.
+     * @param delta      The amount to add.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration of a new counter or {@code 0xffffffff} to fail if the counter does not exist.
+     * @param cas        The CAS value the existing item must have or {@code 0} to skip the check.
+     * @return The outcome with the new value of the counter.
+     */
+    public Result increment(final String key,
+                            final long delta,
+                            final long initial,
+                            final int expiration,
+                            final long cas) {
+        return counter(true, key, delta, initial, expiration, cas);
+    }
+
+    /**
+     * Subtract from a counter, stopping at zero.
+     *
+     * @param key        The key.
+     * @param delta      The amount to subtract.
+     * @param initial    The value stored if the counter does not exist.
+     * @param expiration The expiration of a new counter or {@code 0xffffffff} to fail if the counter does not exist.
+     * @param cas        The CAS value the existing item must have or {@code 0} to skip the check.
+     * @return The outcome with the new value of the counter.
+     */
+    public Result decrement(final String key,
+                            final long delta,
+                            final long initial,
+                            final int expiration,
+                            final long cas) {
+        return counter(false, key, delta, initial, expiration, cas);
+    }
+
+    /**
+     * Delete an item.
+     *
+     * @param key The key.
+     * @param cas The CAS value the existing item must have or {@code 0} to skip the check.
+     * @return The outcome.
+     */
+    public Result delete(final String key,
+                         final long cas) {
+        for (; ; ) {
+            final Item current = index.get(key);
+            if (current == null || !isLive(current, System.currentTimeMillis())) {
+                return Result.NOT_FOUND;
+            }
+            if (cas != 0L && current.cas != cas) {
+                return Result.EXISTS;
+            }
+            if (index.remove(key, current)) {
+                current.slabClass.unlink(current);
+                return Result.DELETED;
+            }
+        }
+    }
+
+    /**
+     * Invalidate every item.
+     *
+     * @param delay The number of seconds before the items are invalidated or {@code 0} to invalidate them now.
+     */
+    public void flush(final int delay) {
+        if (delay > 0) {
+            flushAt = expiresAt(delay, System.currentTimeMillis());
+            return;
+        }
+        flushedCas = nextCas.get();
+        for (final Map.Entry<String, Item> entry : index.entrySet()) {
+            final Item item = entry.getValue();
+            if (item.cas <= flushedCas && index.remove(entry.getKey(), item)) {
+                item.slabClass.unlink(item);
+            }
+        }
+    }
+
+    /**
+     * Get the number of items in the index, which may include expired items that have not been read since.
+     *
+     * @return The number of items.
+     */
+    public int items() {
+        return index.size();
+    }
+
+    /**
+     * Get the memory taken by the chunks holding items.
+     *
+     * @return The number of bytes.
+     */
+    public long bytes() {
+        long bytes = 0L;
+        for (final SlabClass slabClass : slabClasses) {
+            bytes += slabClass.bytes();
+        }
+        return bytes;
+    }
+
+    /**
+     * Get the memory that has been allocated to slab classes.
+     *
+     * @return The number of bytes, which never exceeds {@link #maxBytes()}.
+     */
+    public long allocatedBytes() {
+        return (long) pages.get() * pageSize;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    public long evictions() {
+        return evictions.sum();
+    }
+
+    private Result store(final Mode mode,
+                         final String key,
+                         final int flags,
+                         final int expiration,
+                         final long cas,
+                         final byte[] value) {
+        for (; ; ) {
+            final long now = System.currentTimeMillis();
+            final Item current = index.get(key);
+            final Item live = current != null && isLive(current, now) ? current : null;
+            if (mode == Mode.ADD && live != null) {
+                return Result.EXISTS;
+            }
+            if (live == null && (mode == Mode.APPEND || mode == Mode.PREPEND)) {
+                return Result.NOT_STORED;
+            }
+            if (live == null && (mode == Mode.REPLACE || cas != 0L)) {
+                return Result.NOT_FOUND;
+            }
+            if (live != null && cas != 0L && live.cas != cas) {
+                return Result.EXISTS;
+            }
+            final Item item;
+            if (mode == Mode.APPEND || mode == Mode.PREPEND) {
+                final byte[] joined = new byte[live.value.length + value.length];
+                final byte[] first = mode == Mode.APPEND ? live.value : value;
+                final byte[] second = mode == Mode.APPEND ? value : live.value;
+                System.arraycopy(first, 0, joined, 0, first.length);
+                System.arraycopy(second, 0, joined, first.length, second.length);
+                item = newItem(key, live.flags, live.expiresAt, now, joined);
+            } else {
+                item = newItem(key, flags, expiresAt(expiration, now), now, value);
+            }
+            if (item == null) {
+                return Result.TOO_LARGE;
+            }
+            final Result result = swap(key, current, item);
+            if (result != null) {
+                return result;
+            }
+        }
+    }
+
+    private Result counter(final boolean increment,
+                           final String key,
+                           final long delta,
+                           final long initial,
+                           final int expiration,
+                           final long cas) {
+        for (; ; ) {
+            final long now = System.currentTimeMillis();
+            final Item current = index.get(key);
+            final Item live = current != null && isLive(current, now) ? current : null;
+            final long counter;
+            final Item item;
+            if (live == null) {
+                if (expiration == NO_CREATE || cas != 0L) {
+                    return Result.NOT_FOUND;
+                }
+                counter = initial;
+                item = newItem(key, 0, expiresAt(expiration, now), now, digits(counter));
+            } else {
+                if (cas != 0L && live.cas != cas) {
+                    return Result.EXISTS;
+                }
+                final long value = parseCounter(live.value);
+                if (value == -1L && !isMaxCounter(live.value)) {
+                    return Result.NON_NUMERIC_VALUE;
+                }
+                if (increment) {
+                    counter = value + delta;
+                } else {
+                    counter = Long.compareUnsigned(value, delta) > 0 ? value - delta : 0L;
+                }
+                item = newItem(key, live.flags, live.expiresAt, now, digits(counter));
+            }
+            final Result result = swap(key, current, item);
+            if (result != null) {
+                return result.status == Status.NO_ERROR ? new Result(Status.NO_ERROR, result.cas, counter) : result;
+            }
+        }
+    }
+
+    /**
+     * Reserve a chunk for a new item and put it in the index in place of the current item.
+     *
+     * @return The outcome or {@code null} if the item was changed by another thread and the update must be retried.
+     */
+    private Result swap(final String key,
+                        final Item current,
+                        final Item item) {
+        if (!item.slabClass.reserve()) {
+            return Result.OUT_OF_MEMORY;
+        }
+        final boolean swapped = current == null
+                ? index.putIfAbsent(key, item) == null
+                : index.replace(key, current, item);
+        if (!swapped) {
+            item.slabClass.release();
+            return null;
+        }
+        item.slabClass.link(item);
+        if (current != null) {
+            current.slabClass.unlink(current);
+        }
+        return new Result(Status.NO_ERROR, item.cas, 0L);
+    }
+
+    private Item newItem(final String key,
+                         final int flags,
+                         final long expiresAt,
+                         final long now,
+                         final byte[] value) {
+        final long size = (long) ITEM_HEADER_SIZE + ByteBufUtil.utf8Bytes(key) + value.length;
+        final SlabClass slabClass = slabClassFor(size);
+        if (slabClass == null) {
+            return null;
+        }
+        return new Item(key, flags, nextCas.incrementAndGet(), expiresAt, now, value, slabClass);
+    }
+
+    private SlabClass slabClassFor(final long size) {
+        if (size > pageSize) {
+            return null;
+        }
+        int low = 0;
+        int high = slabClasses.length - 1;
+        while (low < high) {
+            final int middle = (low + high) >>> 1;
+            if (slabClasses[middle].chunkSize < size) {
+                low = middle + 1;
+            } else {
+                high = middle;
+            }
+        }
+        return slabClasses[low];
+    }
+
+    private boolean isLive(final Item item,
+                           final long now) {
+        if (item.expiresAt != 0L && now >= item.expiresAt) {
+            return false;
+        }
+        if (item.cas <= flushedCas) {
+            return false;
+        }
+        final long flushTime = flushAt;
+        return flushTime == 0L || now < flushTime || item.storedAt >= flushTime;
+    }
+
+    private static long expiresAt(final int expiration,
+                                  final long now) {
+        if (expiration == 0) {
+            return 0L;
+        }
+        if (expiration < 0) {
+            // Already expired
+            return 1L;
+        }
+        if (expiration <= MAX_RELATIVE_EXPIRATION) {
+            return now + expiration * 1000L;
+        }
+        return Math.max(1L, expiration * 1000L);
+    }
+
+    /**
+     * Parse an unsigned decimal counter.
+     *
+     * @return The counter or {@code -1} if the value is not a number, which is also the value of the largest counter.
+     */
+    private static long parseCounter(final byte[] value) {
+        if (value.length == 0 || value.length > 20) {
+            return -1L;
+        }
+        try {
+            return Long.parseUnsignedLong(new String(value, StandardCharsets.US_ASCII));
+        } catch (final NumberFormatException e) {
+            return -1L;
+        }
+    }
+
+    private static boolean isMaxCounter(final byte[] value) {
+        return Long.toUnsignedString(-1L).equals(new String(value, StandardCharsets.US_ASCII));
+    }
+
+    private static byte[] digits(final long counter) {
+        return Long.toUnsignedString(counter).getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private enum Mode {
+        SET,
+        ADD,
+        REPLACE,
+        APPEND,
+        PREPEND
+    }
+
+    /**
+     * The outcome of a write.
+     */
+    public static final class Result {
+
+        static final Result DELETED = new Result(Status.NO_ERROR, 0L, 0L);
+
+        static final Result NOT_FOUND = new Result(Status.NOT_FOUND, 0L, 0L);
+
+        static final Result EXISTS = new Result(Status.EXISTS, 0L, 0L);
+
+        static final Result NOT_STORED = new Result(Status.NOT_STORED, 0L, 0L);
+
+        static final Result TOO_LARGE = new Result(Status.TOO_LARGE, 0L, 0L);
+
+        static final Result NON_NUMERIC_VALUE = new Result(Status.NON_NUMERIC_VALUE, 0L, 0L);
+
+        static final Result OUT_OF_MEMORY = new Result(Status.OUT_OF_MEMORY, 0L, 0L);
+
+        static final Result INVALID_ARGUMENTS = new Result(Status.INVALID_ARGUMENTS, 0L, 0L);
+
+        private final Status status;
+
+        private final long cas;
+
+        private final long counter;
+
+        Result(final Status status,
+               final long cas,
+               final long counter) {
+            this.status = status;
+            this.cas = cas;
+            this.counter = counter;
+        }
+
+        public Status status() {
+            return status;
+        }
+
+        /**
+         * Get the CAS value of the stored item.
+         *
+         * @return The CAS value or {@code 0} if nothing was stored.
+         */
+        public long cas() {
+            return cas;
+        }
+
+        /**
+         * Get the new value of a counter.
+         *
+         * @return The unsigned counter value.
+         */
+        public long counter() {
+            return counter;
+        }
+    }
+
+    /**
+     * A stored item. Items are immutable apart from their place in the LRU list.
+     */
+    public static final class Item {
+
+        private final String key;
+
+        private final int flags;
+
+        private final long cas;
+
+        private final long expiresAt;
+
+        private final long storedAt;
+
+        private final byte[] value;
+
+        private final SlabClass slabClass;
+
+        /**
+         * Set when the item is read so that it survives the next eviction attempt.
+         */
+        private volatile boolean accessed;
+
+        /**
+         * Guarded by the slab class lock.
+         */
+        private Item prev;
+
+        /**
+         * Guarded by the slab class lock.
+         */
+        private Item next;
+
+        /**
+         * Guarded by the slab class lock.
+         */
+        private boolean linked;
+
+        /**
+         * Set once the item's chunk has been freed or given to another item. Guarded by the slab class lock.
+         */
+        private boolean removed;
+
+        Item(final String key,
+             final int flags,
+             final long cas,
+             final long expiresAt,
+             final long storedAt,
+             final byte[] value,
+             final SlabClass slabClass) {
+            this.key = key;
+            this.flags = flags;
+            this.cas = cas;
+            this.expiresAt = expiresAt;
+            this.storedAt = storedAt;
+            this.value = value;
+            this.slabClass = slabClass;
+        }
+
+        public String key() {
+            return key;
+        }
+
+        public int flags() {
+            return flags;
+        }
+
+        public long cas() {
+            return cas;
+        }
+
+        /**
+         * Get the value. The array is shared and must not be modified.
+         *
+         * @return The value.
+         */
+        public byte[] value() {
+            return value;
+        }
+
+        /**
+         * Get the size of the chunk holding the item.
+         *
+         * @return The chunk size in bytes.
+         */
+        public int chunkSize() {
+            return slabClass.chunkSize;
+        }
+    }
+
+    /**
+     * The chunks of one size and the LRU list of the items stored in them.
+     */
+    private final class SlabClass {
+
+        private final int chunkSize;
+
+        private final int chunksPerPage;
+
+        private final ReentrantLock lock = new ReentrantLock();
+
+        /**
+         * The most recently stored item. Guarded by {@code lock}.
+         */
+        private Item head;
+
+        /**
+         * The least recently stored item. Guarded by {@code lock}.
+         */
+        private Item tail;
+
+        /**
+         * Guarded by {@code lock}.
+         */
+        private int linkedItems;
+
+        /**
+         * The chunks in the pages allocated to the class. Guarded by {@code lock}.
+         */
+        private long chunks;
+
+        /**
+         * The chunks that are reserved or hold an item. Guarded by {@code lock}.
+         */
+        private long used;
+
+        SlabClass(final int chunkSize) {
+            this.chunkSize = chunkSize;
+            this.chunksPerPage = pageSize / chunkSize;
+        }
+
+        long bytes() {
+            lock.lock();
+            try {
+                return used * chunkSize;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Reserve a chunk for a new item, allocating a page or evicting the least recently used item if needed.
+         *
+         * @return {@code true} if a chunk was reserved.
+         */
+        boolean reserve() {
+            final Item victim;
+            lock.lock();
+            try {
+                if (used < chunks || allocatePage()) {
+                    used++;
+                    return true;
+                }
+                victim = evictable();
+                if (victim == null) {
+                    return false;
+                }
+                // The victim's chunk passes straight to the new item
+                unlinkFromList(victim);
+                victim.removed = true;
+                evictions.increment();
+            } finally {
+                lock.unlock();
+            }
+            index.remove(victim.key, victim);
+            return true;
+        }
+
+        /**
+         * Give back a chunk reserved for an item that was not stored.
+         */
+        void release() {
+            lock.lock();
+            try {
+                used--;
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Add a stored item to the head of the LRU list unless it has already been replaced or deleted.
+         */
+        void link(final Item item) {
+            lock.lock();
+            try {
+                if (!item.removed) {
+                    item.next = head;
+                    if (head != null) {
+                        head.prev = item;
+                    }
+                    head = item;
+                    if (tail == null) {
+                        tail = item;
+                    }
+                    item.linked = true;
+                    linkedItems++;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        /**
+         * Free the chunk of an item that has been replaced, deleted or expired.
+         */
+        void unlink(final Item item) {
+            lock.lock();
+            try {
+                if (!item.removed) {
+                    unlinkFromList(item);
+                    item.removed = true;
+                    used--;
+                }
+            } finally {
+                lock.unlock();
+            }
+        }
+
+        private boolean allocatePage() {
+            for (int allocated = pages.get(); allocated < maxPages; allocated = pages.get()) {
+                if (pages.compareAndSet(allocated, allocated + 1)) {
+                    chunks += chunksPerPage;
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        /**
+         * Find the least recently stored item that has not been read since it was last considered.
+         */
+        private Item evictable() {
+            for (int i = 0; i <= linkedItems; i++) {
+                final Item candidate = tail;
+                if (candidate == null || !candidate.accessed || i == linkedItems) {
+                    return candidate;
+                }
+                candidate.accessed = false;
+                unlinkFromList(candidate);
+                link(candidate);
+            }
+            return tail;
+        }
+
+        private void unlinkFromList(final Item item) {
+            if (!item.linked) {
+                return;
+            }
+            if (item.prev != null) {
+                item.prev.next = item.next;
+            } else {
+                head = item.next;
+            }
+            if (item.next != null) {
+                item.next.prev = item.prev;
+            } else {
+                tail = item.prev;
+            }
+            item.prev = null;
+            item.next = null;
+            item.linked = false;
+            linkedItems--;
+        }
+    }
+}
@@ -0,0 +1,221 @@
+package com.buralo.memcached.server;
+
+import com.buralo.memcached.MemcachedClient;
+import com.buralo.memcached.MemcachedConnection;
+import com.buralo.memcached.MemcachedException;
+import com.buralo.memcached.Mutation;
+import com.buralo.memcached.Opcode;
+import com.buralo.memcached.Request;
+import com.buralo.memcached.Response;
+import com.buralo.memcached.Status;
+import com.buralo.memcached.codec.ValueCodecs;
+import com.buralo.memcached.hash.DefaultHashAlgorithms;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import reactor.core.publisher.Flux;
+
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.function.BooleanSupplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestMemcachedServer {
+
+    private MemcachedServer server;
+
+    private MemcachedConnection connection;
+
+    private MemcachedClient client;
+
+    private static String text(final Response response) {
+        try {
+            return response.value().toString(StandardCharsets.UTF_8);
+        } finally {
+            response.release();
+        }
+    }
+
+    private static Status status(final Response response) {
+        try {
+            return response.status();
+        } finally {
+            response.release();
+        }
+    }
+
+    private static void await(final BooleanSupplier condition) throws InterruptedException {
+        final long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(5);
+        while (!condition.getAsBoolean() && System.nanoTime() < deadline) {
+            Thread.sleep(10);
+        }
+        assertThat(condition.getAsBoolean()).isTrue();
+    }
+
+    private Response execute(final Request request) {
+        return connection.execute(request).block();
+    }
+
+    @BeforeEach
+    public void setUp() {
+        server = new MemcachedServer();
+        connection = MemcachedConnection.connect(server.address()).block();
+        client = new MemcachedClient(Collections.singletonList(connection), DefaultHashAlgorithms.FNV1A_32);
+    }
+
+    @AfterEach
+    public void tearDown() {
+        connection.close().block();
+        server.close();
+    }
+
+    @Test
+    public void setGetAndDelete() {
+        client.set("Hello", 3, 0, "World", ValueCodecs.STRING).block().release();
+        final Response hit = client.get("Hello").block();
+        assertThat(hit.status()).isEqualTo(Status.NO_ERROR);
+        assertThat(hit.extras().getInt(0)).isEqualTo(3);
+        assertThat(hit.cas()).isPositive();
+        assertThat(text(hit)).isEqualTo("World");
+        assertThat(status(client.delete("Hello").block())).isEqualTo(Status.NO_ERROR);
+        final Response miss = client.get("Hello").block();
+        assertThat(miss.status()).isEqualTo(Status.NOT_FOUND);
+        assertThat(text(miss)).isEqualTo("Not found");
+        assertThat(server.gets()).isEqualTo(2);
+        assertThat(server.hits()).isEqualTo(1);
+    }
+
+    @Test
+    public void quietGetsReturnOnlyTheHits() {
+        client.set("a", 0, 0, "1", ValueCodecs.STRING).block().release();
+        client.set("c", 0, 0, "3", ValueCodecs.STRING).block().release();
+        final List<String> keys = client.getMulti(Flux.just("a", "b", "c"))
+                .map(response -> {
+                    final String key = response.key();
+                    response.release();
+                    return key;
+                })
+                .collectList()
+                .block();
+        assertThat(keys).containsExactlyInAnyOrder("a", "c");
+    }
+
+    @Test
+    public void quietWritesOnlyReportFailures() {
+        final List<Status> failures = client.bulkWrite(Flux.just(
+                Mutation.set("a", 0, 0, Unpooled.copiedBuffer("1", StandardCharsets.UTF_8)),
+                Mutation.delete("missing")))
+                .map(failure -> status(failure.getT2()))
+                .collectList()
+                .block();
+        assertThat(failures).containsExactly(Status.NOT_FOUND);
+        assertThat(server.store().get("a")).isNotNull();
+    }
+
+    @Test
+    public void casConflictsAreReported() {
+        final Response stored = client.set("key", 0, 0, "one", ValueCodecs.STRING).block();
+        final long cas = stored.cas();
+        stored.release();
+        assertThat(status(execute((encoder, opaque) -> encoder.store(Opcode.SET, opaque, "key", 0, 0, cas + 1,
+                Unpooled.copiedBuffer("two", StandardCharsets.UTF_8))))).isEqualTo(Status.EXISTS);
+        assertThat(status(execute((encoder, opaque) -> encoder.store(Opcode.ADD, opaque, "key", 0, 0, 0L,
+                Unpooled.copiedBuffer("two", StandardCharsets.UTF_8))))).isEqualTo(Status.EXISTS);
+        assertThat(status(execute((encoder, opaque) -> encoder.concat(Opcode.APPEND, opaque, "key", cas,
+                Unpooled.copiedBuffer("!", StandardCharsets.UTF_8))))).isEqualTo(Status.NO_ERROR);
+        assertThat(client.get("key", ValueCodecs.STRING).block()).isEqualTo("one!");
+    }
+
+    @Test
+    public void countersAreUpdated() {
+        assertThat(client.increment("counter", 2, 10, 0).block()).isEqualTo(10);
+        assertThat(client.increment("counter", 2, 10, 0).block()).isEqualTo(12);
+        assertThat(client.decrement("counter", 20, 10, 0).block()).isEqualTo(0);
+        client.set("text", 0, 0, "abc", ValueCodecs.STRING).block().release();
+        assertThatThrownBy(() -> client.increment("text", 1, 0, 0).block())
+                .isInstanceOf(MemcachedException.class)
+                .extracting(e -> ((MemcachedException) e).status())
+                .isEqualTo(Status.NON_NUMERIC_VALUE);
+    }
+
+    @Test
+    public void versionAndFlush() {
+        assertThat(text(execute((encoder, opaque) -> encoder.version(opaque)))).isEqualTo(MemcachedServer.VERSION);
+        client.set("key", 0, 0, "value", ValueCodecs.STRING).block().release();
+        assertThat(status(execute((encoder, opaque) -> encoder.flush(Opcode.FLUSH, opaque, 0))))
+                .isEqualTo(Status.NO_ERROR);
+        assertThat(client.get("key", ValueCodecs.STRING).block()).isNull();
+    }
+
+    @Test
+    public void unknownCommandsAreRejected() {
+        final Response response = execute((encoder, opaque) -> {
+            final ByteBuf buf = encoder.noop(opaque);
+            buf.setByte(1, 0x30);
+            return buf;
+        });
+        assertThat(response.rawOpcode()).isEqualTo(0x30);
+        assertThat(status(response)).isEqualTo(Status.UNKNOWN_COMMAND);
+    }
+
+    @Test
+    public void injectedLatencyDelaysResponses() {
+        server.faults().latency(Duration.ofMillis(100));
+        final long start = System.nanoTime();
+        assertThat(client.get("key", ValueCodecs.STRING).block()).isNull();
+        assertThat(System.nanoTime() - start).isGreaterThanOrEqualTo(TimeUnit.MILLISECONDS.toNanos(100));
+    }
+
+    @Test
+    public void delayedResponsesStayInOrder() {
+        server.faults().latency(Duration.ofMillis(50), 0.5);
+        final List<Long> counters = Flux.range(0, 20)
+                .concatMap(i -> client.increment("counter", 1, 1, 0))
+                .collectList()
+                .block();
+        for (int i = 0; i < counters.size(); i++) {
+            assertThat(counters.get(i)).isEqualTo(i + 1L);
+        }
+    }
+
+    @Test
+    public void injectedStatusesFailRequests() {
+        server.faults().failRequests(Status.BUSY, 1.0);
+        assertThat(status(client.get("key").block())).isEqualTo(Status.BUSY);
+        assertThat(status(execute((encoder, opaque) -> encoder.noop(opaque)))).isEqualTo(Status.NO_ERROR);
+        server.faults().failRequests(Status.TEMPORARY_FAILURE, 1.0);
+        assertThat(status(client.get("key").block())).isEqualTo(Status.TEMPORARY_FAILURE);
+        server.faults().reset();
+        assertThat(status(client.get("key").block())).isEqualTo(Status.NOT_FOUND);
+    }
+
+    @Test
+    public void droppedConnectionsFailRequests() {
+        server.faults().dropConnections(1.0);
+        assertThatThrownBy(() -> client.get("key").block()).isNotNull();
+        assertThat(connection.isActive()).isFalse();
+    }
+
+    @Test
+    public void disconnectClosesOpenConnections() throws InterruptedException {
+        await(() -> server.currentConnections() == 1);
+        server.disconnect();
+        await(() -> !connection.isActive());
+        assertThat(server.currentConnections()).isZero();
+    }
+
+    @Test
+    public void faultProbabilitiesAreValidated() {
+        assertThatThrownBy(() -> server.faults().dropConnections(1.5))
+                .isInstanceOf(IllegalArgumentException.class);
+        assertThatThrownBy(() -> server.faults().failRequests(Status.NO_ERROR, 1.0))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}
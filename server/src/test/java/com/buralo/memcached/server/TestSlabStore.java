@@ -0,0 +1,131 @@
+package com.buralo.memcached.server;
+
+import com.buralo.memcached.Status;
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.assertj.core.api.Assertions.assertThatThrownBy;
+
+public class TestSlabStore {
+
+    private static final int PAGE_SIZE = 4096;
+
+    private final SlabStore store = new SlabStore(4 * PAGE_SIZE, PAGE_SIZE);
+
+    private static byte[] bytes(final String value) {
+        return value.getBytes(StandardCharsets.US_ASCII);
+    }
+
+    private String value(final String key) {
+        final SlabStore.Item item = store.get(key);
+        return item == null ? null : new String(item.value(), StandardCharsets.US_ASCII);
+    }
+
+    @Test
+    public void setReplacesTheItem() {
+        final SlabStore.Result first = store.set("key", 1, 0, 0L, bytes("one"));
+        final SlabStore.Result second = store.set("key", 2, 0, 0L, bytes("two"));
+        assertThat(first.status()).isEqualTo(Status.NO_ERROR);
+        assertThat(second.cas()).isGreaterThan(first.cas());
+        assertThat(value("key")).isEqualTo("two");
+        assertThat(store.get("key").flags()).isEqualTo(2);
+        assertThat(store.items()).isEqualTo(1);
+    }
+
+    @Test
+    public void addAndReplaceDependOnTheItemExisting() {
+        assertThat(store.replace("key", 0, 0, 0L, bytes("one")).status()).isEqualTo(Status.NOT_FOUND);
+        assertThat(store.add("key", 0, 0, bytes("one")).status()).isEqualTo(Status.NO_ERROR);
+        assertThat(store.add("key", 0, 0, bytes("two")).status()).isEqualTo(Status.EXISTS);
+        assertThat(store.replace("key", 0, 0, 0L, bytes("three")).status()).isEqualTo(Status.NO_ERROR);
+        assertThat(value("key")).isEqualTo("three");
+    }
+
+    @Test
+    public void casMustMatch() {
+        final long cas = store.set("key", 0, 0, 0L, bytes("one")).cas();
+        assertThat(store.set("key", 0, 0, cas + 1, bytes("two")).status()).isEqualTo(Status.EXISTS);
+        assertThat(store.set("key", 0, 0, cas, bytes("two")).status()).isEqualTo(Status.NO_ERROR);
+        assertThat(store.delete("key", cas).status()).isEqualTo(Status.EXISTS);
+        assertThat(store.set("missing", 0, 0, cas, bytes("two")).status()).isEqualTo(Status.NOT_FOUND);
+    }
+
+    @Test
+    public void appendAndPrependKeepTheFlags() {
+        assertThat(store.append("key", 0L, bytes("x")).status()).isEqualTo(Status.NOT_STORED);
+        store.set("key", 7, 0, 0L, bytes("middle"));
+        store.append("key", 0L, bytes(">"));
+        store.prepend("key", 0L, bytes("<"));
+        assertThat(value("key")).isEqualTo("<middle>");
+        assertThat(store.get("key").flags()).isEqualTo(7);
+    }
+
+    @Test
+    public void countersWrapAndStopAtZero() {
+        assertThat(store.increment("counter", 1, 0, 0xffffffff, 0L).status()).isEqualTo(Status.NOT_FOUND);
+        assertThat(store.increment("counter", 1, 5, 0, 0L).counter()).isEqualTo(5);
+        assertThat(store.increment("counter", -1L, 0, 0, 0L).counter()).isEqualTo(4);
+        assertThat(store.decrement("counter", 10, 0, 0, 0L).counter()).isEqualTo(0);
+        store.set("text", 0, 0, 0L, bytes("abc"));
+        assertThat(store.increment("text", 1, 0, 0, 0L).status()).isEqualTo(Status.NON_NUMERIC_VALUE);
+    }
+
+    @Test
+    public void expiredAndFlushedItemsAreNotReturned() {
+        store.set("expired", 0, -1, 0L, bytes("value"));
+        assertThat(store.get("expired")).isNull();
+        store.set("flushed", 0, 0, 0L, bytes("value"));
+        store.flush(0);
+        assertThat(store.get("flushed")).isNull();
+        assertThat(store.items()).isZero();
+        store.set("after", 0, 0, 0L, bytes("value"));
+        assertThat(value("after")).isEqualTo("value");
+    }
+
+    @Test
+    public void memoryIsBoundedByEvictingTheLeastRecentlyUsedItems() {
+        // The keys have the same length so the items share a slab class
+        final byte[] value = new byte[100];
+        for (int i = 0; i < 1000; i++) {
+            assertThat(store.set(String.format("key%04d", i), 0, 0, 0L, value).status()).isEqualTo(Status.NO_ERROR);
+        }
+        assertThat(store.allocatedBytes()).isLessThanOrEqualTo(store.maxBytes());
+        assertThat(store.bytes()).isLessThanOrEqualTo(store.maxBytes());
+        assertThat(store.evictions()).isPositive();
+        assertThat(store.get("key0000")).isNull();
+        assertThat(store.get("key0999")).isNotNull();
+    }
+
+    @Test
+    public void recentlyReadItemsSurviveEviction() {
+        final byte[] value = new byte[100];
+        store.set("hot", 0, 0, 0L, value);
+        for (int i = 0; i < 1000; i++) {
+            store.get("hot");
+            store.set(String.format("%03d", i), 0, 0, 0L, value);
+        }
+        assertThat(store.get("hot")).isNotNull();
+    }
+
+    @Test
+    public void itemsLargerThanAPageAreRejected() {
+        assertThat(store.set("key", 0, 0, 0L, new byte[PAGE_SIZE]).status()).isEqualTo(Status.TOO_LARGE);
+    }
+
+    @Test
+    public void classesWithoutPagesRunOutOfMemory() {
+        // Fill every page with small items so no page is left for a larger item
+        for (int i = 0; i < 1000; i++) {
+            store.set("key" + i, 0, 0, 0L, new byte[10]);
+        }
+        assertThat(store.set("large", 0, 0, 0L, new byte[PAGE_SIZE / 2]).status()).isEqualTo(Status.OUT_OF_MEMORY);
+    }
+
+    @Test
+    public void memoryLimitMustHoldAPage() {
+        assertThatThrownBy(() -> new SlabStore(PAGE_SIZE - 1, PAGE_SIZE))
+                .isInstanceOf(IllegalArgumentException.class);
+    }
+}